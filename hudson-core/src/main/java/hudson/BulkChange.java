@@ -25,8 +25,11 @@ package hudson;
 
 import hudson.model.Saveable;
 import hudson.model.Hudson;
+import hudson.util.AtomicFileWriter;
 
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Transaction-like object that can be used to make a bunch of changes to an object, and defer the
@@ -87,6 +90,10 @@ public class BulkChange {
     private final Saveable saveable;
     public final Exception allocator;
     private final BulkChange parent;
+    /**
+     * Lets all the files saved while this bulk change is in scope share one sync point.
+     */
+    private final AtomicFileWriter.Batch batch;
 
     private boolean completed;
 
@@ -99,6 +106,7 @@ public class BulkChange {
 
         // in effect at construction
         INSCOPE.set(this);
+        batch = new AtomicFileWriter.Batch();
     }
 
     /**
@@ -110,7 +118,11 @@ public class BulkChange {
 
         // move this object out of the scope first before save, or otherwise the save() method will do nothing.
         pop();
-        saveable.save();
+        try {
+            saveable.save();
+        } finally {
+            batch.commit();
+        }
     }
 
     /**
@@ -128,6 +140,12 @@ public class BulkChange {
         if(completed)   return;
         completed = true;
         pop();
+        // other objects may have been saved in the mean time
+        try {
+            batch.commit();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to commit the files saved during the bulk change", e);
+        }
     }
 
     private void pop() {
@@ -171,4 +189,6 @@ public class BulkChange {
         public void save() {
         }
     };
+
+    private static final Logger LOGGER = Logger.getLogger(BulkChange.class.getName());
 }
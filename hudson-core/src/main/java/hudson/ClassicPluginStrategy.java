@@ -27,6 +27,7 @@ import hudson.PluginWrapper.Dependency;
 import hudson.model.Hudson;
 import hudson.util.IOException2;
 import hudson.util.MaskingClassLoader;
+import hudson.util.TextFile;
 import hudson.util.VersionNumber;
 import hudson.Plugin.DummyImpl;
 
@@ -46,6 +47,9 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.jar.Attributes;
 import java.util.logging.Level;
@@ -171,8 +175,68 @@ public class ClassicPluginStrategy implements PluginStrategy {
 
         ClassLoader dependencyLoader = new DependencyClassLoader(getBaseClassLoader(atts), archive, Util.join(dependencies,optionalDependencies));
 
-        return new PluginWrapper(pluginManager, archive, manifest, baseResourceURL,
+        PluginWrapper p = new PluginWrapper(pluginManager, archive, manifest, baseResourceURL,
                 createClassLoader(paths, dependencyLoader, atts), disableFile, dependencies, optionalDependencies);
+        p.packages = listPackages(paths);
+        return p;
+    }
+
+    /**
+     * Lists up the packages that the given class path entries have classes in,
+     * so that {@link PluginManager.UberClassLoader} knows which plugins to ask for a class.
+     *
+     * @return
+     *      null if any of the entries couldn't be read, in which case the plugin is asked for every class.
+     */
+    private static Set<String> listPackages(List<File> paths) {
+        Set<String> packages = new HashSet<String>();
+        for (File path : paths) {
+            try {
+                if (path.isDirectory()) {
+                    listPackages(path, "", packages);
+                } else if (path.isFile()) {
+                    JarFile jar = new JarFile(path);
+                    try {
+                        Manifest m = jar.getManifest();
+                        if (m!=null && m.getMainAttributes().getValue(Attributes.Name.CLASS_PATH)!=null)
+                            return null;    // the classloader would follow it into other jars
+                        Enumeration<JarEntry> e = jar.entries();
+                        while (e.hasMoreElements()) {
+                            String name = e.nextElement().getName();
+                            if (name.endsWith(".class"))
+                                packages.add(packageOf(name.replace('/','.')));
+                        }
+                    } finally {
+                        jar.close();
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to list classes in "+path, e);
+                return null;
+            }
+        }
+        return packages;
+    }
+
+    private static void listPackages(File dir, String prefix, Set<String> packages) {
+        File[] children = dir.listFiles();
+        if (children==null)     return;
+        for (File child : children) {
+            if (child.isDirectory())
+                listPackages(child, prefix+child.getName()+'.', packages);
+            else if (child.getName().endsWith(".class"))
+                packages.add(packageOf(prefix+child.getName()));
+        }
+    }
+
+    /**
+     * Package name of a class name like "org.acme.Foo", or "" for the default package.
+     */
+    /*package*/ static String packageOf(String className) {
+        if (className.endsWith(".class"))
+            className = className.substring(0,className.length()-6);
+        int idx = className.lastIndexOf('.');
+        return idx<0 ? "" : className.substring(0,idx);
     }
     
     @Deprecated
@@ -379,6 +443,15 @@ public class ClassicPluginStrategy implements PluginStrategy {
         if(explodeTime.exists() && explodeTime.lastModified()==archive.lastModified())
             return; // no need to expand
 
+        // the timestamp changes when the same plugin is copied over again, for example
+        // when it's bundled in the war. so see if the contents have actually changed.
+        File checksumFile = new File(destDir,".checksum");
+        String checksum = checksumOf(archive);
+        if(explodeTime.exists() && checksumFile.exists() && checksum.equals(new TextFile(checksumFile).readTrim())) {
+            touch(explodeTime, archive.lastModified());
+            return;
+        }
+
         // delete the contents so that old files won't interfere with new files
         Util.deleteContentsRecursive(destDir);
 
@@ -393,8 +466,22 @@ public class ClassicPluginStrategy implements PluginStrategy {
             throw new IOException2("Failed to expand " + archive,x);
         }
 
+        new TextFile(checksumFile).write(checksum);
+        touch(explodeTime, archive.lastModified());
+    }
+
+    private static String checksumOf(File archive) throws IOException {
+        FileInputStream in = new FileInputStream(archive);
+        try {
+            return Util.getDigestOf(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void touch(File f, long timestamp) throws IOException {
         try {
-            new FilePath(explodeTime).touch(archive.lastModified());
+            new FilePath(f).touch(timestamp);
         } catch (InterruptedException e) {
             throw new AssertionError(e); // impossible
         }
@@ -39,17 +39,21 @@ import hudson.util.CyclicGraphDetector;
 import hudson.util.CyclicGraphDetector.CycleDetectedException;
 import hudson.util.PersistedList;
 import hudson.util.Service;
+import hudson.util.TimeUnit2;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.io.FileUtils;
+import net.java.sezpoz.Index;
+import net.java.sezpoz.IndexItem;
 import org.apache.commons.logging.LogFactory;
 import org.jvnet.hudson.reactor.Executable;
 import org.jvnet.hudson.reactor.Reactor;
 import org.jvnet.hudson.reactor.TaskBuilder;
 import org.jvnet.hudson.reactor.TaskGraphBuilder;
+import org.jvnet.hudson.reactor.TaskGraphBuilder.Handle;
 import org.kohsuke.stapler.HttpRedirect;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.HttpResponses;
@@ -66,6 +70,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -76,6 +81,7 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -178,41 +184,65 @@ public abstract class PluginManager extends AbstractModelObject {
                             // once we've listed plugins, we can fill in the reactor with plugin-specific initialization tasks
                             TaskGraphBuilder g = new TaskGraphBuilder();
 
-                            final Map<String,File> inspectedShortNames = new HashMap<String,File>();
-
-                            for( final File arc : archives ) {
-                                g.followedBy().notFatal().attains(PLUGINS_LISTED).add("Inspecting plugin " + arc, new Executable() {
+                            // explode archives and create classloaders in parallel,
+                            // then register the results in the order of the archives,
+                            // so that the duplicate detection picks the same one every time
+                            final PluginWrapper[] inspected = new PluginWrapper[archives.size()];
+                            final IOException[] failures = new IOException[archives.size()];
+                            List<Handle> inspections = new ArrayList<Handle>();
+
+                            for (int i=0; i<archives.size(); i++) {
+                                final int index = i;
+                                final File arc = archives.get(i);
+                                inspections.add(g.notFatal().add("Inspecting plugin " + arc, new Executable() {
                                     public void run(Reactor session1) throws Exception {
+                                        long start = System.currentTimeMillis();
                                         try {
-                                            PluginWrapper p = strategy.createPluginWrapper(arc);
-                                            if (isDuplicate(p)) return;
-
-                                            p.isBundled = bundledPlugins.contains(arc.getName());
-                                            plugins.add(p);
-                                            if(p.isActive())
-                                                activePlugins.add(p);
+                                            inspected[index] = strategy.createPluginWrapper(arc);
+                                            inspected[index].recordStartupTime("inspect",start);
                                         } catch (IOException e) {
-                                            failedPlugins.add(new FailedPlugin(arc.getName(),e));
+                                            failures[index] = e;
                                             throw e;
                                         }
                                     }
+                                }));
+                            }
 
-                                    /**
-                                     * Inspects duplication. this happens when you run hpi:run on a bundled plugin,
-                                     * as well as putting numbered hpi files, like "cobertura-1.0.hpi" and "cobertura-1.1.hpi"
-                                     */
-                                    private boolean isDuplicate(PluginWrapper p) {
-                                        String shortName = p.getShortName();
-                                        if (inspectedShortNames.containsKey(shortName)) {
-                                            LOGGER.info("Ignoring "+arc+" because "+inspectedShortNames.get(shortName)+" is already loaded");
-                                            return true;
+                            g.requires(inspections.toArray(new Handle[inspections.size()])).attains(PLUGINS_LISTED).add("Registering plugins", new Executable() {
+                                private final Map<String,File> inspectedShortNames = new HashMap<String,File>();
+
+                                public void run(Reactor session1) throws Exception {
+                                    for (int i=0; i<inspected.length; i++) {
+                                        File arc = archives.get(i);
+                                        if (failures[i]!=null)
+                                            failedPlugins.add(new FailedPlugin(arc.getName(),failures[i]));
+                                        PluginWrapper p = inspected[i];
+                                        if (p==null || isDuplicate(p,arc)) continue;
+
+                                        p.isBundled = bundledPlugins.contains(arc.getName());
+                                        plugins.add(p);
+                                        if(p.isActive()) {
+                                            activePlugins.add(p);
+                                            ((UberClassLoader)uberClassLoader).clearCache();
                                         }
+                                    }
+                                }
 
-                                        inspectedShortNames.put(shortName,arc);
-                                        return false;
+                                /**
+                                 * Inspects duplication. this happens when you run hpi:run on a bundled plugin,
+                                 * as well as putting numbered hpi files, like "cobertura-1.0.hpi" and "cobertura-1.1.hpi"
+                                 */
+                                private boolean isDuplicate(PluginWrapper p, File arc) {
+                                    String shortName = p.getShortName();
+                                    if (inspectedShortNames.containsKey(shortName)) {
+                                        LOGGER.info("Ignoring "+arc+" because "+inspectedShortNames.get(shortName)+" is already loaded");
+                                        return true;
                                     }
-                                });
-                            }
+
+                                    inspectedShortNames.put(shortName,arc);
+                                    return false;
+                                }
+                            });
 
                             g.requires(PLUGINS_PREPARED).add("Checking cyclic dependencies",new Executable() {
                                 /**
@@ -273,12 +303,15 @@ public abstract class PluginManager extends AbstractModelObject {
                     for (final PluginWrapper p : activePlugins.toArray(new PluginWrapper[activePlugins.size()])) {
                         g.followedBy().notFatal().attains(PLUGINS_PREPARED).add("Loading plugin " + p.getShortName(), new Executable() {
                             public void run(Reactor session) throws Exception {
+                                long start = System.currentTimeMillis();
                                 try {
                                     p.resolvePluginDependencies();
                                     strategy.load(p);
+                                    p.recordStartupTime("load",start);
                                 } catch (IOException e) {
                                     failedPlugins.add(new FailedPlugin(p.getShortName(), e));
                                     activePlugins.remove(p);
+                                    ((UberClassLoader)uberClassLoader).clearCache();
                                     plugins.remove(p);
                                     throw e;
                                 }
@@ -286,15 +319,44 @@ public abstract class PluginManager extends AbstractModelObject {
                         });
                     }
 
+                    // in the mean time, load the extension classes of all the plugins in parallel,
+                    // so that the extension scanning that follows mostly finds them already loaded.
+                    // classes are only loaded and not initialized here, to stay clear of the dead lock
+                    // described in ExtensionFinder.scout()
+                    for (final PluginWrapper p : activePlugins.toArray(new PluginWrapper[activePlugins.size()])) {
+                        g.notFatal().attains(PLUGINS_PREPARED).add("Preloading extensions of plugin " + p.getShortName(), new Executable() {
+                            public void run(Reactor session) throws Exception {
+                                long start = System.currentTimeMillis();
+                                Set<String> packages = p.packages;
+                                for (IndexItem<Extension,Object> item : Index.load(Extension.class, Object.class, p.classLoader)) {
+                                    String name = item.className();
+                                    if (packages!=null && !packages.contains(ClassicPluginStrategy.packageOf(name)))
+                                        continue;   // from core or other plugins
+                                    try {
+                                        Class.forName(name, false, p.classLoader);
+                                    } catch (ClassNotFoundException e) {
+                                        // we'll report it when the extension is actually looked up
+                                    } catch (LinkageError e) {
+                                        // ditto
+                                    }
+                                }
+                                p.recordStartupTime("preload",start);
+                            }
+                        });
+                    }
+
                     // schedule execution of initializing plugins
                     for (final PluginWrapper p : activePlugins.toArray(new PluginWrapper[activePlugins.size()])) {
                         g.followedBy().notFatal().attains(PLUGINS_STARTED).add("Initializing plugin " + p.getShortName(), new Executable() {
                             public void run(Reactor session) throws Exception {
+                                long start = System.currentTimeMillis();
                                 try {
                                     p.getPlugin().postInitialize();
+                                    p.recordStartupTime("initialize",start);
                                 } catch (Exception e) {
                                     failedPlugins.add(new FailedPlugin(p.getShortName(), e));
                                     activePlugins.remove(p);
+                                    ((UberClassLoader)uberClassLoader).clearCache();
                                     plugins.remove(p);
                                     throw e;
                                 }
@@ -309,6 +371,12 @@ public abstract class PluginManager extends AbstractModelObject {
                         }
                     });
 
+                    g.requires(PLUGINS_STARTED).add("Reporting plugin startup times", new Executable() {
+                        public void run(Reactor reactor) throws Exception {
+                            reportStartupTimes();
+                        }
+                    });
+
                     // register them all
                     session.addAll(g.discoverTasks(session));
                 }
@@ -316,6 +384,32 @@ public abstract class PluginManager extends AbstractModelObject {
         }});
     }
 
+    /**
+     * Logs how long each plugin took to start, slowest first.
+     */
+    private void reportStartupTimes() {
+        List<PluginWrapper> sorted = new ArrayList<PluginWrapper>(getPlugins());
+        Collections.sort(sorted, new Comparator<PluginWrapper>() {
+            public int compare(PluginWrapper o1, PluginWrapper o2) {
+                long l = o1.getStartupTime(), r = o2.getStartupTime();
+                return l>r ? -1 : (l==r ? 0 : 1);
+            }
+        });
+        StringBuilder buf = new StringBuilder();
+        for (PluginWrapper p : sorted.subList(0,Math.min(5,sorted.size()))) {
+            if (buf.length()>0) buf.append(", ");
+            buf.append(p.getShortName()).append(' ').append(p.getStartupTime()).append("ms");
+        }
+        LOGGER.info("Started "+sorted.size()+" plugins. Slowest: "+buf);
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            buf = new StringBuilder("Plugin startup times:");
+            for (PluginWrapper p : sorted)
+                buf.append("\n  ").append(p.getShortName()).append(": ").append(p.getStartupTime()).append("ms ").append(p.getStartupTimes());
+            LOGGER.fine(buf.toString());
+        }
+    }
+
     /**
      * If the war file has any "/WEB-INF/plugins/*.hpi", extract them into the plugin directory.
      *
@@ -479,6 +573,7 @@ public abstract class PluginManager extends AbstractModelObject {
             p.releaseClassLoader();
         }
         activePlugins.clear();
+        ((UberClassLoader)uberClassLoader).clearCache();
         // Work around a bug in commons-logging.
         // See http://www.szegedi.org/articles/memleak.html
         LogFactory.release(uberClassLoader);
@@ -610,6 +705,11 @@ public abstract class PluginManager extends AbstractModelObject {
 
     /**
      * {@link ClassLoader} that can see all plugins.
+     *
+     * <p>
+     * Since XStream and console annotations resolve class names through this classloader all the time,
+     * it remembers which classes were found and which weren't, and only asks those plugins that have
+     * classes in the package in question.
      */
     public final class UberClassLoader extends ClassLoader {
         /**
@@ -618,6 +718,17 @@ public abstract class PluginManager extends AbstractModelObject {
          */
         private ConcurrentMap<String, WeakReference<Class>> generatedClasses = new ConcurrentHashMap<String, WeakReference<Class>>();
 
+        /**
+         * Classes found in plugins, keyed by their names.
+         */
+        private final ConcurrentMap<String, WeakReference<Class>> loaded = new ConcurrentHashMap<String, WeakReference<Class>>();
+        /**
+         * Names of classes that no plugin had.
+         */
+        private final ConcurrentMap<String,Boolean> notFound = new ConcurrentHashMap<String,Boolean>();
+
+        private final AtomicLong lookups = new AtomicLong(), hits = new AtomicLong(), negativeHits = new AtomicLong(), lookupTime = new AtomicLong();
+
         public UberClassLoader() {
             super(PluginManager.class.getClassLoader());
         }
@@ -637,23 +748,99 @@ public abstract class PluginManager extends AbstractModelObject {
 
             // first, use the context classloader so that plugins that are loading
             // can use its own classloader first.
+            // no point in asking it if it's just one of our ancestors, which has already failed to find it.
             ClassLoader cl = Thread.currentThread().getContextClassLoader();
-            if(cl!=null && cl!=this)
+            if(cl!=null && cl!=this && !isAncestor(cl))
                 try {
                     return cl.loadClass(name);
                 } catch(ClassNotFoundException e) {
                     // not found. try next
                 }
 
-            for (PluginWrapper p : activePlugins) {
-                try {
-                    return p.classLoader.loadClass(name);
-                } catch (ClassNotFoundException e) {
-                    //not found. try next
+            lookups.incrementAndGet();
+            wc = loaded.get(name);
+            if (wc!=null) {
+                Class c = wc.get();
+                if (c!=null) {
+                    hits.incrementAndGet();
+                    return c;
                 }
+                loaded.remove(name,wc);
+            }
+            if (notFound.containsKey(name)) {
+                negativeHits.incrementAndGet();
+                throw new ClassNotFoundException(name);
+            }
+
+            long start = System.nanoTime();
+            try {
+                String pkg = ClassicPluginStrategy.packageOf(name);
+                for (PluginWrapper p : activePlugins) {
+                    Set<String> packages = p.packages;
+                    if (packages!=null && !packages.contains(pkg))
+                        continue;   // this plugin doesn't have it. don't bother asking
+                    try {
+                        Class<?> c = p.classLoader.loadClass(name);
+                        loaded.put(name,new WeakReference<Class>(c));
+                        return c;
+                    } catch (ClassNotFoundException e) {
+                        //not found. try next
+                    }
+                }
+                // not found in any of the classloader. delegate.
+                if (notFound.size()>=MAX_NOT_FOUND)
+                    notFound.clear();   // don't let made-up names eat up the memory
+                notFound.put(name,Boolean.TRUE);
+                throw new ClassNotFoundException(name);
+            } finally {
+                lookupTime.addAndGet(System.nanoTime()-start);
             }
-            // not found in any of the classloader. delegate.
-            throw new ClassNotFoundException(name);
+        }
+
+        private boolean isAncestor(ClassLoader cl) {
+            for (ClassLoader p=getParent(); p!=null; p=p.getParent())
+                if (p==cl)  return true;
+            return false;
+        }
+
+        /**
+         * Forgets what was found and what wasn't, for example because the set of plugins has changed.
+         *
+         * @since 2.1.0
+         */
+        public void clearCache() {
+            loaded.clear();
+            notFound.clear();
+        }
+
+        /**
+         * Number of class lookups made against plugins.
+         *
+         * @since 2.1.0
+         */
+        public long getLookupCount() {
+            return lookups.get();
+        }
+
+        /**
+         * Number of lookups answered by the cache of the classes found earlier.
+         */
+        public long getHitCount() {
+            return hits.get();
+        }
+
+        /**
+         * Number of lookups answered by the cache of the classes not found earlier.
+         */
+        public long getNegativeHitCount() {
+            return negativeHits.get();
+        }
+
+        /**
+         * Total time spent asking plugins for classes, in milliseconds.
+         */
+        public long getLookupTime() {
+            return TimeUnit2.NANOSECONDS.toMillis(lookupTime.get());
         }
 
         @Override
@@ -685,6 +872,11 @@ public abstract class PluginManager extends AbstractModelObject {
 
     private static final Logger LOGGER = Logger.getLogger(PluginManager.class.getName());
 
+    /**
+     * Number of missing class names {@link UberClassLoader} remembers.
+     */
+    private static final int MAX_NOT_FOUND = Integer.getInteger(PluginManager.class.getName()+".maxNotFoundClasses",10000);
+
     /**
      * Remembers why a plugin failed to deploy.
      */
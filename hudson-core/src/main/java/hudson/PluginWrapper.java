@@ -37,7 +37,11 @@ import java.io.OutputStream;
 import java.io.Closeable;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.jar.Manifest;
 import java.util.logging.Logger;
 import static java.util.logging.Level.WARNING;
@@ -133,6 +137,17 @@ public class PluginWrapper implements Comparable<PluginWrapper> {
      */
     /*package*/ boolean isBundled;
 
+    /**
+     * Packages that this plugin itself has classes in, excluding those of its dependencies.
+     * Null if unknown.
+     */
+    /*package*/ volatile Set<String> packages;
+
+    /**
+     * Milliseconds spent in each phase of the startup, in the order they happened.
+     */
+    private final Map<String,Long> startupTimes = Collections.synchronizedMap(new LinkedHashMap<String,Long>());
+
     public static final class Dependency {
         public final String shortName;
         public final String version;
@@ -376,6 +391,36 @@ public class PluginWrapper implements Comparable<PluginWrapper> {
         return isBundled;
     }
 
+    /**
+     * Records that a phase of the startup of this plugin, which began at the given time, has completed.
+     */
+    /*package*/ void recordStartupTime(String phase, long start) {
+        startupTimes.put(phase,System.currentTimeMillis()-start);
+    }
+
+    /**
+     * Milliseconds this plugin spent in each phase of the startup, like "inspect", "load", and "initialize".
+     *
+     * @since 2.1.0
+     */
+    public Map<String,Long> getStartupTimes() {
+        synchronized (startupTimes) {
+            return new LinkedHashMap<String,Long>(startupTimes);
+        }
+    }
+
+    /**
+     * Total milliseconds this plugin spent starting up.
+     *
+     * @since 2.1.0
+     */
+    public long getStartupTime() {
+        long total = 0;
+        for (long t : getStartupTimes().values())
+            total += t;
+        return total;
+    }
+
     /**
      * If true, the plugin is going to be activated next time
      * Hudson runs.
@@ -31,6 +31,7 @@ import com.thoughtworks.xstream.io.xml.XppReader;
 import hudson.model.Descriptor;
 import hudson.util.AtomicFileWriter;
 import hudson.util.IOException2;
+import hudson.util.WriteBehindQueue;
 import hudson.util.XStream2;
 import org.xml.sax.Attributes;
 import org.xml.sax.Locator;
@@ -121,6 +122,7 @@ public final class XmlFile {
      */
     public Object read() throws IOException {
         LOGGER.fine("Reading "+file);
+        flushPendingWrites();
         Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
         try {
             return xs.fromXML(r);
@@ -143,6 +145,7 @@ public final class XmlFile {
      *      if the XML representation is completely new.
      */
     public Object unmarshal( Object o ) throws IOException {
+        flushPendingWrites();
         Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(file),"UTF-8"));
         try {
             return xs.unmarshal(new XppReader(r),o);
@@ -157,6 +160,16 @@ public final class XmlFile {
         }
     }
 
+    /**
+     * Makes sure that the writes of this file that are still in flight are on disk, so that we read the latest data.
+     */
+    private void flushPendingWrites() throws IOException {
+        WriteBehindQueue.get().flush(file);
+        AtomicFileWriter.Batch batch = AtomicFileWriter.Batch.current();
+        if (batch!=null)
+            batch.commit(file);
+    }
+
     public void write( Object o ) throws IOException {
         mkdirs();
         AtomicFileWriter w = new AtomicFileWriter(file);
@@ -171,6 +184,38 @@ public final class XmlFile {
         }
     }
 
+    /**
+     * Serializes the given object into what {@link #write(Object)} would write to this file.
+     *
+     * @since 2.1.0
+     */
+    public String toXML(Object o) throws IOException {
+        StringWriter w = new StringWriter();
+        w.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+        try {
+            xs.toXML(o,w);
+        } catch(StreamException e) {
+            throw new IOException2(e);
+        }
+        return w.toString();
+    }
+
+    /**
+     * Writes the XML produced by {@link #toXML(Object)} to this file.
+     *
+     * @since 2.1.0
+     */
+    public void writeRaw(String xml) throws IOException {
+        mkdirs();
+        AtomicFileWriter w = new AtomicFileWriter(file);
+        try {
+            w.write(xml);
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
     public boolean exists() {
         return file.exists();
     }
@@ -194,6 +239,7 @@ public final class XmlFile {
      * not just the system default encoding.
      */
     public Reader readRaw() throws IOException {
+        flushPendingWrites();
         return new InputStreamReader(new FileInputStream(file),sniffEncoding());
     }
 
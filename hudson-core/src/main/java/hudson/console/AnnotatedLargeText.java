@@ -24,9 +24,11 @@
 package hudson.console;
 
 import com.trilead.ssh2.crypto.Base64;
+import hudson.Util;
 import hudson.model.Hudson;
 import hudson.remoting.ObjectInputStreamEx;
 import hudson.util.IOException2;
+import hudson.util.LineEndNormalizingWriter;
 import hudson.util.Secret;
 import hudson.util.TimeUnit2;
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -39,16 +41,25 @@ import org.kohsuke.stapler.framework.io.LargeText;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
+import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
+import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.lang.ref.WeakReference;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -66,6 +77,12 @@ import static java.lang.Math.abs;
  * The serialized {@link ConsoleAnnotator} is encrypted to avoid malicious clients from instantiating
  * arbitrary {@link ConsoleAnnotator}s.
  *
+ * <p>
+ * Clients that send the {@code X-ConsoleAnnotator-Token} header instead get the {@link ConsoleAnnotator}
+ * kept on the server, and just a short token to send back. With the {@code chunked} parameter,
+ * a response carries at most {@link #MAX_CHUNK} bytes of the text, and with the {@code longPoll} parameter,
+ * a request for a text that hasn't grown waits a while for more output before it's answered.
+ *
  * @param <T>
  *      Context type.
  * @author Kohsuke Kawaguchi
@@ -77,14 +94,24 @@ public class AnnotatedLargeText<T> extends LargeText {
      */
     private T context;
 
+    /**
+     * The data source, as {@link LargeText} doesn't let us read a part of it. One of them is non-null.
+     */
+    private final File file;
+    private final ByteBuffer memory;
+
     public AnnotatedLargeText(File file, Charset charset, boolean completed, T context) {
         super(file, charset, completed);
         this.context = context;
+        this.file = file;
+        this.memory = null;
     }
 
     public AnnotatedLargeText(ByteBuffer memory, Charset charset, boolean completed, T context) {
         super(memory, charset, completed);
         this.context = context;
+        this.file = null;
+        this.memory = memory;
     }
 
     public void doProgressiveHtml(StaplerRequest req, StaplerResponse rsp) throws IOException {
@@ -107,12 +134,187 @@ public class AnnotatedLargeText<T> extends LargeText {
         return Stapler.getCurrentRequest().getAttribute("html")!=null;
     }
 
+    /**
+     * Sends the next chunk of the text, starting at the offset given by the "start" parameter.
+     * The rest of the text is sent in one go, unless the "chunked" parameter asks for at most {@link #MAX_CHUNK} bytes.
+     *
+     * <p>
+     * The response headers are the same as those of {@link LargeText#doProgressText(StaplerRequest, StaplerResponse)}.
+     * In addition, {@code X-More-Data-Now} tells the client that it can ask for the next chunk right away,
+     * either because this response was cut short, or because this request was already held until new output came.
+     */
+    @Override
+    public void doProgressText(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        setContentType(rsp);
+        rsp.setStatus(HttpServletResponse.SC_OK);
+
+        long start = 0;
+        String s = req.getParameter("start");
+        if(s!=null)
+            start = Long.parseLong(s);
+
+        if(rawLength() < start)
+            start = 0;  // text rolled over
+
+        boolean waited = req.getParameter("longPoll")!=null && awaitText(start);
+        boolean chunked = req.getParameter("chunked")!=null;
+
+        boolean completed = isComplete();   // check before the length, so that we don't miss the tail
+        long length = rawLength();
+        boolean truncated = chunked && length-start>MAX_CHUNK;
+
+        CharArrayWriter text = new CharArrayWriter();
+        long r;
+        if (length<=start) {
+            // nothing new. don't even open the file
+            r = start;
+            if (isHtml())
+                keepAnnotator(req,rsp,start,createAnnotator(req,start));
+        } else if (isHtml()) {
+            ConsoleAnnotationOutputStream caw = new ConsoleAnnotationOutputStream(
+                    text, createAnnotator(req,start), context, charset);
+            r = chunked ? writeLogTo(start,MAX_CHUNK,!completed,caw) : super.writeLogTo(start,caw);
+            caw.forceEol();
+            keepAnnotator(req,rsp,r,caw.getConsoleAnnotator());
+        } else {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            PlainTextConsoleOutputStream out = new PlainTextConsoleOutputStream(baos);
+            r = chunked ? writeLogTo(start,MAX_CHUNK,!completed,out) : super.writeLogTo(start,out);
+            out.forceEol();
+            text.write(baos.toString(charset.name()));
+        }
+
+        rsp.addHeader("X-Text-Size",String.valueOf(r));
+        if(!completed || r<length)
+            rsp.addHeader("X-More-Data","true");
+        if(truncated || waited)
+            rsp.addHeader("X-More-Data-Now","true");
+
+        // when sending big text, try compression. don't bother if it's small
+        Writer w;
+        if(text.size()>4096)
+            w = rsp.getCompressedWriter(req);
+        else
+            w = rsp.getWriter();
+        text.writeTo(new LineEndNormalizingWriter(w));
+        w.close();
+    }
+
+    /**
+     * Writes up to the given number of bytes of the raw text, starting at the given offset.
+     *
+     * @param wholeLines
+     *      If true, the output stops at the end of the last complete line, unless a single line
+     *      doesn't fit in {@code maxBytes}, in which case its first {@code maxBytes} are written.
+     * @return
+     *      the offset to start the next write from.
+     */
+    public long writeLogTo(long start, int maxBytes, boolean wholeLines, OutputStream out) throws IOException {
+        long length = rawLength();
+        if (length<=start)  return start;
+        boolean cut = length-start>maxBytes;
+        byte[] buf = new byte[(int)Math.min(length-start,maxBytes)];
+
+        int len = read(start,buf);
+        if (wholeLines || cut) {
+            int eol = len-1;
+            while (eol>=0 && buf[eol]!='\n' && buf[eol]!='\r')
+                eol--;
+            if (eol>=0)
+                len = eol+1;
+            else if (!cut)
+                len = 0;    // the line isn't complete yet
+        }
+        out.write(buf,0,len);
+        out.flush();
+        return start+len;
+    }
+
+    /**
+     * Length of the text in bytes, 0 if the file doesn't exist yet.
+     */
+    private long rawLength() {
+        return file!=null ? file.length() : memory.length();
+    }
+
+    /**
+     * Reads as much of the given buffer as possible, starting at the given offset.
+     */
+    private int read(long start, byte[] buf) throws IOException {
+        int len = 0;
+        if (file!=null) {
+            RandomAccessFile raf = new RandomAccessFile(file,"r");
+            try {
+                raf.seek(start);
+                int n;
+                while (len<buf.length && (n=raf.read(buf,len,buf.length-len))>=0)
+                    len += n;
+            } finally {
+                raf.close();
+            }
+        } else {
+            InputStream in = memory.newInputStream();
+            try {
+                long skip = start;
+                while (skip>0) {
+                    long n = in.skip(skip);
+                    if (n<=0)   return 0;
+                    skip -= n;
+                }
+                int n;
+                while (len<buf.length && (n=in.read(buf,len,buf.length-len))>=0)
+                    len += n;
+            } finally {
+                in.close();
+            }
+        }
+        return len;
+    }
+
+    /**
+     * If the text hasn't grown past the given offset, waits up to {@link #LONG_POLL_TIMEOUT} seconds until it does.
+     *
+     * @return
+     *      true if the request was held, false if it should be answered right away.
+     */
+    private boolean awaitText(long start) {
+        if (isComplete() || rawLength()>start)
+            return false;
+        if (!LONG_POLLS.tryAcquire())
+            return false;   // too many requests are already waiting. let this one poll
+        try {
+            long deadline = System.currentTimeMillis()+LONG_POLL_TIMEOUT*1000L;
+            while (!isComplete() && rawLength()<=start && System.currentTimeMillis()<deadline)
+                Thread.sleep(LONG_POLL_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            LONG_POLLS.release();
+        }
+        return true;
+    }
+
     @Override
     protected void setContentType(StaplerResponse rsp) {
         rsp.setContentType(isHtml() ? "text/html;charset=UTF-8" : "text/plain;charset=UTF-8");
     }
 
     private ConsoleAnnotator createAnnotator(StaplerRequest req) throws IOException {
+        return createAnnotator(req,-1);
+    }
+
+    /**
+     * @param start
+     *      The offset the annotator is going to be used from. A kept annotator is only used from where it left off.
+     */
+    private ConsoleAnnotator createAnnotator(StaplerRequest req, long start) throws IOException {
+        String token = req!=null ? req.getHeader("X-ConsoleAnnotator-Token") : null;
+        if (token!=null) {
+            ConsoleAnnotator a = ANNOTATORS.get(token,context,start);
+            if (a!=null)    return a;
+            return ConsoleAnnotator.initial(context==null ? null : context.getClass());
+        }
+
         try {
             String base64 = req!=null ? req.getHeader("X-ConsoleAnnotator") : null;
             if (base64!=null) {
@@ -149,26 +351,137 @@ public class AnnotatedLargeText<T> extends LargeText {
         return super.writeLogTo(start, new PlainTextConsoleOutputStream(out));
     }
 
-    public long writeHtmlTo(long start, Writer w) throws IOException {
-        ConsoleAnnotationOutputStream caw = new ConsoleAnnotationOutputStream(
-                w, createAnnotator(Stapler.getCurrentRequest()), context, charset);
-        long r = super.writeLogTo(start,caw);
+    /**
+     * Hands the annotator for the next chunk back to the client, either as a token
+     * if the client asked for one, or serialized in full.
+     */
+    private void keepAnnotator(StaplerRequest req, StaplerResponse rsp, long offset, ConsoleAnnotator a) throws IOException {
+        String token = req.getHeader("X-ConsoleAnnotator-Token");
+        if (token!=null) {
+            rsp.setHeader("X-ConsoleAnnotator-Token", ANNOTATORS.put(token,context,offset,a));
+        } else {
+            rsp.setHeader("X-ConsoleAnnotator", encrypt(a));
+        }
+    }
 
+    private String encrypt(ConsoleAnnotator a) throws IOException {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             Cipher sym = Secret.getCipher("AES");
             sym.init(Cipher.ENCRYPT_MODE, Hudson.getInstance().getSecretKeyAsAES128());
             ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(new CipherOutputStream(baos,sym)));
             oos.writeLong(System.currentTimeMillis()); // send timestamp to prevent a replay attack
-            oos.writeObject(caw.getConsoleAnnotator());
+            oos.writeObject(a);
             oos.close();
-            StaplerResponse rsp = Stapler.getCurrentResponse();
-            if (rsp!=null)
-                rsp.setHeader("X-ConsoleAnnotator", new String(Base64.encode(baos.toByteArray())));
+            return new String(Base64.encode(baos.toByteArray()));
         } catch (GeneralSecurityException e) {
             throw new IOException2(e);
         }
+    }
+
+    public long writeHtmlTo(long start, Writer w) throws IOException {
+        ConsoleAnnotationOutputStream caw = new ConsoleAnnotationOutputStream(
+                w, createAnnotator(Stapler.getCurrentRequest()), context, charset);
+        long r = super.writeLogTo(start,caw);
+
+        StaplerResponse rsp = Stapler.getCurrentResponse();
+        if (rsp!=null)
+            rsp.setHeader("X-ConsoleAnnotator", encrypt(caw.getConsoleAnnotator()));
         return r;
     }
 
+    /**
+     * {@link ConsoleAnnotator}s kept on the server for the clients that are following a text, by their tokens.
+     * Only a bounded number of the most recently used ones are kept. A client whose annotator is gone
+     * just starts over with a fresh one.
+     */
+    static final class AnnotatorCache {
+        private final Map<String,Entry> entries;
+
+        AnnotatorCache(final int size) {
+            entries = new LinkedHashMap<String,Entry>(16,0.75f,true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+                    return size()>size;
+                }
+            };
+        }
+
+        /**
+         * Gets the annotator kept under the given token, provided that it was for the same context,
+         * and left off at the given offset.
+         */
+        synchronized ConsoleAnnotator get(String token, Object context, long offset) {
+            Entry e = entries.get(token);
+            if (e==null || e.context.get()!=context || e.offset!=offset)
+                return null;
+            return e.annotator;
+        }
+
+        /**
+         * Keeps the annotator under the given token, or a new one if the given token isn't ours.
+         *
+         * @return the token to keep it under.
+         */
+        synchronized String put(String token, Object context, long offset, ConsoleAnnotator a) {
+            Entry e = entries.get(token);
+            if (e==null || e.context.get()!=context)
+                token = newToken();
+            entries.put(token,new Entry(context,offset,a));
+            return token;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private static String newToken() {
+            byte[] b = new byte[12];
+            RANDOM.nextBytes(b);
+            return Util.toHexString(b);
+        }
+
+        private static final class Entry {
+            /**
+             * Typically a {@link hudson.model.Run}, which we don't want to keep in memory.
+             */
+            final WeakReference<Object> context;
+            final long offset;
+            final ConsoleAnnotator annotator;
+
+            Entry(Object context, long offset, ConsoleAnnotator annotator) {
+                this.context = new WeakReference<Object>(context);
+                this.offset = offset;
+                this.annotator = annotator;
+            }
+        }
+
+        private static final SecureRandom RANDOM = new SecureRandom();
+    }
+
+    /**
+     * Maximum number of bytes of the text sent in one response to a request with the "chunked" parameter.
+     */
+    public static int MAX_CHUNK = Integer.getInteger(AnnotatedLargeText.class.getName()+".maxChunk",256*1024);
+
+    /**
+     * Seconds a long-polling request waits for new text.
+     */
+    public static int LONG_POLL_TIMEOUT = Integer.getInteger(AnnotatedLargeText.class.getName()+".longPollTimeout",20);
+
+    /**
+     * Maximum number of requests waiting for new text at the same time.
+     * Requests beyond this are answered right away, and the client polls as usual.
+     */
+    public static final int LONG_POLL_MAX = Integer.getInteger(AnnotatedLargeText.class.getName()+".longPollMax",64);
+
+    /**
+     * Milliseconds between the checks for new text while a request waits.
+     */
+    private static final long LONG_POLL_INTERVAL = 200;
+
+    private static final Semaphore LONG_POLLS = new Semaphore(LONG_POLL_MAX);
+
+    private static final AnnotatorCache ANNOTATORS = new AnnotatorCache(
+            Integer.getInteger(AnnotatedLargeText.class.getName()+".annotatorCacheSize",1000));
 }
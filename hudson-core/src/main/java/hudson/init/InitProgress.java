@@ -0,0 +1,268 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.init;
+
+import hudson.Util;
+import org.jvnet.hudson.reactor.Milestone;
+import org.jvnet.hudson.reactor.ReactorListener;
+import org.jvnet.hudson.reactor.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of how far the initialization (or the reload) of Hudson has got, for the
+ * "Hudson is loading" page.
+ *
+ * <p>
+ * Besides the {@link InitMilestone}s and the reactor tasks, which it learns about as a {@link ReactorListener},
+ * this counts the jobs and build records loaded so far, as that's what takes most of the time
+ * on a large installation, and it estimates the remaining time from those.
+ *
+ * @since 2.1.0
+ */
+public final class InitProgress implements ReactorListener {
+    private final long startTime = System.currentTimeMillis();
+    private final Map<InitMilestone,Long> attained = new EnumMap<InitMilestone,Long>(InitMilestone.class);
+    private volatile InitMilestone milestone = InitMilestone.STARTED;
+    private final Set<String> running = new LinkedHashSet<String>();
+    private int completedTasks;
+
+    private int jobCount, loadedJobCount, indexedJobCount;
+    private int buildCount, loadedBuildCount;
+
+    public InitProgress() {
+        attained.put(InitMilestone.STARTED, startTime);
+    }
+
+    /**
+     * Starts tracking a new initialization or reload.
+     */
+    public static InitProgress start() {
+        return current = new InitProgress();
+    }
+
+    /**
+     * The progress of the current or the last initialization, or null if it hasn't started.
+     */
+    public static InitProgress get() {
+        return current;
+    }
+
+    public void onTaskStarted(Task t) {
+        String n = t.getDisplayName();
+        if (n==null)    return;
+        synchronized (this) {
+            running.add(n);
+        }
+    }
+
+    public void onTaskCompleted(Task t) {
+        done(t);
+    }
+
+    public void onTaskFailed(Task t, Throwable err, boolean fatal) {
+        done(t);
+    }
+
+    private synchronized void done(Task t) {
+        completedTasks++;
+        String n = t.getDisplayName();
+        if (n!=null)    running.remove(n);
+    }
+
+    public void onAttained(Milestone m) {
+        if (m instanceof InitMilestone) {
+            synchronized (this) {
+                attained.put((InitMilestone)m, System.currentTimeMillis());
+            }
+            milestone = (InitMilestone)m;
+        }
+    }
+
+    /**
+     * Called when the jobs to be loaded are known.
+     */
+    public synchronized void addJobs(int n) {
+        jobCount += n;
+    }
+
+    public synchronized void jobLoaded() {
+        loadedJobCount++;
+    }
+
+    /**
+     * Called when the build records of a job are listed.
+     */
+    public synchronized void buildsIndexed(int n) {
+        indexedJobCount++;
+        buildCount += n;
+    }
+
+    public synchronized void buildsLoaded(int n) {
+        loadedBuildCount += n;
+    }
+
+    public InitMilestone getMilestone() {
+        return milestone;
+    }
+
+    /**
+     * Milliseconds since the initialization has started.
+     */
+    public long getElapsed() {
+        return System.currentTimeMillis()-startTime;
+    }
+
+    public synchronized int getCompletedTasks() {
+        return completedTasks;
+    }
+
+    /**
+     * Names of the tasks that are running right now.
+     */
+    public synchronized List<String> getRunningTasks() {
+        return new ArrayList<String>(running);
+    }
+
+    public synchronized int getJobCount() {
+        return jobCount;
+    }
+
+    public synchronized int getLoadedJobCount() {
+        return loadedJobCount;
+    }
+
+    /**
+     * Number of build records known so far. This grows as jobs get loaded.
+     */
+    public synchronized int getBuildCount() {
+        return buildCount;
+    }
+
+    public synchronized int getLoadedBuildCount() {
+        return loadedBuildCount;
+    }
+
+    /**
+     * Estimated milliseconds until all the jobs and builds are loaded, or -1 if we can't tell yet.
+     */
+    public synchronized long getEstimatedRemainingTime() {
+        if (jobCount==0 || milestone.compareTo(InitMilestone.JOB_LOADED)>=0)
+            return -1;
+        Long from = attained.get(InitMilestone.EXTENSIONS_AUGMENTED);
+        if (from==null || indexedJobCount==0 || loadedBuildCount+loadedJobCount==0)
+            return -1;
+
+        // builds of the jobs that haven't been looked at are assumed to be like those we've seen
+        double builds = buildCount + (double)buildCount/indexedJobCount*(jobCount-indexedJobCount);
+        double total = jobCount + builds;
+        double done = loadedJobCount + loadedBuildCount;
+        long spent = System.currentTimeMillis()-from;
+        return (long)(spent*(total-done)/done);
+    }
+
+    /**
+     * {@link #getEstimatedRemainingTime()} in a human readable form, or null if not known.
+     */
+    public String getEstimatedRemainingTimeString() {
+        long t = getEstimatedRemainingTime();
+        return t<0 ? null : Util.getTimeSpanString(t);
+    }
+
+    /**
+     * Percentage of jobs and builds loaded, or -1 if not known.
+     */
+    public synchronized int getPercentage() {
+        if (jobCount==0 || indexedJobCount==0)  return -1;
+        double builds = buildCount + (double)buildCount/indexedJobCount*(jobCount-indexedJobCount);
+        return (int)Math.min(100, 100*(loadedJobCount+loadedBuildCount)/(jobCount+builds));
+    }
+
+    /**
+     * Time each {@link InitMilestone} took, in the order they are attained.
+     */
+    public synchronized List<Phase> getPhases() {
+        List<Phase> r = new ArrayList<Phase>();
+        long prev = startTime;
+        for (InitMilestone m : InitMilestone.values()) {
+            if (m==InitMilestone.STARTED)   continue;
+            Long t = attained.get(m);
+            r.add(new Phase(m, t==null ? -1 : t-startTime, t==null ? System.currentTimeMillis()-prev : t-prev, t!=null));
+            if (t==null)    break;  // the rest haven't started yet
+            prev = t;
+        }
+        return Collections.unmodifiableList(r);
+    }
+
+    /**
+     * Progress of one {@link InitMilestone}.
+     */
+    public static final class Phase {
+        private final InitMilestone milestone;
+        private final long attainedAt;
+        private final long duration;
+        private final boolean done;
+
+        Phase(InitMilestone milestone, long attainedAt, long duration, boolean done) {
+            this.milestone = milestone;
+            this.attainedAt = attainedAt;
+            this.duration = duration;
+            this.done = done;
+        }
+
+        public InitMilestone getMilestone() {
+            return milestone;
+        }
+
+        /**
+         * Milliseconds from the start of the initialization until this milestone was attained, or -1.
+         */
+        public long getAttainedAt() {
+            return attainedAt;
+        }
+
+        /**
+         * Milliseconds spent working toward this milestone so far.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public String getDurationString() {
+            return Util.getTimeSpanString(duration);
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    private static volatile InitProgress current;
+}
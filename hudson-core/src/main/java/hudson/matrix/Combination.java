@@ -23,6 +23,8 @@
  */
 package hudson.matrix;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import hudson.Util;
 
 import java.util.ArrayList;
@@ -48,13 +50,20 @@ import groovy.lang.GroovyShell;
  * For example, when axes are "x={1,2},y={3,4}", then
  * [x=1,y=3] is a combination (out of 4 possible combinations)
  *
+ * <p>
+ * A large matrix has many combinations that share the same axis names and values,
+ * so the names and the values are interned. Combinations are read-only, so the hash code
+ * is computed only once.
+ *
  * @author Kohsuke Kawaguchi
  */
 public final class Combination extends TreeMap<String,String> implements Comparable<Combination> {
 
+    private transient int hash;
+
     public Combination(AxisList axisList, List<String> values) {
         for(int i=0; i<axisList.size(); i++)
-            super.put(axisList.get(i).getName(),values.get(i));
+            super.put(intern(axisList.get(i).getName()),intern(values.get(i)));
     }
 
     public Combination(AxisList axisList,String... values) {
@@ -63,7 +72,11 @@ public final class Combination extends TreeMap<String,String> implements Compara
 
     public Combination(Map<String,String> keyValuePairs) {
         for (Map.Entry<String, String> e : keyValuePairs.entrySet())
-            super.put(e.getKey(),e.getValue());
+            super.put(intern(e.getKey()),intern(e.getValue()));
+    }
+
+    private static String intern(String s) {
+        return s==null ? null : STRINGS.intern(s);
     }
 
     public String get(Axis a) {
@@ -254,6 +267,22 @@ public final class Combination extends TreeMap<String,String> implements Compara
         return buf.toString();
     }
 
+    @Override
+    public int hashCode() {
+        // same as Map.hashCode(), but computed once, as combinations are used as keys
+        int h = hash;
+        if (h==0)
+            hash = h = super.hashCode();
+        return h;
+    }
+
+    /**
+     * Interns the strings again after the deserialization.
+     */
+    private Object readResolve() {
+        return new Combination(this);
+    }
+
     // read-only
     @Override
     public void clear() {
@@ -275,6 +304,8 @@ public final class Combination extends TreeMap<String,String> implements Compara
         throw new UnsupportedOperationException();
     }
 
+    private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
     /**
      * Duck-typing for boolean expressions.
      *
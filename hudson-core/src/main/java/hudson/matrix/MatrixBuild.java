@@ -23,6 +23,7 @@
  */
 package hudson.matrix;
 
+import hudson.Extension;
 import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -35,7 +36,10 @@ import hudson.model.Node;
 import hudson.model.ParametersAction;
 import hudson.model.Queue;
 import hudson.model.Result;
+import hudson.model.TaskListener;
 import hudson.model.Cause.UpstreamCause;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.FutureImpl;
 import hudson.slaves.WorkspaceList;
 import hudson.slaves.WorkspaceList.Lease;
 import hudson.tasks.Publisher;
@@ -46,8 +50,17 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -60,6 +73,13 @@ import org.kohsuke.stapler.StaplerResponse;
 public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
     private AxisList axes;
 
+    /**
+     * {@link MatrixRun}s of this build that we've found so far, so that rendering the build page
+     * doesn't need to look up each configuration every time. Runs are added as they start,
+     * and removed when they are deleted. Discarded when a configuration is reloaded.
+     */
+    private transient volatile RunCache runs;
+
     public MatrixBuild(MatrixProject job) throws IOException {
         super(job);
     }
@@ -118,9 +138,35 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
      * to the given combination.
      */
     public MatrixRun getRun(Combination c) {
+        Map<Combination,MatrixRun> m = getRunMap();
+        MatrixRun r = m.get(c);
+        if(r!=null)     return r;
+
         MatrixConfiguration config = getParent().getItem(c);
         if(config==null)    return null;
-        return config.getBuildByNumber(getNumber());
+        r = config.getBuildByNumber(getNumber());
+        if(r!=null)     m.put(c,r);
+        return r;
+    }
+
+    private Map<Combination,MatrixRun> getRunMap() {
+        int reloads = getParent().getConfigurationReloads();
+        RunCache c = runs;
+        if (c==null || c.configurationReloads!=reloads)
+            runs = c = new RunCache(reloads);
+        return c.runs;
+    }
+
+    private static final class RunCache {
+        /**
+         * {@link MatrixProject#getConfigurationReloads()} at the time this cache was created.
+         */
+        final int configurationReloads;
+        final Map<Combination,MatrixRun> runs = new ConcurrentHashMap<Combination,MatrixRun>();
+
+        RunCache(int configurationReloads) {
+            this.configurationReloads = configurationReloads;
+        }
     }
 
     /**
@@ -128,9 +174,18 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
      */
     public List<MatrixRun> getRuns() {
         List<MatrixRun> r = new ArrayList<MatrixRun>();
-        for(MatrixConfiguration c : getParent().getItems()) {
-            MatrixRun b = c.getBuildByNumber(getNumber());
-            if (b != null) r.add(b);
+        if (axes!=null) {
+            // only the combinations of this build can have runs, so there's no point
+            // in loading the inactive configurations of the project that aren't among them
+            for (Combination c : axes.list()) {
+                MatrixRun b = getRun(c);
+                if (b != null) r.add(b);
+            }
+        } else {
+            for(MatrixConfiguration c : getParent().getItems()) {
+                MatrixRun b = getRun(c.getCombination());
+                if (b != null) r.add(b);
+            }
         }
         return r;
     }
@@ -162,6 +217,18 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
 
     private class RunnerImpl extends AbstractRunner {
         private final List<MatrixAggregator> aggregators = new ArrayList<MatrixAggregator>();
+        /**
+         * Configurations whose queue item completed, in the order they completed.
+         */
+        private final BlockingQueue<MatrixConfiguration> completions = new LinkedBlockingQueue<MatrixConfiguration>();
+        /**
+         * Last reason we reported for a configuration to be in the queue.
+         */
+        private final Map<MatrixConfiguration,String> whyInQueue = new HashMap<MatrixConfiguration,String>();
+        /**
+         * Number of checks in a row that found neither the build nor the queue item of a configuration.
+         */
+        private final Map<MatrixConfiguration,Integer> disappeared = new HashMap<MatrixConfiguration,Integer>();
 
         protected Result doRun(BuildListener listener) throws Exception {
             MatrixProject p = getProject();
@@ -189,7 +256,6 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
 
             axes = p.getAxes();
             Collection<MatrixConfiguration> activeConfigurations = p.getActiveConfigurations();
-            final int n = getNumber();
             
             String touchStoneFilter = p.getTouchStoneCombinationFilter();
             Collection<MatrixConfiguration> touchStoneConfigurations = new HashSet<MatrixConfiguration>();
@@ -207,35 +273,14 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
                     return Result.FAILURE;
 
             try {
-                if(!p.isRunSequentially())
-                    for(MatrixConfiguration c : touchStoneConfigurations)
-                        scheduleConfigurationBuild(logger, c);
-
-                Result r = Result.SUCCESS;
-                for (MatrixConfiguration c : touchStoneConfigurations) {
-                    if(p.isRunSequentially())
-                        scheduleConfigurationBuild(logger, c);
-                    Result buildResult = waitForCompletion(listener, c);
-                    r = r.combine(buildResult);
-                }
-                
+                Result r = runConfigurations(listener, touchStoneConfigurations);
+
                 if (p.getTouchStoneResultCondition() != null && r.isWorseThan(p.getTouchStoneResultCondition())) {
                     logger.printf("Touchstone configurations resulted in %s, so aborting...\n", r);
                     return r;
                 }
-                
-                if(!p.isRunSequentially())
-                    for(MatrixConfiguration c : delayedConfigurations)
-                        scheduleConfigurationBuild(logger, c);
-
-                for (MatrixConfiguration c : delayedConfigurations) {
-                    if(p.isRunSequentially())
-                        scheduleConfigurationBuild(logger, c);
-                    Result buildResult = waitForCompletion(listener, c);
-                    r = r.combine(buildResult);
-                }
 
-                return r;
+                return r.combine(runConfigurations(listener, delayedConfigurations));
             } catch( InterruptedException e ) {
                 logger.println("Aborted");
                 return Result.ABORTED;
@@ -249,7 +294,7 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
                     for (MatrixConfiguration c : activeConfigurations) {
                         if(q.cancel(c))
                             logger.println(Messages.MatrixBuild_Cancelled(c.getDisplayName()));
-                        MatrixRun b = c.getBuildByNumber(n);
+                        MatrixRun b = getRun(c.getCombination());
                         if(b!=null) {
                             Executor exe = b.getExecutor();
                             if(exe!=null) {
@@ -262,61 +307,116 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
             }
         }
         
-        private Result waitForCompletion(BuildListener listener, MatrixConfiguration c) throws InterruptedException, IOException, AggregatorFailureException {
-            String whyInQueue = "";
+        /**
+         * Builds the given configurations, either all at once or one by one, and waits for them.
+         */
+        private Result runConfigurations(BuildListener listener, Collection<MatrixConfiguration> configs) throws InterruptedException, IOException, AggregatorFailureException {
+            Result r = Result.SUCCESS;
+            if (getProject().isRunSequentially()) {
+                for (MatrixConfiguration c : configs) {
+                    scheduleConfigurationBuild(listener.getLogger(), c);
+                    r = r.combine(waitForCompletion(listener, Collections.singleton(c)));
+                }
+            } else {
+                for (MatrixConfiguration c : configs)
+                    scheduleConfigurationBuild(listener.getLogger(), c);
+                r = waitForCompletion(listener, configs);
+            }
+            return r;
+        }
+
+        /**
+         * Waits for the builds of the given configurations, and hands them to the aggregators in the order they complete.
+         *
+         * <p>
+         * Completion is signaled by the future of the queue item, which is set when the build is done
+         * or the item is cancelled. We also check in every {@link #STATUS_INTERVAL} ms, to report configurations
+         * that are stuck in the queue, and to catch those that disappeared without the future being set.
+         */
+        private Result waitForCompletion(BuildListener listener, Collection<MatrixConfiguration> configs) throws InterruptedException, IOException, AggregatorFailureException {
+            Set<MatrixConfiguration> pending = new LinkedHashSet<MatrixConfiguration>(configs);
+            Result r = Result.SUCCESS;
             long startTime = System.currentTimeMillis();
 
-            // wait for the completion
-            int appearsCancelledCount = 0;
-            while(true) {
-                MatrixRun b = c.getBuildByNumber(getNumber());
-
-                // two ways to get beyond this. one is that the build starts and gets done,
-                // or the build gets cancelled before it even started.
-                Result buildResult = null;
-                if(b!=null && !b.isBuilding())
-                    buildResult = b.getResult();
-                Queue.Item qi = c.getQueueItem();
-                if(b==null && qi==null)
-                    appearsCancelledCount++;
-                else
-                    appearsCancelledCount = 0;
-
-                if(appearsCancelledCount>=5) {
-                    // there's conceivably a race condition in computating b and qi, as their computation
-                    // are not synchronized. There are indeed several reports of Hudson incorrectly assuming
-                    // builds being cancelled. See
-                    // http://www.nabble.com/Master-slave-problem-tt14710987.html and also
-                    // http://www.nabble.com/Anyone-using-AccuRev-plugin--tt21634577.html#a21671389
-                    // because of this, we really make sure that the build is cancelled by doing this 5
-                    // times over 5 seconds
-                    listener.getLogger().println(Messages.MatrixBuild_AppearsCancelled(c.getDisplayName()));
-                    buildResult = Result.ABORTED;
+            while (!pending.isEmpty()) {
+                MatrixConfiguration c = completions.poll(STATUS_INTERVAL, TimeUnit.MILLISECONDS);
+                if (c!=null) {
+                    if (pending.remove(c))
+                        r = r.combine(onCompleted(listener, c));
+                    continue;
                 }
 
-                if(buildResult!=null) {
-                    for (MatrixAggregator a : aggregators)
-                        if(!a.endRun(b))
-                            throw new AggregatorFailureException();
-                    return buildResult;
-                } 
-
-                if(qi!=null) {
-                    // if the build seems to be stuck in the queue, display why
-                    String why = qi.getWhy();
-                    if(!why.equals(whyInQueue) && System.currentTimeMillis()-startTime>5000) {
-                        listener.getLogger().println(c.getDisplayName()+" is still in the queue: "+why);
-                        whyInQueue = why;
+                for (MatrixConfiguration p : new ArrayList<MatrixConfiguration>(pending)) {
+                    MatrixRun b = getRun(p.getCombination());
+                    Queue.Item qi = p.getQueueItem();
+                    if (b==null && qi==null) {
+                        // there's conceivably a race condition in computing b and qi, as their computation
+                        // are not synchronized. There are indeed several reports of Hudson incorrectly assuming
+                        // builds being cancelled. See
+                        // http://www.nabble.com/Master-slave-problem-tt14710987.html and also
+                        // http://www.nabble.com/Anyone-using-AccuRev-plugin--tt21634577.html#a21671389
+                        // because of this, we really make sure that the build is cancelled by seeing it twice in a row
+                        Integer n = disappeared.get(p);
+                        n = n==null ? 1 : n+1;
+                        disappeared.put(p,n);
+                        if (n>=2) {
+                            pending.remove(p);
+                            r = r.combine(onCompleted(listener, p));
+                        }
+                        continue;
+                    }
+                    disappeared.remove(p);
+
+                    if (b!=null && !b.isBuilding()) {
+                        // done, but we didn't hear about it
+                        pending.remove(p);
+                        r = r.combine(onCompleted(listener, p));
+                    } else if (qi!=null) {
+                        // if the build seems to be stuck in the queue, display why
+                        String why = qi.getWhy();
+                        if (why!=null && !why.equals(whyInQueue.get(p)) && System.currentTimeMillis()-startTime>5000) {
+                            listener.getLogger().println(p.getDisplayName()+" is still in the queue: "+why);
+                            whyInQueue.put(p,why);
+                        }
                     }
                 }
-                
-                Thread.sleep(1000);
             }
+            return r;
+        }
+
+        private Result onCompleted(BuildListener listener, MatrixConfiguration c) throws AggregatorFailureException {
+            MatrixRun b = getRun(c.getCombination());
+            Result buildResult;
+            if (b!=null && !b.isBuilding() && b.getResult()!=null) {
+                buildResult = b.getResult();
+            } else {
+                // cancelled before it even started
+                listener.getLogger().println(Messages.MatrixBuild_AppearsCancelled(c.getDisplayName()));
+                buildResult = Result.ABORTED;
+            }
+
+            for (MatrixAggregator a : aggregators)
+                if(!a.endRun(b))
+                    throw new AggregatorFailureException();
+            return buildResult;
         }
 
-        private void scheduleConfigurationBuild(PrintStream logger, MatrixConfiguration c) {
+        private void scheduleConfigurationBuild(PrintStream logger, final MatrixConfiguration c) {
             logger.println(Messages.MatrixBuild_Triggering(c.getDisplayName()));
-            c.scheduleBuild(getAction(ParametersAction.class), new UpstreamCause(MatrixBuild.this));
+            Queue q = Hudson.getInstance().getQueue();
+            Queue.Item qi;
+            synchronized (q) {
+                // if the configuration was in the queue already, we get that item, which will become our build all the same
+                c.scheduleBuild(getAction(ParametersAction.class), new UpstreamCause(MatrixBuild.this));
+                qi = c.getQueueItem();
+            }
+            if (qi!=null)
+                ((FutureImpl)qi.getFuture()).addListener(new Runnable() {
+                    public void run() {
+                        completions.add(c);
+                    }
+                });
+            // otherwise the scheduling was vetoed. waitForCompletion will notice that there's nothing going on.
         }
 
         public void post2(BuildListener listener) throws Exception {
@@ -341,4 +441,34 @@ public class MatrixBuild extends AbstractBuild<MatrixProject,MatrixBuild> {
      */
     private static class AggregatorFailureException extends Exception {}
 
+    /**
+     * Keeps {@link MatrixBuild#runs} up to date.
+     */
+    @Extension
+    public static class RunListenerImpl extends RunListener<MatrixRun> {
+        public RunListenerImpl() {
+            super(MatrixRun.class);
+        }
+
+        @Override
+        public void onStarted(MatrixRun r, TaskListener listener) {
+            MatrixBuild b = r.getParentBuild();
+            if (b!=null)
+                b.getRunMap().put(r.getParent().getCombination(),r);
+        }
+
+        @Override
+        public void onDeleted(MatrixRun r) {
+            MatrixBuild b = r.getParentBuild();
+            if (b!=null && b.runs!=null)
+                b.runs.runs.remove(r.getParent().getCombination());
+        }
+    }
+
+    /**
+     * How often, in milliseconds, a matrix build checks on the configurations it's waiting for
+     * in the absence of any completion.
+     */
+    public static long STATUS_INTERVAL = Long.getLong(MatrixBuild.class.getName()+".statusInterval",5000);
+
 }
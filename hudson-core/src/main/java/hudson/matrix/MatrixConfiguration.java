@@ -77,6 +77,9 @@ public class MatrixConfiguration extends Project<MatrixConfiguration,MatrixRun>
     public void onLoad(ItemGroup<? extends Item> parent, String name) throws IOException {
         // directory name is not a name for us --- it's taken from the combination name
         super.onLoad(parent, combination.toString());
+        // if we were already in use, the builds are new objects now
+        if (getParent().isLoaded(this))
+            getParent().onConfigurationReloaded();
     }
 
     /**
@@ -29,6 +29,7 @@ import hudson.Util;
 import hudson.XmlFile;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
+import hudson.model.AsyncPeriodicWork;
 import hudson.model.BuildableItemWithBuildWrappers;
 import hudson.model.DependencyGraph;
 import hudson.model.Descriptor;
@@ -46,6 +47,7 @@ import hudson.model.ResourceController;
 import hudson.model.Result;
 import hudson.model.SCMedItem;
 import hudson.model.Saveable;
+import hudson.model.TaskListener;
 import hudson.model.TopLevelItem;
 import hudson.tasks.BuildStep;
 import hudson.tasks.BuildStepDescriptor;
@@ -78,6 +80,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -122,16 +125,33 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
             new DescribableList<BuildWrapper,Descriptor<BuildWrapper>>(this);
 
     /**
-     * All {@link MatrixConfiguration}s, keyed by their {@link MatrixConfiguration#getName() names}.
+     * All the loaded {@link MatrixConfiguration}s, keyed by their {@link MatrixConfiguration#getName() names}.
      */
     private transient /*final*/ Map<Combination,MatrixConfiguration> configurations = new CopyOnWriteMap.Tree<Combination,MatrixConfiguration>();
 
+    /**
+     * Combinations of the inactive configurations that are on disk but not loaded yet.
+     * They are loaded when they are first looked up through {@link #getItem(Combination)}.
+     * A combination maps to true while {@link #rotateUnloadedConfigurations()} has it loaded.
+     *
+     * <p>
+     * Their directories are resolved through {@link #getRootDirFor(Combination)} when they are loaded,
+     * so that they are still found after the project is renamed.
+     */
+    private transient volatile Map<Combination,Boolean> unloadedConfigurations = new ConcurrentHashMap<Combination,Boolean>();
+
     /**
      * @see #getActiveConfigurations()
      */
     @CopyOnWrite
     private transient /*final*/ Set<MatrixConfiguration> activeConfigurations = new LinkedHashSet<MatrixConfiguration>();
 
+    /**
+     * Number of times a configuration in {@link #configurations} has been loaded again, which replaces its builds.
+     * {@link MatrixBuild}s use this to tell that the runs they cached went stale.
+     */
+    private transient volatile int configurationReloads;
+
     private boolean runSequentially;
     
     /**
@@ -305,13 +325,50 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
     public void logRotate() throws IOException, InterruptedException {
         super.logRotate();
         // perform the log rotation of inactive configurations to make sure
-        // their logs get eventually discarded 
+        // their logs get eventually discarded.
+        // the ones that aren't loaded are left to UnloadedConfigurationRotator,
+        // as loading them on every build would cost more than it saves.
         for (MatrixConfiguration config : configurations.values()) {
             if(!config.isActiveConfiguration())
                 config.logRotate();
         }
     }
 
+    /**
+     * Loads the inactive configurations that aren't loaded one at a time, just to rotate their logs,
+     * and leaves them unloaded. Once all the builds of a configuration are gone, the rotation deletes it,
+     * and we forget about it.
+     *
+     * <p>
+     * Lookups aren't held up while a configuration is being loaded, except for the lookup of that very one,
+     * which waits for the rotation to finish.
+     */
+    /*package*/ void rotateUnloadedConfigurations() throws InterruptedException {
+        Map<Combination,Boolean> unloaded = unloadedConfigurations;
+        for (Combination c : unloaded.keySet()) {
+            synchronized (unloaded) {
+                if(configurations.containsKey(c) || !Boolean.FALSE.equals(unloaded.get(c)))
+                    continue;   // loaded or forgotten in the mean time
+                unloaded.put(c,Boolean.TRUE);
+            }
+
+            File dir = getRootDirFor(c);
+            boolean gone = false;
+            try {
+                loadConfiguration(c,dir).logRotate();
+                gone = !dir.exists();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to rotate the logs of matrix configuration "+dir,e);
+            } finally {
+                synchronized (unloaded) {
+                    if(gone)    unloaded.remove(c);
+                    else        unloaded.put(c,Boolean.FALSE);
+                    unloaded.notifyAll();
+                }
+            }
+        }
+    }
+
     /**
      * Recursively search for configuration and put them to the map
      *
@@ -325,11 +382,16 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
      *      Directory to be searched.
      * @param result
      *      Receives the loaded {@link MatrixConfiguration}s.
+     * @param unloaded
+     *      Receives the combinations of the inactive configurations that are left to be loaded later.
+     * @param active
+     *      Combinations that are active. These are always loaded.
      * @param combination
      *      Combination of key/values discovered so far while traversing the directories.
      *      Read-only.
      */
-    private void loadConfigurations( File dir, CopyOnWriteMap.Tree<Combination,MatrixConfiguration> result, Map<String,String> combination ) {
+    private void loadConfigurations( File dir, CopyOnWriteMap.Tree<Combination,MatrixConfiguration> result,
+                                     Map<Combination,Boolean> unloaded, Set<Combination> active, Map<String,String> combination ) {
         File[] axisDirs = dir.listFiles(new FileFilter() {
             public boolean accept(File child) {
                 return child.isDirectory() && child.getName().startsWith("axis-");
@@ -356,25 +418,80 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
                     if(config.exists()) {
                         Combination comb = new Combination(c);
                         // if we already have this in memory, just use it.
-                        // otherwise load it
+                        // otherwise load it, unless nobody needs it right now
                         MatrixConfiguration item=null;
                         if(this.configurations!=null)
                             item = this.configurations.get(comb);
-                        if(item==null) {
-                            item = (MatrixConfiguration) config.read();
-                            item.setCombination(comb);
-                            item.onLoad(this, v.getName());
+                        if(item==null && !LOAD_ALL_CONFIGURATIONS && !active.contains(comb)) {
+                            unloaded.put(comb,Boolean.FALSE);
+                        } else {
+                            if(item==null)
+                                item = loadConfiguration(comb,v);
+                            result.put(item.getCombination(), item);
                         }
-                        result.put(item.getCombination(), item);
                     }
                 } catch (IOException e) {
                     LOGGER.log(Level.WARNING, "Failed to load matrix configuration "+v,e);
                 }
-                loadConfigurations(v,result,c);
+                loadConfigurations(v,result,unloaded,active,c);
             }
         }
     }
 
+    private MatrixConfiguration loadConfiguration(Combination comb, File dir) throws IOException {
+        MatrixConfiguration item = (MatrixConfiguration) Items.getConfigFile(dir).read();
+        item.setCombination(comb);
+        item.onLoad(this, dir.getName());
+        return item;
+    }
+
+    /*package*/ int getConfigurationReloads() {
+        return configurationReloads;
+    }
+
+    /*package*/ synchronized void onConfigurationReloaded() {
+        configurationReloads++;
+    }
+
+    /**
+     * True if the given configuration is the one we have for its combination, as opposed to
+     * one that's being loaded.
+     */
+    /*package*/ boolean isLoaded(MatrixConfiguration c) {
+        Map<Combination,MatrixConfiguration> m = configurations;
+        return m!=null && m.get(c.getCombination())==c;
+    }
+
+    /**
+     * Loads the inactive configuration of the given combination, if it exists on disk but isn't loaded yet.
+     */
+    private MatrixConfiguration loadUnloadedConfiguration(Combination c) {
+        Map<Combination,Boolean> unloaded = unloadedConfigurations;
+        synchronized (unloaded) {
+            MatrixConfiguration item = configurations.get(c);
+            if(item!=null)  return item;
+            try {
+                while (Boolean.TRUE.equals(unloaded.get(c)))
+                    unloaded.wait();    // its logs are being rotated
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if(!unloaded.containsKey(c))    return null;
+
+            File dir = getRootDirFor(c);
+            try {
+                item = loadConfiguration(c,dir);
+                configurations.put(c,item);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load matrix configuration "+dir,e);
+            }
+            // don't try again if it failed
+            unloaded.remove(c);
+            return item;
+        }
+    }
+
     /**
      * Rebuilds the {@link #configurations} list and {@link #activeConfigurations}.
      */
@@ -400,24 +517,30 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
             }
         }
 
+        Set<Combination> activeCombinations = new LinkedHashSet<Combination>();
+        for (Combination c : axes.list()) {
+            if(c.evalGroovyExpression(axes,combinationFilter))
+                activeCombinations.add(c);
+        }
+
         CopyOnWriteMap.Tree<Combination,MatrixConfiguration> configurations =
             new CopyOnWriteMap.Tree<Combination,MatrixConfiguration>();
-        loadConfigurations(getConfigurationsDir(),configurations,Collections.<String,String>emptyMap());
+        Map<Combination,Boolean> unloaded = new ConcurrentHashMap<Combination,Boolean>();
+        loadConfigurations(getConfigurationsDir(),configurations,unloaded,activeCombinations,Collections.<String,String>emptyMap());
         this.configurations = configurations;
+        this.unloadedConfigurations = unloaded;
 
         // find all active configurations
         Set<MatrixConfiguration> active = new LinkedHashSet<MatrixConfiguration>();
-        for (Combination c : axes.list()) {
-            if(c.evalGroovyExpression(axes,combinationFilter)) {
-        		LOGGER.fine("Adding configuration: " + c);
-	            MatrixConfiguration config = configurations.get(c);
-	            if(config==null) {
-	                config = new MatrixConfiguration(this,c);
-	                config.save();
-	                configurations.put(config.getCombination(), config);
-	            }
-	            active.add(config);
-        	}
+        for (Combination c : activeCombinations) {
+            LOGGER.fine("Adding configuration: " + c);
+            MatrixConfiguration config = configurations.get(c);
+            if(config==null) {
+                config = new MatrixConfiguration(this,c);
+                config.save();
+                configurations.put(config.getCombination(), config);
+            }
+            active.add(config);
         }
         this.activeConfigurations = active;
     }
@@ -436,10 +559,26 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
         return activeConfigurations;
     }
 
+    /**
+     * Gets the configurations that are loaded, which include all the active ones.
+     * Inactive configurations are only loaded when they are looked up through {@link #getItem(Combination)},
+     * or through {@link #getAllConfigurations()}.
+     */
     public Collection<MatrixConfiguration> getItems() {
         return configurations.values();
     }
 
+    /**
+     * Gets all the configurations, loading the inactive ones that are not loaded yet.
+     *
+     * @since 2.1.0
+     */
+    public Collection<MatrixConfiguration> getAllConfigurations() {
+        for (Combination c : unloadedConfigurations.keySet())
+            loadUnloadedConfiguration(c);
+        return configurations.values();
+    }
+
     @Override
     public Collection<? extends Job> getAllJobs() {
         Set<Job> jobs = new HashSet<Job>(getItems());
@@ -456,7 +595,10 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
     }
 
     public MatrixConfiguration getItem(Combination c) {
-        return configurations.get(c);
+        MatrixConfiguration item = configurations.get(c);
+        if(item==null && unloadedConfigurations.containsKey(c))
+            item = loadUnloadedConfiguration(c);
+        return item;
     }
 
     public File getRootDirFor(MatrixConfiguration child) {
@@ -639,7 +781,7 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
     @Override
     public HttpResponse doDoWipeOutWorkspace() throws IOException, ServletException, InterruptedException {
         HttpResponse rsp = super.doDoWipeOutWorkspace();
-        for (MatrixConfiguration c : configurations.values())
+        for (MatrixConfiguration c : getAllConfigurations())
             c.doDoWipeOutWorkspace();
         return rsp;
     }
@@ -674,5 +816,30 @@ public class MatrixProject extends AbstractProject<MatrixProject,MatrixBuild> im
         }
     }
 
+    /**
+     * Rotates the logs of the inactive configurations that aren't loaded, once a day.
+     * Their builds go away with the builds of the project, so there's no hurry.
+     */
+    @Extension
+    public static class UnloadedConfigurationRotator extends AsyncPeriodicWork {
+        public UnloadedConfigurationRotator() {
+            super("Matrix configuration log rotation");
+        }
+
+        public long getRecurrencePeriod() {
+            return DAY;
+        }
+
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            for (MatrixProject p : Hudson.getInstance().getAllItems(MatrixProject.class))
+                p.rotateUnloadedConfigurations();
+        }
+    }
+
+    /**
+     * Escape hatch to load all the configurations upfront, including the inactive ones.
+     */
+    public static boolean LOAD_ALL_CONFIGURATIONS = Boolean.getBoolean(MatrixProject.class.getName()+".loadAllConfigurations");
+
     private static final Logger LOGGER = Logger.getLogger(MatrixProject.class.getName());
 }
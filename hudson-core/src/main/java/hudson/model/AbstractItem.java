@@ -32,12 +32,12 @@ import hudson.BulkChange;
 import hudson.cli.declarative.CLIMethod;
 import hudson.cli.declarative.CLIResolver;
 import hudson.model.listeners.ItemListener;
-import hudson.model.listeners.SaveableListener;
 import hudson.security.AccessControlled;
 import hudson.security.Permission;
 import hudson.security.ACL;
 import hudson.util.AtomicFileWriter;
 import hudson.util.IOException2;
+import hudson.util.WriteBehindQueue;
 import org.apache.tools.ant.taskdefs.Copy;
 import org.apache.tools.ant.types.FileSet;
 import org.kohsuke.stapler.WebMethod;
@@ -184,6 +184,9 @@ public abstract class AbstractItem extends Actionable implements Item, HttpDelet
                 boolean success = false;
 
                 try {// rename data files
+                    // make sure nothing gets written into the old location after the rename
+                    WriteBehindQueue.get().flush(oldRoot);
+
                     boolean interrupted = false;
                     boolean renamed = false;
 
@@ -363,8 +366,7 @@ public abstract class AbstractItem extends Actionable implements Item, HttpDelet
      */
     public synchronized void save() throws IOException {
         if(BulkChange.contains(this))   return;
-        getConfigFile().write(this);
-        SaveableListener.fireOnChange(this, getConfigFile());
+        WriteBehindQueue.save(this, getConfigFile(), this);
     }
 
     public final XmlFile getConfigFile() {
@@ -433,6 +435,7 @@ public abstract class AbstractItem extends Actionable implements Item, HttpDelet
      * Does the real job of deleting the item.
      */
     protected void performDelete() throws IOException, InterruptedException {
+        WriteBehindQueue.get().discard(getRootDir());
         getConfigFile().delete();
         Util.deleteRecursive(getRootDir());
     }
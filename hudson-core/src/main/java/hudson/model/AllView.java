@@ -30,7 +30,9 @@ import org.kohsuke.stapler.StaplerResponse;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import hudson.model.Descriptor.FormException;
 import hudson.Extension;
@@ -78,6 +80,18 @@ public class AllView extends View {
         return Hudson.getInstance().getItems();
     }
 
+    /**
+     * All the items are in this view, so we just need to check the permission like {@link Hudson#getItems()} does.
+     */
+    @Override
+    protected Collection<TopLevelItem> filterForSearch(Collection<TopLevelItem> candidates) {
+        List<TopLevelItem> r = new ArrayList<TopLevelItem>();
+        for (TopLevelItem item : candidates)
+            if (item.hasPermission(Item.READ))
+                r.add(item);
+        return r;
+    }
+
     @Override
     public synchronized void doSubmitDescription( StaplerRequest req, StaplerResponse rsp ) throws IOException, ServletException {
         checkPermission(Hudson.ADMINISTER);
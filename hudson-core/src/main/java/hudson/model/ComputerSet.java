@@ -29,7 +29,9 @@ import hudson.Util;
 import hudson.XmlFile;
 import hudson.model.Descriptor.FormException;
 import hudson.model.listeners.SaveableListener;
+import hudson.node_monitors.AbstractNodeMonitorDescriptor;
 import hudson.node_monitors.NodeMonitor;
+import hudson.node_monitors.NodeMonitorSweep;
 import hudson.slaves.NodeDescriptor;
 import hudson.util.DescribableList;
 import hudson.util.FormValidation;
@@ -44,6 +46,7 @@ import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import java.io.File;
 import java.io.IOException;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -195,10 +198,11 @@ public final class ComputerSet extends AbstractModelObject {
     public void doUpdateNow( StaplerRequest req, StaplerResponse rsp ) throws IOException, ServletException {
         Hudson.getInstance().checkPermission(Hudson.ADMINISTER);
         
-        for (NodeMonitor nodeMonitor : NodeMonitor.getAll()) {
-            Thread t = nodeMonitor.triggerUpdate();
-            t.setName(nodeMonitor.getColumnCaption());
-        }
+        // update all the monitors in one sweep, so that each node is contacted once
+        List<AbstractNodeMonitorDescriptor<?>> descriptors = new ArrayList<AbstractNodeMonitorDescriptor<?>>();
+        for (NodeMonitor nodeMonitor : NodeMonitor.getAll())
+            descriptors.add(nodeMonitor.getDescriptor());
+        NodeMonitorSweep.start(descriptors);
         rsp.forwardToPreviousPage(req);
     }
 
@@ -153,6 +153,8 @@ public class Executor extends Thread implements ModelObject {
                 } finally {
                     setName(threadName);
                     finishTime = System.currentTimeMillis();
+                    if (workUnit.isMainWork())
+                        LoadMetrics.recordBuildDuration(workUnit.context.task.getAssignedLabel(), finishTime - startTime);
                     try {
                         workUnit.context.synchronizeEnd(executable,problems,finishTime - startTime);
                     } catch (InterruptedException e) {
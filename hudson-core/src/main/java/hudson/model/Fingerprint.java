@@ -33,9 +33,9 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 import hudson.Util;
 import hudson.XmlFile;
 import hudson.BulkChange;
-import hudson.model.listeners.SaveableListener;
 import hudson.util.HexBinaryConverter;
 import hudson.util.Iterators;
+import hudson.util.WriteBehindQueue;
 import hudson.util.XStream2;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
@@ -701,8 +701,7 @@ public class Fingerprint implements ModelObject, Saveable {
             start = System.currentTimeMillis();
 
         File file = getFingerprintFile(md5sum);
-        getConfigFile(file).write(this);
-        SaveableListener.fireOnChange(this, getConfigFile(file));
+        WriteBehindQueue.save(this, getConfigFile(file), this);
 
         if(logger.isLoggable(Level.FINE))
             logger.fine("Saving fingerprint "+file+" took "+(System.currentTimeMillis()-start)+"ms");
@@ -60,6 +60,7 @@ import hudson.cli.CliManagerImpl;
 import hudson.cli.declarative.CLIMethod;
 import hudson.cli.declarative.CLIResolver;
 import hudson.init.InitMilestone;
+import hudson.init.InitProgress;
 import hudson.init.InitReactorListener;
 import hudson.init.InitStrategy;
 import hudson.lifecycle.Lifecycle;
@@ -126,6 +127,7 @@ import hudson.util.RemotingDiagnostics.HeapDump;
 import hudson.util.StreamTaskListener;
 import hudson.util.TextFile;
 import hudson.util.VersionNumber;
+import hudson.util.WriteBehindQueue;
 import hudson.util.XStream2;
 import hudson.util.Service;
 import hudson.views.DefaultMyViewsTabBar;
@@ -227,6 +229,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -626,6 +629,7 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
 
             adjuncts = new AdjunctManager(servletContext, pluginManager.uberClassLoader, "adjuncts/" + VERSION_HASH);
 
+            InitProgress.start();
             // initialization consists of ...
             executeReactor(is,
                     pluginManager.initTasks(is), // loading and preparing plugins
@@ -719,7 +723,7 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
         ExecutorService es;
         if (PARALLEL_LOAD) {
             es = new ThreadPoolExecutor(
-                    TWICE_CPU_NUM, TWICE_CPU_NUM, 5L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+                    LOAD_THREADS, LOAD_THREADS, 5L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
         } else {
             es = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
         }
@@ -739,6 +743,10 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
      */
     private ReactorListener buildReactorListener() throws IOException {
         List<ReactorListener> r = (List) Service.loadInstances(Thread.currentThread().getContextClassLoader(), InitReactorListener.class);
+        InitProgress progress = InitProgress.get();
+        if (progress != null) {
+            r.add(progress);
+        }
         r.add(new ReactorListener() {
 
             final Level level = Level.parse(System.getProperty(Hudson.class.getName() + ".initLogLevel", "FINE"));
@@ -2357,12 +2365,34 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
             }
         });
 
+        final InitProgress progress = InitProgress.get();
+        if (progress != null) {
+            progress.addJobs(subdirs.length);
+        }
+        // threads that help reading the build records of jobs with long histories.
+        // when they are all busy, the thread loading the job reads them by itself
+        final ExecutorService buildLoaders = PARALLEL_LOAD && PARALLEL_BUILD_LOAD
+                ? new ThreadPoolExecutor(0, LOAD_THREADS, 5L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DaemonThreadFactory())
+                : null;
         for (final File subdir : subdirs) {
             g.requires(loadHudson).attains(JOB_LOADED).notFatal().add("Loading job " + subdir.getName(), new Executable() {
 
                 public void run(Reactor session) throws Exception {
-                    TopLevelItem item = (TopLevelItem) Items.load(Hudson.this, subdir);
+                    // the build records are loaded as a part of the job, so that by the time the job is published
+                    // and its triggers start, it has its complete history
+                    if (buildLoaders != null) {
+                        RunMap.loadWithHelpers(buildLoaders, BUILD_LOAD_CHUNK, progress);
+                    }
+                    TopLevelItem item;
+                    try {
+                        item = (TopLevelItem) Items.load(Hudson.this, subdir);
+                    } finally {
+                        RunMap.loadWithHelpers(null, 0, null);
+                    }
                     items.put(item.getName(), item);
+                    if (progress != null) {
+                        progress.jobLoaded();
+                    }
                 }
             });
         }
@@ -2475,7 +2505,14 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
         // don't try to save. Issue #536
         {
             getQueue().save();
+            try {
+                LoadMetrics.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save the load metrics", e);
+            }
         }
+        // write out whatever is still waiting in the write-behind queue
+        WriteBehindQueue.get().flushAll();
 
         threadPoolForLoad.shutdown();
         for (Future<?> f : pending) {
@@ -2964,8 +3001,11 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
      * Reloads the configuration synchronously.
      */
     public void reload() throws IOException, InterruptedException, ReactorException {
+        InitProgress.start();
         executeReactor(null, loadTasks());
         User.reload();
+        // all the items were replaced, without ItemListener.onLoaded() being fired
+        ItemNameIndex.get().rebuild();
         initLevel = InitMilestone.COMPLETED;
         WebAppController.get().install( this);
     }
@@ -3858,6 +3898,24 @@ public final class Hudson extends Node implements ItemGroup<TopLevelItem>, Stapl
      */
     public static String VIEW_RESOURCE_PATH = "/resources/TBD";
     public static boolean PARALLEL_LOAD = !"false".equals(System.getProperty(Hudson.class.getName() + ".parallelLoad"));
+    /**
+     * If true, idle loading threads help reading the build records of jobs with long histories.
+     * Only effective with {@link #PARALLEL_LOAD}.
+     *
+     * @since 2.1.0
+     */
+    public static boolean PARALLEL_BUILD_LOAD = !"false".equals(System.getProperty(Hudson.class.getName() + ".parallelBuildLoad"));
+    /**
+     * Number of threads used to load plugins, jobs and builds when {@link #PARALLEL_LOAD} is on.
+     * Loading is mostly I/O, so on fast disks more threads than the default may help.
+     *
+     * @since 2.1.0
+     */
+    public static int LOAD_THREADS = Math.max(1, Integer.getInteger(Hudson.class.getName() + ".loadThreads", TWICE_CPU_NUM));
+    /**
+     * Number of build records a loading thread claims at a time.
+     */
+    private static final int BUILD_LOAD_CHUNK = Math.max(1, Integer.getInteger(Hudson.class.getName() + ".buildLoadChunk", 32));
     public static boolean KILL_AFTER_LOAD = Boolean.getBoolean(Hudson.class.getName() + ".killAfterLoad");
     public static boolean LOG_STARTUP_PERFORMANCE = Boolean.getBoolean(Hudson.class.getName() + ".logStartupPerformance");
     private static final boolean CONSISTENT_HASH = true; // Boolean.getBoolean(Hudson.class.getName()+".consistentHash");
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.search.CollectionSearchIndex;
+import hudson.search.NGramIndex;
+import hudson.search.Search;
+
+import java.util.List;
+
+/**
+ * Index of the display names of all the top-level items, kept up to date as items come and go,
+ * so that the search box doesn't need to look at every job for every keystroke.
+ *
+ * <p>
+ * The index knows nothing about permissions or views. Callers narrow down what it finds
+ * to what the current user is supposed to see.
+ *
+ * @see View#makeSearchIndex()
+ * @since 2.1.0
+ */
+public final class ItemNameIndex {
+    private final NGramIndex<TopLevelItem> index = new NGramIndex<TopLevelItem>();
+    private volatile boolean initialized;
+
+    /**
+     * Re-indexes all the items.
+     */
+    public void rebuild() {
+        Hudson h = Hudson.getInstance();
+        if (h==null)    return;
+        index.clear();
+        for (TopLevelItem item : h.getItemMap().values())
+            index.put(item,item.getDisplayName());
+        initialized = true;
+        Search.clearSuggestionCache();
+    }
+
+    public void update(TopLevelItem item) {
+        index.put(item,item.getDisplayName());
+        Search.clearSuggestionCache();
+    }
+
+    public void remove(TopLevelItem item) {
+        index.remove(item);
+        Search.clearSuggestionCache();
+    }
+
+    /**
+     * Finds the items whose display name contains the given token,
+     * with the same matching rule as {@link CollectionSearchIndex#suggest(String, List)}.
+     *
+     * @return
+     *      null if the index isn't built yet, in which case the caller should look at the items by itself.
+     */
+    public List<TopLevelItem> find(String token) {
+        if (!initialized)   return null;
+        return index.find(token);
+    }
+
+    private static final ItemNameIndex INSTANCE = new ItemNameIndex();
+
+    public static ItemNameIndex get() {
+        return INSTANCE;
+    }
+
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLoaded() {
+            INSTANCE.rebuild();
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof TopLevelItem)
+                INSTANCE.update((TopLevelItem)item);
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            if (item instanceof TopLevelItem)
+                INSTANCE.update((TopLevelItem)item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof TopLevelItem)
+                INSTANCE.remove((TopLevelItem)item);
+        }
+    }
+
+    /**
+     * The display name may change when the configuration is saved.
+     */
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof TopLevelItem && ((TopLevelItem)o).getParent()==Hudson.getInstance())
+                INSTANCE.update((TopLevelItem)o);
+        }
+    }
+}
@@ -1079,6 +1079,13 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
 
     public Graph getBuildTimeGraph() {
         return new Graph(getLastBuild().getTimestamp(),500,400) {
+            @Override
+            protected String getCacheKey() {
+                // finished builds don't change, so the last one and the count identify the data set
+                Run last = getLastCompletedBuild();
+                return "buildTimeTrend/"+getFullName()+'/'+(last!=null ? last.getNumber() : 0)+'/'+getBuilds().size();
+            }
+
             @Override
             protected JFreeChart createGraph() {
                 class ChartLabel implements Comparable<ChartLabel> {
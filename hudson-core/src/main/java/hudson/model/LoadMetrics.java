@@ -0,0 +1,267 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.Extension;
+import hudson.model.MetricSeries.Summary;
+import hudson.model.listeners.ItemListener;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import hudson.util.AtomicFileWriter;
+import hudson.util.TimeUnit2;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Distribution of the queue wait, the executor utilization and the build duration
+ * of a node set, to complement the moving averages of {@link LoadStatistics}.
+ *
+ * <p>
+ * The samples are kept in {@link MetricSeries}, and the percentiles over the last {@link #WINDOW}
+ * are exposed through the remote API, for example as {@code /label/foo/loadStatistics/metrics/api/json}.
+ * They are saved to {@code load-metrics.bin} periodically and at the shutdown, and read back when Hudson starts.
+ *
+ * @since 2.1.0
+ * @see LoadStatistics#metrics
+ */
+@ExportedBean
+public final class LoadMetrics {
+    private final MetricSeries queueWait = new MetricSeries(CAPACITY);
+    private final MetricSeries utilization = new MetricSeries(CAPACITY);
+    private final MetricSeries buildDuration = new MetricSeries(CAPACITY);
+    /**
+     * Set on {@link Hudson#overallLoad} once {@link #load()} has run for that Hudson,
+     * so that a reload doesn't roll the samples back to the last save.
+     */
+    private volatile boolean restored;
+
+    /**
+     * Milliseconds from the moment a build leaves the quiet period, until it gets an executor.
+     * This includes the time it spends blocked.
+     */
+    @Exported(inline=true)
+    public Summary getQueueWait() {
+        return queueWait.summarize(since());
+    }
+
+    /**
+     * Busy executors per thousand executors, sampled every {@link LoadStatistics#CLOCK}.
+     */
+    @Exported(inline=true)
+    public Summary getUtilization() {
+        return utilization.summarize(since());
+    }
+
+    /**
+     * Milliseconds that builds kept the executor.
+     */
+    @Exported(inline=true)
+    public Summary getBuildDuration() {
+        return buildDuration.summarize(since());
+    }
+
+    /**
+     * Milliseconds that the summaries cover. This is {@link #WINDOW}, unless a series had to drop samples
+     * from within the window to make room for the newer ones.
+     */
+    @Exported
+    public long getWindow() {
+        long now = System.currentTimeMillis();
+        long since = now-WINDOW;
+        for (MetricSeries s : new MetricSeries[]{queueWait,utilization,buildDuration})
+            since = Math.max(since,s.getCoveredSince());
+        return now-since;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    public void recordQueueWait(long ms) {
+        queueWait.record(ms);
+    }
+
+    public void recordUtilization(int busy, int total) {
+        utilization.record(total==0 ? 0 : busy*1000L/total);
+    }
+
+    public void recordBuildDuration(long ms) {
+        buildDuration.record(ms);
+    }
+
+    private static long since() {
+        return System.currentTimeMillis()-WINDOW;
+    }
+
+    /**
+     * Records how long the given item waited, on the label it's assigned to and on the whole system.
+     */
+    /*package*/ static void recordQueueWait(Queue.BuildableItem item) {
+        long ms = System.currentTimeMillis()-item.buildableStartMilliseconds;
+        for (LoadMetrics m : of(item.task.getAssignedLabel()))
+            m.recordQueueWait(ms);
+    }
+
+    /*package*/ static void recordBuildDuration(Label label, long ms) {
+        for (LoadMetrics m : of(label))
+            m.recordBuildDuration(ms);
+    }
+
+    private static List<LoadMetrics> of(Label label) {
+        List<LoadMetrics> r = new ArrayList<LoadMetrics>(2);
+        Hudson h = Hudson.getInstance();
+        if (h==null)    return r;
+        r.add(h.overallLoad.metrics);
+        if (label!=null)
+            r.add(label.loadStatistics.metrics);
+        return r;
+    }
+
+    private static File getFile() {
+        return new File(Hudson.getInstance().getRootDir(),"load-metrics.bin");
+    }
+
+    /**
+     * Writes the metrics of all the labels and of the whole system.
+     */
+    public static synchronized void save() throws IOException {
+        Hudson h = Hudson.getInstance();
+        if (h==null)    return;
+        AtomicFileWriter w = new AtomicFileWriter(getFile());
+        try {
+            DataOutputStream out = new DataOutputStream(w.getOutputStream());
+            out.writeInt(MAGIC);
+            write(out,"",h.overallLoad.metrics);
+            for (Label l : h.getLabels())
+                write(out,l.getExpression(),l.loadStatistics.metrics);
+            out.flush();
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
+    private static void write(DataOutputStream out, String name, LoadMetrics m) throws IOException {
+        out.writeUTF(name);
+        m.queueWait.write(out);
+        m.utilization.write(out);
+        m.buildDuration.write(out);
+    }
+
+    /**
+     * Reads back what's written by {@link #save()}, replacing the samples in memory.
+     * Samples of the labels that no longer exist are dropped.
+     */
+    public static synchronized void load() throws IOException {
+        Hudson h = Hudson.getInstance();
+        if (h==null)    return;
+        h.overallLoad.metrics.restored = true;
+        File f = getFile();
+        if (!f.exists())    return;
+
+        // look the labels up without creating them, as Hudson.getLabel() would
+        Map<String,Label> labels = new HashMap<String,Label>();
+        for (Label l : h.getLabels())
+            labels.put(l.getExpression(),l);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+        try {
+            if (in.readInt()!=MAGIC)
+                throw new IOException("Unexpected format: "+f);
+            while (true) {
+                String name;
+                try {
+                    name = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                LoadMetrics m;
+                if (name.length()==0) {
+                    m = h.overallLoad.metrics;
+                } else {
+                    Label l = labels.get(name);
+                    m = l==null ? new LoadMetrics() : l.loadStatistics.metrics;  // read and discard if it's gone
+                }
+                m.queueWait.read(in);
+                m.utilization.read(in);
+                m.buildDuration.read(in);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Extension
+    public static class Restorer extends ItemListener {
+        @Override
+        public void onLoaded() {
+            Hudson h = Hudson.getInstance();
+            if (h==null || h.overallLoad.metrics.restored)
+                return; // reloading the configuration. what's in memory is newer than the file
+            try {
+                load();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load the load metrics", e);
+            }
+        }
+    }
+
+    @Extension
+    public static class Saver extends PeriodicWork {
+        public long getRecurrencePeriod() {
+            return TimeUnit2.MINUTES.toMillis(10);
+        }
+
+        protected void doRun() throws Exception {
+            save();
+        }
+    }
+
+    /**
+     * Number of samples each series retains.
+     */
+    public static int CAPACITY = Integer.getInteger(LoadMetrics.class.getName()+".capacity",2048);
+
+    /**
+     * Milliseconds that the exposed percentiles cover.
+     */
+    public static long WINDOW = Long.getLong(LoadMetrics.class.getName()+".window",TimeUnit2.HOURS.toMillis(1));
+
+    private static final int MAGIC = 0x4C4D0001;
+
+    private static final Logger LOGGER = Logger.getLogger(LoadMetrics.class.getName());
+}
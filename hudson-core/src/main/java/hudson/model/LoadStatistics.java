@@ -80,6 +80,14 @@ public abstract class LoadStatistics {
     @Exported
     public final MultiStageTimeSeries queueLength;
 
+    /**
+     * Percentiles of the queue wait, the utilization and the build duration.
+     *
+     * @since 2.1.0
+     */
+    @Exported
+    public final LoadMetrics metrics = new LoadMetrics();
+
     protected LoadStatistics(int initialTotalExecutors, int initialBusyExecutors) {
         this.totalExecutors = new MultiStageTimeSeries(
                 Messages._LoadStatistics_Legends_TotalExecutors(), ColorPalette.BLUE, initialTotalExecutors,DECAY);
@@ -199,8 +207,11 @@ public abstract class LoadStatistics {
 
             // update statistics on slaves
             for( Label l : h.getLabels() ) {
-                l.loadStatistics.totalExecutors.update(l.getTotalExecutors());
-                l.loadStatistics.busyExecutors .update(l.getBusyExecutors());
+                int total = l.getTotalExecutors();
+                int busy = l.getBusyExecutors();
+                l.loadStatistics.totalExecutors.update(total);
+                l.loadStatistics.busyExecutors .update(busy);
+                l.loadStatistics.metrics.recordUtilization(busy,total);
 
                 int q=0;
                 for (hudson.model.Queue.BuildableItem bi : bis) {
@@ -212,8 +223,11 @@ public abstract class LoadStatistics {
 
             // update statistics of the entire system
             ComputerSet cs = new ComputerSet();
-            h.overallLoad.totalExecutors.update(cs.getTotalExecutors());
-            h.overallLoad.busyExecutors .update(cs.getBusyExecutors());
+            int total = cs.getTotalExecutors();
+            int busy = cs.getBusyExecutors();
+            h.overallLoad.totalExecutors.update(total);
+            h.overallLoad.busyExecutors .update(busy);
+            h.overallLoad.metrics.recordUtilization(busy,total);
             int q=0;
             for (hudson.model.Queue.BuildableItem bi : bis) {
                 if(bi.task.getAssignedLabel()==null)
@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.util.Histogram;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Raw samples of a measurement, such as how long a build waited in the queue,
+ * kept in a fixed-size ring buffer of primitive arrays.
+ *
+ * <p>
+ * Unlike {@link TimeSeries}, which only keeps the moving average, this retains the individual samples
+ * so that percentiles can be computed over any window that's still in the buffer.
+ * The arrays start small and grow up to the capacity, so a series that's rarely used costs little.
+ *
+ * @since 2.1.0
+ */
+public final class MetricSeries {
+    private final int capacity;
+    private long[] times;
+    private long[] values;
+    /**
+     * Index of the oldest sample.
+     */
+    private int start;
+    private int size;
+
+    public MetricSeries(int capacity) {
+        this.capacity = capacity;
+        this.times = new long[Math.min(16,capacity)];
+        this.values = new long[times.length];
+    }
+
+    public void record(long value) {
+        record(System.currentTimeMillis(),value);
+    }
+
+    public synchronized void record(long time, long value) {
+        if (size==times.length && size<capacity) {
+            // grow. the samples are laid out from 0 afterward
+            int len = Math.min(capacity,size*2);
+            long[] t = new long[len], v = new long[len];
+            copyTo(t,v);
+            times = t;
+            values = v;
+            start = 0;
+        }
+        if (size<times.length) {
+            int i = (start+size)%times.length;
+            times[i] = time;
+            values[i] = value;
+            size++;
+        } else {
+            // full. overwrite the oldest
+            times[start] = time;
+            values[start] = value;
+            start = (start+1)%times.length;
+        }
+    }
+
+    private void copyTo(long[] t, long[] v) {
+        for (int i=0; i<size; i++) {
+            int j = (start+i)%times.length;
+            t[i] = times[j];
+            v[i] = values[j];
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Builds a histogram of the samples recorded at or after the given time.
+     */
+    public synchronized Histogram histogram(long since) {
+        Histogram h = new Histogram();
+        for (int i=size-1; i>=0; i--) {
+            int j = (start+i)%times.length;
+            if (times[j]<since) break;  // samples are in the chronological order
+            h.record(values[j]);
+        }
+        return h;
+    }
+
+    /**
+     * Gets the time since which all the samples are retained. Once the buffer is full, the oldest samples
+     * make room for the new ones, so a window that reaches further back than this only covers part of the samples.
+     *
+     * @return
+     *      {@link Long#MIN_VALUE} if the buffer isn't full, and so nothing has been dropped.
+     */
+    public synchronized long getCoveredSince() {
+        if (size<capacity)  return Long.MIN_VALUE;
+        return times[start];
+    }
+
+    public Summary summarize(long since) {
+        return new Summary(histogram(since));
+    }
+
+    /**
+     * Writes the samples, delta-encoded as variable-length integers, which is usually 2-4 bytes a sample.
+     */
+    synchronized void write(DataOutput out) throws IOException {
+        writeVarLong(out,size);
+        long last = 0;
+        for (int i=0; i<size; i++) {
+            int j = (start+i)%times.length;
+            writeVarLong(out,times[j]-last);
+            writeVarLong(out,values[j]);
+            last = times[j];
+        }
+    }
+
+    /**
+     * Replaces the samples with those written by {@link #write(DataOutput)}.
+     */
+    void read(DataInput in) throws IOException {
+        MetricSeries r = new MetricSeries(capacity);
+        long n = readVarLong(in);
+        long time = 0;
+        for (long i=0; i<n; i++) {
+            time += readVarLong(in);
+            r.record(time,readVarLong(in));
+        }
+        synchronized (this) {
+            times = r.times;
+            values = r.values;
+            start = r.start;
+            size = r.size;
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long v) throws IOException {
+        // zig-zag, so that small negative values stay small
+        v = (v<<1)^(v>>63);
+        while ((v&~0x7FL)!=0) {
+            out.writeByte((int)((v&0x7F)|0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int)v);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift=0; shift<64; shift+=7) {
+            int b = in.readUnsignedByte();
+            v |= (long)(b&0x7F)<<shift;
+            if ((b&0x80)==0)
+                return (v>>>1)^-(v&1);
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Percentiles of a {@link MetricSeries} over a window.
+     */
+    @ExportedBean
+    public static final class Summary {
+        private final Histogram h;
+
+        public Summary(Histogram h) {
+            this.h = h;
+        }
+
+        @Exported
+        public long getCount() {
+            return h.getCount();
+        }
+
+        @Exported
+        public double getMean() {
+            return h.getMean();
+        }
+
+        @Exported
+        public long getMin() {
+            return h.getMin();
+        }
+
+        @Exported
+        public long getP50() {
+            return h.getValueAtPercentile(50);
+        }
+
+        @Exported
+        public long getP90() {
+            return h.getValueAtPercentile(90);
+        }
+
+        @Exported
+        public long getP95() {
+            return h.getValueAtPercentile(95);
+        }
+
+        @Exported
+        public long getP99() {
+            return h.getValueAtPercentile(99);
+        }
+
+        @Exported
+        public long getMax() {
+            return h.getMax();
+        }
+    }
+}
@@ -25,7 +25,8 @@ package hudson.model;
 
 import hudson.util.TimeUnit2;
 import hudson.util.NoOverlapCategoryAxis;
-import hudson.util.ChartUtil;
+import hudson.util.ChartCache;
+import hudson.util.Graph;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -274,7 +275,35 @@ public class MultiStageTimeSeries {
          * Renders this object as an image.
          */
         public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node) throws IOException, ServletException {
-            ChartUtil.generateGraph(req, rsp, createChart(), 500, 400);
+            new Graph(-1,500,400) {
+                @Override
+                protected String getCacheKey() {
+                    return "loadTrend/"+getDatasetHash();
+                }
+
+                @Override
+                protected JFreeChart createGraph() {
+                    return createChart();
+                }
+            }.doPng(req,rsp);
+        }
+
+        /**
+         * Hash of everything that's drawn, which changes at every clock of the {@link LoadStatistics}.
+         * As the series themselves don't have names, this is what identifies a chart for {@link ChartCache}.
+         */
+        private String getDatasetHash() {
+            long h = timeScale.ordinal();
+            for (MultiStageTimeSeries s : series)
+                h = h*31 + s.color.getRGB();
+            for (Object row : dataset.getRowKeys())
+                h = h*31 + row.hashCode();
+            for (Object col : dataset.getColumnKeys()) {
+                h = h*31 + col.hashCode();
+                for (Object row : dataset.getRowKeys())
+                    h = h*31 + Float.floatToIntBits(dataset.getValue((Comparable)row,(Comparable)col).floatValue());
+            }
+            return Long.toHexString(h)+'-'+dataset.getColumnCount();
         }
     }
 
@@ -47,7 +47,6 @@ import hudson.model.queue.QueueTaskDispatcher;
 import hudson.model.queue.Tasks;
 import hudson.model.queue.WorkUnit;
 import hudson.model.Node.Mode;
-import hudson.model.listeners.SaveableListener;
 import hudson.model.queue.CauseOfBlockage;
 import hudson.model.queue.FoldableAction;
 import hudson.model.queue.CauseOfBlockage.BecauseLabelIsBusy;
@@ -55,10 +54,12 @@ import hudson.model.queue.CauseOfBlockage.BecauseNodeIsOffline;
 import hudson.model.queue.CauseOfBlockage.BecauseLabelIsOffline;
 import hudson.model.queue.CauseOfBlockage.BecauseNodeIsBusy;
 import hudson.model.queue.WorkUnitContext;
+import hudson.slaves.NodeProvisioner;
 import hudson.triggers.SafeTimerTask;
 import hudson.triggers.Trigger;
 import hudson.util.OneShotEvent;
 import hudson.util.TimeUnit2;
+import hudson.util.WriteBehindQueue;
 import hudson.util.XStream2;
 import hudson.util.ConsistentHash;
 import hudson.util.ConsistentHash.Hash;
@@ -339,8 +340,7 @@ public class Queue extends ResourceController implements Saveable {
 
         try {
             XmlFile queueFile = new XmlFile(XSTREAM, getXMLQueueFile());
-            queueFile.write(items);
-            SaveableListener.fireOnChange(this, queueFile);
+            WriteBehindQueue.save(this, queueFile, items);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Failed to write out the queue file " + getXMLQueueFile(), e);
         }
@@ -769,6 +769,7 @@ public class Queue extends ResourceController implements Saveable {
                     // found a matching executor. use it.
                     WorkUnitContext wuc = new WorkUnitContext(p);
                     m.execute(wuc);
+                    LoadMetrics.recordQueueWait(p);
 
                     itr.remove();
                     if (!wuc.getWorkUnits().isEmpty())
@@ -904,6 +905,7 @@ public class Queue extends ResourceController implements Saveable {
                 // set this project aside.
                 LOGGER.fine(p.getFullDisplayName() + " is blocked");
                 blockedProjects.put(p,new BlockedItem(top));
+                NodeProvisioner.suggestReview();
             }
         }
 
@@ -930,6 +932,7 @@ public class Queue extends ResourceController implements Saveable {
                 if (c==null || c.isOffline())    continue;
                 if (lbl!=null && !lbl.contains(n))  continue;
                 c.startFlyWeightTask(new WorkUnitContext(p).createWorkUnit(p.task));
+                LoadMetrics.recordQueueWait(p);
                 return;
             }
             // if the execution get here, it means we couldn't schedule it anywhere.
@@ -937,6 +940,8 @@ public class Queue extends ResourceController implements Saveable {
         }
         
         buildables.put(p.task,p);
+        // more demand for executors
+        NodeProvisioner.suggestReview();
     }
 
     public static boolean ifBlockedByHudsonShutdown(Task task) {
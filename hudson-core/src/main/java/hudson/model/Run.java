@@ -42,7 +42,6 @@ import hudson.matrix.MatrixBuild;
 import hudson.matrix.MatrixRun;
 import hudson.model.Descriptor.FormException;
 import hudson.model.listeners.RunListener;
-import hudson.model.listeners.SaveableListener;
 import hudson.search.SearchIndexBuilder;
 import hudson.security.ACL;
 import hudson.security.AccessControlled;
@@ -56,6 +55,7 @@ import hudson.tasks.test.AbstractTestResultAction;
 import hudson.util.FlushProofOutputStream;
 import hudson.util.IOException2;
 import hudson.util.LogTaskListener;
+import hudson.util.WriteBehindQueue;
 import hudson.util.XStream2;
 import hudson.util.ProcessTree;
 
@@ -1182,6 +1182,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
         link.delete();
 
         File rootDir = getRootDir();
+        WriteBehindQueue.get().discard(rootDir);
         File tmp = new File(rootDir.getParentFile(),'.'+rootDir.getName());
         
         boolean renamingSucceeded = rootDir.renameTo(tmp);
@@ -1495,8 +1496,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
      */
     public synchronized void save() throws IOException {
         if(BulkChange.contains(this))   return;
-        getDataFile().write(this);
-        SaveableListener.fireOnChange(this, getDataFile());
+        WriteBehindQueue.save(this, getDataFile(), this);
     }
 
     private XmlFile getDataFile() {
@@ -23,16 +23,22 @@
  */
 package hudson.model;
 
+import hudson.init.InitProgress;
+
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
@@ -179,15 +185,194 @@ public final class RunMap<R extends Run<?,R>> extends AbstractMap<Integer,R> imp
     /**
      * Fills in {@link RunMap} by loading build records from the file system.
      *
+     * <p>
+     * If {@link #loadWithHelpers(ExecutorService, int, InitProgress)} is in effect for the current thread,
+     * other threads help reading the build records. Either way, the map is complete and
+     * {@link Run#onLoad()} has been called on all the builds when this method returns.
+     *
      * @param job
      *      Job that owns this map.
      * @param cons
      *      Used to create new instance of {@link Run}.
      */
     public synchronized void load(Job job, Constructor<R> cons) {
+        Loader<R> loader = new Loader<R>(job,cons);
+        Helpers h = HELPERS.get();
+        if (h==null) {
+            loader.index();
+            while (loader.loadNext(Integer.MAX_VALUE)>=0)
+                ;
+        } else {
+            h.load(loader);
+        }
+        reset(loader.builds);
+        for (R r : loader.builds.values())
+            r.onLoad();
+    }
+
+    /**
+     * Lets the given executor help {@link #load(Job, Constructor)} calls made on the current thread,
+     * so that a job with a long history doesn't take a single thread forever to load.
+     *
+     * <p>
+     * The calling thread reads build records too, so the executor can be small, or refuse work when it's busy.
+     *
+     * @param helpers
+     *      null to go back to loading on the calling thread alone.
+     * @param chunk
+     *      Number of build records a thread reads at a time.
+     * @param progress
+     *      Told about the builds found and loaded. Can be null.
+     * @since 2.1.0
+     */
+    public static void loadWithHelpers(ExecutorService helpers, int chunk, InitProgress progress) {
+        if (helpers==null)  HELPERS.remove();
+        else                HELPERS.set(new Helpers(helpers,Math.max(chunk,1),progress));
+    }
+
+    private static final ThreadLocal<Helpers> HELPERS = new ThreadLocal<Helpers>();
+
+    private static final class Helpers {
+        private final ExecutorService executor;
+        private final int chunk;
+        private final InitProgress progress;
+
+        Helpers(ExecutorService executor, int chunk, InitProgress progress) {
+            this.executor = executor;
+            this.chunk = chunk;
+            this.progress = progress;
+        }
+
+        /**
+         * Reads all the build records of the loader, with as much help as there are chunks and idle threads.
+         */
+        void load(final Loader<?> loader) {
+            int n = loader.index();
+            if (progress!=null)
+                progress.buildsIndexed(n);
+
+            Runnable work = new Runnable() {
+                public void run() {
+                    int c;
+                    while ((c=loader.loadNext(chunk))>=0)
+                        if (progress!=null)
+                            progress.buildsLoaded(c);
+                }
+            };
+            // the first chunk is ours
+            for (int i=1; i<(n+chunk-1)/chunk; i++) {
+                try {
+                    executor.execute(work);
+                } catch (RejectedExecutionException e) {
+                    break;  // no more help available
+                }
+            }
+            work.run();
+            loader.awaitCompletion();
+        }
+    }
+
+    /**
+     * Reads the build records of one job, in chunks that multiple threads can work on at once.
+     * Build records are read from the newest to the oldest.
+     */
+    private static final class Loader<R extends Run<?,R>> {
+        private final Job job;
+        private final Constructor<R> cons;
+
+        private String[] dirs;
+        private int next;
+        private int inProgress;
+        /**
+         * Builds read so far. Guarded by this object until all of them are read.
+         */
+        private final TreeMap<Integer,R> builds = new TreeMap<Integer,R>(RunMap.COMPARATOR);
+
+        private Loader(Job job, Constructor<R> cons) {
+            this.job = job;
+            this.cons = cons;
+        }
+
+        /**
+         * Reads up to the given number of build records that no one else has claimed yet.
+         *
+         * @return
+         *      Number of build directories processed, or -1 if there was nothing left to claim.
+         */
+        int loadNext(int chunk) {
+            int from, to;
+            synchronized (this) {
+                if (next>=dirs.length)
+                    return -1;
+                from = next;
+                to = (int)Math.min((long)from+chunk, dirs.length);
+                next = to;
+                inProgress++;
+            }
+
+            Map<Integer,R> loaded = new HashMap<Integer,R>();
+            try {
+                File buildDir = job.getBuildDir();
+                for (int i=from; i<to; i++) {
+                    File d = new File(buildDir,dirs[i]);
+                    if(new File(d,"build.xml").exists()) {
+                        // if the build result file isn't in the directory, ignore it.
+                        try {
+                            R b = cons.create(d);
+                            loaded.put( b.getNumber(), b );
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        } catch (InstantiationError e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    builds.putAll(loaded);
+                    inProgress--;
+                    notifyAll();
+                }
+            }
+            return to-from;
+        }
+
+        /**
+         * Lists the build directories, unless that's done already.
+         *
+         * @return
+         *      Number of build directories.
+         */
+        synchronized int index() {
+            if (dirs==null)
+                dirs = listBuildDirs(job);
+            return dirs.length;
+        }
+
+        /**
+         * Waits until the chunks claimed by other threads are read.
+         */
+        synchronized void awaitCompletion() {
+            boolean interrupted = false;
+            while (inProgress>0 || next<dirs.length) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // the other threads will finish regardless, and the job is no good without its builds
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists the build directories of the given job, newest first.
+     */
+    private static String[] listBuildDirs(Job job) {
         final SimpleDateFormat formatter = Run.ID_FORMATTER.get();
 
-        TreeMap<Integer,R> builds = new TreeMap<Integer,R>(RunMap.COMPARATOR);
         File buildDir = job.getBuildDir();
         buildDir.mkdirs();
         String[] buildDirs = buildDir.list(new FilenameFilter() {
@@ -212,26 +397,11 @@ public final class RunMap<R extends Run<?,R>> extends AbstractMap<Integer,R> imp
                 return false;
             }
         });
-
-        for( String build : buildDirs ) {
-            File d = new File(buildDir,build);
-            if(new File(d,"build.xml").exists()) {
-                // if the build result file isn't in the directory, ignore it.
-                try {
-                    R b = cons.create(d);
-                    builds.put( b.getNumber(), b );
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } catch (InstantiationError e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-
-        reset(builds);
-
-        for (R r : builds.values())
-            r.onLoad();
+        if (buildDirs==null)
+            return new String[0];
+        // build IDs are timestamps, so this puts the newest first
+        Arrays.sort(buildDirs, Collections.reverseOrder());
+        return buildDirs;
     }
 
     private static final Logger LOGGER = Logger.getLogger(RunMap.class.getName());
@@ -32,11 +32,11 @@ import hudson.Util;
 import hudson.XmlFile;
 import hudson.BulkChange;
 import hudson.model.Descriptor.FormException;
-import hudson.model.listeners.SaveableListener;
 import hudson.security.ACL;
 import hudson.security.AccessControlled;
 import hudson.security.Permission;
 import hudson.util.RunList;
+import hudson.util.WriteBehindQueue;
 import hudson.util.XStream2;
 import net.sf.json.JSONObject;
 
@@ -405,8 +405,7 @@ public class User extends AbstractModelObject implements AccessControlled, Savea
      */
     public synchronized void save() throws IOException {
         if(BulkChange.contains(this))   return;
-        getConfigFile().write(this);
-        SaveableListener.fireOnChange(this, getConfigFile());
+        WriteBehindQueue.save(this, getConfigFile(), this);
     }
 
     /**
@@ -418,7 +417,9 @@ public class User extends AbstractModelObject implements AccessControlled, Savea
     public synchronized void delete() throws IOException {
         synchronized (byName) {
             byName.remove(id);
-            Util.deleteRecursive(new File(getRootDir(), id));
+            File dir = new File(getRootDir(), id);
+            WriteBehindQueue.get().discard(dir);
+            Util.deleteRecursive(dir);
         }
     }
 
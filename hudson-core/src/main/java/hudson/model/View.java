@@ -33,6 +33,7 @@ import hudson.model.Node.Mode;
 import hudson.scm.ChangeLogSet.Entry;
 import hudson.search.CollectionSearchIndex;
 import hudson.search.SearchIndexBuilder;
+import hudson.search.SearchItem;
 import hudson.security.ACL;
 import hudson.security.AccessControlled;
 import hudson.security.Permission;
@@ -54,6 +55,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.ServletException;
 
@@ -547,12 +549,42 @@ public abstract class View extends AbstractModelObject implements AccessControll
     @Override
     public SearchIndexBuilder makeSearchIndex() {
         return super.makeSearchIndex()
-            .add(new CollectionSearchIndex() {// for jobs in the view
+            .add(new CollectionSearchIndex<TopLevelItem>() {// for jobs in the view
                 protected TopLevelItem get(String key) { return getItem(key); }
                 protected Collection<TopLevelItem> all() { return getItems(); }
+
+                @Override
+                public void suggest(String token, List<SearchItem> result) {
+                    List<TopLevelItem> candidates = ItemNameIndex.get().find(token);
+                    if (candidates==null) {
+                        // not indexed yet
+                        super.suggest(token,result);
+                        return;
+                    }
+                    if (!candidates.isEmpty())
+                        result.addAll(filterForSearch(candidates));
+                }
             });
     }
 
+    /**
+     * Narrows down the items found by {@link ItemNameIndex} to those in {@link #getItems()},
+     * in the order of the latter.
+     *
+     * <p>
+     * Subclasses that can tell whether an item is in the view without listing all of them can override this.
+     *
+     * @since 2.1.0
+     */
+    protected Collection<TopLevelItem> filterForSearch(Collection<TopLevelItem> candidates) {
+        Set<TopLevelItem> c = new HashSet<TopLevelItem>(candidates);
+        List<TopLevelItem> r = new ArrayList<TopLevelItem>();
+        for (TopLevelItem item : getItems())
+            if (c.contains(item))
+                r.add(item);
+        return r;
+    }
+
     /**
      * Accepts the new description.
      */
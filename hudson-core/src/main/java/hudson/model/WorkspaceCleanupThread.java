@@ -24,15 +24,28 @@
 package hudson.model;
 
 import hudson.FilePath;
+import hudson.FilePath.FileCallable;
 import hudson.Util;
 import hudson.Extension;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -60,6 +73,11 @@ public class WorkspaceCleanupThread extends AsyncPeriodicWork {
     // so that this can be easily accessed from sub-routine.
     private TaskListener listener;
 
+    /**
+     * Bytes freed on each node by the last run, keyed by the node name ("" for the master).
+     */
+    private volatile Map<String,Long> freedBytes = Collections.emptyMap();
+
     protected void execute(TaskListener listener) throws InterruptedException, IOException {
         try {
             if(disabled) {
@@ -68,32 +86,77 @@ public class WorkspaceCleanupThread extends AsyncPeriodicWork {
             }
             
             this.listener = listener;
+            final Map<String,Long> freed = new ConcurrentHashMap<String,Long>();
 
             Hudson h = Hudson.getInstance();
-            for (Node n : h.getNodes())
-                if (n instanceof Slave) process((Slave)n);
+            // each slave takes a few round trips no matter how many workspaces it has,
+            // so go through them in parallel
+            ExecutorService es = Executors.newFixedThreadPool(Math.max(1,CONCURRENCY), new DaemonThreadFactory());
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (Node n : h.getNodes()) {
+                    if (!(n instanceof Slave))  continue;
+                    final Slave s = (Slave)n;
+                    futures.add(es.submit(new java.util.concurrent.Callable<Void>() {
+                        public Void call() throws Exception {
+                            freed.put(s.getNodeName(), process(s));
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> f : futures) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException e) {
+                        e.getCause().printStackTrace(listener.error("Workspace clean-up failed"));
+                    }
+                }
+            } finally {
+                es.shutdownNow();
+            }
 
-            process(h);
+            freed.put("", process(h));
+            freedBytes = Collections.unmodifiableMap(new TreeMap<String,Long>(freed));
         } finally {
             this.listener = null;
         }
     }
 
-    private void process(Hudson h) throws IOException, InterruptedException {
+    /**
+     * Bytes freed on each node by the last clean up, keyed by the node name.
+     * The master is reported with the empty name.
+     *
+     * @since 2.1.0
+     */
+    public Map<String,Long> getFreedBytes() {
+        return freedBytes;
+    }
+
+    public static WorkspaceCleanupThread get() {
+        return theInstance;
+    }
+
+    private long process(Hudson h) throws IOException, InterruptedException {
         File jobs = new File(h.getRootDir(), "jobs");
         File[] dirs = jobs.listFiles(DIR_FILTER);
-        if(dirs==null)      return;
+        if(dirs==null)      return 0;
+        long freed = 0;
         for (File dir : dirs) {
-            FilePath ws = new FilePath(new File(dir, "workspace"));
-            if(shouldBeDeleted(dir.getName(),ws,h)) {
-                delete(ws);
+            File ws = new File(dir, "workspace");
+            if(ws.exists() && shouldBeDeleted(dir.getName(),new FilePath(ws),ws.lastModified(),h)) {
+                listener.getLogger().println("Deleting "+ws);
+                Deleter d = new Deleter(Collections.singletonList(ws.getName()),DELETE_THREADS);
+                freed += report(d.invoke(ws.getParentFile(),null), ws.getParentFile().getPath());
             }
         }
+        return freed;
     }
 
-    private boolean shouldBeDeleted(String jobName, FilePath dir, Node n) throws IOException, InterruptedException {
-        // TODO: the use of remoting is not optimal.
-        // One remoting can execute "exists", "lastModified", and "delete" all at once.
+    /**
+     * @param lastModified
+     *      Timestamp of the directory, which is known to exist.
+     */
+    private boolean shouldBeDeleted(String jobName, FilePath dir, long lastModified, Node n) throws IOException, InterruptedException {
         TopLevelItem item = Hudson.getInstance().getItem(jobName);
         if(item==null) {
             // no such project anymore
@@ -101,13 +164,10 @@ public class WorkspaceCleanupThread extends AsyncPeriodicWork {
             return true;
         }
 
-        if(!dir.exists())
-            return false;
-
         // if younger than a month, keep it
         long now = new Date().getTime();
-        if(dir.lastModified() + 30 * DAY > now) {
-            LOGGER.fine("Directory "+dir+" is only "+ Util.getTimeSpanString(now-dir.lastModified())+" old, so not deleting");
+        if(lastModified + 30 * DAY > now) {
+            LOGGER.fine("Directory "+dir+" is only "+ Util.getTimeSpanString(now-lastModified)+" old, so not deleting");
             return false;
         }
 
@@ -131,33 +191,155 @@ public class WorkspaceCleanupThread extends AsyncPeriodicWork {
         return true;
     }
 
-    private void process(Slave s) throws InterruptedException {
+    /**
+     * Cleans up the workspaces of the given slave with one call to list them and one to delete them.
+     *
+     * @return
+     *      number of bytes freed.
+     */
+    private long process(Slave s) throws InterruptedException {
         listener.getLogger().println("Scanning "+s.getNodeName());
 
         try {
             FilePath path = s.getWorkspaceRoot();
-            if(path==null)  return;
+            if(path==null)  return 0;
 
-            List<FilePath> dirs = path.list(DIR_FILTER);
-            if(dirs ==null) return;
-            for (FilePath dir : dirs) {
-                if(shouldBeDeleted(dir.getName(),dir,s))
-                    delete(dir);
+            Map<String,Long> dirs = path.act(new Lister());
+            List<String> doomed = new ArrayList<String>();
+            for (Map.Entry<String,Long> e : dirs.entrySet()) {
+                if(shouldBeDeleted(e.getKey(),path.child(e.getKey()),e.getValue(),s)) {
+                    listener.getLogger().println("Deleting "+path.child(e.getKey())+" on "+s.getNodeName());
+                    doomed.add(e.getKey());
+                }
             }
+            if (doomed.isEmpty())   return 0;
+
+            long freed = report(path.act(new Deleter(doomed,DELETE_THREADS)), s.getNodeName());
+            listener.getLogger().println("Freed "+freed/(1024*1024)+"MB on "+s.getNodeName());
+            return freed;
         } catch (IOException e) {
             e.printStackTrace(listener.error("Failed on "+s.getNodeName()));
+            return 0;
         }
     }
 
-    private void delete(FilePath dir) throws InterruptedException {
-        try {
-            listener.getLogger().println("Deleting "+dir);
-            dir.deleteRecursive();
-        } catch (IOException e) {
-            e.printStackTrace(listener.error("Failed to delete "+dir));
+    /**
+     * Reports failures, and returns the total bytes freed.
+     */
+    private long report(Map<String,DeleteResult> results, String where) {
+        long freed = 0;
+        for (Map.Entry<String,DeleteResult> e : results.entrySet()) {
+            DeleteResult r = e.getValue();
+            freed += r.freed;
+            if (r.error!=null)
+                listener.error("Failed to delete "+e.getKey()+" on "+where+": "+r.error);
+        }
+        return freed;
+    }
+
+    /**
+     * Lists the directories in the workspace root along with their timestamps.
+     */
+    private static final class Lister implements FileCallable<Map<String,Long>> {
+        public Map<String,Long> invoke(File root, VirtualChannel channel) throws IOException {
+            Map<String,Long> r = new HashMap<String,Long>();
+            File[] dirs = root.listFiles(DIR_FILTER);
+            if (dirs!=null)
+                for (File d : dirs)
+                    r.put(d.getName(),d.lastModified());
+            return r;
         }
+        private static final long serialVersionUID = 1L;
     }
 
+    /*package*/ static final class DeleteResult implements Serializable {
+        long freed;
+        String error;
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Deletes the given directories in the workspace root with multiple threads, counting the bytes freed.
+     * A workspace that's a symbolic link is unlinked, leaving what it points to alone.
+     */
+    /*package*/ static final class Deleter implements FileCallable<Map<String,DeleteResult>> {
+        private final List<String> names;
+        /**
+         * Sent along, as {@link WorkspaceCleanupThread#DELETE_THREADS} isn't set in the slave JVM.
+         */
+        private final int threads;
+
+        Deleter(List<String> names, int threads) {
+            this.names = new ArrayList<String>(names);
+            this.threads = threads;
+        }
+
+        public Map<String,DeleteResult> invoke(File root, VirtualChannel channel) throws IOException {
+            Map<String,DeleteResult> r = new HashMap<String,DeleteResult>();
+            ExecutorService es = Executors.newFixedThreadPool(Math.max(1,threads), new DaemonThreadFactory());
+            try {
+                // split each workspace into its top-level entries, so that one big workspace is also deleted in parallel
+                Map<String,List<Future<Long>>> parts = new HashMap<String,List<Future<Long>>>();
+                for (String name : names) {
+                    List<Future<Long>> l = new ArrayList<Future<Long>>();
+                    parts.put(name,l);
+                    File dir = new File(root,name);
+                    if (Util.isSymlink(dir))
+                        continue;   // only the link goes, which Util.deleteRecursive takes care of below
+                    File[] children = dir.listFiles();
+                    if (children!=null)
+                        for (final File c : children)
+                            l.add(es.submit(new java.util.concurrent.Callable<Long>() {
+                                public Long call() throws IOException {
+                                    return delete(c);
+                                }
+                            }));
+                }
+
+                for (String name : names) {
+                    DeleteResult d = new DeleteResult();
+                    for (Future<Long> f : parts.get(name)) {
+                        try {
+                            d.freed += f.get();
+                        } catch (ExecutionException e) {
+                            d.error = e.getCause().toString();
+                        }
+                    }
+                    try {
+                        // whatever is left, like read-only files, is left to the usual, more careful deletion
+                        Util.deleteRecursive(new File(root,name));
+                    } catch (IOException e) {
+                        d.error = e.getMessage();
+                    }
+                    r.put(name,d);
+                }
+            } catch (InterruptedException e) {
+                throw (IOException)new IOException("Interrupted while deleting workspaces").initCause(e);
+            } finally {
+                es.shutdownNow();
+            }
+            return r;
+        }
+
+        /**
+         * Deletes whatever we can delete quickly, and returns the number of bytes freed.
+         */
+        private static long delete(File f) throws IOException {
+            long freed = 0;
+            if (f.isDirectory() && !Util.isSymlink(f)) {
+                File[] children = f.listFiles();
+                if (children!=null)
+                    for (File c : children)
+                        freed += delete(c);
+            }
+            long size = f.isFile() ? f.length() : 0;
+            if (f.delete())
+                freed += size;
+            return freed;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
 
     private static class DirectoryFilter implements FileFilter, Serializable {
         public boolean accept(File f) {
@@ -175,4 +357,14 @@ public class WorkspaceCleanupThread extends AsyncPeriodicWork {
      * Can be used to disable workspace clean up.
      */
     public static boolean disabled = Boolean.getBoolean(WorkspaceCleanupThread.class.getName()+".disabled");
+
+    /**
+     * Number of slaves cleaned up at the same time.
+     */
+    public static int CONCURRENCY = Integer.getInteger(WorkspaceCleanupThread.class.getName()+".concurrency",8);
+
+    /**
+     * Number of threads each slave uses to delete files.
+     */
+    public static int DELETE_THREADS = Integer.getInteger(WorkspaceCleanupThread.class.getName()+".deleteThreads",4);
 }
@@ -31,6 +31,7 @@ import hudson.ExtensionList;
 import hudson.XmlFile;
 import hudson.model.Hudson;
 import hudson.model.Saveable;
+import hudson.util.AtomicFileWriter;
 import hudson.util.CopyOnWriteList;
 
 /**
@@ -74,8 +75,21 @@ public abstract class SaveableListener implements ExtensionPoint {
 
     /**
      * Fires the {@link #onChange} event.
+     *
+     * <p>
+     * If the file is still pending in an {@link AtomicFileWriter.Batch}, the event is fired
+     * once the batch has moved it into place, so that listeners reading the file see the new contents.
      */
-    public static void fireOnChange(Saveable o, XmlFile file) {
+    public static void fireOnChange(final Saveable o, final XmlFile file) {
+        AtomicFileWriter.Batch batch = AtomicFileWriter.Batch.current();
+        if (batch!=null && batch.isPending(file.getFile())) {
+            batch.afterCommit(new Runnable() {
+                public void run() {
+                    fireOnChange(o,file);
+                }
+            });
+            return;
+        }
         for (SaveableListener l : all()) {
             l.onChange(o,file);
         }
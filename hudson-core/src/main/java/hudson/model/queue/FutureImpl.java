@@ -30,8 +30,12 @@ import hudson.model.Queue.Executable;
 import hudson.model.Queue.Task;
 import hudson.remoting.AsyncFutureImpl;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Created when {@link Queue.Item} is created so that the caller can track the progress of the task.
@@ -46,6 +50,11 @@ public final class FutureImpl extends AsyncFutureImpl<Executable> {
      */
     private final Set<Executor> executors = new HashSet<Executor>();
 
+    /**
+     * Called when this future completes.
+     */
+    private List<Runnable> listeners;
+
     public FutureImpl(Task task) {
         this.task = task;
     }
@@ -66,7 +75,62 @@ public final class FutureImpl extends AsyncFutureImpl<Executable> {
         }
     }
 
+    /**
+     * Runs the given callback when this future completes, either because the task is done or because it's cancelled.
+     * If it's already complete, the callback runs right away on the calling thread. Otherwise it runs on
+     * the thread that completes the future, so it should be quick.
+     *
+     * @since 2.1.0
+     */
+    public void addListener(Runnable r) {
+        synchronized (this) {
+            if (!isDone()) {
+                if (listeners==null)    listeners = new ArrayList<Runnable>();
+                listeners.add(r);
+                return;
+            }
+        }
+        r.run();
+    }
+
+    @Override
+    public void set(Executable value) {
+        super.set(value);
+        fireCompleted();
+    }
+
+    @Override
+    public void set(Throwable problem) {
+        super.set(problem);
+        fireCompleted();
+    }
+
+    @Override
+    public void setAsCancelled() {
+        super.setAsCancelled();
+        fireCompleted();
+    }
+
+    private void fireCompleted() {
+        List<Runnable> l;
+        synchronized (this) {
+            l = listeners;
+            listeners = null;
+        }
+        if (l!=null) {
+            for (Runnable r : l) {
+                try {
+                    r.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to notify the completion of "+task.getFullDisplayName(), e);
+                }
+            }
+        }
+    }
+
     synchronized void addExecutor(Executor executor) {
         this.executors.add(executor);
     }
+
+    private static final Logger LOGGER = Logger.getLogger(FutureImpl.class.getName());
 }
@@ -23,21 +23,23 @@
  */
 package hudson.node_monitors;
 
-import hudson.Functions.ThreadGroupMap;
 import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Hudson;
 import hudson.model.ComputerSet;
 import hudson.model.AdministrativeMonitor;
+import hudson.remoting.Callable;
 import hudson.triggers.Trigger;
 import hudson.triggers.SafeTimerTask;
 import hudson.slaves.OfflineCause;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
@@ -71,11 +73,21 @@ public abstract class   AbstractNodeMonitorDescriptor<T> extends Descriptor<Node
     }
 
     private void schedule(long interval) {
-        Trigger.timer.scheduleAtFixedRate(new SafeTimerTask() {
-            public void doRun() {
-                triggerUpdate();
+        // monitors with the same interval are updated together,
+        // so that their probes can share a round trip to each node
+        synchronized (GROUPS) {
+            List<AbstractNodeMonitorDescriptor<?>> group = GROUPS.get(interval);
+            if (group==null) {
+                final List<AbstractNodeMonitorDescriptor<?>> g = group = new CopyOnWriteArrayList<AbstractNodeMonitorDescriptor<?>>();
+                GROUPS.put(interval,group);
+                Trigger.timer.scheduleAtFixedRate(new SafeTimerTask() {
+                    public void doRun() {
+                        NodeMonitorSweep.start(g);
+                    }
+                }, interval, interval);
             }
-        }, interval, interval);
+            group.add(this);
+        }
     }
 
     /**
@@ -86,7 +98,7 @@ public abstract class   AbstractNodeMonitorDescriptor<T> extends Descriptor<Node
     /**
      * Represents the update activity in progress.
      */
-    private volatile Record inProgress = null;
+    private volatile NodeMonitorSweep inProgress = null;
 
     /**
      * Performs monitoring of the given computer object.
@@ -102,6 +114,23 @@ public abstract class   AbstractNodeMonitorDescriptor<T> extends Descriptor<Node
      */
     protected abstract T monitor(Computer c) throws IOException,InterruptedException;
 
+    /**
+     * Creates the part of the monitoring that runs on the given node, if it consists of
+     * a single {@link Callable} whose result can be used as is.
+     *
+     * <p>
+     * Probes of all the monitors are sent to a node together in a single remote call,
+     * so implementing this method saves a round trip per node. Monitors that need to measure
+     * the remote call itself, such as {@link ResponseTimeMonitor}, shouldn't do this.
+     *
+     * @return
+     *      null to have {@link #monitor(Computer)} called instead, which is the default.
+     * @since 2.1.0
+     */
+    protected Callable<T,?> createProbe(Computer c) throws IOException {
+        return null;
+    }
+
     /**
      * Obtains the monitoring result currently available, or null if no data is available.
      *
@@ -114,7 +143,7 @@ public abstract class   AbstractNodeMonitorDescriptor<T> extends Descriptor<Node
             if(inProgress==null) {
                 synchronized(this) {
                     if(inProgress==null)
-                        new Record().start();
+                        triggerUpdate();
                 }
             }
             return null;
@@ -122,6 +151,16 @@ public abstract class   AbstractNodeMonitorDescriptor<T> extends Descriptor<Node
         return record.data.get(c);
     }
 
+    /**
+     * When the data returned from {@link #get(Computer)} was obtained, or null if there's no data yet.
+     *
+     * @since 2.1.0
+     */
+    public Date getTimestamp() {
+        Record r = record;
+        return r==null ? null : new Date(r.timestamp);
+    }
+
     /**
      * Is this monitor currently ignored?
      */
@@ -161,64 +200,54 @@ public abstract class   AbstractNodeMonitorDescriptor<T> extends Descriptor<Node
      * @see NodeMonitor#triggerUpdate()
      */
     /*package*/ Thread triggerUpdate() {
-        Record t = new Record();
-        t.start();
-        return t;
+        return NodeMonitorSweep.start(Collections.singleton(this));
     }
 
     /**
-     * Thread that monitors nodes, as well as the data structure to record
-     * the result.
+     * Called when a new sweep that includes this monitor starts.
      */
-    private final class Record extends Thread {
-        /**
-         * Last computed monitoring result.
-         */
-        private final Map<Computer,T> data = new HashMap<Computer,T>();
-
-        public Record() {
-            super("Monitoring thread for "+getDisplayName()+" started on "+new Date());
-            synchronized(AbstractNodeMonitorDescriptor.this) {
-                if(inProgress!=null) {
-                    // maybe it got stuck?
-                    LOGGER.warning("Previous "+getDisplayName()+" monitoring activity still in progress. Interrupting");
-                    inProgress.interrupt();
-                }
-                inProgress = this;
-            }
+    /*package*/ synchronized void setInProgress(NodeMonitorSweep sweep) {
+        if(inProgress!=null) {
+            // maybe it got stuck? only give up our part of it, as the other monitors in that sweep may be fine
+            LOGGER.warning("Previous "+getDisplayName()+" monitoring activity still in progress. Abandoning it");
+            inProgress.supersede(this);
         }
+        inProgress = sweep;
+    }
 
-        @Override
-        public void run() {
-            long startTime = System.currentTimeMillis();
-            String oldName = getName();
-
-            for( Computer c : Hudson.getInstance().getComputers() ) {
-                try {
-                    setName("Monitoring "+c.getDisplayName()+" for "+getDisplayName());
-
-                    if(c.getChannel()==null)
-                        data.put(c,null);
-                    else
-                        data.put(c,monitor(c));
-                } catch (IOException e) {
-                    LOGGER.log(Level.WARNING, "Failed to monitor "+c.getDisplayName()+" for "+getDisplayName(), e);
-                } catch (InterruptedException e) {
-                    LOGGER.log(Level.WARNING,"Node monitoring "+c.getDisplayName()+" for "+getDisplayName()+" aborted.",e);
-                }
-            }
-            setName(oldName);
+    /**
+     * Called when a sweep completes, to replace the data all at once.
+     */
+    /*package*/ void publish(NodeMonitorSweep sweep, Map<Computer,?> data) {
+        Record r = new Record(data);
+        synchronized(this) {
+            if(inProgress!=sweep)  return;  // superseded by another sweep
+            inProgress = null;
+            record = r;
+        }
+    }
 
-            synchronized(AbstractNodeMonitorDescriptor.this) {
-                assert inProgress==this;
-                inProgress = null;
-                record = this;
-            }
+    /**
+     * The result of a monitoring.
+     */
+    private final class Record {
+        /**
+         * Last computed monitoring result.
+         */
+        private final Map<Computer,T> data;
+        private final long timestamp = System.currentTimeMillis();
 
-            LOGGER.fine("Node monitoring "+getDisplayName()+" completed in "+(System.currentTimeMillis()-startTime)+"ms");
+        @SuppressWarnings("unchecked")
+        Record(Map<Computer,?> data) {
+            this.data = Collections.unmodifiableMap((Map<Computer,T>)data);
         }
     }
 
+    /**
+     * Monitors grouped by their update interval.
+     */
+    private static final Map<Long,List<AbstractNodeMonitorDescriptor<?>>> GROUPS = new HashMap<Long,List<AbstractNodeMonitorDescriptor<?>>>();
+
     private final Logger LOGGER = Logger.getLogger(getClass().getName());
 
     private static final long HOUR = 1000*60*60L;
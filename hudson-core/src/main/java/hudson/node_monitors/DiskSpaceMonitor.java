@@ -25,6 +25,7 @@ package hudson.node_monitors;
 
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.FilePath.FileCallable;
 import hudson.Functions;
 import hudson.model.Computer;
 import hudson.model.Hudson;
@@ -70,6 +71,11 @@ public class DiskSpaceMonitor extends AbstractDiskSpaceMonitor {
 
             return p.act(new GetUsableSpace());
         }
+
+        @Override
+        protected FileCallable<DiskSpace> getFreeSpaceCallable() {
+            return new GetUsableSpace();
+        }
     };
 
     @Extension
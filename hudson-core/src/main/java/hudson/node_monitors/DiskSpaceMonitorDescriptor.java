@@ -23,11 +23,16 @@
  */
 package hudson.node_monitors;
 
+import hudson.FilePath;
 import hudson.FilePath.FileCallable;
 import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.remoting.Callable;
+import hudson.remoting.Channel;
 import hudson.remoting.VirtualChannel;
 import hudson.Util;
 import hudson.slaves.OfflineCause;
+import hudson.util.IOException2;
 import hudson.node_monitors.DiskSpaceMonitorDescriptor.DiskSpace;
 import org.jvnet.animal_sniffer.IgnoreJRERequirement;
 
@@ -140,6 +145,50 @@ import org.kohsuke.stapler.export.Exported;
      */
     protected abstract DiskSpace getFreeSpace(Computer c) throws IOException, InterruptedException;
 
+    /**
+     * {@link FileCallable} that computes the free size from the root directory of the node,
+     * if that's how {@link #getFreeSpace(Computer)} works. Monitors that return it can have their
+     * check batched with other monitors.
+     *
+     * @since 2.1.0
+     */
+    protected FileCallable<DiskSpace> getFreeSpaceCallable() {
+        return null;
+    }
+
+    @Override
+    protected Callable<DiskSpace,IOException> createProbe(Computer c) {
+        FileCallable<DiskSpace> callable = getFreeSpaceCallable();
+        Node n = c.getNode();
+        if(callable==null || n==null)   return null;
+        FilePath p = n.getRootPath();
+        if(p==null) return null;
+        return new FileProbe(p.getRemote(),callable);
+    }
+
+    /**
+     * Runs a {@link FileCallable} against a directory on the node it's sent to.
+     */
+    private static final class FileProbe implements Callable<DiskSpace,IOException> {
+        private final String path;
+        private final FileCallable<DiskSpace> callable;
+
+        FileProbe(String path, FileCallable<DiskSpace> callable) {
+            this.path = path;
+            this.callable = callable;
+        }
+
+        public DiskSpace call() throws IOException {
+            try {
+                return callable.invoke(new File(path),Channel.current());
+            } catch (InterruptedException e) {
+                throw new IOException2(e);
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
     protected static final class GetUsableSpace implements FileCallable<DiskSpace> {
         @IgnoreJRERequirement
         public DiskSpace invoke(File f, VirtualChannel channel) throws IOException {
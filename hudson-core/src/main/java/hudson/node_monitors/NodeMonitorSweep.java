@@ -0,0 +1,413 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.node_monitors;
+
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Hudson;
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.TimeUnit2;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One round of monitoring of all the nodes by a set of {@link AbstractNodeMonitorDescriptor}s.
+ *
+ * <p>
+ * Nodes are monitored in parallel, by a pool of bounded size shared by all the sweeps. Each node gets
+ * {@link #NODE_TIMEOUT} seconds; a node that doesn't respond within that time is reported
+ * and left without data, instead of holding up the rest of the sweep.
+ *
+ * <p>
+ * The probes of all the monitors that {@linkplain AbstractNodeMonitorDescriptor#createProbe(Computer) support it}
+ * are sent to a node together in one remote call. Other monitors are invoked one by one as before.
+ * The results are published to all the monitors at once when the sweep completes.
+ *
+ * <p>
+ * When a newer sweep starts for some of the monitors, this sweep stops working on those monitors
+ * and keeps going for the others.
+ *
+ * @since 2.1.0
+ */
+public final class NodeMonitorSweep extends Thread {
+    private final List<AbstractNodeMonitorDescriptor<?>> descriptors;
+    /**
+     * Monitors that a newer sweep took over, so this sweep no longer works on them.
+     */
+    private final Set<AbstractNodeMonitorDescriptor<?>> superseded = Collections.synchronizedSet(new HashSet<AbstractNodeMonitorDescriptor<?>>());
+    private final List<NodeTask> tasks = new CopyOnWriteArrayList<NodeTask>();
+
+    private volatile long startTime, duration = -1;
+    private volatile int nodeCount, timeoutCount;
+
+    /*package*/ NodeMonitorSweep(Collection<? extends AbstractNodeMonitorDescriptor<?>> descriptors) {
+        super("Monitoring thread for "+names(descriptors)+" started on "+new Date());
+        this.descriptors = new ArrayList<AbstractNodeMonitorDescriptor<?>>(descriptors);
+        for (AbstractNodeMonitorDescriptor<?> d : this.descriptors)
+            d.setInProgress(this);
+    }
+
+    /**
+     * Starts a sweep of the given monitors.
+     */
+    public static NodeMonitorSweep start(Collection<? extends AbstractNodeMonitorDescriptor<?>> descriptors) {
+        NodeMonitorSweep s = new NodeMonitorSweep(descriptors);
+        s.start();
+        return s;
+    }
+
+    /**
+     * The last completed sweep, or null if none has completed yet.
+     */
+    public static NodeMonitorSweep getLast() {
+        return last;
+    }
+
+    public List<AbstractNodeMonitorDescriptor<?>> getDescriptors() {
+        return descriptors;
+    }
+
+    public Date getStartTime() {
+        return new Date(startTime);
+    }
+
+    /**
+     * Milliseconds it took to monitor all the nodes, or -1 if it's still in progress.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public String getDurationString() {
+        return Util.getTimeSpanString(duration);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Number of nodes that didn't respond in time.
+     */
+    public int getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * Stops working on the given monitor, because a newer sweep took it over.
+     * The other monitors of this sweep are not affected, unless there are none left.
+     */
+    /*package*/ void supersede(AbstractNodeMonitorDescriptor<?> d) {
+        superseded.add(d);
+        if (superseded.containsAll(descriptors)) {
+            // nothing left that's worth finishing
+            interrupt();
+            return;
+        }
+        for (NodeTask t : tasks)
+            t.abandon(d);
+    }
+
+    @Override
+    public void run() {
+        startTime = System.currentTimeMillis();
+
+        Computer[] computers = Hudson.getInstance().getComputers();
+        nodeCount = computers.length;
+        for (Computer c : computers) {
+            NodeTask t = new NodeTask(c);
+            t.future = POOL.submit(t);
+            tasks.add(t);
+        }
+
+        try {
+            for (NodeTask t : tasks)
+                t.await();
+        } catch (InterruptedException e) {
+            // publish what we've got so far
+            LOGGER.log(Level.WARNING, getName()+" aborted", e);
+            for (NodeTask t : tasks)
+                t.future.cancel(true);
+        }
+
+        // publish everything at once
+        for (AbstractNodeMonitorDescriptor<?> d : descriptors) {
+            Map<Computer,Object> data = new HashMap<Computer,Object>();
+            for (NodeTask t : tasks)
+                data.put(t.computer, t.results.get(d));
+            d.publish(this,data);
+        }
+
+        duration = System.currentTimeMillis()-startTime;
+        last = this;
+        if (timeoutCount>0)
+            LOGGER.info(getName()+" completed in "+duration+"ms. "+timeoutCount+" of "+nodeCount+" nodes didn't respond in time");
+        else
+            LOGGER.fine(getName()+" completed in "+duration+"ms");
+    }
+
+    /**
+     * Monitors one node for all the descriptors.
+     */
+    private final class NodeTask implements java.util.concurrent.Callable<Void> {
+        private final Computer computer;
+        /**
+         * The thread running this task, and the monitor it's working on outside the batched probes.
+         * Guarded by this object.
+         */
+        private Thread thread;
+        private AbstractNodeMonitorDescriptor<?> current;
+        /**
+         * True if {@link #abandon(AbstractNodeMonitorDescriptor)} interrupted the thread.
+         */
+        private boolean abandoned;
+        /**
+         * Results collected so far. Monitors without data have no entry.
+         */
+        private final Map<AbstractNodeMonitorDescriptor<?>,Object> results = new ConcurrentHashMap<AbstractNodeMonitorDescriptor<?>,Object>();
+        private Future<Void> future;
+        /**
+         * When this node runs out of time, or 0 if the task hasn't started yet.
+         */
+        private volatile long deadline;
+
+        NodeTask(Computer computer) {
+            this.computer = computer;
+        }
+
+        public Void call() throws Exception {
+            deadline = System.currentTimeMillis()+TimeUnit2.SECONDS.toMillis(NODE_TIMEOUT);
+            Thread t = Thread.currentThread();
+            String oldName = t.getName();
+            synchronized (this) {
+                thread = t;
+            }
+            try {
+                t.setName("Monitoring "+computer.getDisplayName());
+                VirtualChannel ch = computer.getChannel();
+                if (ch==null)   return null;    // offline. no data
+
+                List<AbstractNodeMonitorDescriptor<?>> batched = new ArrayList<AbstractNodeMonitorDescriptor<?>>();
+                List<AbstractNodeMonitorDescriptor<?>> others = new ArrayList<AbstractNodeMonitorDescriptor<?>>();
+                BatchProbe batch = new BatchProbe();
+                for (AbstractNodeMonitorDescriptor<?> d : descriptors) {
+                    if (superseded.contains(d))     continue;
+                    Callable<?,?> p = null;
+                    try {
+                        p = d.createProbe(computer);
+                    } catch (IOException e) {
+                        fail(d,e);
+                        continue;
+                    }
+                    if (p==null) {
+                        others.add(d);
+                    } else {
+                        batched.add(d);
+                        batch.probes.add(p);
+                    }
+                }
+
+                if (!batched.isEmpty()) {
+                    Future<List<Object>> f = ch.callAsync(batch);
+                    try {
+                        List<Object> r = f.get(deadline-System.currentTimeMillis(),TimeUnit.MILLISECONDS);
+                        for (int i=0; i<batched.size(); i++) {
+                            Object o = r.get(i);
+                            if (o instanceof ProbeFailure)
+                                fail(batched.get(i),((ProbeFailure)o).cause);
+                            else
+                                put(batched.get(i),o);
+                        }
+                    } catch (ExecutionException e) {
+                        for (AbstractNodeMonitorDescriptor<?> d : batched)
+                            fail(d,e.getCause());
+                    } catch (TimeoutException e) {
+                        f.cancel(true);
+                        throw e;
+                    }
+                }
+
+                for (AbstractNodeMonitorDescriptor<?> d : others) {
+                    synchronized (this) {
+                        // checked under the lock, so that abandon() either sees this monitor running or we see it superseded
+                        if (superseded.contains(d))     continue;
+                        current = d;
+                    }
+                    try {
+                        put(d,d.monitor(computer));
+                    } catch (IOException e) {
+                        fail(d,e);
+                    } catch (InterruptedException e) {
+                        if (!superseded.contains(d))
+                            throw e;
+                        // only this monitor was abandoned. carry on with the others
+                    } finally {
+                        synchronized (this) {
+                            current = null;
+                            if (abandoned) {
+                                abandoned = false;
+                                Thread.interrupted();   // clear the interruption meant for the abandoned monitor
+                            }
+                        }
+                    }
+                }
+                return null;
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                }
+                t.setName(oldName);
+            }
+        }
+
+        /**
+         * Interrupts the given monitor if it's running on this node right now.
+         */
+        synchronized void abandon(AbstractNodeMonitorDescriptor<?> d) {
+            if (current==d && thread!=null) {
+                abandoned = true;
+                thread.interrupt();
+            }
+        }
+
+        private void put(AbstractNodeMonitorDescriptor<?> d, Object value) {
+            if (value!=null)
+                results.put(d,value);
+        }
+
+        private void fail(AbstractNodeMonitorDescriptor<?> d, Throwable e) {
+            LOGGER.log(Level.WARNING, "Failed to monitor "+computer.getDisplayName()+" for "+d.getDisplayName(), e);
+        }
+
+        /**
+         * Waits until this node is done or runs out of time.
+         */
+        void await() throws InterruptedException {
+            while (true) {
+                long d = deadline;
+                long wait = d==0 ? 1000 /*not started yet*/ : d-System.currentTimeMillis();
+                try {
+                    future.get(Math.max(wait,1),TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    if (d!=0 && System.currentTimeMillis()>=d) {
+                        future.cancel(true);
+                        timeoutCount++;
+                        LOGGER.warning("Monitoring of "+computer.getDisplayName()+" didn't complete in "+NODE_TIMEOUT+" seconds. Giving up");
+                        return;
+                    }
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof TimeoutException))
+                        LOGGER.log(Level.WARNING, "Failed to monitor "+computer.getDisplayName(), e.getCause());
+                    else
+                        timeoutCount++;
+                    return;
+                } catch (CancellationException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the probes of all the monitors on a node, so that they cost one round trip.
+     * A failure of one probe doesn't affect the others.
+     */
+    private static final class BatchProbe implements Callable<List<Object>,IOException> {
+        private final List<Callable<?,?>> probes = new ArrayList<Callable<?,?>>();
+
+        public List<Object> call() throws IOException {
+            List<Object> r = new ArrayList<Object>(probes.size());
+            for (Callable<?,?> p : probes) {
+                try {
+                    r.add(p.call());
+                } catch (Throwable t) {
+                    r.add(new ProbeFailure(t));
+                }
+            }
+            return r;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final class ProbeFailure implements Serializable {
+        private final Throwable cause;
+
+        ProbeFailure(Throwable cause) {
+            this.cause = cause;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static String names(Collection<? extends AbstractNodeMonitorDescriptor<?>> descriptors) {
+        StringBuilder buf = new StringBuilder();
+        for (AbstractNodeMonitorDescriptor<?> d : descriptors) {
+            if (buf.length()>0) buf.append(", ");
+            buf.append(d.getDisplayName());
+        }
+        return buf.toString();
+    }
+
+    private static volatile NodeMonitorSweep last;
+
+    /**
+     * Seconds given to each node to respond.
+     */
+    public static long NODE_TIMEOUT = Long.getLong(NodeMonitorSweep.class.getName()+".nodeTimeout",60);
+
+    /**
+     * Number of nodes monitored at the same time.
+     */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Integer.getInteger(NodeMonitorSweep.class.getName()+".threads",16),
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    private static final Logger LOGGER = Logger.getLogger(NodeMonitorSweep.class.getName());
+}
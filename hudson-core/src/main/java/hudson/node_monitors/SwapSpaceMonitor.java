@@ -83,6 +83,11 @@ public class SwapSpaceMonitor extends NodeMonitor {
             return c.getChannel().call(new MonitorTask());
         }
 
+        @Override
+        protected Callable<MemoryUsage,IOException> createProbe(Computer c) {
+            return new MonitorTask();
+        }
+
         public String getDisplayName() {
             return Messages.SwapSpaceMonitor_DisplayName();
         }
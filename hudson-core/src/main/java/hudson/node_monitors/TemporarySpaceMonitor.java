@@ -72,6 +72,11 @@ public class TemporarySpaceMonitor extends AbstractDiskSpaceMonitor {
 
             return p.act(new GetTempSpace());
         }
+
+        @Override
+        protected FileCallable<DiskSpace> getFreeSpaceCallable() {
+            return new GetTempSpace();
+        }
     };
 
     @Extension
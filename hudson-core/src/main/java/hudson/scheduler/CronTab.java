@@ -263,10 +263,16 @@ public final class CronTab {
      * See {@link #ceil(long)}.
      *
      * This method modifies the given calendar and returns the same object.
+     *
+     * @throws IllegalArgumentException
+     *      if no matching time exists in the foreseeable future, such as with "0 0 30 2 *".
      */
     public Calendar ceil(Calendar cal) {
+        int yearLimit = cal.get(YEAR)+CEIL_YEAR_LIMIT;
         OUTER:
         while (true) {
+            if (cal.get(YEAR)>yearLimit)
+                throw new IllegalArgumentException("No time in the next "+CEIL_YEAR_LIMIT+" years matches "+spec);
             for (CalendarField f : CalendarField.ADJUST_ORDER) {
                 int cur = f.valueOf(cal);
                 int next = f.ceil(this,cur);
@@ -353,6 +359,12 @@ public final class CronTab {
         }
     }
 
+    /**
+     * How far into the future {@link #ceil(Calendar)} searches. Combinations of day of month and
+     * day of week repeat every 28 years, so anything that doesn't match by then never will.
+     */
+    private static final int CEIL_YEAR_LIMIT = 30;
+
     void set(String format) throws ANTLRException {
         set(format,1);
     }
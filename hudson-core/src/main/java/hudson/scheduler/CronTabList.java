@@ -52,6 +52,39 @@ public final class CronTabList {
         return false;
     }
 
+    /**
+     * Computes the nearest time at or after the given one that matches any of the crontabs.
+     *
+     * @param cal
+     *      Left untouched.
+     * @return
+     *      null if there's no crontab, or none of them will ever match.
+     * @see CronTab#ceil(Calendar)
+     * @since 2.1.0
+     */
+    public synchronized Calendar ceil(Calendar cal) {
+        Calendar best = null;
+        for (CronTab tab : tabs) {
+            try {
+                Calendar c = tab.ceil((Calendar)cal.clone());
+                if (best==null || c.before(best))
+                    best = c;
+            } catch (IllegalArgumentException e) {
+                // this tab never fires
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns true if there's no crontab in this list, which means it never fires.
+     *
+     * @since 2.1.0
+     */
+    public synchronized boolean isEmpty() {
+        return tabs.isEmpty();
+    }
+
     /**
      * Checks if this crontab entry looks reasonable,
      * and if not, return an warning message.
@@ -34,6 +34,7 @@ import hudson.security.Permission;
 import hudson.tasks.Builder;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Run;
 import hudson.model.BuildListener;
 import hudson.model.Describable;
 import hudson.model.TaskListener;
@@ -44,13 +45,18 @@ import hudson.model.Descriptor;
 import hudson.model.Api;
 import hudson.model.Action;
 import hudson.model.AbstractProject.AbstractProjectDescriptor;
+import hudson.util.IOException2;
+import hudson.util.SingleFlight;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
@@ -169,6 +175,31 @@ public abstract class SCM implements Describable<SCM>, ExtensionPoint {
     	return true;
     }
 
+    /**
+     * Identifies the remote location that this SCM polls, such as a repository URL and a branch.
+     *
+     * <p>
+     * When multiple projects poll the same location at the same time, and their baselines are
+     * equal, Hudson calls
+     * {@link #compareRemoteRevisionWith(AbstractProject, Launcher, FilePath, TaskListener, SCMRevisionState)}
+     * only once and gives the same {@link PollingResult} to all of them.
+     * The key is also used to schedule the polling of such projects at the same moment.
+     * Baselines are compared with {@link Object#equals(Object)} if their class overrides it,
+     * or by their persisted form otherwise.
+     *
+     * <p>
+     * This is only used when {@link #requiresWorkspaceForPolling()} returns false, as the comparison
+     * otherwise depends on the workspace of each project.
+     *
+     * @return
+     *      An object with proper {@link Object#equals(Object)} and {@link Object#hashCode()}, preferably a
+     *      {@link String}. The default implementation returns null, meaning each project polls on its own.
+     * @since 2.1.0
+     */
+    public Object getPollingKey(AbstractProject<?,?> project) {
+        return null;
+    }
+
     /**
      * Called before a workspace is deleted on the given node, to provide SCM an opportunity to perform clean up.
      *
@@ -368,12 +399,76 @@ public abstract class SCM implements Describable<SCM>, ExtensionPoint {
                 baseline2 = _calcRevisionsFromBuild(project.getLastBuild(), launcher, listener);
             }
 
+            Object key = requiresWorkspaceForPolling() ? null : getPollingKey(project);
+            if (key!=null)
+                return coalescedCompareRemoteRevisionWith(key, project, launcher, workspace, listener, baseline2);
+
             return _compareRemoteRevisionWith(project, launcher, workspace, listener, baseline2);
         } else {
             return pollChanges(project,launcher,workspace,listener) ? PollingResult.SIGNIFICANT : PollingResult.NO_CHANGES;
         }
     }
 
+    /**
+     * Compares with the remote, unless a project polling the same location from the same baseline is
+     * already doing it, in which case its result is reused.
+     */
+    private PollingResult coalescedCompareRemoteRevisionWith(Object key, final AbstractProject<?,?> project, final Launcher launcher, final FilePath workspace, final TaskListener listener, final SCMRevisionState baseline) throws IOException, InterruptedException {
+        final boolean[] ran = new boolean[1];
+        try {
+            PollingResult r = POLLINGS.get(Arrays.asList(key, baselineKey(baseline)), new Callable<PollingResult>() {
+                public PollingResult call() throws Exception {
+                    ran[0] = true;
+                    return _compareRemoteRevisionWith(project, launcher, workspace, listener, baseline);
+                }
+            });
+            if (!ran[0])
+                listener.getLogger().println(Messages.SCM_SharedPollingResult(key));
+            return r;
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException)           throw (IOException)t;
+            if (t instanceof InterruptedException)  throw (InterruptedException)t;
+            if (t instanceof RuntimeException)      throw (RuntimeException)t;
+            if (t instanceof Error)                 throw (Error)t;
+            throw new IOException2(t);
+        }
+    }
+
+    /**
+     * Gets an object that is equal for equal baselines.
+     *
+     * <p>
+     * Few {@link SCMRevisionState}s override {@link Object#equals(Object)}, so two projects polling
+     * the same repository would never have equal baselines. For those, the XML form that the baseline
+     * is persisted in is compared instead.
+     */
+    private static Object baselineKey(SCMRevisionState baseline) {
+        if (baseline==null)     return null;
+        try {
+            if (baseline.getClass().getMethod("equals",Object.class).getDeclaringClass()!=Object.class)
+                return baseline;
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+        return Arrays.asList(baseline.getClass(), Run.XSTREAM.toXML(baseline));
+    }
+
+    /**
+     * Number of pollings that reused the result of another project polling the same location
+     * and baseline, instead of calling {@link #compareRemoteRevisionWith(AbstractProject, Launcher, FilePath, TaskListener, SCMRevisionState)}.
+     *
+     * @since 2.1.0
+     */
+    public static long getSharedPollingCount() {
+        return POLLINGS.getSharedCount();
+    }
+
+    /**
+     * Pollings in progress, keyed by {@link #getPollingKey(AbstractProject)} and the baseline.
+     */
+    private static final SingleFlight<List<Object>,PollingResult> POLLINGS = new SingleFlight<List<Object>,PollingResult>();
+
     private boolean is1_346OrLater() {
         for (Class<?> c = getClass(); c != SCM.class; c = c.getSuperclass()) {
             try {
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of objects by name that finds those whose name contains a given substring,
+ * without looking at every name.
+ *
+ * <p>
+ * Each name is broken down into its substrings of {@link #N} characters. A substring query
+ * only needs to look at the objects that have the rarest of the query's n-grams, and then checks that
+ * their names really contain the query. Queries shorter than {@link #N} characters go through all the names.
+ * As with {@link CollectionSearchIndex}, the match is case sensitive.
+ *
+ * @param <T>
+ *      Type of the indexed objects. They are compared by {@link Object#equals(Object)}.
+ * @since 2.1.0
+ */
+public final class NGramIndex<T> {
+    private final Map<T,String> names = new HashMap<T,String>();
+    private final Map<String,Set<T>> grams = new HashMap<String,Set<T>>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds the object to the index, or updates its name if it's already there.
+     */
+    public void put(T item, String name) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(item);
+            if (name==null)     return;
+            names.put(item,name);
+            for (String g : gramsOf(name)) {
+                Set<T> s = grams.get(g);
+                if (s==null)
+                    grams.put(g,s=new HashSet<T>());
+                s.add(item);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(T item) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            grams.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all the objects whose name contains the given token, in no particular order.
+     */
+    public List<T> find(String token) {
+        List<T> r = new ArrayList<T>();
+        lock.readLock().lock();
+        try {
+            Collection<T> candidates = names.keySet();
+            if (token.length()>=N) {
+                // the rarest n-gram gives us the fewest candidates to check
+                for (String g : gramsOf(token)) {
+                    Set<T> s = grams.get(g);
+                    if (s==null)    return r;   // no name has this n-gram
+                    if (s.size()<candidates.size())
+                        candidates = s;
+                }
+            }
+            for (T item : candidates)
+                if (names.get(item).contains(token))
+                    r.add(item);
+            return r;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeUnlocked(T item) {
+        String name = names.remove(item);
+        if (name==null)     return;
+        for (String g : gramsOf(name)) {
+            Set<T> s = grams.get(g);
+            if (s==null)    continue;
+            s.remove(item);
+            if (s.isEmpty())
+                grams.remove(g);
+        }
+    }
+
+    private static Set<String> gramsOf(String s) {
+        Set<String> r = new HashSet<String>();
+        for (int i=0; i+N<=s.length(); i++)
+            r.add(s.substring(i,i+N));
+        return r;
+    }
+
+    /**
+     * Length of the indexed substrings.
+     */
+    public static final int N = 3;
+}
@@ -23,7 +23,9 @@
  */
 package hudson.search;
 
+import hudson.model.Hudson;
 import hudson.util.EditDistance;
+import hudson.util.TimedCache;
 import org.kohsuke.stapler.Ancestor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -41,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
@@ -114,13 +117,18 @@ public class Search {
      *      a certain threshold to avoid showing too many options. 
      */
     public List<SuggestedItem> getSuggestions(StaplerRequest req, String query) {
-        Set<String> paths = new HashSet<String>();  // paths already added, to control duplicates
-        List<SuggestedItem> r = new ArrayList<SuggestedItem>();
-        for (SuggestedItem i : suggest(makeSuggestIndex(req), query)) {
-            if(r.size()>20) break;
-            if(paths.add(i.getPath()))
-                r.add(i);
+        // the same user tends to ask for the same thing repeatedly while typing
+        String key = null;
+        if (SUGGESTION_CACHE!=null) {
+            key = Hudson.getAuthentication().getName()+'\n'+contextOf(req)+'\n'+query;
+            TimedCache.Entry<List<SuggestedItem>> e = SUGGESTION_CACHE.get(key);
+            if (e!=null)
+                return e.getValue();
         }
+
+        List<SuggestedItem> r = Collections.unmodifiableList(suggest(makeSuggestIndex(req), query, MAX_SUGGESTIONS, true));
+        if (key!=null)
+            SUGGESTION_CACHE.put(key,r);
         return r;
     }
 
@@ -138,6 +146,25 @@ public class Search {
         return builder.make();
     }
 
+    /**
+     * The URL of the innermost object being searched, which together with the user determines the suggestions.
+     */
+    private String contextOf(StaplerRequest req) {
+        String url = "";
+        for (Ancestor a : req.getAncestors())
+            if (a.getObject() instanceof SearchableModelObject)
+                url = a.getUrl();
+        return url;
+    }
+
+    /**
+     * Forgets the suggestions given so far, for example because items were added or removed.
+     */
+    public static void clearSuggestionCache() {
+        if (SUGGESTION_CACHE!=null)
+            SUGGESTION_CACHE.clear();
+    }
+
     @ExportedBean
     public static class Result {
         @Exported
@@ -180,6 +207,20 @@ public class Search {
     }
 
     public static List<SuggestedItem> suggest(SearchIndex index, final String tokenList) {
+        return suggest(index, tokenList, Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Returns the best suggestions for the given query, best first.
+     *
+     * @param max
+     *      Maximum number of suggestions to return. Only this many are kept while ranking
+     *      the candidates, instead of sorting them all.
+     * @param distinctPaths
+     *      If true, only one suggestion is returned for each path.
+     * @since 2.1.0
+     */
+    public static List<SuggestedItem> suggest(SearchIndex index, final String tokenList, int max, boolean distinctPaths) {
 
         class Tag implements Comparable<Tag>{
             final SuggestedItem item;
@@ -187,8 +228,12 @@ public class Search {
             /** If the path to this suggestion starts with the token list, 1. Otherwise 0. */
             final int prefixMatch;
 
-            Tag(SuggestedItem i) {
+            /** Position in the order the suggestions were found, to break ties. */
+            final int order;
+
+            Tag(SuggestedItem i, int order) {
                 item = i;
+                this.order = order;
                 distance = EditDistance.editDistance(i.getPath(),tokenList);
                 prefixMatch = i.getPath().startsWith(tokenList)?1:0;
             }
@@ -196,21 +241,30 @@ public class Search {
             public int compareTo(Tag that) {
                 int r = this.prefixMatch -that.prefixMatch;
                 if(r!=0)    return -r;  // ones with head match should show up earlier
-                return this.distance-that.distance;
+                r = this.distance-that.distance;
+                if(r!=0)    return r;
+                return this.order-that.order;   // otherwise keep the order they were found in
             }
         }
 
-        List<Tag> buf = new ArrayList<Tag>();
         List<SuggestedItem> items = find(Mode.SUGGEST, index, tokenList);
 
-        // sort them
-        for( SuggestedItem i : items)
-            buf.add(new Tag(i));
-        Collections.sort(buf);
-        items.clear();
-        for (Tag t : buf)
-            items.add(t.item);
+        // keep the best 'max' of them in a heap whose head is the worst one we have so far
+        PriorityQueue<Tag> best = new PriorityQueue<Tag>(Math.min(items.size(),max)+1,Collections.reverseOrder());
+        Set<String> paths = new HashSet<String>();  // paths already added, to control duplicates
+        int order=0;
+        for( SuggestedItem i : items) {
+            if(distinctPaths && !paths.add(i.getPath()))
+                continue;
+            best.add(new Tag(i,order++));
+            if(best.size()>max)
+                best.poll();
+        }
 
+        items = new ArrayList<SuggestedItem>(best.size());
+        while(!best.isEmpty())
+            items.add(best.poll().item);
+        Collections.reverse(items);
         return items;
     }
 
@@ -283,4 +337,21 @@ public class Search {
 
         return paths[tokens.length()];
     }
+
+    /**
+     * Maximum number of suggestions shown for a query.
+     */
+    private static final int MAX_SUGGESTIONS = 21;
+
+    /**
+     * Suggestions recently given, by the user, the object searched and the query.
+     * Null if disabled by setting the TTL to 0.
+     */
+    private static final TimedCache<String,List<SuggestedItem>> SUGGESTION_CACHE;
+
+    static {
+        int ttl = Integer.getInteger(Search.class.getName()+".suggestionCacheTtl",10);
+        SUGGESTION_CACHE = ttl>0 ? new TimedCache<String,List<SuggestedItem>>(
+                Integer.getInteger(Search.class.getName()+".suggestionCacheSize",1000), ttl*1000L, 0) : null;
+    }
 }
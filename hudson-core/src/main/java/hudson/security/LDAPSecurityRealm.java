@@ -34,6 +34,7 @@ import hudson.model.User;
 import hudson.tasks.MailAddressResolver;
 import hudson.util.FormValidation;
 import hudson.util.Scrambler;
+import hudson.util.TimedCache;
 import hudson.util.spring.BeanBuilder;
 import org.acegisecurity.AuthenticationManager;
 import org.acegisecurity.GrantedAuthority;
@@ -72,6 +73,7 @@ import java.net.UnknownHostException;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -272,13 +274,31 @@ public class LDAPSecurityRealm extends AbstractPasswordBasedSecurityRealm {
      */
     private final String managerPassword;
 
+    /**
+     * Configuration of the user/group lookup cache. Null if caching is disabled.
+     *
+     * @since 2.1.0
+     */
+    private final CacheConfiguration cache;
+
     /**
      * Created in {@link #createSecurityComponents()}. Can be used to connect to LDAP.
      */
     private transient LdapTemplate ldapTemplate;
 
-    @DataBoundConstructor
+    /**
+     * Created in {@link #createSecurityComponents()} if {@link #cache} is configured.
+     * Keyed by the user name and the group name respectively.
+     */
+    private transient TimedCache<String,LdapUserDetails> userDetailsCache;
+    private transient TimedCache<String,String> groupCache;
+
     public LDAPSecurityRealm(String server, String rootDN, String userSearchBase, String userSearch, String groupSearchBase, String managerDN, String managerPassword) {
+        this(server,rootDN,userSearchBase,userSearch,groupSearchBase,managerDN,managerPassword,null);
+    }
+
+    @DataBoundConstructor
+    public LDAPSecurityRealm(String server, String rootDN, String userSearchBase, String userSearch, String groupSearchBase, String managerDN, String managerPassword, CacheConfiguration cache) {
         this.server = server.trim();
         this.managerDN = fixEmpty(managerDN);
         this.managerPassword = Scrambler.scramble(fixEmpty(managerPassword));
@@ -288,6 +308,7 @@ public class LDAPSecurityRealm extends AbstractPasswordBasedSecurityRealm {
         userSearch = fixEmptyAndTrim(userSearch);
         this.userSearch = userSearch!=null ? userSearch : "uid={0}";
         this.groupSearchBase = fixEmptyAndTrim(groupSearchBase);
+        this.cache = cache;
     }
 
     public String getServerUrl() {
@@ -335,6 +356,28 @@ public class LDAPSecurityRealm extends AbstractPasswordBasedSecurityRealm {
         return getServerUrl()+'/'+ fixNull(rootDN);
     }
 
+    public CacheConfiguration getCache() {
+        return cache;
+    }
+
+    /**
+     * Cache of {@link #loadUserByUsername(String)}, exposed for the statistics on the configuration page.
+     *
+     * @return null if caching is disabled or the realm hasn't been activated yet.
+     */
+    public TimedCache<String,LdapUserDetails> getUserDetailsCache() {
+        return userDetailsCache;
+    }
+
+    /**
+     * Cache of {@link #loadGroupByGroupname(String)}.
+     *
+     * @return null if caching is disabled or the realm hasn't been activated yet.
+     */
+    public TimedCache<String,String> getGroupCache() {
+        return groupCache;
+    }
+
     public SecurityComponents createSecurityComponents() {
         Binding binding = new Binding();
         binding.setVariable("instance", this);
@@ -345,9 +388,17 @@ public class LDAPSecurityRealm extends AbstractPasswordBasedSecurityRealm {
 
         ldapTemplate = new LdapTemplate(findBean(InitialDirContextFactory.class, appContext));
 
+        if (cache!=null) {
+            userDetailsCache = cache.createCache();
+            groupCache = cache.createCache();
+        } else {
+            userDetailsCache = null;
+            groupCache = null;
+        }
+
         return new SecurityComponents(
             findBean(AuthenticationManager.class, appContext),
-            new LDAPUserDetailsService(appContext));
+            new LDAPUserDetailsService(appContext,userDetailsCache));
     }
 
     /**
@@ -390,21 +441,67 @@ public class LDAPSecurityRealm extends AbstractPasswordBasedSecurityRealm {
             throw new UsernameNotFoundException(groupname + " is missing prefix: " + prefix);
         groupname = groupname.substring(prefix.length());
 
-        // TODO: obtain a DN instead so that we can obtain multiple attributes later
-        String searchBase = groupSearchBase != null ? groupSearchBase : "";
-        final Set<String> groups = (Set<String>)ldapTemplate.searchForSingleAttributeValues(searchBase, GROUP_SEARCH,
-                new String[]{groupname}, "cn");
+        final String name;
+        TimedCache<String,String> groupCache = this.groupCache;
+        TimedCache.Entry<String> cached = groupCache!=null ? groupCache.get(groupname) : null;
+        if (cached!=null) {
+            if (cached.isMissing())
+                throw new UsernameNotFoundException(groupname);
+            name = cached.getValue();
+        } else {
+            // TODO: obtain a DN instead so that we can obtain multiple attributes later
+            String searchBase = groupSearchBase != null ? groupSearchBase : "";
+            Set<String> groups = (Set<String>)ldapTemplate.searchForSingleAttributeValues(searchBase, GROUP_SEARCH,
+                    new String[]{groupname}, "cn");
+
+            if(groups.isEmpty()) {
+                if (groupCache!=null)   groupCache.putMissing(groupname);
+                throw new UsernameNotFoundException(groupname);
+            }
 
-        if(groups.isEmpty())
-            throw new UsernameNotFoundException(groupname);
+            name = groups.iterator().next();
+            if (groupCache!=null)   groupCache.put(groupname,name);
+        }
 
         return new GroupDetails() {
             public String getName() {
-                return groups.iterator().next();
+                return name;
             }
         };
     }
 
+    /**
+     * Configures the cache of user and group lookups, so that clients that authenticate on every request
+     * (such as API clients using basic auth) don't end up querying LDAP for the same information over and over.
+     *
+     * @since 2.1.0
+     */
+    public static final class CacheConfiguration {
+        /**
+         * Maximum number of users (and separately, groups) to keep.
+         */
+        public final int size;
+        /**
+         * Number of seconds a lookup result stays valid.
+         */
+        public final int ttl;
+        /**
+         * Number of seconds a "no such user/group" result stays valid. 0 to not cache such results.
+         */
+        public final int negativeTtl;
+
+        @DataBoundConstructor
+        public CacheConfiguration(int size, int ttl, int negativeTtl) {
+            this.size = Math.max(size,1);
+            this.ttl = Math.max(ttl,0);
+            this.negativeTtl = Math.max(negativeTtl,0);
+        }
+
+        <V> TimedCache<String,V> createCache() {
+            return new TimedCache<String,V>(size, TimeUnit.SECONDS.toMillis(ttl), TimeUnit.SECONDS.toMillis(negativeTtl));
+        }
+    }
+
     public static class LDAPUserDetailsService implements UserDetailsService {
         public final LdapUserSearch ldapSearch;
         public final LdapAuthoritiesPopulator authoritiesPopulator;
@@ -414,18 +511,56 @@ public class LDAPSecurityRealm extends AbstractPasswordBasedSecurityRealm {
          * reuse a session, this helps keeping the memory consumption low.
          */
         private final LRUMap attributesCache = new LRUMap(32);
+        /**
+         * Caches the fully populated user details, including misses. Null if caching is disabled.
+         */
+        private final TimedCache<String,LdapUserDetails> cache;
 
         LDAPUserDetailsService(WebApplicationContext appContext) {
-            ldapSearch = findBean(LdapUserSearch.class, appContext);
-            authoritiesPopulator = findBean(LdapAuthoritiesPopulator.class, appContext);
+            this(appContext,null);
+        }
+
+        LDAPUserDetailsService(WebApplicationContext appContext, TimedCache<String,LdapUserDetails> cache) {
+            this(findBean(LdapUserSearch.class, appContext), findBean(LdapAuthoritiesPopulator.class, appContext), cache);
         }
 
         LDAPUserDetailsService(LdapUserSearch ldapSearch, LdapAuthoritiesPopulator authoritiesPopulator) {
+            this(ldapSearch,authoritiesPopulator,null);
+        }
+
+        LDAPUserDetailsService(LdapUserSearch ldapSearch, LdapAuthoritiesPopulator authoritiesPopulator, TimedCache<String,LdapUserDetails> cache) {
             this.ldapSearch = ldapSearch;
             this.authoritiesPopulator = authoritiesPopulator;
+            this.cache = cache;
         }
 
         public LdapUserDetails loadUserByUsername(String username) throws UsernameNotFoundException, DataAccessException {
+            if (cache==null)
+                return search(username);
+
+            TimedCache.Entry<LdapUserDetails> cached = cache.get(username);
+            if (cached!=null) {
+                if (cached.isMissing())
+                    throw new UsernameNotFoundException(username);
+                return cached.getValue();
+            }
+
+            LdapUserDetails ldapUser;
+            try {
+                ldapUser = search(username);
+            } catch (UserMayOrMayNotExistException e) {
+                // LDAP is in trouble. don't remember this as a miss
+                throw e;
+            } catch (UsernameNotFoundException e) {
+                cache.putMissing(username);
+                throw e;
+            }
+            if (ldapUser!=null)
+                cache.put(username,ldapUser);
+            return ldapUser;
+        }
+
+        private LdapUserDetails search(String username) throws UsernameNotFoundException, DataAccessException {
             try {
                 LdapUserDetails ldapUser = ldapSearch.searchForUser(username);
                 // LdapUserSearch does not populate granted authorities (group search).
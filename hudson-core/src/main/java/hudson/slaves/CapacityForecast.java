@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.slaves;
+
+import hudson.model.Queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Estimates how many more executors a {@link hudson.model.Label} needs, from what's in the queue
+ * and how soon the existing executors free up.
+ *
+ * <p>
+ * Queued items are handed out, in the queue order, to the executors that become available the earliest,
+ * using {@link Queue.Task#getEstimatedDuration()} of the builds to tell when an executor is free again.
+ * An item that can't start within the time it takes to provision a new node is counted as a shortfall.
+ * On top of that, a number of idle executors can be kept around as a warm pool, to absorb the next burst
+ * without waiting for a node to come up.
+ *
+ * @see NodeProvisioner
+ * @since 2.1.0
+ */
+public final class CapacityForecast {
+    private final long horizon;
+    private final int warmPool;
+
+    private final List<Long> queued = new ArrayList<Long>();
+    private final List<Long> busy = new ArrayList<Long>();
+    private int idle;
+    private int planned;
+
+    /**
+     * @param horizon
+     *      Milliseconds it takes for a newly provisioned executor to become available.
+     * @param warmPool
+     *      Number of executors that should be idle once the queue is taken care of.
+     */
+    public CapacityForecast(long horizon, int warmPool) {
+        this.horizon = horizon;
+        this.warmPool = warmPool;
+    }
+
+    /**
+     * Adds an item waiting for an executor.
+     *
+     * @param estimatedDuration
+     *      How long the item is expected to keep the executor, or -1 if not known.
+     */
+    public CapacityForecast queued(long estimatedDuration) {
+        queued.add(estimatedDuration);
+        return this;
+    }
+
+    /**
+     * Adds an executor that's running a build.
+     *
+     * @param remaining
+     *      Estimated milliseconds until the build completes, or -1 if not known.
+     */
+    public CapacityForecast busy(long remaining) {
+        busy.add(remaining);
+        return this;
+    }
+
+    public CapacityForecast idle(int n) {
+        idle += n;
+        return this;
+    }
+
+    /**
+     * Adds executors that are being provisioned already.
+     */
+    public CapacityForecast planned(int n) {
+        planned += n;
+        return this;
+    }
+
+    /**
+     * Number of additional executors to provision now.
+     */
+    public int computeShortfall() {
+        // times at which each executor becomes available. idle and planned ones are available right away,
+        // as the planned ones will be up before anything we launch now.
+        PriorityQueue<Long> available = new PriorityQueue<Long>();
+        for (int i=0; i<idle+planned; i++)
+            available.add(0L);
+        for (Long r : busy) {
+            // a build that's overdue or of unknown length isn't going to free up anything we can count on
+            if (r>=0 && r<horizon)
+                available.add(r);
+        }
+
+        int shortfall = 0;
+        for (Long d : queued) {
+            Long t = available.poll();
+            if (t==null) {
+                // nothing frees up before a new executor would be ready
+                shortfall++;
+                continue;
+            }
+            // this item keeps the executor until it's done
+            long end = d<0 ? horizon : t+d;
+            if (end<horizon)
+                available.add(end);
+        }
+
+        int free = 0;
+        for (Long t : available)
+            if (t==0)   free++;
+        return shortfall + Math.max(0, warmPool-free);
+    }
+}
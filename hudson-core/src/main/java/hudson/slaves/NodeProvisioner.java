@@ -23,8 +23,11 @@
  */
 package hudson.slaves;
 
+import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.LoadStatistics;
 import hudson.model.Node;
+import hudson.model.Queue;
 import hudson.model.Hudson;
 import hudson.model.MultiStageTimeSeries;
 import hudson.model.Label;
@@ -32,6 +35,8 @@ import hudson.model.PeriodicWork;
 import static hudson.model.LoadStatistics.DECAY;
 import hudson.model.MultiStageTimeSeries.TimeScale;
 import hudson.Extension;
+import hudson.triggers.SafeTimerTask;
+import hudson.triggers.Trigger;
 
 import java.awt.Color;
 import java.util.concurrent.Future;
@@ -40,6 +45,7 @@ import java.util.List;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.io.IOException;
@@ -48,6 +54,11 @@ import java.io.IOException;
  * Uses the {@link LoadStatistics} and determines when we need to allocate
  * new {@link Node}s through {@link Cloud}.
  *
+ * <p>
+ * When {@link #FORECAST} is on, the decision is instead made from a {@link CapacityForecast}
+ * of the buildable items, and it's also reviewed as soon as the queue changes, instead of
+ * waiting for the next tick and the moving averages to catch up.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class NodeProvisioner {
@@ -92,8 +103,10 @@ public class NodeProvisioner {
      *
      * This is used to filter out high-frequency components from the planned capacity, so that
      * the comparison with other low-frequency only variables won't leave spikes.
+     * Only sampled on the clock of {@link NodeProvisionerInvoker}, so that reviews requested
+     * by the queue don't speed up its decay.
      */
-    private final MultiStageTimeSeries plannedCapacitiesEMA =
+    /*package*/ final MultiStageTimeSeries plannedCapacitiesEMA =
             new MultiStageTimeSeries(Messages._NodeProvisioner_EmptyString(),Color.WHITE,0,DECAY);
 
     public NodeProvisioner(Label label, LoadStatistics loadStatistics) {
@@ -104,8 +117,11 @@ public class NodeProvisioner {
     /**
      * Periodically invoked to keep track of the load.
      * Launches additional nodes if necessary.
+     *
+     * @param tick
+     *      true if this is the periodic invocation, false if this is a review suggested in between.
      */
-    private void update() {
+    private synchronized void update(boolean tick) {
         Hudson hudson = Hudson.getInstance();
 
         // clean up the cancelled launch activity, then count the # of executors that we are about to bring up.
@@ -127,7 +143,13 @@ public class NodeProvisioner {
             } else
                 plannedCapacity += f.numExecutors;
         }
-        plannedCapacitiesEMA.update(plannedCapacity);
+        if (tick)
+            plannedCapacitiesEMA.update(plannedCapacity);
+
+        if (FORECAST) {
+            provisionByForecast(hudson, (int)plannedCapacity);
+            return;
+        }
 
         /*
             Here we determine how many additional slaves we need to keep up with the load (if at all),
@@ -197,6 +219,80 @@ public class NodeProvisioner {
         }
     }
 
+    /**
+     * Provisions as many executors as {@link CapacityForecast} says we are short of.
+     */
+    private void provisionByForecast(Hudson hudson, int plannedCapacity) {
+        CapacityForecast f = new CapacityForecast(LAUNCH_TIME, label==null ? WARM_POOL : 0);
+        for (Queue.BuildableItem bi : hudson.getQueue().getBuildableItems())
+            if (bi.task.getAssignedLabel()==label)
+                f.queued(bi.task.getEstimatedDuration());
+        if (label==null) {
+            // nodes reserved for tied jobs never take unlabeled ones
+            for (Computer c : hudson.getComputers()) {
+                Node n = c.getNode();
+                if (n!=null && n.getMode()!=Node.Mode.EXCLUSIVE)
+                    addCapacity(f,c);
+            }
+        } else {
+            for (Node n : label.getNodes())
+                addCapacity(f,n.toComputer());
+        }
+        f.planned(plannedCapacity);
+
+        int shortfall = f.computeShortfall();
+        if (shortfall<=0)   return;
+        LOGGER.fine("Forecast shortfall of "+shortfall+" executors for "+(label==null ? "unlabeled jobs" : label)+". (planned capacity="+plannedCapacity+")");
+        for (Cloud c : hudson.clouds) {
+            if (shortfall<=0)   break;
+            if (!c.canProvision(label)) continue;
+            Collection<PlannedNode> additionalCapacities = c.provision(label, shortfall);
+            for (PlannedNode ac : additionalCapacities) {
+                shortfall -= ac.numExecutors;
+                LOGGER.info("Started provisioning "+ac.displayName+" from "+c.name+" with "+ac.numExecutors+" executors. Remaining shortfall:"+shortfall);
+            }
+            pendingLaunches.addAll(additionalCapacities);
+        }
+    }
+
+    private static void addCapacity(CapacityForecast f, Computer c) {
+        if (c==null || !(c.isOnline() || c.isConnecting()))    return;
+        for (Executor e : c.getExecutors()) {
+            if (e.isIdle())
+                f.idle(1);
+            else
+                f.busy(e.getEstimatedRemainingTimeMillis());
+        }
+    }
+
+    /**
+     * Asks for all the provisioners to take another look at the load soon, because the queue has changed.
+     * Only effective when {@link #FORECAST} is on. Multiple requests made in a short period of time
+     * result in a single review.
+     *
+     * @since 2.1.0
+     */
+    public static void suggestReview() {
+        if (!FORECAST || !reviewScheduled.compareAndSet(false,true))
+            return;
+        Trigger.timer.schedule(new SafeTimerTask() {
+            protected void doRun() {
+                reviewScheduled.set(false);
+                updateAll(false);
+            }
+        }, REVIEW_DELAY);
+    }
+
+    private static final AtomicBoolean reviewScheduled = new AtomicBoolean();
+
+    private static void updateAll(boolean tick) {
+        Hudson h = Hudson.getInstance();
+        if (h==null)    return;
+        h.overallNodeProvisioner.update(tick);
+        for( Label l : h.getLabels() )
+            l.nodeProvisioner.update(tick);
+    }
+
     /**
      * Computes the threshold for triggering an allocation.
      *
@@ -265,10 +361,7 @@ public class NodeProvisioner {
 
         @Override
         protected void doRun() {
-            Hudson h = Hudson.getInstance();
-            h.overallNodeProvisioner.update();
-            for( Label l : h.getLabels() )
-                l.nodeProvisioner.update();
+            updateAll(true);
         }
     }
 
@@ -277,6 +370,26 @@ public class NodeProvisioner {
     private static final float MARGIN0 = Math.max(MARGIN, getFloatSystemProperty(NodeProvisioner.class.getName()+".MARGIN0",0.5f));
     private static final float MARGIN_DECAY = getFloatSystemProperty(NodeProvisioner.class.getName()+".MARGIN_DECAY",0.5f);
 
+    /**
+     * Provision by {@link CapacityForecast} instead of the moving averages of the load.
+     *
+     * @since 2.1.0
+     */
+    public static boolean FORECAST = Boolean.getBoolean(NodeProvisioner.class.getName()+".forecast");
+    /**
+     * Milliseconds it takes for a newly provisioned node to start building, used by {@link #FORECAST}.
+     */
+    public static long LAUNCH_TIME = Long.getLong(NodeProvisioner.class.getName()+".launchTime",60*1000);
+    /**
+     * Number of idle executors for unlabeled jobs that {@link #FORECAST} keeps provisioned.
+     */
+    public static int WARM_POOL = Integer.getInteger(NodeProvisioner.class.getName()+".warmPool",0);
+    /**
+     * Milliseconds to wait after a queue change before reviewing, so that a burst of changes
+     * is handled at once.
+     */
+    private static final long REVIEW_DELAY = Long.getLong(NodeProvisioner.class.getName()+".reviewDelay",500);
+
     // TODO: picker should be selectable
     private static final TimeScale TIME_SCALE = TimeScale.SEC10;
 
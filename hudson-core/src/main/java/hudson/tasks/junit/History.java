@@ -24,6 +24,7 @@
 package hudson.tasks.junit;
 
 import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
 import hudson.model.Hudson;
 import hudson.tasks.test.TestObject;
 import hudson.tasks.test.TestResult;
@@ -50,6 +51,7 @@ import org.jfree.chart.renderer.category.StackedAreaRenderer;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.ui.RectangleInsets;
 import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
 
 /**
  * History of {@link hudson.tasks.test.TestObject} over time.
@@ -165,6 +167,15 @@ public class History {
 
         protected abstract DataSetBuilder<String, ChartLabel> createDataSet();
 
+        @Override
+        protected String getCacheKey() {
+            AbstractProject<?,?> p = testObject.getOwner().getParent();
+            AbstractBuild<?,?> last = p.getLastCompletedBuild();
+            StaplerRequest req = Stapler.getCurrentRequest();
+            return "testHistory/"+p.getFullName()+testObject.getUrl()+'/'+yLabel+'/'+req.getParameter("start")+'-'+req.getParameter("end")
+                    +'/'+(last!=null ? last.getNumber() : 0)+'/'+p.getBuilds().size();
+        }
+
         protected JFreeChart createGraph() {
             final CategoryDataset dataset = createDataSet().build();
 
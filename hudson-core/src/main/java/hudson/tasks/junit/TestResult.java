@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -140,9 +141,38 @@ public final class TestResult extends MetaTabulatedResult {
         String[] includedFiles = results.getIncludedFiles();
         File baseDir = results.getBasedir();
 
-        boolean parsed=false;
+        if(parseNew(buildTime, baseDir, Arrays.asList(includedFiles))==0) {
+            long localTime = System.currentTimeMillis();
+            if(localTime < buildTime-1000) /*margin*/
+                // build time is in the the future. clock on this slave must be running behind
+                throw new AbortException(
+                    "Clock on this slave is out of sync with the master, and therefore \n" +
+                    "I can't figure out what test results are new and what are old.\n" +
+                    "Please keep the slave clock in sync with the master.");
+
+            File f = new File(baseDir,includedFiles[0]);
+            throw new AbortException(
+                String.format(
+                "Test reports were found but none of them are new. Did tests run? \n"+
+                "For example, %s is %s old\n", f,
+                Util.getTimeSpanString(buildTime-f.lastModified())));
+        }
+    }
+
+    /**
+     * Collect reports from the given files, while filtering out all files that were created before the given time.
+     * Unlike {@link #parse(long, DirectoryScanner)}, it's not an error if none of them are new.
+     *
+     * @param reportFiles
+     *      Paths of the report files, relative to {@code baseDir}.
+     * @return
+     *      the number of files that were parsed, as opposed to filtered out.
+     * @since 2.1.0
+     */
+    public int parseNew(long buildTime, File baseDir, Collection<String> reportFiles) throws IOException {
+        int parsed=0;
 
-        for (String value : includedFiles) {
+        for (String value : reportFiles) {
             File reportFile = new File(baseDir, value);
             // only count files that were actually updated during this build
             if ( (buildTime-3000/*error margin*/ <= reportFile.lastModified()) || !checkTimestamps) {
@@ -154,26 +184,22 @@ public final class TestResult extends MetaTabulatedResult {
                 } else {
                     parse(reportFile);
                 }
-                parsed = true;
+                parsed++;
             }
         }
 
-        if(!parsed) {
-            long localTime = System.currentTimeMillis();
-            if(localTime < buildTime-1000) /*margin*/
-                // build time is in the the future. clock on this slave must be running behind
-                throw new AbortException(
-                    "Clock on this slave is out of sync with the master, and therefore \n" +
-                    "I can't figure out what test results are new and what are old.\n" +
-                    "Please keep the slave clock in sync with the master.");
+        return parsed;
+    }
 
-            File f = new File(baseDir,includedFiles[0]);
-            throw new AbortException(
-                String.format(
-                "Test reports were found but none of them are new. Did tests run? \n"+
-                "For example, %s is %s old\n", f,
-                Util.getTimeSpanString(buildTime-f.lastModified())));
-        }
+    /**
+     * Adds the suites of another result that haven't been added yet, as if its report files were parsed into this one.
+     * Like with {@link #parse(File)}, {@link #freeze(TestResultAction)} needs to be called afterward.
+     *
+     * @since 2.1.0
+     */
+    public void merge(TestResult other) {
+        for (SuiteResult sr : other.suites)
+            add(sr);
     }
 
     private void add(SuiteResult sr) {
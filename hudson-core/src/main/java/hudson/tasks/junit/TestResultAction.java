@@ -87,6 +87,18 @@ public class TestResultAction extends AbstractTestResultAction<TestResultAction>
         this.result = new WeakReference<TestResult>(result);
     }
 
+    /**
+     * Adds the suites of the given result to the current one, and persists the combined result.
+     * Used to record test reports as they come in, without sending the whole result every time.
+     *
+     * @since 2.1.0
+     */
+    public synchronized void mergeResult(TestResult additional, BuildListener listener) {
+        TestResult r = getResult();
+        r.merge(additional);
+        setResult(r, listener);
+    }
+
     private XmlFile getDataFile() {
         return new XmlFile(XSTREAM,new File(owner.getRootDir(), "junitResult.xml"));
     }
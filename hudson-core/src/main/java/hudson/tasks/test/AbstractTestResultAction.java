@@ -205,7 +205,7 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
         if(req.checkIfModified(owner.getTimestamp(),rsp))
             return;
 
-        ChartUtil.generateGraph(req,rsp,createChart(req,buildDataSet(req)),calcDefaultSize());
+        new TrendGraph(req,calcDefaultSize()).doPng(req,rsp);
     }
 
     /**
@@ -214,7 +214,31 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
     public void doGraphMap( StaplerRequest req, StaplerResponse rsp) throws IOException {
         if(req.checkIfModified(owner.getTimestamp(),rsp))
             return;
-        ChartUtil.generateClickableMap(req,rsp,createChart(req,buildDataSet(req)),calcDefaultSize());
+        new TrendGraph(req,calcDefaultSize()).doMap(req,rsp);
+    }
+
+    /**
+     * Test result trend up to this build, which is cached in {@link ChartCache}.
+     */
+    private final class TrendGraph extends Graph {
+        private final StaplerRequest req;
+
+        TrendGraph(StaplerRequest req, Area size) {
+            super(-1,size.width,size.height);
+            this.req = req;
+        }
+
+        @Override
+        protected String getCacheKey() {
+            return "testTrend/"+owner.getParent().getFullName()+'/'+owner.getNumber()+'/'+getUrlName()
+                    +'/'+Boolean.valueOf(req.getParameter("failureOnly"))+'/'+getRelPath(req)
+                    +'/'+owner.getParent().getBuilds().size();
+        }
+
+        @Override
+        protected JFreeChart createGraph() {
+            return createChart(req,buildDataSet(req));
+        }
     }
 
     /**
@@ -36,6 +36,7 @@ import hudson.model.Item;
 import hudson.model.Project;
 import hudson.model.SCMedItem;
 import hudson.model.AdministrativeMonitor;
+import hudson.scm.SCM;
 import hudson.util.FlushProofOutputStream;
 import hudson.util.FormValidation;
 import hudson.util.StreamTaskListener;
@@ -48,11 +49,14 @@ import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
@@ -111,6 +115,103 @@ public class SCMTrigger extends Trigger<SCMedItem> {
         }
     }
 
+    /**
+     * Called by {@link Trigger.Cron} when the crontab matches.
+     *
+     * <p>
+     * Unlike {@link #run()}, the polling is delayed by {@link #getSpreadDelay()}, so that many projects
+     * polling on the same schedule don't all hit the SCM server in the same instant.
+     */
+    /*package*/ void runScheduled() {
+        long delay = getDescriptor().synchronousPolling ? 0 : getSpreadDelay();
+        if (delay<=0 || timer==null) {
+            run();
+            return;
+        }
+        timer.schedule(new SafeTimerTask() {
+            protected void doRun() {
+                SCMTrigger.this.run();
+            }
+        }, delay);
+    }
+
+    /**
+     * Computes how long to delay the scheduled polling of this project, in milliseconds.
+     *
+     * <p>
+     * The delay is a stable hash of {@link SCM#getPollingKey(AbstractProject) the polled location}
+     * (or the project name if the SCM doesn't tell us), spread over the smaller of
+     * {@link DescriptorImpl#getPollingSpread()} and the polling period. Projects that poll the same
+     * location therefore poll at the same moment, which allows their pollings to be coalesced, while
+     * unrelated projects are spread apart.
+     *
+     * @since 2.1.0
+     */
+    public long getSpreadDelay() {
+        long window = Math.min(getDescriptor().getPollingSpread()*1000L, getPollingPeriod());
+        if (window<1000)    return 0;
+
+        Object key = null;
+        SCM scm = job.getScm();
+        if (scm!=null && !scm.requiresWorkspaceForPolling())
+            key = scm.getPollingKey(job.asProject());
+        if (key==null)
+            key = job.getFullName();
+
+        return ((key.hashCode()&0x7FFFFFFF) % (window/1000))*1000;
+    }
+
+    /**
+     * Time from now until the crontab fires again after the next minute, in milliseconds.
+     */
+    private long getPollingPeriod() {
+        if (tabs==null) return 0;
+        Calendar cal = new GregorianCalendar();
+        cal.set(Calendar.SECOND,0);
+        cal.set(Calendar.MILLISECOND,0);
+        long now = cal.getTimeInMillis();
+        cal.add(Calendar.MINUTE,1);
+        Calendar next = tabs.ceil(cal);
+        return next==null ? 0 : next.getTimeInMillis()-now;
+    }
+
+    /**
+     * How long the last polling waited in the queue for a polling thread, in milliseconds.
+     * -1 if no polling has completed since Hudson started.
+     *
+     * @since 2.1.0
+     */
+    public long getLastQueueWait() {
+        return statistics.getLastQueueWait();
+    }
+
+    /**
+     * How long the last polling took, in milliseconds.
+     * -1 if no polling has completed since Hudson started.
+     *
+     * @since 2.1.0
+     */
+    public long getLastPollingDuration() {
+        return statistics.getLastDuration();
+    }
+
+    /**
+     * Statistics of the pollings of this project since Hudson started.
+     *
+     * @since 2.1.0
+     */
+    public PollingStatistics getStatistics() {
+        return statistics;
+    }
+
+    private transient PollingStatistics statistics = new PollingStatistics();
+
+    @Override
+    protected Object readResolve() throws ObjectStreamException {
+        statistics = new PollingStatistics();
+        return super.readResolve();
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl)super.getDescriptor();
@@ -152,6 +253,19 @@ public class SCMTrigger extends Trigger<SCMedItem> {
          */
         private int maximumThreads;
 
+        /**
+         * Max number of seconds to delay scheduled pollings by, to spread them over time.
+         * Null for the default, 0 to disable.
+         *
+         * @see SCMTrigger#getSpreadDelay()
+         */
+        private Integer pollingSpread;
+
+        /**
+         * Statistics of all the pollings since Hudson started.
+         */
+        private transient final PollingStatistics statistics = new PollingStatistics();
+
         public DescriptorImpl() {
             load();
             resizeThreadPool();
@@ -181,6 +295,25 @@ public class SCMTrigger extends Trigger<SCMedItem> {
             AdministrativeMonitor.all().get(AdministrativeMonitorImpl.class).on = isClogged();
         }
 
+        /**
+         * Statistics of all the pollings since Hudson started.
+         *
+         * @since 2.1.0
+         */
+        public PollingStatistics getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * Number of pollings that reused the result of another project polling the same location,
+         * instead of contacting the SCM themselves.
+         *
+         * @since 2.1.0
+         */
+        public long getSharedPollingCount() {
+            return SCM.getSharedPollingCount();
+        }
+
         /**
          * Gets the snapshot of {@link Runner}s that are performing polling.
          */
@@ -226,6 +359,21 @@ public class SCMTrigger extends Trigger<SCMedItem> {
             resizeThreadPool();
         }
 
+        /**
+         * Gets the number of seconds over which scheduled pollings are spread.
+         *
+         * @return
+         *      0 if pollings run as soon as the crontab fires.
+         * @since 2.1.0
+         */
+        public int getPollingSpread() {
+            return pollingSpread!=null ? pollingSpread : DEFAULT_POLLING_SPREAD;
+        }
+
+        public void setPollingSpread(int seconds) {
+            pollingSpread = Math.max(seconds,0);
+        }
+
         /**
          * Update the {@link ExecutorService} instance.
          */
@@ -242,6 +390,12 @@ public class SCMTrigger extends Trigger<SCMedItem> {
             else
                 setPollingThreadCount(Integer.parseInt(t));
 
+            t = json.optString("pollingSpread",null);
+            if(t==null || t.length()==0)
+                pollingSpread = null;
+            else
+                setPollingSpread(Integer.parseInt(t));
+
             // Save configuration
             save();
 
@@ -253,6 +407,12 @@ public class SCMTrigger extends Trigger<SCMedItem> {
                 return FormValidation.ok();
             return FormValidation.validateNonNegativeInteger(value);
         }
+
+        public FormValidation doCheckPollingSpread(@QueryParameter String value) {
+            if (value != null && "".equals(value.trim()))
+                return FormValidation.ok();
+            return FormValidation.validateNonNegativeInteger(value);
+        }
     }
 
     @Extension
@@ -340,6 +500,35 @@ public class SCMTrigger extends Trigger<SCMedItem> {
             return "scmPollLog";
         }
 
+        /**
+         * Human readable string of how long the last polling waited for a thread, or null if it hasn't run yet.
+         *
+         * @since 2.1.0
+         */
+        public String getLastQueueWait() {
+            long t = statistics.getLastQueueWait();
+            return t<0 ? null : Util.getTimeSpanString(t);
+        }
+
+        /**
+         * Human readable string of how long the last polling took, or null if it hasn't run yet.
+         *
+         * @since 2.1.0
+         */
+        public String getLastPollingDuration() {
+            long t = statistics.getLastDuration();
+            return t<0 ? null : Util.getTimeSpanString(t);
+        }
+
+        /**
+         * Statistics of the pollings of this project since Hudson started.
+         *
+         * @since 2.1.0
+         */
+        public PollingStatistics getStatistics() {
+            return statistics;
+        }
+
         public String getLog() throws IOException {
             return Util.loadFile(getLogFile());
         }
@@ -365,6 +554,11 @@ public class SCMTrigger extends Trigger<SCMedItem> {
          */
         private volatile long startTime;
 
+        /**
+         * When was the polling submitted to the queue?
+         */
+        private final long queuedTime = System.currentTimeMillis();
+
         private Action[] additionalActions;
 
         public Runner() {
@@ -407,6 +601,15 @@ public class SCMTrigger extends Trigger<SCMedItem> {
             return Util.getTimeSpanString(System.currentTimeMillis()-startTime);
         }
 
+        /**
+         * Human readable string of how long this polling waited for a thread.
+         *
+         * @since 2.1.0
+         */
+        public String getQueueWait() {
+            return Util.getTimeSpanString(startTime-queuedTime);
+        }
+
         private boolean runPolling() {
             try {
                 // to make sure that the log file contains up-to-date text,
@@ -417,8 +620,12 @@ public class SCMTrigger extends Trigger<SCMedItem> {
                     PrintStream logger = listener.getLogger();
                     long start = System.currentTimeMillis();
                     logger.println("Started on "+ DateFormat.getDateTimeInstance().format(new Date()));
+                    logger.println("Waited "+ Util.getTimeSpanString(start-queuedTime)+" for a polling thread");
                     boolean result = job.poll(listener).hasChanges();
-                    logger.println("Done. Took "+ Util.getTimeSpanString(System.currentTimeMillis()-start));
+                    long end = System.currentTimeMillis();
+                    statistics.record(start-queuedTime, end-start);
+                    getDescriptor().statistics.record(start-queuedTime, end-start);
+                    logger.println("Done. Took "+ Util.getTimeSpanString(end-start));
                     if(result)
                         logger.println("Changes found");
                     else
@@ -535,6 +742,88 @@ public class SCMTrigger extends Trigger<SCMedItem> {
         }
     }
 
+    /**
+     * Counts pollings and how long they waited and took, to tell whether
+     * the polling threads keep up and how much load polling puts on the SCM.
+     *
+     * @since 2.1.0
+     */
+    public static final class PollingStatistics {
+        private final long since = System.currentTimeMillis();
+        private long count;
+        private long totalQueueWait;
+        private long totalDuration;
+        private long lastQueueWait = -1;
+        private long lastDuration = -1;
+
+        /*package*/ synchronized void record(long queueWait, long duration) {
+            count++;
+            totalQueueWait += queueWait;
+            totalDuration += duration;
+            lastQueueWait = queueWait;
+            lastDuration = duration;
+        }
+
+        /**
+         * Number of pollings completed.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Average number of pollings per hour.
+         */
+        public synchronized double getRatePerHour() {
+            long elapsed = Math.max(System.currentTimeMillis()-since, 1);
+            return count*(double)TimeUnit2.HOURS.toMillis(1)/elapsed;
+        }
+
+        /**
+         * Average time a polling waited for a polling thread, in milliseconds. -1 if none completed.
+         */
+        public synchronized long getAverageQueueWait() {
+            return count==0 ? -1 : totalQueueWait/count;
+        }
+
+        /**
+         * Average time a polling took, in milliseconds. -1 if none completed.
+         */
+        public synchronized long getAverageDuration() {
+            return count==0 ? -1 : totalDuration/count;
+        }
+
+        public synchronized long getLastQueueWait() {
+            return lastQueueWait;
+        }
+
+        public synchronized long getLastDuration() {
+            return lastDuration;
+        }
+
+        /**
+         * {@link #getAverageQueueWait()} as a human readable string, or null if no polling completed.
+         */
+        public String getAverageQueueWaitString() {
+            long t = getAverageQueueWait();
+            return t<0 ? null : Util.getTimeSpanString(t);
+        }
+
+        /**
+         * {@link #getAverageDuration()} as a human readable string, or null if no polling completed.
+         */
+        public String getAverageDurationString() {
+            long t = getAverageDuration();
+            return t<0 ? null : Util.getTimeSpanString(t);
+        }
+    }
+
+    /**
+     * Default for {@link DescriptorImpl#getPollingSpread()}, in seconds.
+     * 0, meaning scheduled pollings run as soon as the crontab fires, as they always did.
+     */
+    public static int DEFAULT_POLLING_SPREAD = Integer.getInteger(SCMTrigger.class.getName()+".defaultPollingSpread", 0);
+
     /**
      * How long is too long for a polling activity to be in the queue?
      */
@@ -185,11 +185,28 @@ public abstract class Trigger<J extends Item> implements Describable<Trigger<?>>
     public static class Cron extends PeriodicWork {
         private final Calendar cal = new GregorianCalendar();
 
+        /**
+         * Total number of minutes that were checked late, because the previous check took
+         * more than a minute or the timer thread was starved.
+         */
+        private volatile long missedMinutes;
+
         public long getRecurrencePeriod() {
             return MIN;
         }
 
+        public long getMissedMinutes() {
+            return missedMinutes;
+        }
+
         public void doRun() {
+            long behind = (new Date().getTime()-cal.getTimeInMillis())/MIN;
+            if (behind>1) {
+                // we normally process one minute per run. anything beyond that was missed
+                missedMinutes += behind-1;
+                LOGGER.warning("Cron thread is "+behind+" minutes behind. Triggers for the missed minutes are fired late");
+            }
+
             while(new Date().getTime()-cal.getTimeInMillis()>1000) {
                 LOGGER.fine("cron checking "+cal.getTime().toLocaleString());
 
@@ -238,26 +255,48 @@ public abstract class Trigger<J extends Item> implements Describable<Trigger<?>>
         }
 
         // Process all triggers, except SCMTriggers when synchronousPolling is set
-        for (AbstractProject<?,?> p : inst.getAllItems(AbstractProject.class)) {
-            for (Trigger t : p.getTriggers().values()) {
-                if (! (t instanceof SCMTrigger && scmd.synchronousPolling)) {
-                    LOGGER.fine("cron checking "+p.getName());
-
-                    if (t.tabs.check(cal)) {
-                        LOGGER.config("cron triggered "+p.getName());
-                        try {
-                            t.run();
-                        } catch (Throwable e) {
-                            // t.run() is a plugin, and some of them throw RuntimeException and other things.
-                            // don't let that cancel the polling activity. report and move on.
-                            LOGGER.log(Level.WARNING, t.getClass().getName()+".run() failed for "+p.getName(),e);
-                        }
-                    }
+        if (SCAN_ALL_PROJECTS) {
+            for (AbstractProject<?,?> p : inst.getAllItems(AbstractProject.class)) {
+                for (Trigger t : p.getTriggers().values()) {
+                    checkTrigger(cal, scmd, p, t);
+                }
+            }
+        } else {
+            // only look at those that the schedule says are due
+            TriggerSchedule schedule = TriggerSchedule.get();
+            if (!schedule.isInitialized())
+                schedule.rebuild();
+            for (TriggerSchedule.Entry e : schedule.poll(cal))
+                checkTrigger(cal, scmd, e.project, e.trigger);
+        }
+    }
+
+    private static void checkTrigger(Calendar cal, SCMTrigger.DescriptorImpl scmd, AbstractProject<?,?> p, Trigger t) {
+        if (! (t instanceof SCMTrigger && scmd.synchronousPolling)) {
+            LOGGER.fine("cron checking "+p.getName());
+
+            if (t.tabs.check(cal)) {
+                LOGGER.config("cron triggered "+p.getName());
+                try {
+                    if (t instanceof SCMTrigger)
+                        ((SCMTrigger)t).runScheduled();
+                    else
+                        t.run();
+                } catch (Throwable e) {
+                    // t.run() is a plugin, and some of them throw RuntimeException and other things.
+                    // don't let that cancel the polling activity. report and move on.
+                    LOGGER.log(Level.WARNING, t.getClass().getName()+".run() failed for "+p.getName(),e);
                 }
             }
         }
     }
 
+    /**
+     * Escape hatch to go back to evaluating every trigger of every project every minute,
+     * instead of consulting {@link TriggerSchedule}.
+     */
+    public static boolean SCAN_ALL_PROJECTS = Boolean.getBoolean(Trigger.class.getName()+".scanAllProjects");
+
     private static final Logger LOGGER = Logger.getLogger(Trigger.class.getName());
 
     /**
@@ -0,0 +1,271 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.triggers;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+/**
+ * Index of the next time each cron-based {@link Trigger} fires, so that the {@link Trigger.Cron}
+ * thread only needs to look at those triggers that are due, instead of evaluating
+ * every crontab of every project every minute.
+ *
+ * <p>
+ * The next fire time of a trigger is computed with {@link hudson.scheduler.CronTabList#ceil(Calendar)}.
+ * When it comes, {@link Trigger#tabs} is checked once more against the time in question, so the set of
+ * triggers that fire is exactly the same as with the full scan. Triggers without a crontab never enter
+ * the index at all.
+ *
+ * <p>
+ * The index is rebuilt when Hudson loads jobs, and updated for a single project when it's saved,
+ * created or deleted.
+ *
+ * @since 2.1.0
+ */
+public final class TriggerSchedule {
+    private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+    private final Map<AbstractProject,List<Entry>> byProject = new IdentityHashMap<AbstractProject,List<Entry>>();
+    private boolean initialized;
+    /**
+     * Minute that the cron thread is going to check next, or 0 if it hasn't started.
+     * Newly indexed triggers are scheduled from this point, so that a cron thread that's catching up
+     * still sees them for the minutes it hasn't checked yet.
+     */
+    private long cursor;
+
+    /**
+     * Re-indexes all the projects.
+     */
+    public void rebuild() {
+        Hudson h = Hudson.getInstance();
+        if (h==null)    return;
+
+        // collect triggers before locking, as AbstractProject.getTriggers() locks the project
+        Map<AbstractProject,Collection<Trigger>> all = new IdentityHashMap<AbstractProject,Collection<Trigger>>();
+        for (AbstractProject<?,?> p : h.getAllItems(AbstractProject.class))
+            all.put(p, triggersOf(p));
+
+        synchronized (this) {
+            queue.clear();
+            byProject.clear();
+            cancellations = 0;
+            for (Map.Entry<AbstractProject,Collection<Trigger>> e : all.entrySet())
+                add(e.getKey(), e.getValue());
+            initialized = true;
+            LOGGER.fine("Indexed "+queue.size()+" triggers of "+all.size()+" projects");
+        }
+    }
+
+    /**
+     * Re-indexes the triggers of the given project, for example after its configuration has changed.
+     */
+    public void update(AbstractProject<?,?> p) {
+        update(p,triggersOf(p));
+    }
+
+    /*package*/ synchronized void update(AbstractProject p, Collection<Trigger> triggers) {
+        cancel(p);
+        add(p,triggers);
+    }
+
+    /**
+     * Drops the given project from the index.
+     */
+    public synchronized void remove(AbstractProject<?,?> p) {
+        cancel(p);
+    }
+
+    /**
+     * Number of triggers currently scheduled.
+     */
+    public synchronized int size() {
+        int n=0;
+        for (List<Entry> entries : byProject.values())
+            n += entries.size();
+        return n;
+    }
+
+    /**
+     * Number of entries in the queue, including cancelled ones that haven't been compacted away yet.
+     */
+    /*package*/ synchronized int queueSize() {
+        return queue.size();
+    }
+
+    /**
+     * False until the first {@link #rebuild()}.
+     */
+    public synchronized boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Removes and returns all the triggers that need to be checked at the given minute,
+     * then schedules them again for the next time they match after that.
+     */
+    synchronized List<Entry> poll(Calendar cal) {
+        long now = truncate(cal.getTimeInMillis());
+        cursor = now+MINUTE;
+
+        List<Entry> r = new ArrayList<Entry>();
+        while (!queue.isEmpty() && queue.peek().next<=now) {
+            Entry e = queue.poll();
+            if (e.cancelled)    continue;
+            r.add(e);
+        }
+        for (Entry e : r) {
+            e.next = nextTime(e.trigger,cursor);
+            if (e.next>0)   queue.add(e);
+        }
+        return r;
+    }
+
+    private void add(AbstractProject p, Collection<Trigger> triggers) {
+        long from = cursor!=0 ? cursor : truncate(System.currentTimeMillis());
+        List<Entry> entries = new ArrayList<Entry>(triggers.size());
+        for (Trigger t : triggers) {
+            long next = nextTime(t,from);
+            if (next<=0)    continue;   // never fires on its own
+            Entry e = new Entry(p,t,next);
+            entries.add(e);
+            queue.add(e);
+        }
+        if (!entries.isEmpty())
+            byProject.put(p,entries);
+    }
+
+    private void cancel(AbstractProject p) {
+        List<Entry> entries = byProject.remove(p);
+        if (entries==null)  return;
+        // entries are left in the queue and skipped when they come up.
+        // compact it when that garbage starts to dominate
+        for (Entry e : entries)
+            e.cancelled = true;
+        cancellations += entries.size();
+        if (cancellations>queue.size()/2) {
+            List<Entry> live = new ArrayList<Entry>(queue.size());
+            for (Entry e : queue)
+                if (!e.cancelled)   live.add(e);
+            queue.clear();
+            queue.addAll(live);
+            cancellations = 0;
+        }
+    }
+
+    private int cancellations;
+
+    private static Collection<Trigger> triggersOf(AbstractProject<?,?> p) {
+        return new ArrayList<Trigger>(p.getTriggers().values());
+    }
+
+    /**
+     * @return 0 if the trigger never fires.
+     */
+    private static long nextTime(Trigger t, long from) {
+        if (t.tabs==null || t.tabs.isEmpty())    return 0;
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(from);
+        Calendar next = t.tabs.ceil(cal);
+        return next==null ? 0 : truncate(next.getTimeInMillis());
+    }
+
+    private static long truncate(long t) {
+        return t-t%MINUTE;
+    }
+
+    static final class Entry implements Comparable<Entry> {
+        final AbstractProject project;
+        final Trigger trigger;
+        long next;
+        boolean cancelled;
+
+        Entry(AbstractProject project, Trigger trigger, long next) {
+            this.project = project;
+            this.trigger = trigger;
+            this.next = next;
+        }
+
+        public int compareTo(Entry that) {
+            return this.next<that.next ? -1 : (this.next==that.next ? 0 : 1);
+        }
+    }
+
+    private static final TriggerSchedule INSTANCE = new TriggerSchedule();
+
+    public static TriggerSchedule get() {
+        return INSTANCE;
+    }
+
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLoaded() {
+            INSTANCE.rebuild();
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof AbstractProject)
+                INSTANCE.update((AbstractProject)item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof AbstractProject)
+                INSTANCE.remove((AbstractProject)item);
+        }
+    }
+
+    /**
+     * Triggers are added or replaced by the configuration submission and {@link AbstractProject#addTrigger(Trigger)},
+     * both of which save the project.
+     */
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof AbstractProject)
+                INSTANCE.update((AbstractProject)o);
+        }
+    }
+
+    private static final long MINUTE = 60*1000;
+
+    private static final Logger LOGGER = Logger.getLogger(TriggerSchedule.class.getName());
+}
@@ -23,14 +23,21 @@
  */
 package hudson.util;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Buffered {@link FileWriter} that uses UTF-8.
@@ -39,13 +46,27 @@ import java.nio.charset.Charset;
  * The write operation is atomic when used for overwriting;
  * it either leaves the original file intact, or it completely rewrites it with new contents.
  *
+ * <p>
+ * In the {@link #DURABLE durable mode}, the data is also forced to the disk before the new file
+ * replaces the old one, so that a crash or a power loss right after the commit doesn't leave
+ * a truncated file behind. Use {@link Batch} to let many files share one sync point.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class AtomicFileWriter extends Writer {
 
     private final Writer core;
+    private final FileOutputStream out;
+    /**
+     * The buffered stream under {@link #core}, for the binary content.
+     */
+    private final OutputStream bytes;
     private final File tmpFile;
     private final File destFile;
+    /**
+     * True once {@link #commit()} handed this file to a {@link Batch}.
+     */
+    private boolean deferred;
 
     /**
      * Writes with UTF-8 encoding.
@@ -69,7 +90,11 @@ public class AtomicFileWriter extends Writer {
         destFile = f;
         if (encoding==null)
             encoding = Charset.defaultCharset().name();
-        core = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile),encoding));
+        out = new FileOutputStream(tmpFile);
+        // buffer on both sides of the encoder, so that the many small writes from XStream
+        // turn into few large writes to the file
+        bytes = new BufferedOutputStream(out,BUFFER_SIZE);
+        core = new BufferedWriter(new OutputStreamWriter(bytes,encoding),BUFFER_SIZE);
     }
 
     @Override
@@ -90,6 +115,17 @@ public class AtomicFileWriter extends Writer {
         core.flush();
     }
 
+    /**
+     * Gets the stream to write binary content to, instead of characters. The content is committed
+     * or aborted along with the rest of the file, so the stream shouldn't be closed.
+     *
+     * @since 2.1.0
+     */
+    public OutputStream getOutputStream() throws IOException {
+        core.flush();   // keep the order of what's already written
+        return bytes;
+    }
+
     public void close() throws IOException {
         core.close();
     }
@@ -101,17 +137,47 @@ public class AtomicFileWriter extends Writer {
      * the {@link #commit()} is called, to simplify coding.
      */
     public void abort() throws IOException {
+        if (deferred)   return; // the batch owns the file now
         close();
         tmpFile.delete();
     }
 
     public void commit() throws IOException {
+        if (DURABLE) {
+            Batch batch = Batch.current();
+            if (batch!=null) {
+                core.flush();
+                deferred = true;
+                batch.add(this);
+                return;
+            }
+            core.flush();
+            sync();
+        }
         close();
+        moveIntoPlace();
+    }
+
+    /**
+     * Forces the written data to the disk.
+     */
+    private void sync() throws IOException {
+        out.getChannel().force(true);
+    }
+
+    private void moveIntoPlace() throws IOException {
+        // on Unix this atomically replaces the old file.
+        // Windows refuses to rename over an existing file, so we need to delete it first there
+        if (tmpFile.renameTo(destFile))
+            return;
         if(destFile.exists() && !destFile.delete()) {
             tmpFile.delete();
             throw new IOException("Unable to delete "+destFile);
         }
-        tmpFile.renameTo(destFile);
+        if (!tmpFile.renameTo(destFile)) {
+            tmpFile.delete();
+            throw new IOException("Unable to rename "+tmpFile+" to "+destFile);
+        }
     }
 
     @Override
@@ -127,4 +193,186 @@ public class AtomicFileWriter extends Writer {
     public File getTemporaryFile() {
         return tmpFile;
     }
+
+    /**
+     * Groups the commits of many {@link AtomicFileWriter}s on the current thread, so that they
+     * share one sync point instead of waiting for the disk one file at a time.
+     *
+     * <p>
+     * Within a batch, {@link AtomicFileWriter#commit()} only flushes the data. When the outermost
+     * batch is {@linkplain #commit() committed}, all the files are forced to the disk first,
+     * then moved into place. Until then, other threads still see the old contents.
+     * {@link hudson.XmlFile} commits a pending file early if the current thread reads it back,
+     * and {@link hudson.model.listeners.SaveableListener}s are notified of such files
+     * only after they are moved into place.
+     * Outside the {@link AtomicFileWriter#DURABLE durable mode} there's nothing to share,
+     * and files are committed right away as usual.
+     *
+     * <p>
+     * {@link hudson.BulkChange} runs a batch for as long as it is in scope, so that all the files
+     * saved during a bulk change, like the global configuration and the configurations of the
+     * descriptors, share one sync point. The usage follows the same pattern:
+     *
+     * <pre>
+     * AtomicFileWriter.Batch batch = new AtomicFileWriter.Batch();
+     * try {
+     *    ... write files
+     * } finally {
+     *    batch.commit();
+     * }
+     * </pre>
+     *
+     * @since 2.1.0
+     */
+    public static final class Batch {
+        private final Batch parent;
+        private final List<AtomicFileWriter> files = new ArrayList<AtomicFileWriter>();
+        private final List<Runnable> afterCommit = new ArrayList<Runnable>();
+        private boolean completed;
+
+        public Batch() {
+            parent = current();
+            // nested batches join the outermost one
+            if (parent==null)
+                INSCOPE.set(this);
+        }
+
+        /**
+         * Checks if the given file has been written in this batch, but not moved into place yet.
+         */
+        public boolean isPending(File f) {
+            return find(f)!=null;
+        }
+
+        /**
+         * Runs the given task once the files of this batch are in place.
+         */
+        public void afterCommit(Runnable task) {
+            afterCommit.add(task);
+        }
+
+        /**
+         * Makes the given file durable and moves it into place right away, if it's pending in this batch.
+         * Used when the file is about to be read back.
+         */
+        public void commit(File f) throws IOException {
+            AtomicFileWriter w = find(f);
+            if (w==null)    return;
+            files.remove(w);
+            w.deferred = false;
+            try {
+                w.sync();
+                w.close();
+            } catch (IOException e) {
+                w.tmpFile.delete();
+                throw e;
+            }
+            w.moveIntoPlace();
+        }
+
+        /**
+         * Adds a file to be committed with this batch. If the same file was already written in this batch,
+         * the new content supersedes the old one, which is thrown away.
+         */
+        private void add(AtomicFileWriter w) {
+            AtomicFileWriter old = find(w.destFile);
+            if (old!=null) {
+                files.remove(old);
+                old.deferred = false;
+                try {
+                    old.close();
+                } catch (IOException e) {
+                    // superseded anyway
+                } finally {
+                    old.tmpFile.delete();
+                }
+            }
+            files.add(w);
+        }
+
+        private AtomicFileWriter find(File f) {
+            File target = f.getAbsoluteFile();
+            for (AtomicFileWriter w : files)
+                if (w.destFile.getAbsoluteFile().equals(target))
+                    return w;
+            return null;
+        }
+
+        /**
+         * Makes the files written in this batch durable and moves them into place.
+         * Does nothing for a nested batch, as the outermost one takes care of it.
+         *
+         * @throws IOException
+         *      if any of the files failed to commit. The others are still committed.
+         */
+        public void commit() throws IOException {
+            if (completed)  return;
+            completed = true;
+            if (parent!=null)   return;
+            INSCOPE.set(null);
+
+            IOException error = null;
+            // first make all the data durable, then replace all the files
+            for (AtomicFileWriter w : files) {
+                try {
+                    w.sync();
+                } catch (IOException e) {
+                    if (error==null)    error = e;
+                    w.deferred = false;
+                }
+                try {
+                    w.close();
+                } catch (IOException e) {
+                    if (error==null)    error = e;
+                    w.deferred = false;
+                }
+                if (!w.deferred)
+                    w.tmpFile.delete();
+            }
+            for (AtomicFileWriter w : files) {
+                if (!w.deferred)    continue;   // failed above
+                try {
+                    w.moveIntoPlace();
+                } catch (IOException e) {
+                    if (error==null)    error = e;
+                }
+            }
+            files.clear();
+
+            for (Iterator<Runnable> itr = afterCommit.iterator(); itr.hasNext();) {
+                Runnable task = itr.next();
+                itr.remove();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to run "+task+" after committing files", e);
+                }
+            }
+            if (error!=null)    throw error;
+        }
+
+        /**
+         * Gets the outermost {@link Batch} in scope for the current thread, if any.
+         */
+        public static Batch current() {
+            return INSCOPE.get();
+        }
+
+        private static final ThreadLocal<Batch> INSCOPE = new ThreadLocal<Batch>();
+    }
+
+    /**
+     * Forces the data to the disk before replacing files. Off by default, since it makes every save
+     * wait for the disk.
+     *
+     * @since 2.1.0
+     */
+    public static boolean DURABLE = Boolean.getBoolean(AtomicFileWriter.class.getName()+".durable");
+
+    /**
+     * Size of the character and the byte buffers.
+     */
+    private static final int BUFFER_SIZE = Integer.getInteger(AtomicFileWriter.class.getName()+".bufferSize",32*1024);
+
+    private static final Logger LOGGER = Logger.getLogger(AtomicFileWriter.class.getName());
 }
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cache of rendered {@link Graph}s, so that many browsers looking at the same trend
+ * don't each make the server draw the same image again.
+ *
+ * <p>
+ * Entries are looked up by a key that identifies everything that goes into the image,
+ * such as the source of the chart, the last build it covers, the size and the type of the output.
+ * The least recently used entries are evicted when the total size exceeds {@link #MAX_BYTES}.
+ * Concurrent requests for the same key that isn't cached yet share one rendering through {@link SingleFlight}.
+ *
+ * @since 2.1.0
+ * @see Graph#getCacheKey()
+ */
+public final class ChartCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String,byte[]> entries = new LinkedHashMap<String,byte[]>(16,0.75f,true);
+    private final SingleFlight<String,byte[]> renders = new SingleFlight<String,byte[]>();
+    private long bytes;
+    private long hits, misses, evictions;
+
+    public ChartCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the cached data for the given key, or renders it.
+     *
+     * @param renderer
+     *      Produces the data if it's not cached.
+     * @throws IOException
+     *      if the renderer threw one. {@link RuntimeException}s and {@link Error}s are rethrown as is.
+     */
+    public byte[] get(final String key, final Callable<byte[]> renderer) throws IOException {
+        byte[] b = lookup(key);
+        if (b!=null)    return b;
+
+        try {
+            return renders.get(key, new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    // someone might have just finished rendering it
+                    byte[] b = peek(key);
+                    if (b!=null)    return b;
+                    b = renderer.call();
+                    put(key,b);
+                    return b;
+                }
+            });
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException)       throw (IOException)t;
+            if (t instanceof RuntimeException)  throw (RuntimeException)t;
+            if (t instanceof Error)             throw (Error)t;
+            throw new IOException2(t);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private synchronized byte[] lookup(String key) {
+        byte[] b = entries.get(key);
+        if (b!=null)    hits++;
+        else            misses++;
+        return b;
+    }
+
+    private synchronized byte[] peek(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, byte[] data) {
+        if (data.length>maxBytes)   return; // would just flush everything else
+        byte[] old = entries.put(key,data);
+        if (old!=null)  bytes -= old.length;
+        bytes += data.length;
+
+        for (Iterator<Map.Entry<String,byte[]>> itr = entries.entrySet().iterator(); bytes>maxBytes && itr.hasNext();) {
+            bytes -= itr.next().getValue().length;
+            itr.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Total size of the cached data in bytes.
+     */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Number of renderings that were avoided by joining one that was already in progress.
+     */
+    public long getSharedCount() {
+        return renders.getSharedCount();
+    }
+
+    /**
+     * Maximum total size of the rendered graphs to keep. 0 disables the cache.
+     */
+    public static long MAX_BYTES = Long.getLong(ChartCache.class.getName()+".maxBytes",16*1024*1024);
+
+    private static final ChartCache INSTANCE = new ChartCache(MAX_BYTES);
+
+    public static ChartCache get() {
+        return INSTANCE;
+    }
+}
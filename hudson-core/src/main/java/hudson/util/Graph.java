@@ -31,8 +31,10 @@ import org.kohsuke.stapler.StaplerResponse;
 
 import javax.servlet.ServletOutputStream;
 import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Calendar;
+import java.util.concurrent.Callable;
 import java.awt.image.BufferedImage;
 import java.awt.*;
 
@@ -48,6 +50,9 @@ import java.awt.*;
  * <dt>/map
  * <dd>Clickable map
  * </dl>
+ *
+ * <p>
+ * Subtypes can override {@link #getCacheKey()} to have the output cached in {@link ChartCache}.
  * 
  * @author Kohsuke Kawaguchi
  * @since 1.320
@@ -78,27 +83,70 @@ public abstract class Graph {
      */
     protected abstract JFreeChart createGraph();
 
-    private BufferedImage render(StaplerRequest req, ChartRenderingInfo info) {
+    /**
+     * Identifies what this graph shows, for {@link ChartCache}. The size and the type of the output
+     * are added by the caller. The key must change whenever the image would, for example by including
+     * the number of the last build that the graph covers.
+     *
+     * @return
+     *      null, which is the default, to render the graph on every request.
+     * @since 2.1.0
+     */
+    protected String getCacheKey() {
+        return null;
+    }
+
+    private int getWidth(StaplerRequest req) {
         String w = req.getParameter("width");
-        if(w==null)     w=String.valueOf(defaultW);
+        return w==null ? defaultW : Integer.parseInt(w);
+    }
+
+    private int getHeight(StaplerRequest req) {
         String h = req.getParameter("height");
-        if(h==null)     h=String.valueOf(defaultH);
+        return h==null ? defaultH : Integer.parseInt(h);
+    }
 
+    private BufferedImage render(StaplerRequest req, ChartRenderingInfo info) {
         if (graph==null)    graph = createGraph();
-        return graph.createBufferedImage(Integer.parseInt(w),Integer.parseInt(h),info);
+        return graph.createBufferedImage(getWidth(req),getHeight(req),info);
+    }
+
+    /**
+     * Gets the output from the cache, or renders it.
+     */
+    private byte[] render(StaplerRequest req, String type, Callable<byte[]> renderer) throws IOException {
+        String key = ChartCache.MAX_BYTES>0 ? getCacheKey() : null;
+        if (key==null) {
+            try {
+                return renderer.call();
+            } catch (IOException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException2(e);
+            }
+        }
+        return ChartCache.get().get(key+'/'+type+'/'+getWidth(req)+'x'+getHeight(req), renderer);
     }
 
     /**
      * Renders a graph.
      */
-    public void doPng(StaplerRequest req, StaplerResponse rsp) throws IOException {
+    public void doPng(final StaplerRequest req, StaplerResponse rsp) throws IOException {
         if (req.checkIfModified(timestamp, rsp)) return;
 
         try {
-            BufferedImage image = render(req,null);
+            byte[] png = render(req, "png", new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                    ImageIO.write(render(req,null), "PNG", buf);
+                    return buf.toByteArray();
+                }
+            });
             rsp.setContentType("image/png");
             ServletOutputStream os = rsp.getOutputStream();
-            ImageIO.write(image, "PNG", os);
+            os.write(png);
             os.close();
         } catch(Error e) {
             /* OpenJDK on ARM produces an error like this in case of headless error
@@ -145,18 +193,18 @@ public abstract class Graph {
     /**
      * Renders a clickable map.
      */
-    public void doMap(StaplerRequest req, StaplerResponse rsp) throws IOException {
+    public void doMap(final StaplerRequest req, StaplerResponse rsp) throws IOException {
         if (req.checkIfModified(timestamp, rsp)) return;
 
-        String w = req.getParameter("width");
-        if(w==null)     w=String.valueOf(defaultW);
-        String h = req.getParameter("height");
-        if(h==null)     h=String.valueOf(defaultH);
-
-        ChartRenderingInfo info = new ChartRenderingInfo();
-        render(req,info);
+        byte[] map = render(req, "map", new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                ChartRenderingInfo info = new ChartRenderingInfo();
+                render(req,info);
+                return ChartUtilities.getImageMap("map", info).getBytes("UTF-8");
+            }
+        });
 
         rsp.setContentType("text/plain;charset=UTF-8");
-        rsp.getWriter().println(ChartUtilities.getImageMap( "map", info ));
+        rsp.getWriter().println(new String(map,"UTF-8"));
     }
 }
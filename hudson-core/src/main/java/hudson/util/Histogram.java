@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+/**
+ * Histogram of non-negative long values, with buckets whose width grows with the value,
+ * in the manner of HdrHistogram.
+ *
+ * <p>
+ * Values below {@value #SUB_BUCKETS} are counted exactly. Above that, each power of two is split into
+ * {@value #HALF} buckets, so a value is off by at most 1/{@value #HALF} (about 6%) of itself, no matter how
+ * large it is. This keeps the whole range of a long in less than a thousand counters,
+ * and recording a value is just a couple of bit operations.
+ *
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @since 2.1.0
+ */
+public final class Histogram {
+    private final long[] counts = new long[bucketOf(Long.MAX_VALUE)+1];
+    private long total;
+    private long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+    private double sum;
+
+    /**
+     * Records a value. Negative values are treated as 0.
+     */
+    public void record(long value) {
+        if (value<0)    value = 0;
+        counts[bucketOf(value)]++;
+        total++;
+        sum += value;
+        min = Math.min(min,value);
+        max = Math.max(max,value);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * @return 0 if nothing is recorded.
+     */
+    public long getMin() {
+        return total==0 ? 0 : min;
+    }
+
+    /**
+     * @return 0 if nothing is recorded.
+     */
+    public long getMax() {
+        return total==0 ? 0 : max;
+    }
+
+    /**
+     * @return 0 if nothing is recorded.
+     */
+    public double getMean() {
+        return total==0 ? 0 : sum/total;
+    }
+
+    /**
+     * Gets the value at the given percentile.
+     *
+     * @param p
+     *      Between 0 and 100.
+     * @return
+     *      The largest value that's equivalent to the value at the percentile, given the precision of the buckets,
+     *      but never more than the maximum recorded value. 0 if nothing is recorded.
+     */
+    public long getValueAtPercentile(double p) {
+        if (total==0)   return 0;
+        long rank = Math.max(1, (long)Math.ceil(total*Math.min(p,100)/100));
+        long seen = 0;
+        for (int i=0; i<counts.length; i++) {
+            seen += counts[i];
+            if (seen>=rank)
+                return Math.min(max, Math.max(min, highestValueOf(i)));
+        }
+        return max;
+    }
+
+    /**
+     * Index of the bucket that the given value goes into.
+     */
+    static int bucketOf(long value) {
+        if (value<SUB_BUCKETS)  return (int)value;
+        int shift = 63-Long.numberOfLeadingZeros(value)-(SUB_BITS-1);  // value>>shift is in [HALF,SUB_BUCKETS)
+        return SUB_BUCKETS + (shift-1)*HALF + (int)(value>>shift)-HALF;
+    }
+
+    /**
+     * Largest value that goes into the given bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket<SUB_BUCKETS) return bucket;
+        int shift = (bucket-SUB_BUCKETS)/HALF+1;
+        long low = (long)((bucket-SUB_BUCKETS)%HALF+HALF) << shift;
+        return low + (1L<<shift) - 1;
+    }
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1<<SUB_BITS;
+    private static final int HALF = SUB_BUCKETS/2;
+}
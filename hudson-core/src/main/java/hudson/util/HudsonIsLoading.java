@@ -23,6 +23,7 @@
  */
 package hudson.util;
 
+import hudson.init.InitProgress;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
@@ -40,6 +41,15 @@ import java.io.IOException;
  * @author Kohsuke Kawaguchi
  */
 public class HudsonIsLoading {
+    /**
+     * How far the loading has got, or null if not known.
+     *
+     * @since 2.1.0
+     */
+    public InitProgress getProgress() {
+        return InitProgress.get();
+    }
+
     public void doDynamic(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException, InterruptedException {
         rsp.setStatus(SC_SERVICE_UNAVAILABLE);
         req.getView(this,"index.jelly").forward(req,rsp);
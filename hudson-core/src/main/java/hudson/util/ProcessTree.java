@@ -58,13 +58,17 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import static java.util.logging.Level.FINER;
 import static java.util.logging.Level.FINEST;
@@ -96,6 +100,11 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
      */
     private transient volatile List<ProcessKiller> killers;
 
+    /**
+     * Lazily computed parent-to-children index, as the parent relationship is all we get from the OS.
+     */
+    private transient volatile Map<OSProcess,List<OSProcess>> children;
+
     // instantiation only allowed for subtypes in this class
     private ProcessTree() {}
 
@@ -196,11 +205,20 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
          * Immediate child processes.
          */
         public final List<OSProcess> getChildren() {
-            List<OSProcess> r = new ArrayList<OSProcess>();
-            for (OSProcess p : ProcessTree.this)
-                if(p.getParent()==this)
-                    r.add(p);
-            return r;
+            Map<OSProcess,List<OSProcess>> index = children;
+            if (index==null) {
+                index = new HashMap<OSProcess,List<OSProcess>>();
+                for (OSProcess p : ProcessTree.this) {
+                    OSProcess parent = p.getParent();
+                    if (parent==null)   continue;
+                    List<OSProcess> l = index.get(parent);
+                    if (l==null)    index.put(parent,l=new ArrayList<OSProcess>());
+                    l.add(p);
+                }
+                children = index;
+            }
+            List<OSProcess> r = index.get(this);
+            return r==null ? new ArrayList<OSProcess>() : new ArrayList<OSProcess>(r);
         }
 
         /**
@@ -471,9 +489,24 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
         }
 
         public void killAll(Map<String, String> modelEnvVars) throws InterruptedException {
-            for (OSProcess p : this)
-                if(p.hasMatchingEnvVars(modelEnvVars))
+            // parents generally have smaller PIDs than their children, so going in this order
+            // lets us skip the descendants of a matching process, which get killed along with it,
+            // without reading their environment variables
+            Set<OSProcess> killed = new HashSet<OSProcess>();
+            for (OSProcess p : new TreeMap<Integer,OSProcess>(processes).values()) {
+                if (killed.contains(p))
+                    continue;
+                if(p.hasMatchingEnvVars(modelEnvVars)) {
+                    addDescendants(p,killed);
                     p.killRecursively();
+                }
+            }
+        }
+
+        private void addDescendants(OSProcess p, Set<OSProcess> r) {
+            if (!r.add(p))  return;
+            for (OSProcess c : p.getChildren())
+                addDescendants(c,r);
         }
     }
     /**
@@ -481,6 +514,13 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
      */
     static abstract class ProcfsUnix extends Unix {
         ProcfsUnix() {
+            scan();
+        }
+
+        /**
+         * Fills in {@link #processes}. Called from the constructor.
+         */
+        protected void scan() {
             File[] processes = new File("/proc").listFiles(new FileFilter() {
                 public boolean accept(File f) {
                     return f.isDirectory();
@@ -603,39 +643,150 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
 
     static class Linux extends ProcfsUnix {
         protected LinuxProcess createProcess(int pid) throws IOException {
-            return new LinuxProcess(pid);
+            return new LinuxProcess(ProcStat.read(pid));
+        }
+
+        /**
+         * While {@link #killAll(Map)} is deciding what to kill, the descendants of the processes that the build
+         * launched, whose environment variables are read again.
+         */
+        private volatile Set<OSProcess> descendantsOfBuilds = Collections.emptySet();
+
+        /**
+         * Takes the processes from a shared snapshot of /proc, instead of reading it all over again.
+         */
+        @Override
+        protected void scan() {
+            try {
+                for (ProcStat st : SNAPSHOTS.take().values())
+                    processes.put(st.pid,new LinuxProcess(st));
+            } catch (InterruptedException e) {
+                // leave the tree empty, as the constructor can't throw InterruptedException
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * The environment variables remembered from earlier snapshots are trusted, as a process that
+         * exec's another program normally gets a new {@link ProcStat}. Only the descendants of the processes
+         * that the build launched get theirs read again, as they are the ones that could have exec'ed
+         * the same command with the build's variables changed.
+         */
+        @Override
+        public void killAll(Map<String, String> modelEnvVars) throws InterruptedException {
+            Set<OSProcess> descendants = new HashSet<OSProcess>();
+            for (OSProcess p : processes.values())
+                if (p.hasMatchingEnvVars(modelEnvVars))
+                    for (OSProcess c : p.getChildren())
+                        addDescendants(c,descendants);
+            descendantsOfBuilds = descendants;
+            try {
+                super.killAll(modelEnvVars);
+            } finally {
+                descendantsOfBuilds = Collections.emptySet();
+            }
+        }
+
+        private void addDescendants(OSProcess p, Set<OSProcess> r) {
+            if (!r.add(p))  return;
+            for (OSProcess c : p.getChildren())
+                addDescendants(c,r);
         }
 
         class LinuxProcess extends UnixProcess {
-            private int ppid = -1;
+            private final ProcStat st;
+            /**
+             * Environment variables read afresh for {@link Linux#killAll(Map)}.
+             */
+            private EnvVars verifiedEnvVars;
+
+            LinuxProcess(ProcStat st) {
+                super(st.pid);
+                this.st = st;
+            }
+
+            public OSProcess getParent() {
+                return get(st.ppid);
+            }
+
+            public List<String> getArguments() {
+                return st.getArguments();
+            }
+
+            public synchronized EnvVars getEnvironmentVariables() {
+                if (!descendantsOfBuilds.contains(this))
+                    return st.getEnvironmentVariables();
+                if (verifiedEnvVars==null)
+                    verifiedEnvVars = st.refreshEnvironmentVariables();
+                return verifiedEnvVars;
+            }
+        }
+
+        /**
+         * What we know about a process from /proc, which is kept from one snapshot to the next
+         * as long as the process lives and runs the same command, so that the arguments and
+         * the environment variables are normally read once per process, and only if someone asks.
+         *
+         * <p>
+         * A process that exec's another program keeps its PID, parent and start time, but normally
+         * changes its command name, which is why that's a part of the identity too. {@link Linux#killAll(Map)}
+         * only reads the environment variables again for the descendants of the build's processes.
+         */
+        static final class ProcStat {
+            final int pid;
+            final int ppid;
+            /**
+             * Start time of the process since the boot, in clock ticks. Together with the PID,
+             * this tells apart a process from another that got the same PID later.
+             */
+            final long startTime;
+            /**
+             * The command name, which changes when the process exec's another program.
+             */
+            final String comm;
             private EnvVars envVars;
             private List<String> arguments;
 
-            LinuxProcess(int pid) throws IOException {
-                super(pid);
+            ProcStat(int pid, int ppid, long startTime, String comm) {
+                this.pid = pid;
+                this.ppid = ppid;
+                this.startTime = startTime;
+                this.comm = comm;
+            }
 
-                BufferedReader r = new BufferedReader(new FileReader(getFile("status")));
+            /**
+             * Checks if this is the same process running the same program as the given one from an earlier snapshot.
+             */
+            boolean isSameAs(ProcStat that) {
+                return pid==that.pid && ppid==that.ppid && startTime==that.startTime && comm.equals(that.comm);
+            }
+
+            /**
+             * Parses /proc/PID/stat.
+             */
+            static ProcStat read(int pid) throws IOException {
+                String stat = FileUtils.readFileToString(new File("/proc/"+pid+"/stat"));
+                // the second field is the command name in parenthesis, which can contain anything, including spaces
+                int start = stat.indexOf('(');
+                int idx = stat.lastIndexOf(')');
+                if (start<0 || idx<start)
+                    throw new IOException("Failed to parse /proc/"+pid+"/stat: "+stat);
+                String[] tokens = stat.substring(idx+1).trim().split(" ");
+                if (tokens.length<20)
+                    throw new IOException("Failed to parse /proc/"+pid+"/stat: "+stat);
                 try {
-                    String line;
-                    while((line=r.readLine())!=null) {
-                        line=line.toLowerCase(Locale.ENGLISH);
-                        if(line.startsWith("ppid:")) {
-                            ppid = Integer.parseInt(line.substring(5).trim());
-                            break;
-                        }
-                    }
-                } finally {
-                    r.close();
+                    // fields after the command name are state, ppid, ..., and the 20th is the start time
+                    return new ProcStat(pid,Integer.parseInt(tokens[1]),Long.parseLong(tokens[19]),stat.substring(start+1,idx));
+                } catch (NumberFormatException e) {
+                    throw (IOException)new IOException("Failed to parse /proc/"+pid+"/stat: "+stat).initCause(e);
                 }
-                if(ppid==-1)
-                    throw new IOException("Failed to parse PPID from /proc/"+pid+"/status");
             }
 
-            public OSProcess getParent() {
-                return get(ppid);
+            private File getFile(String relativePath) {
+                return new File(new File("/proc/"+pid),relativePath);
             }
 
-            public synchronized List<String> getArguments() {
+            synchronized List<String> getArguments() {
                 if(arguments!=null)
                     return arguments;
                 arguments = new ArrayList<String>();
@@ -657,12 +808,25 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
                 return arguments;
             }
 
-            public synchronized EnvVars getEnvironmentVariables() {
-                if(envVars !=null)
-                    return envVars;
-                envVars = new EnvVars();
+            synchronized EnvVars getEnvironmentVariables() {
+                if(envVars==null)
+                    envVars = readEnvironmentVariables();
+                return envVars;
+            }
+
+            /**
+             * Reads the environment variables again, and remembers them from now on.
+             */
+            synchronized EnvVars refreshEnvironmentVariables() {
+                envVars = readEnvironmentVariables();
+                return envVars;
+            }
+
+            private EnvVars readEnvironmentVariables() {
+                EnvVars envVars = new EnvVars();
                 try {
                     byte[] environ = FileUtils.readFileToByteArray(getFile("environ"));
+                    SNAPSHOTS.environReads.incrementAndGet();
                     int pos=0;
                     for (int i = 0; i < environ.length; i++) {
                         byte b = environ[i];
@@ -678,6 +842,105 @@ public abstract class ProcessTree implements Iterable<OSProcess>, IProcessTree,
                 return envVars;
             }
         }
+
+        /**
+         * Takes snapshots of /proc on behalf of all the {@link Linux} trees in this JVM.
+         *
+         * <p>
+         * A caller always gets a snapshot that's started after the call, so that it sees all the processes
+         * that existed at that point, but concurrent callers share one scan. Each scan reuses
+         * the {@link ProcStat}s of the processes that are still alive from the previous one.
+         */
+        static final class Snapshots {
+            private Map<Integer,ProcStat> last = Collections.emptyMap();
+            private long generation;
+            private boolean scanning;
+
+            private final AtomicLong scans = new AtomicLong();
+            private final AtomicLong shared = new AtomicLong();
+            private final AtomicLong environReads = new AtomicLong();
+
+            Map<Integer,ProcStat> take() throws InterruptedException {
+                long want;
+                synchronized (this) {
+                    // if a scan is in progress, it may have listed /proc before we came in, so wait for the next one
+                    want = generation + (scanning ? 2 : 1);
+                    while (generation<want && scanning)
+                        wait();
+                    if (generation>=want) {
+                        shared.incrementAndGet();
+                        return last;
+                    }
+                    scanning = true;
+                }
+
+                Map<Integer,ProcStat> r = null;
+                try {
+                    r = scan(last);
+                    return r;
+                } finally {
+                    synchronized (this) {
+                        if (r!=null)    last = r;
+                        generation++;
+                        scanning = false;
+                        notifyAll();
+                    }
+                }
+            }
+
+            private Map<Integer,ProcStat> scan(Map<Integer,ProcStat> previous) {
+                scans.incrementAndGet();
+                String[] names = new File("/proc").list();
+                if(names==null) {
+                    LOGGER.info("No /proc");
+                    return Collections.emptyMap();
+                }
+
+                Map<Integer,ProcStat> r = new HashMap<Integer,ProcStat>();
+                for (String name : names) {
+                    int pid;
+                    try {
+                        pid = Integer.parseInt(name);
+                    } catch (NumberFormatException e) {
+                        // other sub-directories
+                        continue;
+                    }
+                    try {
+                        ProcStat st = ProcStat.read(pid);
+                        ProcStat old = previous.get(pid);
+                        if (old!=null && old.isSameAs(st))
+                            st = old;   // same process as before. keep what we've learned about it
+                        r.put(pid,st);
+                    } catch (IOException e) {
+                        // perhaps the process status has changed since we obtained a directory listing
+                    }
+                }
+                return Collections.unmodifiableMap(r);
+            }
+
+            /**
+             * Number of times /proc was actually scanned.
+             */
+            long getScanCount() {
+                return scans.get();
+            }
+
+            /**
+             * Number of snapshot requests that were satisfied by someone else's scan.
+             */
+            long getSharedCount() {
+                return shared.get();
+            }
+
+            /**
+             * Number of environ files read.
+             */
+            long getEnvironReadCount() {
+                return environReads.get();
+            }
+        }
+
+        static final Snapshots SNAPSHOTS = new Snapshots();
     }
 
     /**
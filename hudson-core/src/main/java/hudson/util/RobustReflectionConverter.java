@@ -45,6 +45,7 @@ import hudson.diagnosis.OldDataMonitor;
 import hudson.model.Saveable;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
@@ -52,6 +53,8 @@ import java.util.Set;
 import java.util.HashSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.WARNING;
@@ -66,6 +69,13 @@ import static java.util.logging.Level.WARNING;
  *     instead of causing an error.
  * </ul>
  *
+ * <p>
+ * When {@link #CACHE_MEMBERS} is on, what this converter learns from the reflection provider
+ * and the mapper chain about each field of a class (its {@link Field}, aliases, converters,
+ * default implementation, etc.) is remembered per class, so that reading and writing thousands
+ * of objects of the same type, like build records, doesn't repeat those lookups for every field
+ * of every object. Only the common case of an element that maps to a plain field is cached;
+ * everything else, including all the error handling above, takes the usual path.
  */
 public class RobustReflectionConverter implements Converter {
 
@@ -73,6 +83,8 @@ public class RobustReflectionConverter implements Converter {
     protected final Mapper mapper;
     protected transient SerializationMethodInvoker serializationMethodInvoker;
     private transient ReflectionProvider pureJavaReflectionProvider;
+    private transient ConcurrentMap<Class,ClassInfo> classInfos = new ConcurrentHashMap<Class,ClassInfo>();
+    private transient volatile String definedInAlias, classAlias;
 
     public RobustReflectionConverter(Mapper mapper, ReflectionProvider reflectionProvider) {
         this.mapper = mapper;
@@ -101,14 +113,13 @@ public class RobustReflectionConverter implements Converter {
         // Attributes might be preferred to child elements ...
          reflectionProvider.visitSerializableFields(source, new ReflectionProvider.Visitor() {
             public void visit(String fieldName, Class type, Class definedIn, Object value) {
-                SingleValueConverter converter = mapper.getConverterFromItemType(fieldName, type, definedIn);
-                if (converter == null) converter = mapper.getConverterFromItemType(fieldName, type);
-                if (converter == null) converter = mapper.getConverterFromItemType(type);
+                MemberInfo m = memberInfo(source.getClass(), fieldName, definedIn);
+                SingleValueConverter converter = m!=null ? m.converter : attributeConverterOf(fieldName, type, definedIn);
                 if (converter != null) {
                     if (value != null) {
                         final String str = converter.toString(value);
                         if (str != null) {
-                            writer.addAttribute(mapper.aliasForAttribute(fieldName), str);
+                            writer.addAttribute(m!=null ? m.attributeAlias : mapper.aliasForAttribute(fieldName), str);
                         }
                     }
                     seenAsAttributes.add(fieldName);
@@ -120,46 +131,51 @@ public class RobustReflectionConverter implements Converter {
         reflectionProvider.visitSerializableFields(source, new ReflectionProvider.Visitor() {
             public void visit(String fieldName, Class fieldType, Class definedIn, Object newObj) {
                 if (!seenAsAttributes.contains(fieldName) && newObj != null) {
-                    Mapper.ImplicitCollectionMapping mapping = mapper.getImplicitCollectionDefForFieldName(source.getClass(), fieldName);
+                    MemberInfo m = memberInfo(source.getClass(), fieldName, definedIn);
+                    Mapper.ImplicitCollectionMapping mapping = m!=null ? m.implicitCollection : mapper.getImplicitCollectionDefForFieldName(source.getClass(), fieldName);
                     if (mapping != null) {
                         if (mapping.getItemFieldName() != null) {
                             Collection list = (Collection) newObj;
                             for (Iterator iter = list.iterator(); iter.hasNext();) {
                                 Object obj = iter.next();
-                                writeField(fieldName, mapping.getItemFieldName(), mapping.getItemType(), definedIn, obj);
+                                writeField(fieldName, mapping.getItemFieldName(), mapping.getItemType(), definedIn, obj, null);
                             }
                         } else {
                             context.convertAnother(newObj);
                         }
                     } else {
-                        writeField(fieldName, fieldName, fieldType, definedIn, newObj);
+                        writeField(fieldName, fieldName, fieldType, definedIn, newObj, m);
                         seenFields.add(fieldName);
                     }
                 }
             }
 
-            private void writeField(String fieldName, String aliasName, Class fieldType, Class definedIn, Object newObj) {
+            /**
+             * @param m
+             *      Cached information about the field, if it's written under its own name. Otherwise null.
+             */
+            private void writeField(String fieldName, String aliasName, Class fieldType, Class definedIn, Object newObj, MemberInfo m) {
                 try {
-                    if (!mapper.shouldSerializeMember(definedIn, aliasName)) {
+                    if (!(m!=null ? m.shouldSerialize : mapper.shouldSerializeMember(definedIn, aliasName))) {
                         return;
                     }
-                    ExtendedHierarchicalStreamWriterHelper.startNode(writer, mapper.serializedMember(definedIn, aliasName), fieldType);
+                    ExtendedHierarchicalStreamWriterHelper.startNode(writer, m!=null ? m.serializedName : mapper.serializedMember(definedIn, aliasName), fieldType);
 
                     Class actualType = newObj.getClass();
 
-                    Class defaultType = mapper.defaultImplementationOf(fieldType);
+                    Class defaultType = m!=null ? m.defaultType : mapper.defaultImplementationOf(fieldType);
                     if (!actualType.equals(defaultType)) {
                         String serializedClassName = mapper.serializedClass(actualType);
-                        if (!serializedClassName.equals(mapper.serializedClass(defaultType))) {
+                        if (!serializedClassName.equals(m!=null ? m.serializedDefaultType : mapper.serializedClass(defaultType))) {
                             writer.addAttribute(mapper.aliasForSystemAttribute("class"), serializedClassName);
                         }
                     }
 
                     if (seenFields.contains(aliasName)) {
-                        writer.addAttribute(mapper.aliasForAttribute("defined-in"), mapper.serializedClass(definedIn));
+                        writer.addAttribute(definedInAlias(), mapper.serializedClass(definedIn));
                     }
 
-                    Field field = reflectionProvider.getField(definedIn,fieldName);
+                    Field field = m!=null ? m.field : reflectionProvider.getField(definedIn,fieldName);
                     marshallField(context, newObj, field);
                     writer.endNode();
                 } catch (RuntimeException e) {
@@ -220,35 +236,40 @@ public class RobustReflectionConverter implements Converter {
             reader.moveDown();
 
             try {
-                String fieldName = mapper.realMember(result.getClass(), reader.getNodeName());
-                boolean implicitCollectionHasSameName = mapper.getImplicitCollectionDefForFieldName(result.getClass(), reader.getNodeName()) != null;
-
                 Class classDefiningField = determineWhichClassDefinesField(reader);
-                boolean fieldExistsInClass = !implicitCollectionHasSameName && fieldDefinedInClass(result,fieldName);
-
-                Class type = determineType(reader, fieldExistsInClass, result, fieldName, classDefiningField);
-                final Object value;
-                if (fieldExistsInClass) {
-                    Field field = reflectionProvider.getField(result.getClass(),fieldName);
-                    value = unmarshalField(context, result, type, field);
-                    // TODO the reflection provider should have returned the proper field in first place ....
-                    Class definedType = reflectionProvider.getFieldType(result, fieldName, classDefiningField);
-                    if (!definedType.isPrimitive()) {
-                        type = definedType;
-                    }
+                ElementInfo cached = classDefiningField==null ? elementInfo(result.getClass(), reader.getNodeName()) : null;
+                if (cached!=null) {
+                    unmarshalCachedField(result, cached, reader, context, seenFields);
                 } else {
-                    value = context.convertAnother(result, type);
-                }
+                    String fieldName = mapper.realMember(result.getClass(), reader.getNodeName());
+                    boolean implicitCollectionHasSameName = mapper.getImplicitCollectionDefForFieldName(result.getClass(), reader.getNodeName()) != null;
 
-                if (value != null && !type.isAssignableFrom(value.getClass())) {
-                    LOGGER.warning("Cannot convert type " + value.getClass().getName() + " to type " + type.getName());
-                    // behave as if we didn't see this element
-                } else {
+                    boolean fieldExistsInClass = !implicitCollectionHasSameName && fieldDefinedInClass(result,fieldName);
+
+                    Class type = determineType(reader, fieldExistsInClass, result, fieldName, classDefiningField);
+                    final Object value;
                     if (fieldExistsInClass) {
-                        reflectionProvider.writeField(result, fieldName, value, classDefiningField);
-                        seenFields.add(classDefiningField, fieldName);
+                        Field field = reflectionProvider.getField(result.getClass(),fieldName);
+                        value = unmarshalField(context, result, type, field);
+                        // TODO the reflection provider should have returned the proper field in first place ....
+                        Class definedType = reflectionProvider.getFieldType(result, fieldName, classDefiningField);
+                        if (!definedType.isPrimitive()) {
+                            type = definedType;
+                        }
                     } else {
-                        implicitCollectionsForCurrentObject = writeValueToImplicitCollection(context, value, implicitCollectionsForCurrentObject, result, fieldName);
+                        value = context.convertAnother(result, type);
+                    }
+
+                    if (value != null && !type.isAssignableFrom(value.getClass())) {
+                        LOGGER.warning("Cannot convert type " + value.getClass().getName() + " to type " + type.getName());
+                        // behave as if we didn't see this element
+                    } else {
+                        if (fieldExistsInClass) {
+                            reflectionProvider.writeField(result, fieldName, value, classDefiningField);
+                            seenFields.add(classDefiningField, fieldName);
+                        } else {
+                            implicitCollectionsForCurrentObject = writeValueToImplicitCollection(context, value, implicitCollectionsForCurrentObject, result, fieldName);
+                        }
                     }
                 }
             } catch (NonExistentFieldException e) {
@@ -316,7 +337,7 @@ public class RobustReflectionConverter implements Converter {
     }
 
     private Class determineWhichClassDefinesField(HierarchicalStreamReader reader) {
-        String definedIn = reader.getAttribute(mapper.aliasForAttribute("defined-in"));
+        String definedIn = reader.getAttribute(definedInAlias());
         return definedIn == null ? null : mapper.realClass(definedIn);
     }
 
@@ -352,7 +373,7 @@ public class RobustReflectionConverter implements Converter {
     }
 
     private Class determineType(HierarchicalStreamReader reader, boolean validField, Object result, String fieldName, Class definedInCls) {
-        String classAttribute = reader.getAttribute(mapper.aliasForAttribute("class"));
+        String classAttribute = reader.getAttribute(classAlias());
         Class fieldType = reflectionProvider.getFieldType(result, fieldName, definedInCls);
         if (classAttribute != null) {
             Class specifiedType = mapper.realClass(classAttribute);
@@ -375,9 +396,181 @@ public class RobustReflectionConverter implements Converter {
 
     private Object readResolve() {
         serializationMethodInvoker = new SerializationMethodInvoker();
+        classInfos = new ConcurrentHashMap<Class,ClassInfo>();
         return this;
     }
 
+    private SingleValueConverter attributeConverterOf(String fieldName, Class type, Class definedIn) {
+        SingleValueConverter converter = mapper.getConverterFromItemType(fieldName, type, definedIn);
+        if (converter == null) converter = mapper.getConverterFromItemType(fieldName, type);
+        if (converter == null) converter = mapper.getConverterFromItemType(type);
+        return converter;
+    }
+
+    private String definedInAlias() {
+        if (!CACHE_MEMBERS) return mapper.aliasForAttribute("defined-in");
+        String a = definedInAlias;
+        if (a==null)    definedInAlias = a = mapper.aliasForAttribute("defined-in");
+        return a;
+    }
+
+    private String classAlias() {
+        if (!CACHE_MEMBERS) return mapper.aliasForAttribute("class");
+        String a = classAlias;
+        if (a==null)    classAlias = a = mapper.aliasForAttribute("class");
+        return a;
+    }
+
+    /**
+     * Forgets everything cached about classes, for example because the mapper configuration has changed.
+     *
+     * @since 2.1.0
+     */
+    public void clearCache() {
+        classInfos.clear();
+        definedInAlias = classAlias = null;
+    }
+
+    private ClassInfo classInfo(Class c) {
+        ClassInfo ci = classInfos.get(c);
+        if (ci==null) {
+            ClassInfo prev = classInfos.putIfAbsent(c, ci = new ClassInfo());
+            if (prev!=null) ci = prev;
+        }
+        return ci;
+    }
+
+    /**
+     * Returns what's needed to write the given field of the given class, or null
+     * if caching is disabled or the field can't be cached.
+     */
+    private MemberInfo memberInfo(Class owner, String fieldName, Class definedIn) {
+        if (!CACHE_MEMBERS) return null;
+        ConcurrentMap<String,MemberInfo> members = classInfo(owner).members;
+        MemberInfo m = members.get(fieldName);
+        if (m==null) {
+            Field f = reflectionProvider.getField(definedIn, fieldName);
+            m = new MemberInfo();
+            m.definedIn = definedIn;
+            m.field = f;
+            m.converter = attributeConverterOf(fieldName, f.getType(), definedIn);
+            m.attributeAlias = mapper.aliasForAttribute(fieldName);
+            m.implicitCollection = mapper.getImplicitCollectionDefForFieldName(owner, fieldName);
+            m.shouldSerialize = mapper.shouldSerializeMember(definedIn, fieldName);
+            m.serializedName = mapper.serializedMember(definedIn, fieldName);
+            m.defaultType = mapper.defaultImplementationOf(f.getType());
+            m.serializedDefaultType = mapper.serializedClass(m.defaultType);
+            members.putIfAbsent(fieldName, m);
+        }
+        // a field hidden by another of the same name in a subtype isn't worth caching
+        return m.definedIn==definedIn ? m : null;
+    }
+
+    /**
+     * Returns how to read the child element of the given name into an instance of the given class,
+     * or null if caching is disabled or the element doesn't simply map to a field.
+     */
+    private ElementInfo elementInfo(Class owner, String nodeName) {
+        if (!CACHE_MEMBERS) return null;
+        ConcurrentMap<String,ElementInfo> elements = classInfo(owner).elements;
+        ElementInfo e = elements.get(nodeName);
+        if (e==null) {
+            String fieldName = mapper.realMember(owner, nodeName);
+            Field f = null;
+            if (mapper.getImplicitCollectionDefForFieldName(owner, nodeName)==null)
+                f = reflectionProvider.getFieldOrNull(owner, fieldName);
+            if (f==null) {
+                e = ElementInfo.NONE;
+            } else {
+                e = new ElementInfo(fieldName, f, mapper.defaultImplementationOf(f.getType()));
+            }
+            elements.putIfAbsent(nodeName, e);
+        }
+        return e==ElementInfo.NONE ? null : e;
+    }
+
+    /**
+     * Does the same as the general code path in {@link #doUnmarshal}, for an element that maps to a plain field.
+     */
+    private void unmarshalCachedField(Object result, ElementInfo e, HierarchicalStreamReader reader, UnmarshallingContext context, SeenFields seenFields) {
+        Class type = e.defaultType;
+        String classAttribute = reader.getAttribute(classAlias());
+        if (classAttribute != null) {
+            Class specifiedType = mapper.realClass(classAttribute);
+            if (e.type.isAssignableFrom(specifiedType))
+                type = specifiedType;
+        }
+        Object value = unmarshalField(context, result, type, e.field);
+        if (!e.type.isPrimitive()) {
+            type = e.type;
+        }
+        if (value != null && !type.isAssignableFrom(value.getClass())) {
+            LOGGER.warning("Cannot convert type " + value.getClass().getName() + " to type " + type.getName());
+            // behave as if we didn't see this element
+        } else {
+            writeField(result, e, value);
+            seenFields.add(null, e.name);
+        }
+    }
+
+    private void writeField(Object result, ElementInfo e, Object value) {
+        if (!e.direct || (value==null && e.type.isPrimitive())) {
+            // let the reflection provider deal with final fields and the like
+            reflectionProvider.writeField(result, e.name, value, null);
+            return;
+        }
+        try {
+            e.field.set(result, value);
+        } catch (IllegalAccessException x) {
+            throw new ObjectAccessException("Could not set field " + result.getClass() + "." + e.name, x);
+        }
+    }
+
+    private static final class ClassInfo {
+        /**
+         * Keyed by field name. Used for marshalling.
+         */
+        final ConcurrentMap<String,MemberInfo> members = new ConcurrentHashMap<String,MemberInfo>();
+        /**
+         * Keyed by element name. Used for unmarshalling.
+         */
+        final ConcurrentMap<String,ElementInfo> elements = new ConcurrentHashMap<String,ElementInfo>();
+    }
+
+    private static final class MemberInfo {
+        Class definedIn;
+        Field field;
+        SingleValueConverter converter;
+        String attributeAlias;
+        Mapper.ImplicitCollectionMapping implicitCollection;
+        boolean shouldSerialize;
+        String serializedName;
+        Class defaultType;
+        String serializedDefaultType;
+    }
+
+    private static final class ElementInfo {
+        final String name;
+        final Field field;
+        final Class type;
+        final Class defaultType;
+        /**
+         * True if the field can be written by {@link Field#set(Object, Object)}.
+         */
+        final boolean direct;
+
+        ElementInfo(String name, Field field, Class defaultType) {
+            this.name = name;
+            this.field = field;
+            this.type = field==null ? null : field.getType();
+            this.defaultType = defaultType;
+            this.direct = field!=null && field.isAccessible()
+                    && (field.getModifiers()&(Modifier.FINAL|Modifier.STATIC))==0;
+        }
+
+        static final ElementInfo NONE = new ElementInfo(null,null,null);
+    }
+
     public static class DuplicateFieldException extends ConversionException {
         public DuplicateFieldException(String msg) {
             super(msg);
@@ -385,5 +578,12 @@ public class RobustReflectionConverter implements Converter {
         }
     }
 
+    /**
+     * Whether to cache reflection and mapper lookups per class. Off by default.
+     *
+     * @since 2.1.0
+     */
+    public static boolean CACHE_MEMBERS = Boolean.getBoolean(RobustReflectionConverter.class.getName()+".cacheMembers");
+
     private static final Logger LOGGER = Logger.getLogger(RobustReflectionConverter.class.getName());
 }
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent computations of the same key into one.
+ *
+ * <p>
+ * If a thread asks for a key that another thread is already computing, it waits for that
+ * computation to finish and gets the same result, instead of starting its own.
+ * Nothing is remembered once the computation completes; combine this with a cache
+ * if the results should also be reused later.
+ *
+ * @since 2.1.0
+ */
+public class SingleFlight<K,V> {
+    private final ConcurrentMap<K,FutureTask<V>> inFlight = new ConcurrentHashMap<K,FutureTask<V>>();
+
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * Computes the value for the given key with the given task,
+     * unless another thread is already doing so.
+     *
+     * @throws ExecutionException
+     *      if the task (this one or the one we joined) failed. The cause is the exception it threw.
+     */
+    public V get(K key, Callable<V> task) throws ExecutionException, InterruptedException {
+        FutureTask<V> f = new FutureTask<V>(task);
+        FutureTask<V> existing = inFlight.putIfAbsent(key,f);
+        if (existing!=null) {
+            shared.incrementAndGet();
+            return existing.get();
+        }
+
+        try {
+            computed.incrementAndGet();
+            f.run();
+            return f.get();
+        } finally {
+            inFlight.remove(key,f);
+        }
+    }
+
+    /**
+     * Number of computations actually performed.
+     */
+    public long getComputedCount() {
+        return computed.get();
+    }
+
+    /**
+     * Number of requests that were satisfied by joining a computation already in progress.
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache whose entries expire after a fixed time-to-live.
+ *
+ * <p>
+ * Unlike {@link Memoizer}, this cache can also remember that a key was looked up and
+ * <em>not</em> found ("negative caching"), so that repeated queries for something that
+ * doesn't exist don't hit the backend every time either.
+ *
+ * <p>
+ * Hit/miss counts are kept so that the effectiveness of the cache can be shown to the user.
+ *
+ * @since 2.1.0
+ */
+public class TimedCache<K,V> {
+    private final int maxSize;
+    private final long ttl;
+    private final long negativeTtl;
+
+    private final LinkedHashMap<K,Entry<V>> store;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize
+     *      Maximum number of entries (positive and negative combined) to retain.
+     * @param ttl
+     *      How long a found value stays valid, in milliseconds.
+     * @param negativeTtl
+     *      How long a "not found" result stays valid, in milliseconds.
+     *      0 to disable negative caching.
+     */
+    public TimedCache(int maxSize, long ttl, long negativeTtl) {
+        if (maxSize<=0)     throw new IllegalArgumentException("maxSize must be positive: "+maxSize);
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.store = new LinkedHashMap<K,Entry<V>>(16,0.75f,true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K,Entry<V>> eldest) {
+                if (size()>TimedCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up the cache.
+     *
+     * @return
+     *      null if the key isn't cached or it has expired. Otherwise the cached entry,
+     *      which may represent a cached miss. See {@link Entry#isMissing()}.
+     */
+    public Entry<V> get(K key) {
+        synchronized (store) {
+            Entry<V> e = store.get(key);
+            if (e!=null && e.isExpired()) {
+                store.remove(key);
+                e = null;
+            }
+            (e!=null ? hits : misses).incrementAndGet();
+            return e;
+        }
+    }
+
+    /**
+     * Caches a found value.
+     */
+    public void put(K key, V value) {
+        if (value==null)    throw new IllegalArgumentException();
+        if (ttl<=0)         return;
+        synchronized (store) {
+            store.put(key,new Entry<V>(value,System.currentTimeMillis()+ttl));
+        }
+    }
+
+    /**
+     * Remembers that the given key doesn't exist in the backend.
+     */
+    public void putMissing(K key) {
+        if (negativeTtl<=0) return;
+        synchronized (store) {
+            store.put(key,new Entry<V>(null,System.currentTimeMillis()+negativeTtl));
+        }
+    }
+
+    public void remove(K key) {
+        synchronized (store) {
+            store.remove(key);
+        }
+    }
+
+    /**
+     * Discards all the cached entries. Statistics are left intact.
+     */
+    public void clear() {
+        synchronized (store) {
+            store.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (store) {
+            return store.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Percentage of lookups that were satisfied by the cache, between 0 and 100.
+     */
+    public int getHitRatio() {
+        long h = hits.get(), total = h+misses.get();
+        return total==0 ? 0 : (int)(h*100/total);
+    }
+
+    /**
+     * Cached value, or a cached absence of the value.
+     */
+    public static final class Entry<V> {
+        private final V value;
+        private final long expiration;
+
+        private Entry(V value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+
+        /**
+         * Null if this entry records a miss.
+         */
+        public V getValue() {
+            return value;
+        }
+
+        public boolean isMissing() {
+            return value==null;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis()>=expiration;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import hudson.BulkChange;
+import hudson.XmlFile;
+import hudson.model.Hudson;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional write-behind persistence of {@link Saveable}s.
+ *
+ * <p>
+ * Normally {@link Saveable#save()} serializes the object through XStream and writes it to disk
+ * on the calling thread, often while holding the lock of the object. When this queue is
+ * {@link #ENABLED enabled}, {@link #save(Saveable, XmlFile, Object)} still serializes the object
+ * on the calling thread, so that it's a consistent snapshot taken under whatever lock the caller holds,
+ * but leaves the file I/O to a small pool of writer threads. If the same file is saved again before
+ * the writer gets to it, the two saves are coalesced into one write of the latest state.
+ *
+ * <p>
+ * {@link BulkChange} keeps working as before, as it's checked by the caller before the save reaches
+ * this queue. {@link SaveableListener}s are notified after the file is actually written, on the writer thread.
+ * {@link XmlFile} waits for pending writes of a file before reading it, so a load that follows a save
+ * sees the saved data.
+ *
+ * <p>
+ * The number of pending files is bounded. When the writers can't keep up, callers write on their own
+ * thread just like when this queue is disabled.
+ *
+ * @since 2.1.0
+ */
+public final class WriteBehindQueue {
+    /**
+     * Files waiting to be written, in the order they were first submitted.
+     */
+    private final LinkedHashMap<File,Task> pending = new LinkedHashMap<File,Task>();
+    /**
+     * Files that are being written right now, by the writer threads or by callers.
+     */
+    private final Map<File,Task> writing = new HashMap<File,Task>();
+
+    private final int maxPending;
+    private final int threads;
+    /**
+     * True once anything has been queued. Until then, there's nothing to flush or discard.
+     */
+    private volatile boolean started;
+    /**
+     * Number of writer threads that are running.
+     */
+    private int alive;
+
+    private long writeCount, coalescedCount, failureCount;
+    private long totalLatency, maxLatency;
+
+    public WriteBehindQueue(int threads, int maxPending) {
+        this.threads = threads;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Persists the given object to the given file and notifies {@link SaveableListener}s,
+     * either right away or later, depending on whether the write-behind is enabled.
+     *
+     * @param saveable
+     *      Object that's being saved, for {@link SaveableListener}.
+     * @param o
+     *      Object to serialize. Usually the same as {@code saveable}.
+     */
+    public static void save(Saveable saveable, XmlFile file, Object o) throws IOException {
+        if (ENABLED) {
+            INSTANCE.submit(saveable,file,o);
+        } else {
+            file.write(o);
+            if (Hudson.getInstance()!=null)
+                SaveableListener.fireOnChange(saveable,file);
+        }
+    }
+
+    public static WriteBehindQueue get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Serializes the given object right away, and queues the write of the file.
+     */
+    public void submit(Saveable saveable, XmlFile file, Object o) throws IOException {
+        String xml = file.toXML(o);
+        File f = file.getFile().getAbsoluteFile();
+        Task t;
+        synchronized (this) {
+            Task p = pending.get(f);
+            if (p!=null) {
+                // not written yet. just write the latest state when we get to it
+                p.saveable = saveable;
+                p.xml = xml;
+                p.file = file;
+                coalescedCount++;
+                return;
+            }
+
+            t = new Task(saveable,file,xml);
+            if (pending.size()<maxPending || writing.containsKey(f)) {
+                // if someone's writing this file now, we can't write it ourselves, so queue it even if we are full
+                pending.put(f,t);
+                startWriters();
+                notifyAll();
+                return;
+            }
+
+            // the writers are falling behind. do it ourselves
+            writing.put(f,t);
+        }
+        try {
+            t.write();
+        } finally {
+            done(f,t);
+        }
+    }
+
+    /**
+     * Makes sure that the pending write of the given file, or of any file in the given directory,
+     * is on disk when this method returns.
+     *
+     * <p>
+     * Pending writes are done on the calling thread rather than left to the writers,
+     * so this doesn't depend on the writer threads being alive.
+     */
+    public void flush(File fileOrDir) {
+        if (!started)   return;
+        do {
+            for (Map.Entry<File,Task> e : takePending(fileOrDir)) {
+                try {
+                    e.getValue().write();
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "Failed to save "+e.getKey(), x);
+                } finally {
+                    done(e.getKey(),e.getValue());
+                }
+            }
+        } while (awaitWriting(fileOrDir));
+    }
+
+    /**
+     * Drops the pending writes of the given file or files in the given directory,
+     * typically because it's about to be deleted, and waits for the writes in progress.
+     */
+    public void discard(File fileOrDir) {
+        if (!started)   return;
+        do {
+            for (Map.Entry<File,Task> e : takePending(fileOrDir))
+                done(e.getKey(),null);
+        } while (awaitWriting(fileOrDir));
+    }
+
+    /**
+     * Writes everything that's pending, then waits for the writers to finish. Used during the shutdown.
+     */
+    public void flushAll() {
+        flush(null);
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Number of files waiting to be written.
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Number of saves that didn't result in a write, because a newer save of the same file came in.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Average time between a save and the data hitting the disk, in milliseconds.
+     */
+    public synchronized long getAverageLatency() {
+        return writeCount==0 ? 0 : totalLatency/writeCount;
+    }
+
+    public synchronized long getMaxLatency() {
+        return maxLatency;
+    }
+
+    private synchronized List<Map.Entry<File,Task>> takePending(File fileOrDir) {
+        List<Map.Entry<File,Task>> r = new ArrayList<Map.Entry<File,Task>>();
+        for (Iterator<Map.Entry<File,Task>> itr = pending.entrySet().iterator(); itr.hasNext();) {
+            Map.Entry<File,Task> e = itr.next();
+            if (matches(fileOrDir,e.getKey()) && !writing.containsKey(e.getKey())) {
+                itr.remove();
+                writing.put(e.getKey(),e.getValue());
+                r.add(e);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Waits until none of the given files are being written.
+     *
+     * @return
+     *      true if some of them were submitted again in the mean time and are now pending.
+     */
+    private synchronized boolean awaitWriting(File fileOrDir) {
+        try {
+            while (true) {
+                boolean busy = false;
+                for (File f : writing.keySet())
+                    busy |= matches(fileOrDir,f);
+                if (!busy)  break;
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        for (File f : pending.keySet())
+            if (matches(fileOrDir,f))
+                return true;
+        return false;
+    }
+
+    private static boolean matches(File fileOrDir, File f) {
+        if (fileOrDir==null)    return true;
+        String base = fileOrDir.getAbsolutePath();
+        String path = f.getPath();
+        return path.equals(base) || path.startsWith(base+File.separatorChar);
+    }
+
+    /**
+     * Marks the given file as no longer being written, records the statistics,
+     * and notifies the listeners if the file was written successfully.
+     *
+     * @param t
+     *      The task that was written, or null if it was discarded.
+     */
+    private void done(File f, Task t) {
+        synchronized (this) {
+            writing.remove(f);
+            if (t!=null) {
+                if (t.failed) {
+                    failureCount++;
+                } else {
+                    long latency = System.currentTimeMillis()-t.submitted;
+                    writeCount++;
+                    totalLatency += latency;
+                    maxLatency = Math.max(maxLatency,latency);
+                }
+            }
+            notifyAll();
+        }
+        // notify listeners outside the bookkeeping, as they may take locks of their own
+        if (t!=null && !t.failed)
+            t.fireOnChange();
+    }
+
+    private synchronized Map.Entry<File,Task> next() throws InterruptedException {
+        while (true) {
+            for (Iterator<Map.Entry<File,Task>> itr = pending.entrySet().iterator(); itr.hasNext();) {
+                Map.Entry<File,Task> e = itr.next();
+                if (writing.containsKey(e.getKey()))    continue;   // wait till the current write completes
+                itr.remove();
+                writing.put(e.getKey(),e.getValue());
+                return e;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Starts the writer threads, or replaces those that died.
+     */
+    private synchronized void startWriters() {
+        started = true;
+        for (int i=alive; i<threads; i++) {
+            Thread t = new Thread("Write-behind persistence #"+i) {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Map.Entry<File,Task> e;
+                            try {
+                                e = next();
+                            } catch (InterruptedException x) {
+                                return;
+                            }
+                            try {
+                                e.getValue().write();
+                            } catch (Throwable x) {
+                                // keep going no matter what, or the pending files would never be written
+                                LOGGER.log(Level.WARNING, "Failed to save "+e.getKey(), x);
+                            }
+                            try {
+                                done(e.getKey(),e.getValue());
+                            } catch (Throwable x) {
+                                LOGGER.log(Level.WARNING, "Failed to notify the listeners of "+e.getKey(), x);
+                            }
+                        }
+                    } finally {
+                        writerExited();
+                    }
+                }
+            };
+            t.setDaemon(true);
+            t.start();
+            alive++;
+        }
+    }
+
+    /**
+     * Lets the next submission start a replacement.
+     */
+    private synchronized void writerExited() {
+        alive--;
+    }
+
+    private static final class Task {
+        private Saveable saveable;
+        private XmlFile file;
+        /**
+         * The serialized form of the object, as of the save.
+         */
+        private String xml;
+        private final long submitted = System.currentTimeMillis();
+        private boolean failed;
+
+        Task(Saveable saveable, XmlFile file, String xml) {
+            this.saveable = saveable;
+            this.file = file;
+            this.xml = xml;
+        }
+
+        void write() throws IOException {
+            failed = true;
+            file.writeRaw(xml);
+            failed = false;
+        }
+
+        void fireOnChange() {
+            if (Hudson.getInstance()!=null)
+                SaveableListener.fireOnChange(saveable,file);
+        }
+    }
+
+    /**
+     * Whether saves are written asynchronously. Off by default.
+     */
+    public static boolean ENABLED = Boolean.getBoolean(WriteBehindQueue.class.getName()+".enabled");
+
+    private static final WriteBehindQueue INSTANCE = new WriteBehindQueue(
+            Integer.getInteger(WriteBehindQueue.class.getName()+".threads",2),
+            Integer.getInteger(WriteBehindQueue.class.getName()+".maxPending",10000));
+
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindQueue.class.getName());
+}
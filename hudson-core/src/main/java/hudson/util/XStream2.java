@@ -92,6 +92,105 @@ public class XStream2 extends XStream {
         return reflectionConverter;
     }
 
+    // the reflection converter caches what the mapper says about each class,
+    // so tell it when the mapping changes. Every mutator that affects what's cached is overridden.
+
+    @Override
+    public void alias(String name, Class type) {
+        super.alias(name, type);
+        clearCache();
+    }
+
+    @Override
+    public void alias(String name, Class type, Class defaultImplementation) {
+        super.alias(name, type, defaultImplementation);
+        clearCache();
+    }
+
+    @Override
+    public void aliasType(String name, Class type) {
+        super.aliasType(name, type);
+        clearCache();
+    }
+
+    @Override
+    public void aliasPackage(String name, String pkgName) {
+        super.aliasPackage(name, pkgName);
+        clearCache();
+    }
+
+    @Override
+    public void aliasAttribute(String alias, String attributeName) {
+        super.aliasAttribute(alias, attributeName);
+        clearCache();
+    }
+
+    @Override
+    public void aliasAttribute(Class definedIn, String attributeName, String alias) {
+        super.aliasAttribute(definedIn, attributeName, alias);
+        clearCache();
+    }
+
+    @Override
+    public void aliasField(String alias, Class definedIn, String fieldName) {
+        super.aliasField(alias, definedIn, fieldName);
+        clearCache();
+    }
+
+    @Override
+    public void omitField(Class definedIn, String fieldName) {
+        super.omitField(definedIn, fieldName);
+        clearCache();
+    }
+
+    @Override
+    public void addImplicitCollection(Class ownerType, String fieldName) {
+        super.addImplicitCollection(ownerType, fieldName);
+        clearCache();
+    }
+
+    @Override
+    public void addImplicitCollection(Class ownerType, String fieldName, Class itemType) {
+        super.addImplicitCollection(ownerType, fieldName, itemType);
+        clearCache();
+    }
+
+    @Override
+    public void addImplicitCollection(Class ownerType, String fieldName, String itemFieldName, Class itemType) {
+        super.addImplicitCollection(ownerType, fieldName, itemFieldName, itemType);
+        clearCache();
+    }
+
+    @Override
+    public void addDefaultImplementation(Class defaultImplementation, Class ofType) {
+        super.addDefaultImplementation(defaultImplementation, ofType);
+        clearCache();
+    }
+
+    @Override
+    public void useAttributeFor(Class definedIn, String fieldName) {
+        super.useAttributeFor(definedIn, fieldName);
+        clearCache();
+    }
+
+    @Override
+    public void useAttributeFor(String fieldName, Class type) {
+        super.useAttributeFor(fieldName, type);
+        clearCache();
+    }
+
+    @Override
+    public void useAttributeFor(Class type) {
+        super.useAttributeFor(type);
+        clearCache();
+    }
+
+    private void clearCache() {
+        // null while the super constructor sets up the default aliases
+        if (reflectionConverter instanceof RobustReflectionConverter)
+            ((RobustReflectionConverter)reflectionConverter).clearCache();
+    }
+
     private void init() {
         // list up types that should be marshalled out like a value, without referencial integrity tracking.
         addImmutableType(Result.class);
@@ -24,9 +24,14 @@
 package hudson;
 
 import hudson.model.Saveable;
+import hudson.util.AtomicFileWriter;
 import junit.framework.TestCase;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 
 /**
  * Tests {@link BulkChange}.
@@ -112,4 +117,102 @@ public class BulkChangeTest extends TestCase {
         }
         assertEquals(1,pt.saveCount);
     }
+
+    /**
+     * A {@link Saveable} that writes its own file.
+     */
+    private class Document implements Saveable {
+        final File file;
+        String text;
+
+        Document(File file, String text) {
+            this.file = file;
+            this.text = text;
+        }
+
+        public void save() throws IOException {
+            if(BulkChange.contains(this))   return;
+            AtomicFileWriter w = new AtomicFileWriter(file);
+            try {
+                w.write(text);
+                w.commit();
+            } finally {
+                w.abort();
+            }
+        }
+
+        String read() throws IOException {
+            BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                return r.readLine();
+            } finally {
+                r.close();
+            }
+        }
+    }
+
+    /**
+     * In the durable mode, everything saved while a {@link BulkChange} is in scope,
+     * not just the object of the bulk change, shares one sync point.
+     */
+    public void testBulkChangeBatchesAllFilesSavedInScope() throws Exception {
+        File dir = Util.createTempDir();
+        AtomicFileWriter.DURABLE = true;
+        try {
+            Document global = new Document(new File(dir,"config.xml"), "old");
+            Document d1 = new Document(new File(dir,"d1.xml"), "old");
+            Document d2 = new Document(new File(dir,"d2.xml"), "old");
+            global.save();
+            d1.save();
+            d2.save();
+
+            BulkChange bc = new BulkChange(global);
+            try {
+                global.text = d1.text = d2.text = "new";
+                global.save();
+                d1.save();
+                d2.save();
+                // nothing is replaced until the bulk change commits
+                assertTrue(AtomicFileWriter.Batch.current().isPending(d1.file));
+                assertTrue(AtomicFileWriter.Batch.current().isPending(d2.file));
+                assertEquals("old", d1.read());
+                assertEquals("old", d2.read());
+            } finally {
+                bc.commit();
+            }
+            assertNull(AtomicFileWriter.Batch.current());
+            assertEquals("new", global.read());
+            assertEquals("new", d1.read());
+            assertEquals("new", d2.read());
+            assertEquals(3, dir.list().length);
+        } finally {
+            AtomicFileWriter.DURABLE = false;
+            Util.deleteRecursive(dir);
+        }
+    }
+
+    /**
+     * Files saved by other objects are committed even if the bulk change is aborted.
+     */
+    public void testAbortCommitsOtherFiles() throws Exception {
+        File dir = Util.createTempDir();
+        AtomicFileWriter.DURABLE = true;
+        try {
+            Point pt = new Point();
+            Document d = new Document(new File(dir,"d.xml"), "d");
+            BulkChange bc = new BulkChange(pt);
+            try {
+                d.save();
+                assertFalse(d.file.exists());
+            } finally {
+                bc.abort();
+            }
+            assertNull(AtomicFileWriter.Batch.current());
+            assertEquals("d", d.read());
+            assertEquals(0, pt.saveCount);
+        } finally {
+            AtomicFileWriter.DURABLE = false;
+            Util.deleteRecursive(dir);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import hudson.MarkupText;
+import hudson.console.AnnotatedLargeText.AnnotatorCache;
+import junit.framework.TestCase;
+import org.kohsuke.stapler.framework.io.ByteBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+public class AnnotatedLargeTextTest extends TestCase {
+    public void testChunkEndsAtLineBoundary() throws Exception {
+        AnnotatedLargeText<Void> text = text("line1\nline2\npartial", false);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(12, text.writeLogTo(0, 1024, true, out));
+        assertEquals("line1\nline2\n", out.toString());
+
+        out.reset();
+        assertEquals(6, text.writeLogTo(0, 8, true, out));
+        assertEquals("line1\n", out.toString());
+
+        // the incomplete last line is held back until it's complete
+        out.reset();
+        assertEquals(12, text.writeLogTo(12, 1024, true, out));
+        assertEquals("", out.toString());
+    }
+
+    public void testCompletedTextIsSentToTheEnd() throws Exception {
+        AnnotatedLargeText<Void> text = text("line1\nlast", true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(10, text.writeLogTo(0, 1024, false, out));
+        assertEquals("line1\nlast", out.toString());
+    }
+
+    public void testLongLineIsSplit() throws Exception {
+        AnnotatedLargeText<Void> text = text("abcdefghij\n", false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(4, text.writeLogTo(0, 4, true, out));
+        assertEquals("abcd", out.toString());
+        out.reset();
+        assertEquals(11, text.writeLogTo(4, 1024, true, out));
+        assertEquals("efghij\n", out.toString());
+    }
+
+    public void testAnnotatorCache() {
+        AnnotatorCache cache = new AnnotatorCache(1);
+        Object build = new Object();
+        ConsoleAnnotator a = new NoopAnnotator();
+
+        String token = cache.put("new", build, 100, a);
+        assertFalse("new".equals(token));
+        assertSame(a, cache.get(token, build, 100));
+        // only picked up where it left off, and only for the same text
+        assertNull(cache.get(token, build, 50));
+        assertNull(cache.get(token, new Object(), 100));
+        // the token is kept as the client follows the text
+        assertEquals(token, cache.put(token, build, 200, a));
+
+        cache.put("new", new Object(), 0, a);
+        assertEquals(1, cache.size());
+        assertNull(cache.get(token, build, 200));
+    }
+
+    private static AnnotatedLargeText<Void> text(String s, boolean completed) throws Exception {
+        ByteBuffer buf = new ByteBuffer();
+        buf.write(s.getBytes("US-ASCII"));
+        return new AnnotatedLargeText<Void>(buf, Charset.forName("US-ASCII"), completed, null);
+    }
+
+    private static class NoopAnnotator extends ConsoleAnnotator<Object> {
+        public ConsoleAnnotator annotate(Object context, MarkupText text) {
+            return this;
+        }
+    }
+}
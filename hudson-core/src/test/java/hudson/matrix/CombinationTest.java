@@ -25,8 +25,16 @@ package hudson.matrix;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.TreeMap;
 
 /**
  * @author Kohsuke Kawaguchi
@@ -56,6 +64,68 @@ public class CombinationTest extends TestCase {
         assertTrue(eval(c,"index%2==1")^eval(d,"index%2==1"));
     }
 
+    @SuppressWarnings({"RedundantStringConstructorCall"})
+    public void testEqualsAndHashCode() {
+        Combination c = new Combination(axes,"X","y");
+        Combination d = new Combination(axes,new String("X"),new String("y"));
+        assertEquals(c,d);
+        assertEquals(c.hashCode(),d.hashCode());
+        assertFalse(c.equals(new Combination(axes,"X","Y")));
+
+        // still a Map, as far as other maps are concerned
+        Map<String,String> m = new HashMap<String,String>();
+        m.put("a","X");
+        m.put("b","y");
+        assertEquals(m,c);
+        assertEquals(c,m);
+        assertEquals(m.hashCode(),c.hashCode());
+        assertEquals(new TreeMap<String,String>(m),c);
+
+        Map<Combination,String> keys = new HashMap<Combination,String>();
+        keys.put(c,"value");
+        assertEquals("value",keys.get(d));
+
+        // values are interned
+        assertSame(c.get("a"),d.get("a"));
+    }
+
+    public void testCompareTo() {
+        List<Combination> l = new ArrayList<Combination>();
+        for (Combination c : axes.list())
+            l.add(c);
+        l.add(new Combination(Collections.singletonMap("a","x")));
+        Collections.shuffle(l);
+        Collections.sort(l);
+        assertEquals("a=x",l.get(0).toString());
+        assertEquals("a=X,b=Y",l.get(1).toString());
+        assertEquals("a=X,b=y",l.get(2).toString());
+        assertEquals("a=x,b=Y",l.get(3).toString());
+        assertEquals("a=x,b=y",l.get(4).toString());
+        assertEquals(0,new Combination(axes,"x","y").compareTo(l.get(4)));
+    }
+
+    @SuppressWarnings({"RedundantStringConstructorCall"})
+    public void testSerialization() throws Exception {
+        Combination c = new Combination(axes,"X",new String("y"));
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(buf);
+        out.writeObject(c);
+        out.close();
+        Combination d = (Combination)new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray())).readObject();
+
+        assertEquals(c,d);
+        assertEquals(c.hashCode(),d.hashCode());
+        assertEquals(0,c.compareTo(d));
+        // readResolve interned them again
+        assertSame(c.get("b"),d.get("b"));
+        try {
+            d.put("a","z");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // read-only
+        }
+    }
+
     private boolean eval(Combination c, String exp) {
         return c.evalGroovyExpression(axes, exp);
     }
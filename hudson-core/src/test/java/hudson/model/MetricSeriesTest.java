@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.util.Histogram;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+public class MetricSeriesTest extends TestCase {
+    public void testPercentilesAreWithinPrecision() {
+        Histogram h = new Histogram();
+        for (int i=1; i<=100000; i++)
+            h.record(i);
+        assertEquals(100000, h.getCount());
+        assertClose(50000, h.getValueAtPercentile(50));
+        assertClose(95000, h.getValueAtPercentile(95));
+        assertClose(99000, h.getValueAtPercentile(99));
+        assertEquals(100000, h.getValueAtPercentile(100));
+        assertEquals(1, h.getMin());
+    }
+
+    public void testRingKeepsTheNewestSamples() {
+        MetricSeries s = new MetricSeries(100);
+        for (int i=0; i<250; i++)
+            s.record(i,i);
+        assertEquals(100, s.size());
+        Histogram h = s.histogram(0);
+        assertEquals(150, h.getMin());
+        assertEquals(249, h.getMax());
+
+        // only the samples in the window
+        assertEquals(10, s.histogram(240).getCount());
+    }
+
+    public void testPersistence() throws Exception {
+        MetricSeries s = new MetricSeries(1000);
+        long now = System.currentTimeMillis();
+        for (int i=0; i<500; i++)
+            s.record(now+i*10000L, i%7==0 ? -1 : i*1000L);
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        s.write(new DataOutputStream(buf));
+        // delta-encoded times and small values fit in a few bytes each
+        assertTrue(buf.size()<500*6);
+
+        MetricSeries t = new MetricSeries(1000);
+        t.read(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+        assertEquals(s.size(), t.size());
+        for (long since : new long[]{0, now+2500000L}) {
+            Histogram a = s.histogram(since), b = t.histogram(since);
+            assertEquals(a.getCount(), b.getCount());
+            assertEquals(a.getValueAtPercentile(95), b.getValueAtPercentile(95));
+        }
+    }
+
+    public void testReadReplacesSamples() throws Exception {
+        MetricSeries s = new MetricSeries(100);
+        for (int i=0; i<10; i++)
+            s.record(i, 5);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        s.write(new DataOutputStream(buf));
+
+        // reading the same data twice doesn't double it
+        for (int i=0; i<2; i++) {
+            s.read(new DataInputStream(new ByteArrayInputStream(buf.toByteArray())));
+            assertEquals(10, s.size());
+        }
+        s.record(10, 7);
+        assertEquals(11, s.histogram(0).getCount());
+        assertEquals(7, s.histogram(10).getValueAtPercentile(100));
+    }
+
+    public void testCoveredSince() {
+        MetricSeries s = new MetricSeries(100);
+        for (int i=0; i<100; i++)
+            s.record(i,i);
+        assertEquals(0, s.getCoveredSince());
+        s.record(100,100);
+        // the sample at 0 is gone
+        assertEquals(1, s.getCoveredSince());
+
+        assertEquals(Long.MIN_VALUE, new MetricSeries(100).getCoveredSince());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(actual+" isn't close to "+expected, Math.abs(actual-expected)<=expected/16);
+    }
+}
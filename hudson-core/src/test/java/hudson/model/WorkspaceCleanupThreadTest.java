@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.Functions;
+import hudson.Util;
+import hudson.model.WorkspaceCleanupThread.DeleteResult;
+import hudson.model.WorkspaceCleanupThread.Deleter;
+import hudson.util.StreamTaskListener;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+public class WorkspaceCleanupThreadTest extends TestCase {
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = Util.createTempDir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(root);
+        super.tearDown();
+    }
+
+    public void testDeletesWorkspacesInParallel() throws Exception {
+        long size = 0;
+        for (String ws : Arrays.asList("a","b")) {
+            for (int i=0; i<5; i++)
+                size += write(new File(root,ws+"/d"+i+"/f"), 100*(i+1));
+            size += write(new File(root,ws+"/top"), 10);
+        }
+        File keep = new File(root,"c/f");
+        write(keep, 10);
+
+        Map<String,DeleteResult> r = new Deleter(Arrays.asList("a","b"),3).invoke(root,null);
+
+        assertFalse(new File(root,"a").exists());
+        assertFalse(new File(root,"b").exists());
+        assertTrue(keep.exists());
+        assertEquals(2, r.size());
+        assertNull(r.get("a").error);
+        assertNull(r.get("b").error);
+        assertEquals(size, r.get("a").freed+r.get("b").freed);
+    }
+
+    public void testSymlinkedWorkspaceIsOnlyUnlinked() throws Exception {
+        if (Functions.isWindows())     return;
+
+        File target = new File(root,"outside");
+        File precious = new File(target,"sub/precious");
+        write(precious, 50);
+        File ws = new File(root,"ws");
+        ws.mkdirs();
+        Util.createSymlink(ws,"../outside","linked",StreamTaskListener.fromStderr());
+        File link = new File(ws,"linked");
+        assertTrue(Util.isSymlink(link));
+
+        Map<String,DeleteResult> r = new Deleter(Arrays.asList("linked"),2).invoke(ws,null);
+
+        assertFalse(Util.isSymlink(link));
+        assertFalse(link.exists());
+        assertTrue(precious.exists());
+        assertNull(r.get("linked").error);
+        assertEquals(0, r.get("linked").freed);
+    }
+
+    private static long write(File f, int size) throws IOException {
+        f.getParentFile().mkdirs();
+        FileOutputStream o = new FileOutputStream(f);
+        try {
+            o.write(new byte[size]);
+        } finally {
+            o.close();
+        }
+        return size;
+    }
+}
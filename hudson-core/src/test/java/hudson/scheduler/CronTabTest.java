@@ -106,6 +106,30 @@ public class CronTabTest extends TestCase {
         compare(answer,x.floor(c));
     }
 
+    public void testCeilImpossible() throws Exception {
+        // there's no February 30th
+        CronTab x = new CronTab("0 0 30 2 *");
+        try {
+            x.ceil(new GregorianCalendar(2010,0,1,0,0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCeilList() throws Exception {
+        CronTabList x = CronTabList.create("0 3 * * *\n30 1 * * *\n0 0 30 2 *");
+        Calendar c = new GregorianCalendar(2000,2,1,2,0);
+        compare(new GregorianCalendar(2000,2,1,3,0),x.ceil(c));
+        // the given calendar is left intact
+        assertEquals(new GregorianCalendar(2000,2,1,2,0),c);
+
+        c = new GregorianCalendar(2000,2,1,4,0);
+        compare(new GregorianCalendar(2000,2,2,1,30),x.ceil(c));
+
+        assertNull(CronTabList.create("# nothing\n").ceil(c));
+    }
+
     /**
      * Humans can't easily see difference in two {@link Calendar}s, do help the diagnosis by using {@link DateFormat}. 
      */
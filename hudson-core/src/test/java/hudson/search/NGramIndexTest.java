@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.search;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class NGramIndexTest extends TestCase {
+    public void testSubstringMatch() {
+        NGramIndex<String> index = new NGramIndex<String>();
+        index.put("a", "hudson-core");
+        index.put("b", "hudson-maven-plugin");
+        index.put("c", "core-tests");
+
+        assertEquals(Arrays.asList("a", "c"), sorted(index.find("core")));
+        assertEquals(Arrays.asList("a", "b"), sorted(index.find("hudson-")));
+        assertEquals(Collections.emptyList(), index.find("xyz"));
+        // the n-grams match, but not in this order
+        assertEquals(Collections.emptyList(), index.find("corehud"));
+        // case sensitive, like CollectionSearchIndex
+        assertEquals(Collections.emptyList(), index.find("Core"));
+    }
+
+    public void testShortToken() {
+        NGramIndex<String> index = new NGramIndex<String>();
+        index.put("a", "ab");
+        index.put("b", "xyz");
+        assertEquals(Arrays.asList("a"), index.find("b"));
+        assertEquals(Arrays.asList("a", "b"), sorted(index.find("")));
+    }
+
+    public void testRenameAndRemove() {
+        NGramIndex<String> index = new NGramIndex<String>();
+        index.put("a", "old-name");
+        index.put("a", "new-name");
+        assertEquals(1, index.size());
+        assertEquals(Collections.emptyList(), index.find("old"));
+        assertEquals(Arrays.asList("a"), index.find("new"));
+
+        index.remove("a");
+        assertEquals(0, index.size());
+        assertEquals(Collections.emptyList(), index.find("name"));
+    }
+
+    private static List<String> sorted(List<String> l) {
+        Collections.sort(l);
+        return l;
+    }
+}
@@ -49,4 +49,23 @@ public class SearchTest extends TestCase {
         assertEquals("/abc-def-ghi",l.get(0).getUrl());
         assertEquals("/abc/def-ghi",l.get(1).getUrl());
     }
+
+    public void testSuggestKeepsTheBest() {
+        SearchIndex si = new SearchIndexBuilder()
+            .add("xfoo")
+            .add("foo")
+            .add("foobar")
+            .add("foo-baz")
+            .add("bar")
+            .make();
+
+        List<SuggestedItem> all = Search.suggest(si, "foo");
+        assertEquals(4, all.size());
+        assertEquals("foo", all.get(0).getPath());
+
+        List<SuggestedItem> top = Search.suggest(si, "foo", 2, true);
+        assertEquals(2, top.size());
+        assertEquals(all.get(0).getPath(), top.get(0).getPath());
+        assertEquals(all.get(1).getPath(), top.get(1).getPath());
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.security;
+
+import hudson.security.LDAPSecurityRealm.CacheConfiguration;
+import hudson.security.LDAPSecurityRealm.LDAPUserDetailsService;
+import hudson.util.TimedCache;
+import junit.framework.TestCase;
+import org.acegisecurity.GrantedAuthority;
+import org.acegisecurity.GrantedAuthorityImpl;
+import org.acegisecurity.ldap.LdapDataAccessException;
+import org.acegisecurity.ldap.LdapUserSearch;
+import org.acegisecurity.providers.ldap.LdapAuthoritiesPopulator;
+import org.acegisecurity.userdetails.UsernameNotFoundException;
+import org.acegisecurity.userdetails.ldap.LdapUserDetails;
+import org.acegisecurity.userdetails.ldap.LdapUserDetailsImpl;
+
+import javax.naming.directory.BasicAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exercises the lookup cache of {@link LDAPSecurityRealm} against an in-memory directory.
+ */
+public class LDAPSecurityRealmTest extends TestCase {
+    private final InMemoryDirectory ldap = new InMemoryDirectory();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ldap.addUser("alice", "developers");
+        ldap.addUser("bob", "developers", "admins");
+    }
+
+    public void testNoCacheGoesToDirectoryEveryTime() {
+        LDAPUserDetailsService service = new LDAPUserDetailsService(ldap, ldap);
+        for (int i=0; i<5; i++)
+            assertEquals("alice", service.loadUserByUsername("alice").getUsername());
+        assertEquals(5, ldap.searches);
+    }
+
+    public void testPositiveLookupsAreCached() {
+        TimedCache<String,LdapUserDetails> cache = new CacheConfiguration(10, 60, 60).createCache();
+        LDAPUserDetailsService service = new LDAPUserDetailsService(ldap, ldap, cache);
+
+        for (int i=0; i<5; i++) {
+            LdapUserDetails bob = service.loadUserByUsername("bob");
+            assertEquals("bob", bob.getUsername());
+            // the authorities populator is applied before the result is cached
+            assertEquals(2, bob.getAuthorities().length);
+        }
+        assertEquals(1, ldap.searches);
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testNegativeLookupsAreCached() {
+        TimedCache<String,LdapUserDetails> cache = new CacheConfiguration(10, 60, 60).createCache();
+        LDAPUserDetailsService service = new LDAPUserDetailsService(ldap, ldap, cache);
+
+        for (int i=0; i<3; i++) {
+            try {
+                service.loadUserByUsername("mallory");
+                fail();
+            } catch (UsernameNotFoundException e) {
+                // expected
+            }
+        }
+        assertEquals(1, ldap.searches);
+    }
+
+    public void testNegativeCachingCanBeDisabled() {
+        TimedCache<String,LdapUserDetails> cache = new CacheConfiguration(10, 60, 0).createCache();
+        LDAPUserDetailsService service = new LDAPUserDetailsService(ldap, ldap, cache);
+
+        for (int i=0; i<3; i++) {
+            try {
+                service.loadUserByUsername("mallory");
+                fail();
+            } catch (UsernameNotFoundException e) {
+                // expected
+            }
+        }
+        assertEquals(3, ldap.searches);
+    }
+
+    public void testDirectoryFailureIsNotCached() {
+        TimedCache<String,LdapUserDetails> cache = new CacheConfiguration(10, 60, 60).createCache();
+        LDAPUserDetailsService service = new LDAPUserDetailsService(ldap, ldap, cache);
+
+        ldap.down = true;
+        try {
+            service.loadUserByUsername("alice");
+            fail();
+        } catch (UserMayOrMayNotExistException e) {
+            // expected
+        }
+
+        ldap.down = false;
+        assertEquals("alice", service.loadUserByUsername("alice").getUsername());
+        assertEquals(2, ldap.searches);
+    }
+
+    public void testSizeBound() {
+        TimedCache<String,LdapUserDetails> cache = new CacheConfiguration(1, 60, 60).createCache();
+        LDAPUserDetailsService service = new LDAPUserDetailsService(ldap, ldap, cache);
+
+        service.loadUserByUsername("alice");
+        service.loadUserByUsername("bob");
+        service.loadUserByUsername("alice");
+        assertEquals(3, ldap.searches);
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    public void testExpiration() throws Exception {
+        TimedCache<String,String> cache = new TimedCache<String,String>(10, 50, 50);
+        cache.put("a", "1");
+        cache.putMissing("b");
+        assertEquals("1", cache.get("a").getValue());
+        assertTrue(cache.get("b").isMissing());
+
+        Thread.sleep(100);
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Stand-in for an LDAP server, which counts the number of queries made against it.
+     */
+    private static class InMemoryDirectory implements LdapUserSearch, LdapAuthoritiesPopulator {
+        private final Map<String,String[]> users = new HashMap<String,String[]>();
+        int searches;
+        boolean down;
+
+        void addUser(String name, String... groups) {
+            users.put(name, groups);
+        }
+
+        public LdapUserDetails searchForUser(String username) {
+            searches++;
+            if (down)
+                throw new LdapDataAccessException("Connection refused", null);
+            if (!users.containsKey(username))
+                throw new UsernameNotFoundException(username);
+
+            LdapUserDetailsImpl.Essence e = new LdapUserDetailsImpl.Essence();
+            e.setDn("uid="+username+",ou=people,dc=example,dc=org");
+            e.setUsername(username);
+            e.setPassword("");
+            e.setAttributes(new BasicAttributes());
+            return e.createUserDetails();
+        }
+
+        public GrantedAuthority[] getGrantedAuthorities(LdapUserDetails user) {
+            String[] groups = users.get(user.getUsername());
+            GrantedAuthority[] r = new GrantedAuthority[groups.length];
+            for (int i=0; i<groups.length; i++)
+                r[i] = new GrantedAuthorityImpl("ROLE_"+groups[i].toUpperCase());
+            return r;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.slaves;
+
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.slaves.NodeProvisioner.PlannedNode;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+/**
+ * Replays queue traces against {@link CapacityForecast} and a fake {@link Cloud},
+ * and checks how long builds wait for an executor.
+ *
+ * <p>
+ * This only covers the forecast. {@link NodeProvisioner} itself, with the reviews the queue
+ * asks for, is tested in the test harness.
+ */
+public class CapacityForecastSimulationTest extends TestCase {
+    public void testBurstIsProvisionedAtOnce() throws Exception {
+        List<Arrival> trace = new ArrayList<Arrival>();
+        for (int i=0; i<200; i++)
+            trace.add(new Arrival(0, 300));
+
+        Result r = new Simulator(60, 0).replay(trace);
+        LOGGER.fine("burst: "+r);
+        // everyone gets an executor as soon as the first wave of nodes is up
+        assertTrue(r.percentile(99)<=61);
+        assertEquals(200, r.provisioned);
+    }
+
+    public void testShortBuildsReuseBusyExecutors() throws Exception {
+        // a steady stream of short builds on a single node. they all fit after one another,
+        // so there's nothing to provision
+        Result r = new Simulator(60, 0).withExecutors(1).replay(parse(
+                "0 10\n" +
+                "1 10\n" +
+                "2 10\n" +
+                "3 10\n"));
+        LOGGER.fine("short builds: "+r);
+        assertEquals(0, r.provisioned);
+        assertEquals(27, r.percentile(100));
+    }
+
+    public void testWarmPool() throws Exception {
+        List<Arrival> trace = new ArrayList<Arrival>();
+        for (int i=0; i<20; i++)
+            trace.add(new Arrival(600+i*1800, 120));
+
+        Result cold = new Simulator(60, 0).replay(trace);
+        Result warm = new Simulator(60, 2).replay(trace);
+        LOGGER.fine("cold: "+cold);
+        LOGGER.fine("warm: "+warm);
+        assertTrue(cold.percentile(50)>=60);
+        assertEquals(0, warm.percentile(100));
+    }
+
+    /**
+     * Parses a trace, which has the arrival time and the duration of a build in seconds, one per line.
+     */
+    static List<Arrival> parse(String trace) throws IOException {
+        return parse(new StringReader(trace));
+    }
+
+    static List<Arrival> parse(Reader trace) throws IOException {
+        List<Arrival> r = new ArrayList<Arrival>();
+        BufferedReader in = new BufferedReader(trace);
+        String line;
+        while ((line=in.readLine())!=null) {
+            line = line.trim();
+            if (line.length()==0 || line.startsWith("#"))   continue;
+            String[] tokens = line.split("\\s+");
+            r.add(new Arrival(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1])));
+        }
+        return r;
+    }
+
+    static final class Arrival {
+        final int time, duration;
+
+        Arrival(int time, int duration) {
+            this.time = time;
+            this.duration = duration;
+        }
+    }
+
+    static final class Result {
+        final List<Integer> waits = new ArrayList<Integer>();
+        int provisioned;
+
+        /**
+         * Seconds a build waited for an executor, at the given percentile.
+         */
+        int percentile(int p) {
+            List<Integer> sorted = new ArrayList<Integer>(waits);
+            Collections.sort(sorted);
+            int idx = (int)Math.ceil(sorted.size()*p/100.0)-1;
+            return sorted.get(Math.max(0,idx));
+        }
+
+        @Override
+        public String toString() {
+            return "p50="+percentile(50)+"s p90="+percentile(90)+"s p99="+percentile(99)+"s max="+percentile(100)
+                    +"s, "+provisioned+" executors provisioned";
+        }
+    }
+
+    /**
+     * {@link Cloud} that brings up single-executor nodes after a fixed delay of simulated time.
+     */
+    static final class FakeCloud extends Cloud {
+        private final Simulator sim;
+
+        FakeCloud(Simulator sim) {
+            super("fake");
+            this.sim = sim;
+        }
+
+        public Collection<PlannedNode> provision(Label label, int excessWorkload) {
+            List<PlannedNode> r = new ArrayList<PlannedNode>();
+            for (int i=0; i<excessWorkload; i++) {
+                r.add(new PlannedNode("fake-"+sim.provisioned, new FutureTask<Node>(new Callable<Node>() {
+                    public Node call() {
+                        return null;
+                    }
+                }), 1));
+                sim.launching.add(sim.now+sim.launchTime);
+                sim.provisioned++;
+            }
+            return r;
+        }
+
+        public boolean canProvision(Label label) {
+            return true;
+        }
+    }
+
+    /**
+     * Discrete simulation of the queue and executors, one tick per second.
+     * Provisioning is reviewed on every tick, as the queue changes.
+     * Executors that stay idle for {@link #RETENTION} are terminated, except those kept as the warm pool.
+     */
+    static final class Simulator {
+        final int launchTime;
+        final int warmPool;
+        private final FakeCloud cloud = new FakeCloud(this);
+
+        int now;
+        int provisioned;
+        /**
+         * Times at which the nodes being launched become available.
+         */
+        final List<Integer> launching = new ArrayList<Integer>();
+        /**
+         * For each executor, the time it becomes idle, or became idle.
+         */
+        private final List<Integer> executors = new ArrayList<Integer>();
+
+        Simulator(int launchTime, int warmPool) {
+            this.launchTime = launchTime;
+            this.warmPool = warmPool;
+        }
+
+        /**
+         * Adds static executors that exist from the beginning.
+         */
+        Simulator withExecutors(int n) {
+            for (int i=0; i<n; i++)
+                executors.add(0);
+            return this;
+        }
+
+        Result replay(List<Arrival> trace) {
+            Result r = new Result();
+            LinkedList<Arrival> pending = new LinkedList<Arrival>(trace);
+            LinkedList<Arrival> queue = new LinkedList<Arrival>();
+            int last = 0;
+            for (Arrival a : trace)
+                last = Math.max(last, a.time);
+
+            for (now=0; !pending.isEmpty() || !queue.isEmpty() || now<=last; now++) {
+                for (Iterator<Integer> itr = launching.iterator(); itr.hasNext();) {
+                    if (itr.next()<=now) {
+                        itr.remove();
+                        executors.add(now);
+                    }
+                }
+                int idle = 0;
+                for (Integer t : executors)
+                    if (t<=now) idle++;
+                for (Iterator<Integer> itr = executors.iterator(); itr.hasNext() && idle>warmPool;) {
+                    if (itr.next()+RETENTION<=now) {
+                        itr.remove();
+                        idle--;
+                    }
+                }
+
+                while (!pending.isEmpty() && pending.getFirst().time<=now)
+                    queue.add(pending.removeFirst());
+
+                // hand out idle executors in the queue order
+                for (int i=0; i<executors.size() && !queue.isEmpty(); i++) {
+                    if (executors.get(i)<=now) {
+                        Arrival a = queue.removeFirst();
+                        r.waits.add(now-a.time);
+                        executors.set(i, now+a.duration);
+                    }
+                }
+
+                CapacityForecast f = new CapacityForecast(launchTime*1000L, warmPool);
+                for (Arrival a : queue)
+                    f.queued(a.duration*1000L);
+                for (Integer t : executors) {
+                    if (t<=now) f.idle(1);
+                    else        f.busy((t-now)*1000L);
+                }
+                f.planned(launching.size());
+                int shortfall = f.computeShortfall();
+                if (shortfall>0)
+                    cloud.provision(null, shortfall);
+            }
+            r.provisioned = provisioned;
+            return r;
+        }
+
+        private static final int RETENTION = 600;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(CapacityForecastSimulationTest.class.getName());
+}
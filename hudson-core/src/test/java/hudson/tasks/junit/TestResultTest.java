@@ -29,6 +29,7 @@ import hudson.util.StringConverter2;
 import hudson.util.XStream2;
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import junit.framework.TestCase;
@@ -78,6 +79,36 @@ public class TestResultTest extends TestCase {
         assertEquals(5, failedCase.getFailedSince());
     }
 
+    /**
+     * Results parsed from separate batches of report files add up to the same thing
+     * as parsing all of them at once.
+     */
+    public void testMerge() throws Exception {
+        File dir = getDataFile("junit-report-1233.xml").getParentFile();
+
+        TestResult all = new TestResult();
+        assertEquals(2, all.parseNew(0, dir, Arrays.asList("junit-report-1233.xml", "junit-report-1463.xml")));
+        all.tally();
+
+        TestResult merged = new TestResult();
+        merged.parseNew(0, dir, Arrays.asList("junit-report-1233.xml"));
+        TestResult delta = new TestResult();
+        delta.parseNew(0, dir, Arrays.asList("junit-report-1463.xml"));
+        merged.merge(delta);
+        merged.tally();
+
+        assertEquals(all.getSuites().size(), merged.getSuites().size());
+        assertEquals(all.getTotalCount(), merged.getTotalCount());
+        assertEquals(all.getFailCount(), merged.getFailCount());
+    }
+
+    public void testParseNewSkipsOldReports() throws Exception {
+        File dir = getDataFile("junit-report-1233.xml").getParentFile();
+        TestResult r = new TestResult();
+        assertEquals(0, r.parseNew(System.currentTimeMillis()+60000, dir, Arrays.asList("junit-report-1233.xml")));
+        assertTrue(r.getSuites().isEmpty());
+    }
+
     private static final XStream XSTREAM = new XStream2();
 
     static {
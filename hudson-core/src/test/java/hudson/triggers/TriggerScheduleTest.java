@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.triggers;
+
+import antlr.ANTLRException;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+
+import static org.easymock.EasyMock.createMock;
+
+public class TriggerScheduleTest extends TestCase {
+    private TriggerSchedule schedule;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        schedule = new TriggerSchedule();
+        // the cron thread starts checking at this minute
+        assertTrue(schedule.poll(new GregorianCalendar(2000,2,1,1,0)).isEmpty());
+    }
+
+    public void testFiringOrderAcrossJobs() throws Exception {
+        AbstractProject p1 = project(), p2 = project(), p3 = project();
+        schedule.update(p1, triggers("30 * * * *"));
+        schedule.update(p2, triggers("10 * * * *"));
+        schedule.update(p3, triggers("10,50 * * * *"));
+        assertEquals(3, schedule.size());
+
+        compare(set(), fired(new GregorianCalendar(2000,2,1,1,5)));
+        compare(set(p2,p3), fired(new GregorianCalendar(2000,2,1,1,10)));
+        compare(set(), fired(new GregorianCalendar(2000,2,1,1,11)));
+        compare(set(p1), fired(new GregorianCalendar(2000,2,1,1,30)));
+        compare(set(p3), fired(new GregorianCalendar(2000,2,1,1,50)));
+
+        // a cron thread that fell behind still sees what it missed, but only once
+        compare(set(p1,p2,p3), fired(new GregorianCalendar(2000,2,1,2,40)));
+        compare(set(p3), fired(new GregorianCalendar(2000,2,1,2,50)));
+        assertEquals(3, schedule.size());
+    }
+
+    public void testTriggerWithoutCronTabIsNotIndexed() throws Exception {
+        schedule.update(project(), Collections.<Trigger>singletonList(new TimerTrigger("")));
+        assertEquals(0, schedule.size());
+        assertEquals(0, schedule.queueSize());
+    }
+
+    public void testCancellation() throws Exception {
+        AbstractProject p1 = project(), p2 = project();
+        schedule.update(p1, triggers("10 * * * *"));
+        schedule.update(p2, triggers("10 * * * *"));
+
+        schedule.remove(p1);
+        assertEquals(1, schedule.size());
+        compare(set(p2), fired(new GregorianCalendar(2000,2,1,1,10)));
+        compare(set(p2), fired(new GregorianCalendar(2000,2,1,2,10)));
+
+        // removing what isn't there is harmless
+        schedule.remove(p1);
+        schedule.remove(project());
+        assertEquals(1, schedule.size());
+    }
+
+    public void testCancelledEntriesAreDroppedWhenDue() throws Exception {
+        AbstractProject p1 = project(), p2 = project(), p3 = project();
+        schedule.update(p1, triggers("10 * * * *"));
+        schedule.update(p2, triggers("20 * * * *"));
+        schedule.update(p3, triggers("30 * * * *"));
+        schedule.remove(p1);
+        assertEquals(3, schedule.queueSize());
+
+        compare(set(), fired(new GregorianCalendar(2000,2,1,1,10)));
+        assertEquals(2, schedule.queueSize());
+    }
+
+    public void testCompaction() throws Exception {
+        AbstractProject p1 = project(), p2 = project(), p3 = project(), p4 = project();
+        schedule.update(p1, triggers("10 * * * *"));
+        schedule.update(p2, triggers("20 * * * *"));
+        schedule.update(p3, triggers("30 * * * *"));
+        schedule.update(p4, triggers("40 * * * *"));
+        assertEquals(4, schedule.queueSize());
+
+        // cancelled entries stay in the queue until they are the majority
+        schedule.remove(p1);
+        schedule.remove(p2);
+        assertEquals(2, schedule.size());
+        assertEquals(4, schedule.queueSize());
+
+        schedule.remove(p3);
+        assertEquals(1, schedule.size());
+        assertEquals(1, schedule.queueSize());
+
+        compare(set(p4), fired(new GregorianCalendar(2000,2,1,1,59)));
+    }
+
+    public void testReindexOnChange() throws Exception {
+        AbstractProject p = project();
+        schedule.update(p, triggers("0 * * * *"));
+        compare(set(), fired(new GregorianCalendar(2000,2,1,1,30)));
+
+        // the configuration changes: the old crontab no longer fires
+        TimerTrigger t = new TimerTrigger("20 * * * *");
+        schedule.update(p, Collections.<Trigger>singletonList(t));
+        assertEquals(1, schedule.size());
+        compare(set(), fired(new GregorianCalendar(2000,2,1,2,0)));
+        List<TriggerSchedule.Entry> r = schedule.poll(new GregorianCalendar(2000,2,1,2,20));
+        assertEquals(1, r.size());
+        assertSame(p, r.get(0).project);
+        assertSame(t, r.get(0).trigger);
+
+        // the trigger is removed altogether
+        schedule.update(p, Collections.<Trigger>emptyList());
+        assertEquals(0, schedule.size());
+        compare(set(), fired(new GregorianCalendar(2000,2,1,3,20)));
+    }
+
+    public void testReindexOnDelete() throws Exception {
+        AbstractProject p1 = project(), p2 = project();
+        schedule.update(p1, triggers("15 * * * *", "45 * * * *"));
+        schedule.update(p2, triggers("45 * * * *"));
+        assertEquals(3, schedule.size());
+
+        schedule.remove(p1);
+        assertEquals(1, schedule.size());
+        compare(set(), fired(new GregorianCalendar(2000,2,1,1,15)));
+        compare(set(p2), fired(new GregorianCalendar(2000,2,1,1,45)));
+
+        // a project created again after the deletion is scheduled afresh
+        schedule.update(p1, triggers("15 * * * *"));
+        compare(set(p1), fired(new GregorianCalendar(2000,2,1,2,15)));
+    }
+
+    private Set<AbstractProject> fired(Calendar cal) {
+        Set<AbstractProject> r = new HashSet<AbstractProject>();
+        for (TriggerSchedule.Entry e : schedule.poll(cal))
+            assertTrue("fired twice", r.add(e.project));
+        return r;
+    }
+
+    private void compare(Set<AbstractProject> expected, Set<AbstractProject> actual) {
+        assertEquals(expected, actual);
+    }
+
+    private static Set<AbstractProject> set(AbstractProject... projects) {
+        return new HashSet<AbstractProject>(Arrays.asList(projects));
+    }
+
+    private static List<Trigger> triggers(String... specs) throws ANTLRException {
+        List<Trigger> r = new ArrayList<Trigger>();
+        for (String spec : specs)
+            r.add(new TimerTrigger(spec));
+        return r;
+    }
+
+    private static AbstractProject project() {
+        return createMock(FreeStyleProject.class);
+    }
+}
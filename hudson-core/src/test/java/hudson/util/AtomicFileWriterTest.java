@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import hudson.XmlFile;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+public class AtomicFileWriterTest extends TestCase {
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("atomic", "test");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AtomicFileWriter.DURABLE = false;
+        File[] files = dir.listFiles();
+        if (files!=null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testOverwrite() throws Exception {
+        File f = new File(dir, "a.xml");
+        write(f, "old");
+        write(f, "new");
+        assertEquals("new", read(f));
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testAbortLeavesOriginalIntact() throws Exception {
+        File f = new File(dir, "a.xml");
+        write(f, "old");
+        AtomicFileWriter w = new AtomicFileWriter(f);
+        w.write("garbage");
+        w.abort();
+        assertEquals("old", read(f));
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testDurableCommit() throws Exception {
+        AtomicFileWriter.DURABLE = true;
+        File f = new File(dir, "a.xml");
+        write(f, "old");
+        write(f, "new");
+        assertEquals("new", read(f));
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testBatchDefersReplacement() throws Exception {
+        AtomicFileWriter.DURABLE = true;
+        File a = new File(dir, "a.xml");
+        File b = new File(dir, "b.xml");
+        write(a, "old");
+
+        AtomicFileWriter.Batch batch = new AtomicFileWriter.Batch();
+        try {
+            write(a, "new");
+            AtomicFileWriter.Batch nested = new AtomicFileWriter.Batch();
+            write(b, "b");
+            nested.commit();
+
+            // nothing is replaced until the outermost batch commits
+            assertEquals("old", read(a));
+            assertFalse(b.exists());
+        } finally {
+            batch.commit();
+        }
+        assertNull(AtomicFileWriter.Batch.current());
+        assertEquals("new", read(a));
+        assertEquals("b", read(b));
+        assertEquals(2, dir.list().length);
+    }
+
+    public void testFileReadBackIsCommittedEarly() throws Exception {
+        AtomicFileWriter.DURABLE = true;
+        File a = new File(dir, "a.xml");
+        File b = new File(dir, "b.xml");
+
+        AtomicFileWriter.Batch batch = new AtomicFileWriter.Batch();
+        try {
+            write(a, "a");
+            write(b, "b");
+            assertTrue(batch.isPending(a));
+
+            batch.commit(a);
+            assertFalse(batch.isPending(a));
+            assertEquals("a", read(a));
+            assertFalse(b.exists());
+        } finally {
+            batch.commit();
+        }
+        assertEquals("b", read(b));
+        assertEquals(2, dir.list().length);
+    }
+
+    /**
+     * When a file is saved twice in a batch, the last save wins, whether it's read back in the batch or not.
+     */
+    public void testLastWriteInBatchWins() throws Exception {
+        AtomicFileWriter.DURABLE = true;
+        File a = new File(dir, "a.xml");
+        File b = new File(dir, "b.xml");
+        XmlFile xml = new XmlFile(a);
+
+        AtomicFileWriter.Batch batch = new AtomicFileWriter.Batch();
+        try {
+            xml.write("first");
+            xml.write("second");
+            assertEquals("second", xml.read());
+
+            write(b, "first");
+            write(b, "second");
+        } finally {
+            batch.commit();
+        }
+        assertEquals("second", xml.read());
+        assertEquals("second", read(b));
+        // the superseded temporary files are gone
+        assertEquals(2, dir.list().length);
+    }
+
+    public void testAfterCommitRunsOnceFilesAreInPlace() throws Exception {
+        AtomicFileWriter.DURABLE = true;
+        final File a = new File(dir, "a.xml");
+        final String[] seen = new String[1];
+
+        AtomicFileWriter.Batch batch = new AtomicFileWriter.Batch();
+        try {
+            write(a, "a");
+            batch.afterCommit(new Runnable() {
+                public void run() {
+                    try {
+                        seen[0] = read(a);
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            assertNull(seen[0]);
+        } finally {
+            batch.commit();
+        }
+        assertEquals("a", seen[0]);
+    }
+
+    public void testBatchIsIgnoredWithoutDurableMode() throws Exception {
+        File a = new File(dir, "a.xml");
+        AtomicFileWriter.Batch batch = new AtomicFileWriter.Batch();
+        try {
+            write(a, "a");
+            assertEquals("a", read(a));
+        } finally {
+            batch.commit();
+        }
+    }
+
+    /**
+     * Writes the file the same way {@link hudson.XmlFile} does.
+     */
+    private static void write(File f, String content) throws IOException {
+        AtomicFileWriter w = new AtomicFileWriter(f);
+        try {
+            w.write(content);
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
+    private static String read(File f) throws IOException {
+        BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+        try {
+            return r.readLine();
+        } finally {
+            r.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ChartCacheTest extends TestCase {
+    private final AtomicInteger renders = new AtomicInteger();
+
+    public void testCachedUntilEvicted() throws Exception {
+        ChartCache cache = new ChartCache(250);
+        assertEquals(100, cache.get("a", render(100)).length);
+        assertEquals(100, cache.get("a", render(100)).length);
+        assertEquals(1, renders.get());
+
+        cache.get("b", render(100));
+        cache.get("a", render(100));    // makes "b" the least recently used
+        cache.get("c", render(100));
+        assertEquals(3, renders.get());
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(200, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.get("a", render(100));
+        assertEquals(3, renders.get());
+        cache.get("b", render(100));
+        assertEquals(4, renders.get());
+    }
+
+    public void testTooLargeToCache() throws Exception {
+        ChartCache cache = new ChartCache(50);
+        cache.get("a", render(100));
+        cache.get("a", render(100));
+        assertEquals(2, renders.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testConcurrentRequestsShareOneRendering() throws Exception {
+        final ChartCache cache = new ChartCache(1000);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+            for (int i=0; i<10; i++) {
+                results.add(es.submit(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        return cache.get("trend", new Callable<byte[]>() {
+                            public byte[] call() throws Exception {
+                                release.await();
+                                renders.incrementAndGet();
+                                return new byte[10];
+                            }
+                        });
+                    }
+                }));
+            }
+            while (cache.getMissCount()<10)
+                Thread.sleep(10);
+            release.countDown();
+            for (Future<byte[]> f : results)
+                assertEquals(10, f.get().length);
+            assertEquals(1, renders.get());
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    public void testFailureIsNotCached() throws Exception {
+        ChartCache cache = new ChartCache(1000);
+        try {
+            cache.get("a", new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    throw new IOException("no fonts");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("no fonts", e.getMessage());
+        }
+        assertEquals(10, cache.get("a", render(10)).length);
+    }
+
+    private Callable<byte[]> render(final int size) {
+        return new Callable<byte[]>() {
+            public byte[] call() {
+                renders.incrementAndGet();
+                return new byte[size];
+            }
+        };
+    }
+}
@@ -8,6 +8,8 @@ import hudson.util.ProcessTree.ProcessCallable;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * @author Kohsuke Kawaguchi
@@ -35,6 +37,53 @@ public class ProcessTreeTest extends ChannelTestCase {
         t.p.act(new ProcessCallableImpl());
     }
 
+    public void testLinuxSnapshotIsIncremental() throws Exception {
+        if (!(ProcessTree.get() instanceof ProcessTree.Linux))
+            return;
+
+        ProcessTree.Linux.Snapshots snapshots = new ProcessTree.Linux.Snapshots();
+        Map<Integer,ProcessTree.Linux.ProcStat> first = snapshots.take();
+        Map<Integer,ProcessTree.Linux.ProcStat> second = snapshots.take();
+        assertEquals(2, snapshots.getScanCount());
+
+        // init lives across the two scans, so what we learned about it the first time is kept
+        assertSame(first.get(1), second.get(1));
+        assertEquals(0, first.get(1).ppid);
+    }
+
+    /**
+     * A process that exec's another program keeps its PID, parent and start time,
+     * so the command name is needed to tell that what we know about it is stale.
+     */
+    public void testLinuxProcStatIdentityIncludesCommand() throws Exception {
+        ProcessTree.Linux.ProcStat sh = new ProcessTree.Linux.ProcStat(100,1,12345,"sh");
+        assertTrue(sh.isSameAs(new ProcessTree.Linux.ProcStat(100,1,12345,"sh")));
+        assertFalse(sh.isSameAs(new ProcessTree.Linux.ProcStat(100,1,12345,"java")));
+        assertFalse(sh.isSameAs(new ProcessTree.Linux.ProcStat(100,1,99999,"sh")));
+
+        if (ProcessTree.get() instanceof ProcessTree.Linux)
+            assertTrue(ProcessTree.Linux.ProcStat.read(1).comm.length()>0);
+    }
+
+    /**
+     * The environment variables of the processes that were already there the last time aren't read again.
+     */
+    public void testLinuxKillAllReadsEnvironOfNewProcessesOnly() throws Exception {
+        if (!(ProcessTree.get() instanceof ProcessTree.Linux))
+            return;
+
+        Map<String,String> nobody = Collections.singletonMap("HUDSON_COOKIE","no-such-cookie-"+System.nanoTime());
+        ProcessTree.get().killAll(nobody);
+
+        long before = ProcessTree.Linux.SNAPSHOTS.getEnvironReadCount();
+        ProcessTree t = ProcessTree.get();
+        int n = 0;
+        for (OSProcess p : t)
+            n++;
+        t.killAll(nobody);
+        assertTrue(ProcessTree.Linux.SNAPSHOTS.getEnvironReadCount()-before < n);
+    }
+
     private static class MyCallable implements Callable<Tag, IOException>, Serializable {
         public Tag call() throws IOException {
             Tag t = new Tag();
@@ -26,6 +26,9 @@ package hudson.util;
 import junit.framework.TestCase;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.ConversionException;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,4 +61,80 @@ public class RobustReflectionConverterTest extends TestCase {
             assertTrue(e.getMessage().contains("z"));
         }
     }
+
+    public void testCachedMembersAreWireCompatible() {
+        boolean old = RobustReflectionConverter.CACHE_MEMBERS;
+        try {
+            Record r = new Record("#1", 42);
+            r.causes.add("timer");
+            r.causes.add(new StringBuilder("user"));
+            ((Base)r).shadowed = "base";
+            r.shadowed = "sub";
+
+            RobustReflectionConverter.CACHE_MEMBERS = false;
+            String expected = new XStream2().toXML(r);
+
+            RobustReflectionConverter.CACHE_MEMBERS = true;
+            XStream2 xs = new XStream2();
+            for (int i=0; i<3; i++) {
+                // the first round fills the cache, and the rest uses it
+                assertEquals(expected, xs.toXML(r));
+
+                Record copy = (Record)xs.fromXML(expected);
+                assertEquals("#1", copy.id);
+                assertEquals(42, copy.number);
+                assertEquals(2, copy.causes.size());
+                assertEquals("user", copy.causes.get(1).toString());
+                assertEquals("base", ((Base)copy).shadowed);
+                assertEquals("sub", copy.shadowed);
+            }
+
+            // unknown elements are still skipped
+            Point p = read(xs);
+            assertEquals(1, p.x);
+            assertEquals(2, p.y);
+        } finally {
+            RobustReflectionConverter.CACHE_MEMBERS = old;
+        }
+    }
+
+    /**
+     * Mappings registered after the cache is filled, like those of plugins, take effect.
+     */
+    public void testCacheFollowsMappingChanges() {
+        boolean old = RobustReflectionConverter.CACHE_MEMBERS;
+        try {
+            RobustReflectionConverter.CACHE_MEMBERS = true;
+            Record r = new Record("#1", 42);
+
+            XStream2 xs = new XStream2();
+            xs.toXML(r);
+            xs.useAttributeFor(int.class);
+            assertTrue(xs.toXML(r).contains("number=\"42\""));
+
+            xs = new XStream2();
+            xs.toXML(r);
+            xs.useAttributeFor("id", String.class);
+            xs.aliasAttribute("key", "id");
+            assertTrue(xs.toXML(r).contains("key=\"#1\""));
+        } finally {
+            RobustReflectionConverter.CACHE_MEMBERS = old;
+        }
+    }
+
+    public static class Base {
+        String shadowed;
+    }
+
+    public static class Record extends Base {
+        private final String id;
+        int number;
+        String shadowed;
+        List<Object> causes = new ArrayList<Object>();
+
+        public Record(String id, int number) {
+            this.id = id;
+            this.number = number;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest extends TestCase {
+    public void testConcurrentRequestsShareOneComputation() throws Exception {
+        final SingleFlight<String,Integer> sf = new SingleFlight<String,Integer>();
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService es = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i=0; i<5; i++) {
+                results.add(es.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        return sf.get("repo", new Callable<Integer>() {
+                            public Integer call() throws Exception {
+                                release.await();
+                                return runs.incrementAndGet();
+                            }
+                        });
+                    }
+                }));
+            }
+
+            // let all the requests pile up before the first computation completes
+            while (sf.getComputedCount()+sf.getSharedCount()<5)
+                Thread.sleep(10);
+            release.countDown();
+
+            for (Future<Integer> f : results)
+                assertEquals(1, f.get().intValue());
+            assertEquals(1, runs.get());
+            assertEquals(4, sf.getSharedCount());
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    public void testNothingIsRememberedAfterCompletion() throws Exception {
+        SingleFlight<String,String> sf = new SingleFlight<String,String>();
+        assertEquals("a", sf.get("k", constant("a")));
+        assertEquals("b", sf.get("k", constant("b")));
+        assertEquals(2, sf.getComputedCount());
+    }
+
+    public void testFailureIsReported() throws Exception {
+        SingleFlight<String,String> sf = new SingleFlight<String,String>();
+        try {
+            sf.get("k", new Callable<String>() {
+                public String call() throws Exception {
+                    throw new IOException("boom");
+                }
+            });
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        // and the failed computation doesn't stick around
+        assertEquals("ok", sf.get("k", constant("ok")));
+    }
+
+    private static Callable<String> constant(final String v) {
+        return new Callable<String>() {
+            public String call() {
+                return v;
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class WriteBehindQueueTest extends TestCase {
+    private File dir;
+    private XStream xs;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Util.createTempDir();
+        xs = new XStream();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+        super.tearDown();
+    }
+
+    public void testSavesOfTheSameFileAreCoalesced() throws Exception {
+        // no writers, so that the saves pile up
+        WriteBehindQueue q = new WriteBehindQueue(0,100);
+
+        XmlFile f = file("a.xml");
+        q.submit(SAVEABLE, f, "one");
+        q.submit(SAVEABLE, f, "two");
+        q.submit(SAVEABLE, f, "three");
+        assertEquals(2, q.getCoalescedCount());
+        assertFalse(f.exists());
+
+        q.flush(dir);
+        assertEquals("three", f.read());
+        assertEquals(1, q.getWriteCount());
+        assertEquals(0, q.getQueueDepth());
+    }
+
+    public void testFlushWritesPendingFilesOnTheCallingThread() throws Exception {
+        WriteBehindQueue q = new WriteBehindQueue(0,100);
+
+        XmlFile f = file("a.xml");
+        q.submit(SAVEABLE, f, "a");
+        // there's no writer, so this can only succeed if flush() writes the file itself
+        q.flush(f.getFile());
+        assertEquals("a", f.read());
+        assertEquals(0, q.getQueueDepth());
+    }
+
+    /**
+     * The object is serialized when it's saved, so the changes made after that don't leak into the file.
+     */
+    public void testObjectIsSerializedOnSave() throws Exception {
+        WriteBehindQueue q = new WriteBehindQueue(0,100);
+
+        XmlFile f = file("a.xml");
+        StringBuilder sb = new StringBuilder("saved");
+        q.submit(SAVEABLE, f, sb);
+        sb.append(" and changed later");
+        q.flush(dir);
+        assertEquals("saved", f.read().toString());
+    }
+
+    public void testSerializationErrorGoesToTheCaller() throws Exception {
+        WriteBehindQueue q = new WriteBehindQueue(0,100);
+        xs.registerConverter(new BombConverter());
+        try {
+            q.submit(SAVEABLE, file("bomb.xml"), new Bomb());
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals(0, q.getQueueDepth());
+    }
+
+    public void testWriterSurvivesError() throws Exception {
+        WriteBehindQueue q = new WriteBehindQueue(1,100);
+        // a file where a directory should be, so that the write fails
+        new File(dir,"blocked").createNewFile();
+        q.submit(SAVEABLE, file("blocked/a.xml"), "a");
+        while (q.getFailureCount()==0)
+            Thread.sleep(10);
+
+        // the same writer keeps writing, and flush() doesn't hang waiting for the failed file
+        XmlFile f = file("a.xml");
+        q.submit(SAVEABLE, f, "a");
+        while (!f.exists())
+            Thread.sleep(10);
+        q.flush(dir);
+        assertEquals("a", f.read());
+        assertEquals(1, q.getFailureCount());
+        assertEquals(1, q.getWriteCount());
+    }
+
+    public void testDiscardDropsPendingWrites() throws Exception {
+        WriteBehindQueue q = new WriteBehindQueue(0,100);
+
+        XmlFile f = file("sub/a.xml");
+        q.submit(SAVEABLE, f, "a");
+        q.discard(new File(dir,"sub"));
+        assertEquals(0, q.getQueueDepth());
+
+        q.flush(dir);
+        assertFalse(f.exists());
+    }
+
+    private XmlFile file(String name) {
+        return new XmlFile(xs, new File(dir,name));
+    }
+
+    private static final Saveable SAVEABLE = new Saveable() {
+        public void save() {
+        }
+    };
+
+    /**
+     * Fails to serialize.
+     */
+    private static final class Bomb {}
+
+    private static final class BombConverter implements Converter {
+        public boolean canConvert(Class type) {
+            return type==Bomb.class;
+        }
+
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+            throw new AssertionError("boom");
+        }
+
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+            return null;
+        }
+    }
+}
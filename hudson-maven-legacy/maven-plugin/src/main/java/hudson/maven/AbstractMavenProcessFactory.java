@@ -88,6 +88,11 @@ public abstract class AbstractMavenProcessFactory
      */
     private final FilePath workDir;
 
+    /**
+     * Node to launch on, or null to use the node of the current executor.
+     */
+    private Node node;
+
     AbstractMavenProcessFactory(MavenModuleSet mms, Launcher launcher, EnvVars envVars, FilePath workDir) {
         this.mms = mms;
         this.launcher = launcher;
@@ -292,8 +297,16 @@ public abstract class AbstractMavenProcessFactory
      * Returns the current {@link Node} on which we are buildling.
      */
     protected Node getCurrentNode() {
+        if (node!=null) return node;
         return Executor.currentExecutor().getOwner().getNode();
     }
+
+    /**
+     * Sets the node to launch on, for when the process is launched outside a build.
+     */
+    void setCurrentNode(Node node) {
+        this.node = node;
+    }
     
 
     protected MavenModuleSet getMavenModuleSet() {
@@ -304,7 +317,7 @@ public abstract class AbstractMavenProcessFactory
         return launcher;
     }
 
-    protected EnvVars getEnvVars() {
+    public EnvVars getEnvVars() {
         return envVars;
     }
     
@@ -646,9 +646,7 @@ public class MavenBuild extends AbstractMavenBuild<MavenModule,MavenBuild> {
 
     }
 
-    private static final int MAX_PROCESS_CACHE = 5;
-
-    protected static final ProcessCache mavenProcessCache = new ProcessCache(MAX_PROCESS_CACHE);
+    protected static final ProcessCache mavenProcessCache = new ProcessCache(ProcessCache.SIZE);
 
     /**
      * Set true to produce debug output.
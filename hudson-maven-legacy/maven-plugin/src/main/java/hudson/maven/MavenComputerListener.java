@@ -37,6 +37,8 @@ import hudson.slaves.ComputerListener;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.Zip;
@@ -66,6 +68,27 @@ public class MavenComputerListener extends ComputerListener {
         logger.println("Copied classworlds.jar");
     }
 
+    @Override
+    public void onOnline(final Computer c, TaskListener listener) {
+        if (c.getAction(ProcessCacheAction.class)==null)
+            c.getActions().add(new ProcessCacheAction(c));
+
+        if (ProcessCache.PRESPAWN) {
+            // don't hold up the node while the processes start
+            Computer.threadPoolForRemoting.submit(new Runnable() {
+                public void run() {
+                    try {
+                        MavenBuild.mavenProcessCache.prespawn(c);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Failed to launch maven processes on "+c.getName(), e);
+                    } catch (InterruptedException e) {
+                        LOGGER.log(Level.WARNING, "Failed to launch maven processes on "+c.getName(), e);
+                    }
+                }
+            });
+        }
+    }
+
     /**
      * Copies a jar file from the master to slave.
      */
@@ -89,4 +112,6 @@ public class MavenComputerListener extends ComputerListener {
         new FilePath(jar).copyTo(dst.child(seedName +".jar"));
         log.println("Copied "+seedName+".jar");
     }
+
+    private static final Logger LOGGER = Logger.getLogger(MavenComputerListener.class.getName());
 }
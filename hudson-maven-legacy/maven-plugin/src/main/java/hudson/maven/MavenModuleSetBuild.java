@@ -62,6 +62,7 @@ import hudson.util.MaskingClassLoader;
 import hudson.util.StreamTaskListener;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.PrintStream;
@@ -77,6 +78,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -633,6 +635,7 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                                 maven3Builder.end(launcher);
                                 getActions().remove(mpa);
                                 process.discard();
+                                slistener.discardUnclaimed();
                             }                            
                             
                         } else {
@@ -649,6 +652,7 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                                 builder.end(launcher);
                                 getActions().remove(mpa);
                                 process.discard();
+                                slistener.discardUnclaimed();
                             }
                         }
                     } finally {
@@ -1126,6 +1130,13 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                 throw new AbortException(Messages.MavenModuleSetBuild_NoSuchAlternateSettings(settingsLoc.getAbsolutePath()));
             }
 
+            String configuration = describeConfiguration(settingsLoc);
+            List<PomInfo> cached = PomParseCache.get(pom, configuration);
+            if (cached != null) {
+                logger.println(Messages.MavenModuleSetBuild_PomsUnchanged());
+                return cached;
+            }
+
             try {
                 MavenEmbedderRequest mavenEmbedderRequest = new MavenEmbedderRequest( listener, mavenHome.getHomeDir(),
                                                                                       profiles, properties,
@@ -1205,7 +1216,9 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                 for (PomInfo pi : infos)
                     pi.cutCycle();
 
-                return new ArrayList<PomInfo>(infos);
+                List<PomInfo> poms = new ArrayList<PomInfo>(infos);
+                PomParseCache.put(pom, configuration, mps, poms);
+                return poms;
             } catch (MavenEmbedderException e) {
                 throw new MavenExecutionException(e);
             } catch (ProjectBuildingException e) {
@@ -1213,6 +1226,30 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
             }
         }
 
+        /**
+         * Captures everything other than the POMs themselves that affects the outcome of the parse,
+         * so that {@link PomParseCache} doesn't return a result parsed with a different configuration.
+         */
+        private String describeConfiguration(File settingsLoc) throws IOException {
+            StringBuilder buf = new StringBuilder();
+            buf.append(rootPOM).append('\n');
+            buf.append(mavenHome.getHome()).append('\n');
+            buf.append(mavenVersion).append('\n');
+            buf.append(profiles).append('\n');
+            // sort the properties, as the iteration order of Properties isn't stable
+            buf.append(new TreeMap<Object,Object>(properties)).append('\n');
+            buf.append(privateRepository).append('\n');
+            buf.append(settingsLoc);
+            if (settingsLoc != null)
+                buf.append(' ').append(Util.getDigestOf(new FileInputStream(settingsLoc)));
+            buf.append('\n');
+            buf.append(nonRecursive).append(' ').append(resolveDependencies).append(' ').append(processPlugins)
+               .append(' ').append(mavenValidationLevel).append('\n');
+            buf.append(workspaceProper).append('\n');
+            buf.append(moduleRootPath).append('\n');
+            return buf.toString();
+        }
+
         /**
          * @see PomInfo#relativePath to understand relPath calculation
          */
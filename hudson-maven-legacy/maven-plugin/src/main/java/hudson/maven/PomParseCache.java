@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.maven;
+
+import hudson.Util;
+import org.apache.maven.project.MavenProject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers the result of the last POM parse of each root POM in the JVM that parses it,
+ * which is normally the slave that has the workspace, so that an unchanged reactor doesn't need to be
+ * read by the Maven embedder again for every build.
+ *
+ * <p>
+ * An entry is keyed by the canonical path of the root POM, and only used when the parser configuration
+ * (profiles, properties, settings, Maven installation and so on) is the same, and when all the POMs that went into
+ * the parse, including the parents, still have the same checksums. Any change to any of them causes a full parse.
+ *
+ * @since 2.1.0
+ */
+final class PomParseCache {
+    private static final class Entry {
+        final String configuration;
+        /**
+         * Checksum of each POM that was read, keyed by its path.
+         */
+        final Map<String,String> checksums;
+        /**
+         * The serialized {@code List<PomInfo>}, so that every hit gets its own copy.
+         */
+        final byte[] poms;
+
+        Entry(String configuration, Map<String,String> checksums, byte[] poms) {
+            this.configuration = configuration;
+            this.checksums = checksums;
+            this.poms = poms;
+        }
+    }
+
+    private static final Map<String,Entry> ENTRIES = new LinkedHashMap<String,Entry>(16,0.75f,true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+            return size()>SIZE;
+        }
+    };
+
+    private PomParseCache() {}
+
+    /**
+     * Returns the previous parse result of the given root POM, if the configuration is the same
+     * and none of the POMs have changed since then.
+     *
+     * @return null if there's no usable result.
+     */
+    static List<PomInfo> get(File rootPom, String configuration) throws IOException {
+        if (SIZE<=0)    return null;
+
+        Entry e;
+        synchronized (ENTRIES) {
+            e = ENTRIES.get(rootPom.getCanonicalPath());
+        }
+        if (e==null || !e.configuration.equals(configuration))
+            return null;
+
+        for (Map.Entry<String,String> c : e.checksums.entrySet()) {
+            File f = new File(c.getKey());
+            if (!f.isFile() || !checksum(f).equals(c.getValue()))
+                return null;
+        }
+
+        try {
+            return deserialize(e.poms);
+        } catch (ClassNotFoundException x) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the result of parsing the given root POM.
+     *
+     * @param projects
+     *      All the projects that were read. Their POMs and those of their parents are checked before the result is reused.
+     */
+    static void put(File rootPom, String configuration, Collection<MavenProject> projects, List<PomInfo> poms) throws IOException {
+        if (SIZE<=0)    return;
+
+        Map<String,String> checksums = new TreeMap<String,String>();
+        for (MavenProject mp : projects) {
+            for (MavenProject p=mp; p!=null; p=p.getParent()) {
+                File f = p.getFile();
+                if (f==null)
+                    return; // we can't tell if this one changes, so don't cache
+                String path = f.getCanonicalPath();
+                if (!checksums.containsKey(path))
+                    checksums.put(path,checksum(f));
+            }
+        }
+
+        Entry e = new Entry(configuration,checksums,serialize(poms));
+        synchronized (ENTRIES) {
+            ENTRIES.put(rootPom.getCanonicalPath(),e);
+        }
+    }
+
+    private static String checksum(File f) throws IOException {
+        return Util.getDigestOf(new FileInputStream(f));
+    }
+
+    private static byte[] serialize(List<PomInfo> poms) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(buf);
+        oos.writeObject(poms);
+        oos.close();
+        return buf.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PomInfo> deserialize(byte[] poms) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(poms)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                // we may be running in a remoting class loader on the slave
+                try {
+                    return Class.forName(desc.getName(),false,PomParseCache.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+        };
+        try {
+            return (List<PomInfo>)ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    /**
+     * Number of root POMs whose parse result is remembered. 0 to disable the cache.
+     */
+    public static int SIZE = Integer.getInteger(PomParseCache.class.getName()+".size",16);
+}
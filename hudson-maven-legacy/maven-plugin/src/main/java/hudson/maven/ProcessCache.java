@@ -23,25 +23,40 @@
  */
 package hudson.maven;
 
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
 import hudson.Util;
 import hudson.Proc;
 import hudson.model.BuildListener;
+import hudson.model.Computer;
+import hudson.model.Hudson;
 import hudson.model.JDK;
+import hudson.model.Node;
+import hudson.model.PeriodicWork;
+import hudson.model.StreamBuildListener;
 import hudson.model.TaskListener;
+import hudson.model.Run.RunnerAbortedException;
 import hudson.remoting.Callable;
 import hudson.remoting.Channel;
 import hudson.remoting.VirtualChannel;
 import hudson.remoting.RequestAbortedException;
 import hudson.tasks.Maven.MavenInstallation;
+import hudson.tools.ToolInstallation;
 import hudson.util.DelegatingOutputStream;
 import hudson.util.NullStream;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.WeakHashMap;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -50,6 +65,14 @@ import java.util.logging.Level;
  * Hold on to launched Maven processes so that multiple builds
  * can reuse the same Maven JVM, which leads to improved performance.
  *
+ * <p>
+ * Each node has its own pool of idle processes. A process is reused by a build that launches
+ * Maven with the same MAVEN_OPTS, Maven installation, JDK and environment variables; installations
+ * are compared by their name and home on the node, and the variables in {@link #VOLATILE_VARIABLES}
+ * are left out of the comparison. Processes that sit idle for longer than {@link #IDLE_TIMEOUT}
+ * are shut down, and when {@link #PRESPAWN} is enabled, processes are launched ahead of time
+ * for the projects that recently built on a node as soon as the node comes online.
+ *
  * @author Kohsuke Kawaguchi
  */
 public final class ProcessCache {
@@ -66,6 +89,10 @@ public final class ProcessCache {
         String getMavenOpts();
         MavenInstallation getMavenInstallation(TaskListener listener) throws IOException, InterruptedException;
         JDK getJava(TaskListener listener) throws IOException, InterruptedException;
+        /**
+         * Environment variables the process is launched with.
+         */
+        EnvVars getEnvVars();
     }
 
     public static class NewProcess {
@@ -91,6 +118,10 @@ public final class ProcessCache {
         final Proc proc;
         private final MavenInstallation installation;
         private final JDK jdk;
+        /**
+         * Environment variables this process was launched with, except {@link #VOLATILE_VARIABLES}.
+         */
+        private final Map<String,String> env;
         private final RedirectableOutputStream output;
         /**
          * System properties captured right after the process is created.
@@ -99,15 +130,31 @@ public final class ProcessCache {
          */
         private final Properties systemProperties;
 
+        /**
+         * Type of the {@link Factory} that launched this process, which tells Maven 2 and Maven 3 processes apart.
+         */
+        private final Class<?> type;
+        /**
+         * How to launch a process like this one again, or null if we don't know.
+         */
+        private final Recipe recipe;
+
         private int age = 0;
+        /**
+         * When this process was last put back into the pool.
+         */
+        private long idleSince;
 
-        MavenProcess(PerChannel parent, String mavenOpts, MavenInstallation installation, JDK jdk, NewProcess np, RedirectableOutputStream output) throws IOException, InterruptedException {
+        MavenProcess(PerChannel parent, String mavenOpts, MavenInstallation installation, JDK jdk, Factory factory, NewProcess np, RedirectableOutputStream output) throws IOException, InterruptedException {
             this.parent = parent;
+            this.type = factory.getClass();
+            this.recipe = Recipe.of(factory);
             this.mavenOpts = mavenOpts;
             this.channel = np.channel;
             this.proc = np.proc;
             this.installation = installation;
             this.jdk = jdk;
+            this.env = stable(factory.getEnvVars());
             this.output = output;
             this.systemProperties = channel.call(new GetSystemProperties());
         }
@@ -116,10 +163,30 @@ public final class ProcessCache {
             return mavenOpts;
         }
         
-        boolean matches(String mavenOpts,MavenInstallation installation, JDK jdk) {
+        boolean matches(String mavenOpts,MavenInstallation installation, JDK jdk, Map<String,String> env, Class<?> type) {
+            // tool installations are translated for the node on every build, so they are never the same instance
             return Util.fixNull(this.mavenOpts).equals(Util.fixNull(mavenOpts))
-                && this.installation==installation
-                && this.jdk==jdk;
+                && sameTool(this.installation,installation)
+                && sameTool(this.jdk,jdk)
+                && this.env.equals(env)
+                && this.type==type;
+        }
+
+        boolean isExpired(long now) {
+            return IDLE_TIMEOUT>0 && now-idleSince>IDLE_TIMEOUT*60*1000L;
+        }
+
+        /**
+         * Resets the system properties, which also serves as the sanity check of the process.
+         */
+        boolean isHealthy() throws InterruptedException {
+            try {
+                call(new SetSystemProperties(systemProperties));
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE,"Discarding a broken maven process",e);
+                return false;
+            }
         }
 
         public void recycle() throws IOException {
@@ -127,10 +194,14 @@ public final class ProcessCache {
                 discard();
             else {
                 output.set(new NullStream());
+                idleSince = System.currentTimeMillis();
+                remember(recipe);
                 // make room for the new process and reuse.
                 synchronized(parent.processes) {
-                    while(parent.processes.size()>=maxProcess)
+                    while(parent.processes.size()>=maxProcess) {
                         parent.processes.removeFirst().discard();
+                        parent.evicted++;
+                    }
                     parent.processes.add(this);
                 }
             }
@@ -174,11 +245,112 @@ public final class ProcessCache {
          * Cached processes.
          */
         private final LinkedList<MavenProcess> processes = new LinkedList<MavenProcess>();
+
+        // statistics, guarded by processes
+        private int hits, misses, expired, evicted, broken, prespawned;
+    }
+
+    /**
+     * Snapshot of the pool of one node, for display.
+     */
+    public static final class Statistics {
+        private final int idle, hits, misses, expired, evicted, broken, prespawned;
+
+        Statistics(PerChannel pc) {
+            this.idle = pc.processes.size();
+            this.hits = pc.hits;
+            this.misses = pc.misses;
+            this.expired = pc.expired;
+            this.evicted = pc.evicted;
+            this.broken = pc.broken;
+            this.prespawned = pc.prespawned;
+        }
+
+        /**
+         * Number of processes waiting to be reused.
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * Number of builds that reused a process.
+         */
+        public int getHits() {
+            return hits;
+        }
+
+        /**
+         * Number of builds that had to launch a new process.
+         */
+        public int getMisses() {
+            return misses;
+        }
+
+        /**
+         * Number of processes shut down after being idle for too long.
+         */
+        public int getExpired() {
+            return expired;
+        }
+
+        /**
+         * Number of processes shut down to make room for others.
+         */
+        public int getEvicted() {
+            return evicted;
+        }
+
+        /**
+         * Number of processes that failed the sanity check before reuse.
+         */
+        public int getBroken() {
+            return broken;
+        }
+
+        /**
+         * Number of processes launched when the node came online.
+         */
+        public int getPrespawned() {
+            return prespawned;
+        }
+    }
+
+    /**
+     * What it takes to launch a process ahead of time: the project it was launched for,
+     * whether it was a Maven 3 process, and its environment variables, so that the next build
+     * of the project finds the process matching.
+     */
+    static final class Recipe {
+        final String node;
+        final String project;
+        final boolean maven3;
+        final EnvVars env;
+
+        Recipe(String node, String project, boolean maven3, EnvVars env) {
+            this.node = node;
+            this.project = project;
+            this.maven3 = maven3;
+            this.env = env;
+        }
+
+        static Recipe of(Factory f) {
+            if (!(f instanceof AbstractMavenProcessFactory))    return null;
+            AbstractMavenProcessFactory af = (AbstractMavenProcessFactory) f;
+            Node n = af.getCurrentNode();
+            if (n==null)    return null;
+            return new Recipe(n.getNodeName(), af.getMavenModuleSet().getFullName(), f instanceof Maven3ProcessFactory, new EnvVars(af.getEnvVars()));
+        }
     }
 
     // use WeakHashMap to avoid keeping VirtualChannel in memory.
     private final Map<VirtualChannel,PerChannel> cache = new WeakHashMap<VirtualChannel,PerChannel>();
     private final int maxProcess;
+    /**
+     * Recipes of the processes that were most recently put back into the pool, per node name, newest first.
+     * Unlike {@link #cache}, this survives the reconnection of the node.
+     */
+    private final Map<String,LinkedList<Recipe>> recipes = new HashMap<String,LinkedList<Recipe>>();
 
     /**
      * @param maxProcess
@@ -202,35 +374,184 @@ public final class ProcessCache {
         String mavenOpts = factory.getMavenOpts();
         MavenInstallation installation = factory.getMavenInstallation(listener);
         JDK jdk = factory.getJava(listener);
+        Map<String,String> env = stable(factory.getEnvVars());
 
         PerChannel list = get(owner);
         synchronized(list.processes) {
+            long now = System.currentTimeMillis();
             for (Iterator<MavenProcess> itr = list.processes.iterator(); itr.hasNext();) {
                 MavenProcess p =  itr.next();
-                if(p.matches(mavenOpts,installation,jdk)) {
-                    // reset the system property.
-                    // this also serves as the sanity check.
-                    try {
-                        p.call(new SetSystemProperties(p.systemProperties));
-                    } catch (IOException e) {
+                if(p.isExpired(now)) {
+                    p.discard();
+                    itr.remove();
+                    list.expired++;
+                    continue;
+                }
+                if(p.matches(mavenOpts,installation,jdk,env,factory.getClass())) {
+                    if(!p.isHealthy()) {
                         p.discard();
                         itr.remove();
+                        list.broken++;
                         continue;
                     }
 
                     listener.getLogger().println(Messages.ProcessCache_Reusing());
                     itr.remove();
+                    list.hits++;
                     p.age++;
                     p.output.set(listener.getLogger());
                     return p;
                 }
             }
+            list.misses++;
         }
 
+        return launch(list,listener,factory,mavenOpts,installation,jdk);
+    }
+
+    private MavenProcess launch(PerChannel list, BuildListener listener, Factory factory, String mavenOpts, MavenInstallation installation, JDK jdk) throws IOException, InterruptedException {
         RedirectableOutputStream out = new RedirectableOutputStream(listener.getLogger());
-        return new MavenProcess(list,mavenOpts,installation,jdk,factory.newProcess(listener,out),out);
+        return new MavenProcess(list,mavenOpts,installation,jdk,factory,factory.newProcess(listener,out),out);
+    }
+
+    /**
+     * Launches processes on a node that just came online, for the projects that last put
+     * a process back into the pool of this node, so that their next builds find one waiting.
+     */
+    public void prespawn(Computer c) throws IOException, InterruptedException {
+        Node node = c.getNode();
+        VirtualChannel channel = c.getChannel();
+        if (node==null || channel==null || maxProcess==0)  return;
+
+        List<Recipe> todo;
+        synchronized (this) {
+            LinkedList<Recipe> l = recipes.get(node.getNodeName());
+            if (l==null)    return;
+            todo = new ArrayList<Recipe>(l);
+        }
+
+        PerChannel list = get(channel);
+        for (Recipe r : todo) {
+            synchronized (list.processes) {
+                if (list.processes.size()>=maxProcess)  return;
+            }
+            MavenModuleSet mms = Hudson.getInstance().getItemByFullName(r.project,MavenModuleSet.class);
+            if (mms==null || mms.isDisabled())  continue;
+
+            // launch it just like the last build did, so that the next build finds it matching
+            BuildListener listener = new StreamBuildListener(new NullStream());
+            Launcher launcher = node.createLauncher(listener);
+            EnvVars env = new EnvVars(r.env);
+            AbstractMavenProcessFactory f = r.maven3
+                    ? new Maven3ProcessFactory(mms,launcher,env,null)
+                    : new MavenProcessFactory(mms,launcher,env,null);
+            f.setCurrentNode(node);
+
+            try {
+                MavenProcess p = launch(list,listener,(Factory)f,f.getMavenOpts(),f.getMavenInstallation(listener),f.getJava(listener));
+                synchronized (list.processes) {
+                    list.prespawned++;
+                }
+                p.recycle();
+                LOGGER.fine("Launched a maven process for "+r.project+" on "+r.node);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING,"Failed to launch a maven process for "+r.project+" on "+r.node,e);
+            } catch (RunnerAbortedException e) {
+                LOGGER.log(Level.WARNING,"Failed to launch a maven process for "+r.project+" on "+r.node,e);
+            }
+        }
+    }
+
+    /**
+     * Shuts down the processes that have been idle for too long.
+     */
+    public void expire() {
+        List<PerChannel> all;
+        synchronized (this) {
+            all = new ArrayList<PerChannel>(cache.values());
+        }
+        long now = System.currentTimeMillis();
+        for (PerChannel list : all) {
+            synchronized (list.processes) {
+                for (Iterator<MavenProcess> itr = list.processes.iterator(); itr.hasNext();) {
+                    MavenProcess p = itr.next();
+                    if (p.isExpired(now)) {
+                        p.discard();
+                        itr.remove();
+                        list.expired++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the statistics of the pool of the given node.
+     */
+    public Statistics getStatistics(VirtualChannel owner) {
+        PerChannel list = get(owner);
+        synchronized (list.processes) {
+            return new Statistics(list);
+        }
     }
 
+    private synchronized void remember(Recipe r) {
+        if (r==null)    return;
+        LinkedList<Recipe> l = recipes.get(r.node);
+        if (l==null)
+            recipes.put(r.node,l=new LinkedList<Recipe>());
+        for (Iterator<Recipe> itr = l.iterator(); itr.hasNext();) {
+            Recipe e = itr.next();
+            if (e.project.equals(r.project) && e.maven3==r.maven3)
+                itr.remove();
+        }
+        l.addFirst(r);
+        while (l.size()>maxProcess)
+            l.removeLast();
+    }
+
+    /**
+     * Leaves out the variables that change on every build from the given environment.
+     */
+    private static Map<String,String> stable(EnvVars env) {
+        Map<String,String> r = new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+        if (env!=null)
+            r.putAll(env);
+        for (String v : VOLATILE_VARIABLES)
+            r.remove(v);
+        return r;
+    }
+
+    private static boolean sameTool(ToolInstallation a, ToolInstallation b) {
+        if (a==null || b==null)     return a==b;
+        return a.getName().equals(b.getName()) && Util.fixNull(a.getHome()).equals(Util.fixNull(b.getHome()));
+    }
+
+    /**
+     * Maximum number of idle processes kept per node.
+     */
+    public static int SIZE = Integer.getInteger(ProcessCache.class.getName()+".size",5);
+
+    /**
+     * Minutes an idle process is kept before it's shut down. 0 to keep it forever.
+     */
+    public static int IDLE_TIMEOUT = Integer.getInteger(ProcessCache.class.getName()+".idleTimeout",30);
+
+    /**
+     * Whether to launch processes when a node comes online. Off by default,
+     * as this starts JVMs on nodes that might not build Maven projects again any time soon.
+     */
+    public static boolean PRESPAWN = Boolean.getBoolean(ProcessCache.class.getName()+".prespawn");
+
+    /**
+     * Environment variables that change on every build, and so are left out when matching a process
+     * against a build. A reused process still has the values of the build that launched it in its
+     * environment; the current values reach it as system properties, like all the other variables.
+     * Set to an empty string to only reuse processes whose environment is exactly the same.
+     */
+    public static List<String> VOLATILE_VARIABLES = Arrays.asList(Util.tokenize(
+            System.getProperty(ProcessCache.class.getName()+".volatileVariables","BUILD_NUMBER,BUILD_ID,BUILD_TAG,BUILD_URL,EXECUTOR_NUMBER"),","));
+
 
 
     public static int MAX_AGE = 5;
@@ -275,5 +596,21 @@ public final class ProcessCache {
         }
     }
 
+    /**
+     * Shuts down expired processes even if no build comes along to notice.
+     */
+    @Extension
+    public static final class IdleReaper extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            MavenBuild.mavenProcessCache.expire();
+        }
+    }
+
     private static final Logger LOGGER = Logger.getLogger(ProcessCache.class.getName());
 }
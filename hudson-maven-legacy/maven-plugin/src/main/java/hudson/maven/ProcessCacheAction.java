@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.maven;
+
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.remoting.VirtualChannel;
+
+/**
+ * Shows the statistics of the {@link ProcessCache} pool on the page of a node.
+ *
+ * <p>
+ * This action is added to a computer when it comes online.
+ *
+ * @since 2.1.0
+ */
+public final class ProcessCacheAction implements Action {
+    public final Computer owner;
+
+    ProcessCacheAction(Computer owner) {
+        this.owner = owner;
+    }
+
+    public String getIconFileName() {
+        return "computer.gif";
+    }
+
+    public String getDisplayName() {
+        return Messages.ProcessCacheAction_DisplayName();
+    }
+
+    public String getUrlName() {
+        return "mavenProcesses";
+    }
+
+    /**
+     * Null if the node is offline.
+     */
+    public ProcessCache.Statistics getStatistics() {
+        VirtualChannel channel = owner.getChannel();
+        if (channel==null)  return null;
+        return MavenBuild.mavenProcessCache.getStatistics(channel);
+    }
+
+    public int getSize() {
+        return ProcessCache.SIZE;
+    }
+
+    public int getIdleTimeout() {
+        return ProcessCache.IDLE_TIMEOUT;
+    }
+}
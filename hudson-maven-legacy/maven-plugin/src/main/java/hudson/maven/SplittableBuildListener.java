@@ -23,25 +23,43 @@
  */
 package hudson.maven;
 
+import hudson.Util;
 import hudson.console.ConsoleNote;
 import hudson.model.BuildListener;
 import hudson.model.Cause;
 import hudson.model.Result;
 import hudson.model.StreamBuildListener;
 import hudson.util.AbstractTaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.IOException2;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 /**
  * Delegating {@link BuildListener} that can have "side" {@link OutputStream}
  * that gets log outputs. The side stream can be changed at runtime.
  *
+ * <p>
+ * Output that nobody claims is kept in memory up to {@link #SPILL_THRESHOLD} bytes,
+ * and in a temporary file beyond that. Output to the side stream is written by a separate
+ * thread, so that a slow module log doesn't hold up the main build log.
+ *
  * @author Kohsuke Kawaguchi
  * @since 1.133
  */
@@ -55,7 +73,7 @@ final class SplittableBuildListener extends AbstractTaskListener implements Buil
      * Used to accumulate data when no one is claiming the {@link #side},
      * so that the next one who set the {@link #side} can claim all the data.
      */
-    private ByteArrayOutputStream unclaimed = new ByteArrayOutputStream();
+    private SpillBuffer unclaimed = new SpillBuffer();
 
     private OutputStream side = unclaimed;
 
@@ -70,35 +88,67 @@ final class SplittableBuildListener extends AbstractTaskListener implements Buil
         final OutputStream base = core.getLogger();
         logger = new PrintStream(new OutputStream() {
             public void write(int b) throws IOException {
-                base.write(b);
-                side.write(b);
+                synchronized (SplittableBuildListener.this) {
+                    base.write(b);
+                    side.write(b);
+                }
             }
 
             public void write(byte b[], int off, int len) throws IOException {
-                base.write(b,off,len);
-                side.write(b,off,len);
+                synchronized (SplittableBuildListener.this) {
+                    base.write(b,off,len);
+                    side.write(b,off,len);
+                }
             }
 
             public void flush() throws IOException {
-                base.flush();
-                side.flush();
+                synchronized (SplittableBuildListener.this) {
+                    base.flush();
+                    side.flush();
+                }
             }
 
             public void close() throws IOException {
-                base.close();
-                side.close();
+                synchronized (SplittableBuildListener.this) {
+                    base.close();
+                    side.close();
+                }
             }
         });
     }
     
+    /**
+     * Sets the stream that receives the output from now on, in addition to the main log.
+     * The output accumulated while nobody claimed it is sent there first.
+     *
+     * @param os
+     *      null to stop sending the output to the current side stream. This waits until
+     *      everything sent to it is written.
+     */
     public void setSideOutputStream(OutputStream os) throws IOException {
-        if(os==null) {
-            os = unclaimed;
-        } else {
-            os.write(unclaimed.toByteArray());
-            unclaimed = new ByteArrayOutputStream();
+        OutputStream old;
+        synchronized (this) {
+            old = side;
+            if(os==null) {
+                side = unclaimed;
+            } else {
+                // hand the accumulated data over as is, instead of copying it now
+                side = new AsyncWriter(os,unclaimed);
+                unclaimed = new SpillBuffer();
+            }
         }
-        this.side = os;
+
+        // nothing gets sent to the old writer any more. wait for it outside the lock,
+        // so that the main log doesn't stall while the module log catches up
+        if(old instanceof AsyncWriter)
+            ((AsyncWriter)old).finish();
+    }
+
+    /**
+     * Throws away the output that nobody claimed, and the temporary file that may hold it.
+     */
+    public synchronized void discardUnclaimed() {
+        unclaimed.discard();
     }
 
     public void started(List<Cause> causes) {
@@ -141,5 +191,178 @@ final class SplittableBuildListener extends AbstractTaskListener implements Buil
         return new StreamBuildListener(logger);
     }
 
+    /**
+     * Append-only buffer that moves its data to a temporary file once it gets bigger than {@link #SPILL_THRESHOLD}.
+     */
+    static final class SpillBuffer extends OutputStream {
+        private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileOut;
+        private long size;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte)b},0,1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(fileOut==null && memory.size()+len>SPILL_THRESHOLD)
+                spill();
+            if(fileOut!=null)
+                fileOut.write(b,off,len);
+            else
+                memory.write(b,off,len);
+            size += len;
+        }
+
+        private void spill() throws IOException {
+            file = File.createTempFile("maven-log",".tmp");
+            fileOut = new BufferedOutputStream(new FileOutputStream(file));
+            memory.writeTo(fileOut);
+            memory.reset();
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Sends everything in this buffer to the given stream, then empties it.
+         */
+        void writeTo(OutputStream os) throws IOException {
+            try {
+                if(fileOut==null) {
+                    memory.writeTo(os);
+                } else {
+                    fileOut.close();
+                    fileOut = null;
+                    FileInputStream in = new FileInputStream(file);
+                    try {
+                        Util.copyStream(in,os);
+                    } finally {
+                        in.close();
+                    }
+                }
+            } finally {
+                discard();
+            }
+        }
+
+        void discard() {
+            memory.reset();
+            size = 0;
+            if(fileOut!=null) {
+                try {
+                    fileOut.close();
+                } catch (IOException e) {
+                    // we are throwing it away anyway
+                }
+                fileOut = null;
+            }
+            if(file!=null) {
+                if(!file.delete())
+                    LOGGER.fine("Failed to delete "+file);
+                file = null;
+            }
+        }
+    }
+
+    /**
+     * Writes to the given stream on a separate thread.
+     *
+     * <p>
+     * Data waiting to be written is kept in a {@link SpillBuffer}, so the writing side
+     * never waits for the target stream, and the memory usage stays bounded.
+     */
+    static final class AsyncWriter extends OutputStream implements Runnable {
+        private final OutputStream target;
+        private SpillBuffer pending;
+        private boolean finished;
+        /**
+         * Set when writing to the target fails. Further output is dropped.
+         */
+        private IOException failure;
+        private final Future<?> task;
+
+        AsyncWriter(OutputStream target, SpillBuffer initial) {
+            this.target = target;
+            this.pending = initial;
+            this.task = WRITERS.submit(this);
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if(failure!=null)   return;
+            pending.write(b);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if(failure!=null)   return;
+            pending.write(b,off,len);
+            notifyAll();
+        }
+
+        public void run() {
+            try {
+                while(true) {
+                    SpillBuffer b;
+                    synchronized(this) {
+                        while(pending.size()==0 && !finished)
+                            wait();
+                        if(pending.size()==0)
+                            return; // finished
+                        b = pending;
+                        pending = new SpillBuffer();
+                    }
+                    b.writeTo(target);
+                    target.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                synchronized(this) {
+                    failure = e;
+                    pending.discard();
+                }
+            }
+        }
+
+        /**
+         * Waits until everything written so far reaches the target stream. The target isn't closed.
+         */
+        void finish() throws IOException {
+            synchronized(this) {
+                finished = true;
+                notifyAll();
+            }
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException2("Failed to write the log",e.getCause());
+            } finally {
+                synchronized(this) {
+                    // if the writer didn't get to it, don't leave its temporary file behind
+                    pending.discard();
+                }
+            }
+            if(failure!=null)
+                throw new IOException2("Failed to write the log",failure);
+        }
+    }
+
+    /**
+     * Unclaimed output beyond this many bytes goes to a temporary file.
+     */
+    public static int SPILL_THRESHOLD = Integer.getInteger(SplittableBuildListener.class.getName()+".spillThreshold",1024*1024);
+
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    private static final Logger LOGGER = Logger.getLogger(SplittableBuildListener.class.getName());
+
     private static final long serialVersionUID = 1L;
 }
@@ -43,10 +43,13 @@ import hudson.tasks.test.TestResultProjectAction;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.artifact.versioning.ComparableVersion;
@@ -63,7 +66,16 @@ import org.codehaus.plexus.util.xml.Xpp3Dom;
  * @author Kohsuke Kawaguchi
  */
 public class SurefireArchiver extends MavenReporter {
-    private TestResult result;
+    /**
+     * Report files already recorded during this build, and their length and timestamp at that time,
+     * so that later surefire executions of the same module only parse and send the reports that are new or changed.
+     */
+    private transient Map<File,String> recorded;
+
+    /**
+     * True once any of the {@link #recorded} files was new enough to be parsed.
+     */
+    private transient boolean parsedAny;
 
     public boolean preExecute(MavenBuildProxy build, MavenProject pom, MojoInfo mojo, BuildListener listener) throws InterruptedException, IOException {
         if (isSurefireTest(mojo)) {
@@ -122,20 +134,39 @@ public class SurefireArchiver extends MavenReporter {
                 // no test in this module
                 return true;
 
-            if(result==null)    result = new TestResult();
-            result.parse(System.currentTimeMillis() - build.getMilliSecsSinceBuildStart(), ds);
+            long buildTime = System.currentTimeMillis() - build.getMilliSecsSinceBuildStart();
+
+            // only look at the files that we haven't seen, or that have changed since we did
+            if(recorded==null)  recorded = new HashMap<File,String>();
+            List<String> files = new ArrayList<String>();
+            for (String f : ds.getIncludedFiles()) {
+                File reportFile = new File(reportsDir,f);
+                String stamp = reportFile.length()+"@"+reportFile.lastModified();
+                if(!stamp.equals(recorded.put(reportFile,stamp)))
+                    files.add(f);
+            }
+            if(files.isEmpty())
+                // nothing new since the last execution
+                return true;
+
+            final TestResult delta = new TestResult();
+            if(delta.parseNew(buildTime, reportsDir, files)>0)
+                parsedAny = true;
+            if(!parsedAny)
+                // none of the reports are new. this fails with the explanation
+                new TestResult().parse(buildTime, ds);
 
             int failCount = build.execute(new BuildCallable<Integer, IOException>() {
                 public Integer call(MavenBuild build) throws IOException, InterruptedException {
                     SurefireReport sr = build.getAction(SurefireReport.class);
                     if(sr==null)
-                        build.getActions().add(new SurefireReport(build, result, listener));
+                        build.getActions().add(sr=new SurefireReport(build, delta, listener));
                     else
-                        sr.setResult(result,listener);
-                    if(result.getFailCount()>0)
+                        sr.mergeResult(delta,listener);
+                    if(sr.getFailCount()>0)
                         build.setResult(Result.UNSTABLE);
                     build.registerAsProjectAction(new FactoryImpl());
-                    return result.getFailCount();
+                    return sr.getFailCount();
                 }
             });
 
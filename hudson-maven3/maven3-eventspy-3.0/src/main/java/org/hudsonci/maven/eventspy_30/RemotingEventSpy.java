@@ -27,6 +27,7 @@ package org.hudsonci.maven.eventspy_30;
 import org.hudsonci.maven.model.PropertiesDTOHelper;
 import org.hudsonci.maven.model.state.RuntimeEnvironmentDTO;
 import org.apache.maven.BuildAbort;
+import org.hudsonci.maven.eventspy.common.BatchingCallback;
 import org.hudsonci.maven.eventspy.common.Callback;
 import org.hudsonci.maven.eventspy.common.CallbackManager;
 import org.hudsonci.maven.eventspy.common.RemotingClient;
@@ -34,8 +35,11 @@ import org.hudsonci.maven.eventspy.common.RemotingClient;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.hudsonci.maven.eventspy.common.Constants.BATCH_FLUSH_INTERVAL_PROPERTY;
+import static org.hudsonci.maven.eventspy.common.Constants.BATCH_MAX_PENDING_PROPERTY;
 import static org.hudsonci.maven.eventspy.common.Constants.CALLBACK_WAIT_TIMEOUT;
 import static org.hudsonci.maven.eventspy.common.Constants.CALLBACK_WAIT_TIMEOUT_UNIT;
 import static org.hudsonci.maven.eventspy.common.Constants.PORT_PROPERTY;
@@ -116,6 +120,13 @@ public class RemotingEventSpy
         // Wait for the callback
         callback = CallbackManager.get(CALLBACK_WAIT_TIMEOUT, CALLBACK_WAIT_TIMEOUT_UNIT);
 
+        // Send project and artifact updates in batches, rather than making a round trip for each
+        long flushInterval = Long.parseLong(getProperty(BATCH_FLUSH_INTERVAL_PROPERTY, String.valueOf(BatchingCallback.DEFAULT_FLUSH_INTERVAL)));
+        if (flushInterval > 0) {
+            int maxPending = Integer.parseInt(getProperty(BATCH_MAX_PENDING_PROPERTY, String.valueOf(BatchingCallback.DEFAULT_MAX_PENDING)));
+            callback = new BatchingCallback(callback, maxPending, flushInterval, TimeUnit.MILLISECONDS);
+        }
+
         // For now we are going to use the standard logging to STDOUT that Maven does
         // DefaultPlexusContainer container = getContainer();
         // container.setLoggerManager(new LoggerManagerImpl(this, container.getLoggerManager()));
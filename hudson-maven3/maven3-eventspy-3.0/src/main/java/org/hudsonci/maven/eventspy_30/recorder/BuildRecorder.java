@@ -263,7 +263,8 @@ public class BuildRecorder
     private void commitArtifacts() {
         long start = System.currentTimeMillis();
         callback.addArtifacts(recordedArtifacts);
-        // Takes advantage of the callback being remote and de/serialization breaking the reference to the recordedArtifacts.
+        // Takes advantage of the callback copying the artifacts (BatchingCallback) or being remote and de/serialization
+        // breaking the reference to the recordedArtifacts.
         recordedArtifacts.clear();
         long duration = System.currentTimeMillis() - start;
         
@@ -215,6 +215,10 @@ public class BuildRecorderArtifactRecordingTest
             capturedArtifacts.addAll(ImmutableList.copyOf(artifacts));
         }
 
+        public void update(final List<MavenProjectDTO> projects, final Collection<ArtifactDTO> artifacts) {
+            addArtifacts(artifacts);
+        }
+
         public void setParticipatingProjects(List<MavenProjectDTO> projects) {
         }
         
@@ -0,0 +1,299 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2010-2011 Sonatype, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.hudsonci.maven.eventspy.common;
+
+import org.hudsonci.maven.model.state.ArtifactDTO;
+import org.hudsonci.maven.model.state.MavenProjectDTO;
+import org.hudsonci.maven.model.state.RuntimeEnvironmentDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * {@link Callback} which buffers project updates and recorded artifacts, and sends them to the target
+ * {@link Callback} in batches through {@link Callback#update}, from a background thread.
+ *
+ * When the target is a remote proxy this saves the Maven process from waiting for a round trip to the master
+ * every time a module starts or finishes.  Batches are sent when the flush interval elapses or when enough
+ * artifacts are pending, whichever comes first.  Only the latest update of each project is sent.
+ *
+ * The number of pending artifacts is bounded; when the target can't keep up, {@link #addArtifacts} blocks
+ * until the pending artifacts have been taken for sending.  Calls whose outcome depends on the updates sent so
+ * far ({@link #setParticipatingProjects}, {@link #setArtifacts} and {@link #close}) send everything pending first,
+ * so when {@link #close} returns the target has received all the updates.
+ *
+ * If sending a batch fails, the failure is rethrown by the next call to this callback.
+ *
+ * @since 2.1.0
+ */
+public class BatchingCallback
+    implements Callback
+{
+    private static final Logger log = LoggerFactory.getLogger(BatchingCallback.class);
+
+    public static final int DEFAULT_MAX_PENDING = 5000;
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private final Callback target;
+
+    private final int maxPending;
+
+    private final long flushInterval;
+
+    /**
+     * Serializes calls to the target which send or depend on the updates, so batches arrive in order.
+     */
+    private final Object sendLock = new Object();
+
+    /**
+     * Project updates not sent yet, keyed by project id.
+     */
+    private final Map<String,MavenProjectDTO> pendingProjects = new LinkedHashMap<String,MavenProjectDTO>();
+
+    private final List<ArtifactDTO> pendingArtifacts = new ArrayList<ArtifactDTO>();
+
+    private final Thread flusher;
+
+    private boolean closed;
+
+    private RuntimeException failure;
+
+    private int batchCount;
+
+    private int updateCount;
+
+    public BatchingCallback(final Callback target, final int maxPending, final long flushInterval, final TimeUnit unit) {
+        this.target = checkNotNull(target);
+        checkArgument(maxPending > 0);
+        checkArgument(flushInterval > 0);
+        checkNotNull(unit);
+        this.maxPending = maxPending;
+        this.flushInterval = unit.toMillis(flushInterval);
+
+        flusher = new Thread("Callback flusher")
+        {
+            @Override
+            public void run() {
+                runFlusher();
+            }
+        };
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public BatchingCallback(final Callback target) {
+        this(target, DEFAULT_MAX_PENDING, DEFAULT_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public File getMavenContextDirectory() {
+        return target.getMavenContextDirectory();
+    }
+
+    public boolean isAborted() {
+        return target.isAborted();
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            try {
+                flusher.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+            checkFailure();
+        }
+        finally {
+            log.debug("Sent {} updates in {} batches", updateCount, batchCount);
+            target.close();
+        }
+    }
+
+    public void setRuntimeEnvironment(final RuntimeEnvironmentDTO env) {
+        target.setRuntimeEnvironment(env);
+    }
+
+    public void setParticipatingProjects(final List<MavenProjectDTO> projects) {
+        synchronized (sendLock) {
+            flush();
+            checkFailure();
+            target.setParticipatingProjects(projects);
+        }
+    }
+
+    public void updateParticipatingProject(final MavenProjectDTO project) {
+        checkNotNull(project);
+
+        synchronized (this) {
+            checkOpen();
+            pendingProjects.put(project.getId(), project);
+        }
+    }
+
+    public void setArtifacts(final Collection<ArtifactDTO> artifacts) {
+        synchronized (sendLock) {
+            flush();
+            checkFailure();
+            target.setArtifacts(artifacts);
+        }
+    }
+
+    public void addArtifacts(final Collection<ArtifactDTO> artifacts) {
+        checkNotNull(artifacts);
+
+        synchronized (this) {
+            checkOpen();
+            // Back off while the target is catching up
+            while (pendingArtifacts.size() >= maxPending && !closed && failure == null) {
+                notifyAll();
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            checkFailure();
+            // Copy, the caller may reuse the collection
+            pendingArtifacts.addAll(artifacts);
+            if (pendingArtifacts.size() >= maxPending) {
+                notifyAll();
+            }
+        }
+    }
+
+    public void update(final List<MavenProjectDTO> projects, final Collection<ArtifactDTO> artifacts) {
+        checkNotNull(projects);
+        checkNotNull(artifacts);
+
+        for (MavenProjectDTO project : projects) {
+            updateParticipatingProject(project);
+        }
+        addArtifacts(artifacts);
+    }
+
+    public DocumentReference getSettingsDocument() {
+        return target.getSettingsDocument();
+    }
+
+    public DocumentReference getGlobalSettingsDocument() {
+        return target.getGlobalSettingsDocument();
+    }
+
+    public DocumentReference getToolChainsDocument() {
+        return target.getToolChainsDocument();
+    }
+
+    /**
+     * Sends all pending updates to the target.
+     */
+    public void flush() {
+        synchronized (sendLock) {
+            List<MavenProjectDTO> projects;
+            List<ArtifactDTO> artifacts;
+            synchronized (this) {
+                if (pendingProjects.isEmpty() && pendingArtifacts.isEmpty()) {
+                    return;
+                }
+                projects = new ArrayList<MavenProjectDTO>(pendingProjects.values());
+                artifacts = new ArrayList<ArtifactDTO>(pendingArtifacts);
+                pendingProjects.clear();
+                pendingArtifacts.clear();
+                // Release any producers waiting for room
+                notifyAll();
+            }
+
+            try {
+                target.update(projects, artifacts);
+                batchCount++;
+                updateCount += projects.size() + artifacts.size();
+            }
+            catch (RuntimeException e) {
+                log.error("Failed to send updates", e);
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + flushInterval;
+                long remaining;
+                while (!closed && pendingArtifacts.size() < maxPending && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        wait(remaining);
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    // Whatever is left is sent by close()
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    private void checkOpen() {
+        checkState(!closed, "Callback has been closed");
+        checkFailure();
+    }
+
+    private synchronized void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Failed to send updates", failure);
+        }
+    }
+}
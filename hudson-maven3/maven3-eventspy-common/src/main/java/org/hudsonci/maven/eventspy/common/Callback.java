@@ -71,6 +71,14 @@ public interface Callback
 
     void addArtifacts(Collection<ArtifactDTO> artifacts);
 
+    /**
+     * Applies a batch of updates in one call; the same as {@link #updateParticipatingProject} for each project,
+     * in order, followed by {@link #addArtifacts}.
+     *
+     * @see BatchingCallback
+     */
+    void update(List<MavenProjectDTO> projects, Collection<ArtifactDTO> artifacts);
+
     DocumentReference getSettingsDocument();
 
     DocumentReference getGlobalSettingsDocument();
@@ -46,6 +46,16 @@ public interface Constants
 
     String INVOKE_RECORD_FILE = PREFIX + ".invoke.record.file";
 
+    /**
+     * Milliseconds between sending batches of updates to the callback; 0 to send each update as it happens.
+     */
+    String BATCH_FLUSH_INTERVAL_PROPERTY = PREFIX + ".batch.flushInterval";
+
+    /**
+     * Maximum number of pending artifacts before recording them blocks until the callback catches up.
+     */
+    String BATCH_MAX_PENDING_PROPERTY = PREFIX + ".batch.maxPending";
+
     // FIXME: Maybe drop these, probably not going to programmatically work with any of these.
 
     String LOGGING_PREFIX = PREFIX + ".logging";
@@ -0,0 +1,244 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2010-2011 Sonatype, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.hudsonci.maven.eventspy.common;
+
+import org.hudsonci.maven.model.MavenCoordinatesDTO;
+import org.hudsonci.maven.model.state.ArtifactDTO;
+import org.hudsonci.maven.model.state.MavenProjectDTO;
+import org.hudsonci.maven.model.state.RuntimeEnvironmentDTO;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link BatchingCallback}.
+ */
+public class BatchingCallbackTest
+{
+    @Test
+    public void testUpdatesAreBatchedAndCompleteOnClose() {
+        RecordingCallback target = new RecordingCallback();
+        BatchingCallback callback = new BatchingCallback(target, 1000, 1, TimeUnit.HOURS);
+
+        for (int i = 0; i < 50; i++) {
+            callback.updateParticipatingProject(project("p" + (i % 5), "BUILDING" + i));
+            callback.addArtifacts(Collections.singletonList(artifact("a" + i)));
+        }
+        assertEquals(0, target.updates);
+
+        callback.close();
+        assertTrue(target.closed);
+        assertEquals(1, target.updates);
+        assertEquals(5, target.projects.size());
+        assertEquals("BUILDING49", target.projects.get(project("p4", null).getId()).getName());
+        assertEquals(50, target.artifacts.size());
+        assertEquals("a0", target.artifacts.get(0).getType());
+        assertEquals("a49", target.artifacts.get(49).getType());
+    }
+
+    @Test
+    public void testPendingUpdatesAreSentBeforeParticipatingProjects() {
+        RecordingCallback target = new RecordingCallback();
+        BatchingCallback callback = new BatchingCallback(target, 1000, 1, TimeUnit.HOURS);
+
+        callback.updateParticipatingProject(project("p1", "BUILDING"));
+        callback.setParticipatingProjects(new ArrayList<MavenProjectDTO>());
+        assertEquals(1, target.updates);
+        assertTrue(target.projects.isEmpty());
+        callback.close();
+    }
+
+    @Test
+    public void testFlushInterval() throws Exception {
+        RecordingCallback target = new RecordingCallback();
+        BatchingCallback callback = new BatchingCallback(target, 1000, 10, TimeUnit.MILLISECONDS);
+
+        callback.addArtifacts(Collections.singletonList(artifact("a")));
+        for (int i = 0; i < 500 && target.updates == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, target.updates);
+        callback.close();
+    }
+
+    @Test
+    public void testAddingBlocksWhileTargetIsBehind() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingCallback target = new RecordingCallback()
+        {
+            @Override
+            public synchronized void update(final List<MavenProjectDTO> projects, final Collection<ArtifactDTO> artifacts) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.update(projects, artifacts);
+            }
+        };
+        final BatchingCallback callback = new BatchingCallback(target, 2, 1, TimeUnit.HOURS);
+
+        // The first two fill the buffer and are taken by the flusher, which gets stuck sending them
+        // the next two fill the buffer again, so the last one has to wait
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    callback.addArtifacts(Collections.singletonList(artifact("a" + i)));
+                }
+            }
+        };
+        producer.start();
+        producer.join(500);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(5000);
+        callback.close();
+        assertEquals(5, target.artifacts.size());
+    }
+
+    @Test
+    public void testFailureIsReportedByTheNextCall() {
+        RecordingCallback target = new RecordingCallback()
+        {
+            @Override
+            public synchronized void update(final List<MavenProjectDTO> projects, final Collection<ArtifactDTO> artifacts) {
+                throw new IllegalStateException("channel is gone");
+            }
+        };
+        BatchingCallback callback = new BatchingCallback(target, 1000, 1, TimeUnit.HOURS);
+
+        callback.addArtifacts(Collections.singletonList(artifact("a")));
+        callback.flush();
+        try {
+            callback.addArtifacts(Collections.singletonList(artifact("b")));
+            fail();
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        try {
+            callback.close();
+            fail();
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+        assertTrue(target.closed);
+    }
+
+    private static MavenProjectDTO project(final String artifactId, final String name) {
+        return new MavenProjectDTO()
+            .withName(name)
+            .withCoordinates(new MavenCoordinatesDTO().withGroupId("g").withArtifactId(artifactId).withVersion("1"));
+    }
+
+    private static ArtifactDTO artifact(final String type) {
+        return new ArtifactDTO().withType(type);
+    }
+
+    private static class RecordingCallback
+        implements Callback
+    {
+        final Map<String,MavenProjectDTO> projects = new LinkedHashMap<String,MavenProjectDTO>();
+
+        final List<ArtifactDTO> artifacts = new ArrayList<ArtifactDTO>();
+
+        volatile int updates;
+
+        volatile boolean closed;
+
+        public File getMavenContextDirectory() {
+            return null;
+        }
+
+        public boolean isAborted() {
+            return false;
+        }
+
+        public void close() {
+            closed = true;
+        }
+
+        public void setRuntimeEnvironment(final RuntimeEnvironmentDTO env) {
+        }
+
+        public synchronized void setParticipatingProjects(final List<MavenProjectDTO> projects) {
+            this.projects.clear();
+            for (MavenProjectDTO project : projects) {
+                this.projects.put(project.getId(), project);
+            }
+        }
+
+        public synchronized void updateParticipatingProject(final MavenProjectDTO project) {
+            projects.put(project.getId(), project);
+        }
+
+        public synchronized void setArtifacts(final Collection<ArtifactDTO> artifacts) {
+            this.artifacts.clear();
+            this.artifacts.addAll(artifacts);
+        }
+
+        public synchronized void addArtifacts(final Collection<ArtifactDTO> artifacts) {
+            this.artifacts.addAll(artifacts);
+        }
+
+        public synchronized void update(final List<MavenProjectDTO> projects, final Collection<ArtifactDTO> artifacts) {
+            for (MavenProjectDTO project : projects) {
+                updateParticipatingProject(project);
+            }
+            addArtifacts(artifacts);
+            updates++;
+        }
+
+        public DocumentReference getSettingsDocument() {
+            return null;
+        }
+
+        public DocumentReference getGlobalSettingsDocument() {
+            return null;
+        }
+
+        public DocumentReference getToolChainsDocument() {
+            return null;
+        }
+    }
+}
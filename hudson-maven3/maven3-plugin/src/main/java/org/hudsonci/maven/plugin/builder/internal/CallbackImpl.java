@@ -168,6 +168,18 @@ public class CallbackImpl
         log.debug("Committed {} artifacts in {}ms of cumulative {}ms", new Object[] {count,duration,commitDurationToDate});
     }
 
+    public void update(final List<MavenProjectDTO> projects, final Collection<ArtifactDTO> artifacts) {
+        checkNotNull(projects);
+        checkNotNull(artifacts);
+
+        for (MavenProjectDTO project : projects) {
+            updateParticipatingProject(project);
+        }
+        if (!artifacts.isEmpty()) {
+            addArtifacts(artifacts);
+        }
+    }
+
     public DocumentReference getSettingsDocument() {
         return getDocumentContent(owner.getConfig().getSettingsId());
     }
@@ -60,6 +60,8 @@ public class ArtifactsExtractorImpl
 
     // TODO: If we want to expose the raw extraction, then make a new ArtifactExtractor component impl
 
+    private final ArtifactsPairStore store = new ArtifactsPairStore();
+
     /**
      * {@inheritDoc}
      *
@@ -81,6 +83,9 @@ public class ArtifactsExtractorImpl
      * {@inheritDoc}
      *
      * When build is a multi-configuration {@link MatrixRun} {@code null} is always returned.
+     *
+     * The extracted artifacts are stored with the build by {@link ArtifactsPairStore}, and loaded from there
+     * the next time, instead of being extracted again.
      */
     public ArtifactsPair extract(final AbstractBuild build) {
         checkNotNull(build);
@@ -89,6 +94,13 @@ public class ArtifactsExtractorImpl
             return null;
         }
 
+        // Artifacts of a build don't change once extracted, reuse them if we have done so before
+        ArtifactsPair artifacts = store.load(build);
+        if (artifacts != null) {
+            log.debug("Loaded previously extracted artifacts of build: {}", build);
+            return artifacts;
+        }
+
         log.debug("Extracting artifacts from build: {}", build);
 
         Set<MavenCoordinatesDTO> produced = Sets.newHashSet();
@@ -107,7 +119,11 @@ public class ArtifactsExtractorImpl
         // Make sure we don't include any produced artifacts in the consumed list
         consumed.removeAll(produced);
 
-        return new ArtifactsPair(produced, consumed);
+        artifacts = new ArtifactsPair(produced, consumed);
+        if (!build.isBuilding()) {
+            store.store(build, artifacts);
+        }
+        return artifacts;
     }
 
     private void extractFromBuild(final AbstractBuild build, final Set<MavenCoordinatesDTO> produced, final Set<MavenCoordinatesDTO> consumed) {
@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2010-2011 Sonatype, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.hudsonci.maven.plugin.dependencymonitor.internal;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import hudson.model.AbstractBuild;
+import hudson.util.AtomicFileWriter;
+import org.hudsonci.maven.model.MavenCoordinatesDTO;
+import org.hudsonci.maven.plugin.builder.BuildStateRecord;
+import org.hudsonci.maven.plugin.dependencymonitor.ArtifactsPair;
+import org.hudsonci.utils.io.Closer;
+import org.hudsonci.utils.marshal.Marshaller;
+import org.hudsonci.utils.marshal.XStreamMarshaller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Loads (and stores) the {@link ArtifactsPair} extracted from a build, next to the build.
+ *
+ * Extracting the artifacts requires loading the {@link BuildStateRecord}s of the build, which is expensive
+ * when it has to be done for every project as the {@link ProjectArtifactCacheImpl} is rebuilt.  As the artifacts
+ * of a completed build never change, the extracted pair is simply kept with the build and reused.
+ *
+ * @since 2.1.0
+ */
+public class ArtifactsPairStore
+{
+    private static final Logger log = LoggerFactory.getLogger(ArtifactsPairStore.class);
+
+    public static final String FILE_NAME = "maven-artifacts.xml";
+
+    private final Marshaller marshaller;
+
+    public ArtifactsPairStore() {
+        XStream xs = new XStream();
+        xs.setClassLoader(getClass().getClassLoader());
+        xs.alias("maven-artifacts", ArtifactsPair.class);
+        xs.alias("coordinates", MavenCoordinatesDTO.class);
+        marshaller = new XStreamMarshaller(xs);
+    }
+
+    /**
+     * @return Null if the build has no root directory.
+     */
+    private File getFile(final AbstractBuild build) {
+        File dir = build.getRootDir();
+        return dir != null ? new File(dir, FILE_NAME) : null;
+    }
+
+    /**
+     * Load the artifacts previously stored for the given build.
+     *
+     * @return Null if nothing has been stored, or the stored artifacts could not be read.
+     */
+    public ArtifactsPair load(final AbstractBuild build) {
+        checkNotNull(build);
+
+        File file = getFile(build);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        log.debug("Loading from file: {}", file);
+        try {
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                return (ArtifactsPair) marshaller.unmarshal(reader);
+            }
+            finally {
+                Closer.close(reader);
+            }
+        }
+        catch (IOException e) {
+            log.warn("Failed to load artifacts from file: " + file, e);
+        }
+        catch (XStreamException e) {
+            log.warn("Failed to load artifacts from file: " + file, e);
+        }
+        catch (ClassCastException e) {
+            log.warn("Failed to load artifacts from file: " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Store the artifacts extracted from the given build.  Failures are logged, as the artifacts can always be
+     * extracted again.  The file is replaced atomically, like the other build records, so a crash never leaves
+     * a truncated file behind.
+     */
+    public void store(final AbstractBuild build, final ArtifactsPair artifacts) {
+        checkNotNull(build);
+        checkNotNull(artifacts);
+
+        File file = getFile(build);
+        if (file == null || !file.getParentFile().exists()) {
+            return;
+        }
+
+        log.debug("Storing to file: {}", file);
+        try {
+            AtomicFileWriter writer = new AtomicFileWriter(file);
+            try {
+                marshaller.marshal(artifacts, writer);
+                writer.commit();
+            }
+            finally {
+                writer.abort();
+            }
+        }
+        catch (IOException e) {
+            log.warn("Failed to store artifacts to file: " + file, e);
+        }
+        catch (XStreamException e) {
+            log.warn("Failed to store artifacts to file: " + file, e);
+        }
+    }
+}
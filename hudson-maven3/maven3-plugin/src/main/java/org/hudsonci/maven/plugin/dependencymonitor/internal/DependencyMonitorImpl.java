@@ -43,9 +43,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -170,32 +170,34 @@ public class DependencyMonitorImpl
         // For clarity reassign project to better name so we don't get too confused
         final AbstractProject producerProject = project;
 
-        Collection<MavenCoordinatesDTO> producedArtifacts = projectArtifactCache.getProducedArtifacts(producerProject);
-        for (AbstractProject consumerProject : projectArtifactCache.getArtifactConsumers()) {
+        // Projects consuming any produced artifacts are dependencies; look them up by artifact rather than
+        // checking the consumed artifacts of every consumer project
+        Set<AbstractProject> consumerProjects = new LinkedHashSet<AbstractProject>();
+        for (MavenCoordinatesDTO artifact : projectArtifactCache.getProducedArtifacts(producerProject)) {
+            consumerProjects.addAll(projectArtifactCache.getConsumersOf(artifact));
+        }
+
+        for (AbstractProject consumerProject : consumerProjects) {
             // Skip projects which are not subscribed to notifications
             if (!isSubscribedForArtifactNotifications(consumerProject)) {
                 log.trace("Consumer project is not subscribed for notifications; skipping: {}", consumerProject);
                 continue;
             }
 
-            // If consuming any produced artifacts then it is a dependency
-            Collection<MavenCoordinatesDTO> consumedArtifacts = projectArtifactCache.getConsumedArtifacts(consumerProject);
-            if (CollectionsHelper.containsAny(consumedArtifacts, producedArtifacts)) {
-                log.debug("{} depends on {}", consumerProject, producerProject);
-
-                Dependency dependency = new Dependency(producerProject, consumerProject)
-                {
-                    @Override
-                    public boolean shouldTriggerBuild(final AbstractBuild build, final TaskListener listener, final List<Action> actions) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Checking if build should trigger: {}; w/threshold: {}", build, notifier.getResultThreshold());
-                        }
-                        return build.getResult().isBetterOrEqualTo(notifier.getResultThreshold());
+            log.debug("{} depends on {}", consumerProject, producerProject);
+
+            Dependency dependency = new Dependency(producerProject, consumerProject)
+            {
+                @Override
+                public boolean shouldTriggerBuild(final AbstractBuild build, final TaskListener listener, final List<Action> actions) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Checking if build should trigger: {}; w/threshold: {}", build, notifier.getResultThreshold());
                     }
-                };
+                    return build.getResult().isBetterOrEqualTo(notifier.getResultThreshold());
+                }
+            };
 
-                graph.addDependency(dependency);
-            }
+            graph.addDependency(dependency);
         }
     }
 }
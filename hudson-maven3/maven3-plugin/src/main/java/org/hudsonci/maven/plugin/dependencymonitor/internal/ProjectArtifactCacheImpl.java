@@ -27,7 +27,6 @@ package org.hudsonci.maven.plugin.dependencymonitor.internal;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import org.hudsonci.maven.model.MavenCoordinatesDTO;
 import org.hudsonci.service.ProjectService;
 import hudson.model.AbstractBuild;
@@ -42,7 +41,6 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.Collection;
-import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -82,6 +80,16 @@ public class ProjectArtifactCacheImpl
      */
     private final Multimap<AbstractProject,MavenCoordinatesDTO> projectConsumedArtifacts = HashMultimap.create();
 
+    /**
+     * Map of produced artifacts to their producing projects; the inverse of {@link #projectProducedArtifacts}.
+     */
+    private final Multimap<MavenCoordinatesDTO,AbstractProject> artifactProducers = HashMultimap.create();
+
+    /**
+     * Map of consumed artifacts to their consuming projects; the inverse of {@link #projectConsumedArtifacts}.
+     */
+    private final Multimap<MavenCoordinatesDTO,AbstractProject> artifactConsumers = HashMultimap.create();
+
     @Inject
     public ProjectArtifactCacheImpl(final ProjectService projectService, final ArtifactsExtractor artifactsExtractor) {
         this.projectService = checkNotNull(projectService);
@@ -101,7 +109,7 @@ public class ProjectArtifactCacheImpl
      * Returns <em>locked</em> write lock.
      */
     private Lock writeLock() {
-        Lock tmp = lock.readLock();
+        Lock tmp = lock.writeLock();
         tmp.lock();
         return tmp;
     }
@@ -159,25 +167,11 @@ public class ProjectArtifactCacheImpl
         }
     }
 
-    private Collection<AbstractProject> projectsContaining(final Multimap<AbstractProject, MavenCoordinatesDTO> source,
-                                                           final MavenCoordinatesDTO artifact)
-    {
-        assert source != null;
-        assert artifact != null;
-        Set<AbstractProject> projects = Sets.newHashSet();
-        for (AbstractProject project : source.keySet()) {
-            if (source.containsEntry(project, artifact)) {
-                projects.add(project);
-            }
-        }
-        return projects;
-    }
-
     public Collection<AbstractProject> getProducersOf(final MavenCoordinatesDTO artifact) {
         checkNotNull(artifact);
         Lock lock = readLock();
         try {
-            return projectsContaining(projectProducedArtifacts, artifact);
+            return ImmutableSet.copyOf(artifactProducers.get(artifact));
         }
         finally {
             lock.unlock();
@@ -188,7 +182,7 @@ public class ProjectArtifactCacheImpl
         checkNotNull(artifact);
         Lock lock = readLock();
         try {
-            return projectsContaining(projectConsumedArtifacts, artifact);
+            return ImmutableSet.copyOf(artifactConsumers.get(artifact));
         }
         finally {
             lock.unlock();
@@ -202,6 +196,8 @@ public class ProjectArtifactCacheImpl
         try {
             projectProducedArtifacts.clear();
             projectConsumedArtifacts.clear();
+            artifactProducers.clear();
+            artifactConsumers.clear();
         }
         finally {
             lock.unlock();
@@ -271,10 +267,10 @@ public class ProjectArtifactCacheImpl
         Lock lock = writeLock();
         try {
             boolean changed = false;
-            if (updateArtifacts(projectProducedArtifacts, project, artifacts.produced)) {
+            if (updateArtifacts(projectProducedArtifacts, artifactProducers, project, artifacts.produced)) {
                 changed = true;
             }
-            if (updateArtifacts(projectConsumedArtifacts, project, artifacts.consumed)) {
+            if (updateArtifacts(projectConsumedArtifacts, artifactConsumers, project, artifacts.consumed)) {
                 changed = true;
             }
             return changed;
@@ -285,45 +281,50 @@ public class ProjectArtifactCacheImpl
     }
 
     private boolean updateArtifacts(final Multimap<AbstractProject, MavenCoordinatesDTO> collection,
+                                    final Multimap<MavenCoordinatesDTO, AbstractProject> index,
                                     final AbstractProject project,
                                     final Collection<MavenCoordinatesDTO> artifacts)
     {
         assert collection != null;
+        assert index != null;
         Collection<MavenCoordinatesDTO> removed = collection.replaceValues(project, artifacts);
+        unindex(index, project, removed);
+        for (MavenCoordinatesDTO artifact : artifacts) {
+            index.put(artifact, project);
+        }
         return CollectionsHelper.differs(artifacts, removed);
     }
 
+    private void unindex(final Multimap<MavenCoordinatesDTO, AbstractProject> index,
+                         final AbstractProject project,
+                         final Collection<MavenCoordinatesDTO> artifacts)
+    {
+        assert index != null;
+        for (MavenCoordinatesDTO artifact : artifacts) {
+            index.remove(artifact, project);
+        }
+    }
+
     public void purgeArtifacts(final AbstractProject project) {
         checkNotNull(project);
         log.debug("Puring artifacts for project: {}", project);
 
         Lock lock = writeLock();
         try {
-            projectProducedArtifacts.removeAll(project);
-            projectConsumedArtifacts.removeAll(project);
+            unindex(artifactProducers, project, projectProducedArtifacts.removeAll(project));
+            unindex(artifactConsumers, project, projectConsumedArtifacts.removeAll(project));
         }
         finally {
             lock.unlock();
         }
     }
 
-    private boolean projectsContain(final Multimap<AbstractProject, MavenCoordinatesDTO> source, final MavenCoordinatesDTO artifact) {
-        assert source != null;
-        assert artifact != null;
-        for (AbstractProject project : source.keySet()) {
-            if (source.containsEntry(project, artifact)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     public boolean isProduced(final MavenCoordinatesDTO artifact) {
         checkNotNull(artifact);
 
         Lock lock = readLock();
         try {
-            return projectsContain(projectProducedArtifacts, artifact);
+            return artifactProducers.containsKey(artifact);
         }
         finally {
             lock.unlock();
@@ -335,7 +336,7 @@ public class ProjectArtifactCacheImpl
 
         Lock lock = readLock();
         try {
-            return projectsContain(projectConsumedArtifacts, artifact);
+            return artifactConsumers.containsKey(artifact);
         }
         finally {
             lock.unlock();
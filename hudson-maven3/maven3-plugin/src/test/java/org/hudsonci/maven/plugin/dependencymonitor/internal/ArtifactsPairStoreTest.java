@@ -0,0 +1,94 @@
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2010-2011 Sonatype, Inc. All rights reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.hudsonci.maven.plugin.dependencymonitor.internal;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import org.hudsonci.maven.model.MavenCoordinatesDTO;
+import org.hudsonci.maven.plugin.dependencymonitor.ArtifactsPair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ArtifactsPairStore}.
+ */
+public class ArtifactsPairStoreTest
+{
+    private File dir;
+
+    private AbstractBuild build;
+
+    private ArtifactsPairStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Util.createTempDir();
+        build = mock(AbstractBuild.class);
+        when(build.getRootDir()).thenReturn(dir);
+        store = new ArtifactsPairStore();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    @Test
+    public void ensureLoadWithoutStoreReturnsNull() {
+        assertNull(store.load(build));
+    }
+
+    @Test
+    public void ensureStoredArtifactsAreLoadedBack() {
+        // not representable in every platform encoding
+        MavenCoordinatesDTO produced = new MavenCoordinatesDTO().withGroupId("a").withArtifactId("\u00e4\u4e2d");
+        MavenCoordinatesDTO consumed = new MavenCoordinatesDTO().withGroupId("b").withArtifactId("b1");
+        store.store(build, new ArtifactsPair().withProduced(produced).withConsumed(consumed));
+
+        ArtifactsPair loaded = store.load(build);
+        assertEquals(1, loaded.produced.size());
+        assertEquals("\u00e4\u4e2d", loaded.produced.iterator().next().getArtifactId());
+        assertEquals(1, loaded.consumed.size());
+        assertEquals("b", loaded.consumed.iterator().next().getGroupId());
+    }
+
+    @Test
+    public void ensureStoreReplacesTheFile() {
+        store.store(build, new ArtifactsPair().withProduced(new MavenCoordinatesDTO().withGroupId("old")));
+        store.store(build, new ArtifactsPair().withProduced(new MavenCoordinatesDTO().withGroupId("new")));
+
+        assertEquals("new", store.load(build).produced.iterator().next().getGroupId());
+        // no temporary files are left behind
+        assertArrayEquals(new String[] {ArtifactsPairStore.FILE_NAME}, dir.list());
+    }
+}
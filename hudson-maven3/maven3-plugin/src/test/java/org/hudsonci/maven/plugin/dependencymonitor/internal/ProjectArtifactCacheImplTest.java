@@ -198,6 +198,35 @@ public class ProjectArtifactCacheImplTest
         assertThat(projects, not(hasItem(project2)));
     }
 
+    @Test
+    public void testProducersOfFollowsUpdates() {
+        cache.updateArtifacts(project1, new ArtifactsPair().withProduced(a1));
+        cache.updateArtifacts(project2, new ArtifactsPair().withProduced(a1));
+        assertThat(cache.getProducersOf(a1), hasItems(project1, project2));
+
+        cache.updateArtifacts(project1, new ArtifactsPair().withProduced(a3));
+        assertThat(cache.getProducersOf(a1), not(hasItem(project1)));
+        assertThat(cache.getProducersOf(a1), hasItem(project2));
+        assertThat(cache.getProducersOf(a3), hasItem(project1));
+
+        cache.updateArtifacts(project2, new ArtifactsPair());
+        assertTrue(cache.getProducersOf(a1).isEmpty());
+        assertFalse(cache.isProduced(a1));
+    }
+
+    @Test
+    public void testConsumersOfFollowsPurge() {
+        cache.updateArtifacts(project1, new ArtifactsPair().withConsumed(a2));
+        cache.updateArtifacts(project2, new ArtifactsPair().withConsumed(a2));
+
+        cache.purgeArtifacts(project1);
+        assertThat(cache.getConsumersOf(a2), not(hasItem(project1)));
+        assertThat(cache.getConsumersOf(a2), hasItem(project2));
+
+        cache.purgeArtifacts(project2);
+        assertFalse(cache.isConsumed(a2));
+    }
+
     @Test
     public void testIsProduced() {
         ArtifactsPair artifacts1 = new ArtifactsPair().withProduced(a1).withConsumed(a2);
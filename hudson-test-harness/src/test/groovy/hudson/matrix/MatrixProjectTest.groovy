@@ -48,6 +48,7 @@ import java.util.concurrent.TimeoutException
 import hudson.model.JDK
 import hudson.model.Slave
 import hudson.Functions
+import hudson.tasks.LogRotator
 
 /**
  *
@@ -125,6 +126,49 @@ public class MatrixProjectTest extends HudsonTestCase {
         assertEquals(2, build.getRuns().size());
     }
 
+    /**
+     * Inactive configurations that aren't loaded still get their logs rotated.
+     */
+    void testRotateUnloadedConfigurations() {
+        def p = createMatrixProject()
+        p.logRotator = new LogRotator(-1,1)
+        assertBuildStatusSuccess(p.scheduleBuild2(0))
+
+        // narrow down the matrix, and load it afresh, so that the oracle configurations are left unloaded
+        p.combinationFilter = 'db=="mysql"'
+        hudson.reload()
+        p = hudson.getItem(p.name)
+        def oracle = new Combination([db:"oracle",direction:"north"])
+        assertEquals(2, p.items.size())
+        assertTrue(p.getRootDirFor(oracle).exists())
+
+        // the 2nd build discards the 1st one, and with it the only builds of the oracle configurations.
+        // they aren't loaded just for that, but by the periodic rotation
+        assertBuildStatusSuccess(p.scheduleBuild2(0))
+        assertTrue(p.getRootDirFor(oracle).exists())
+        p.rotateUnloadedConfigurations()
+        assertFalse(p.getRootDirFor(oracle).exists())
+        assertNull(p.getItem(oracle))
+        assertEquals(2, p.allConfigurations.size())
+    }
+
+    void testUnloadedConfigurationsAfterRename() {
+        def p = createMatrixProject()
+        assertBuildStatusSuccess(p.scheduleBuild2(0))
+
+        p.combinationFilter = 'db=="mysql"'
+        hudson.reload()
+        p = hudson.getItem(p.name)
+        def oracle = new Combination([db:"oracle",direction:"north"])
+        assertEquals(2, p.items.size())
+
+        p.renameTo("renamed")
+        def c = p.getItem(oracle)
+        assertNotNull(c)
+        assertEquals(1, c.builds.size())
+        assertEquals(p.getRootDirFor(oracle), c.rootDir)
+    }
+
     @Override
     protected MatrixProject createMatrixProject() throws IOException {
         MatrixProject p = super.createMatrixProject();
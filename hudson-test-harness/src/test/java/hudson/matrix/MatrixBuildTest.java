@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.matrix;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Executor;
+import hudson.model.JobProperty;
+import hudson.model.JobPropertyDescriptor;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.util.OneShotEvent;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.TestBuilder;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests how {@link MatrixBuild} waits for its configurations.
+ */
+public class MatrixBuildTest extends HudsonTestCase {
+    /**
+     * Aggregators see the runs in the order they complete, not in the order of the configurations.
+     */
+    public void testAggregatorSeesRunsInCompletionOrder() throws Exception {
+        hudson.setNumExecutors(3);
+        MatrixProject p = createMatrixProject();
+        p.setAxes(new AxisList(new TextAxis("foo","1","2","3")));
+        final RecordingAggregatable rec = new RecordingAggregatable();
+        p.addProperty(rec);
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?,?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                // the first configuration only finishes once the others have been handed to the aggregator
+                if (build.getBuildVariables().get("foo").equals("1"))
+                    rec.othersDone.block(30*1000);
+                return true;
+            }
+        });
+
+        MatrixBuild b = p.scheduleBuild2(0).get(60, TimeUnit.SECONDS);
+        assertBuildStatusSuccess(b);
+        assertEquals(3, rec.completed.size());
+        assertEquals("foo=1", rec.completed.get(2));
+        assertEquals(3, b.getRuns().size());
+    }
+
+    /**
+     * Aborting the parent build aborts the running configurations and cancels the queued ones.
+     */
+    public void testAbort() throws Exception {
+        hudson.setNumExecutors(2);
+        MatrixProject p = createMatrixProject();
+        p.setAxes(new AxisList(new TextAxis("foo","1","2","3")));
+        final OneShotEvent started = new OneShotEvent();
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?,?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                started.signal();
+                Thread.sleep(60*1000);
+                return true;
+            }
+        });
+
+        Future<MatrixBuild> f = p.scheduleBuild2(0);
+        started.block(30*1000);
+        MatrixBuild b = p.getLastBuild();
+        // wait until the last configuration is waiting in the queue for an executor
+        for (int i=0; i<300 && hudson.getQueue().getItems().length==0; i++)
+            Thread.sleep(100);
+        assertEquals(1, hudson.getQueue().getItems().length);
+
+        Executor e = b.getExecutor();
+        assertNotNull(e);
+        e.interrupt();
+
+        assertBuildStatus(Result.ABORTED, f.get(30, TimeUnit.SECONDS));
+        assertEquals(0, hudson.getQueue().getItems().length);
+        List<MatrixRun> runs = b.getRuns();
+        assertEquals(2, runs.size());
+        for (MatrixRun r : runs) {
+            while (r.isBuilding())
+                Thread.sleep(100);
+            assertBuildStatus(Result.ABORTED, r);
+        }
+    }
+
+    /**
+     * Runs cached by the parent build are dropped when a configuration is reloaded, as it replaces the builds.
+     */
+    public void testRunsAreLookedUpAgainAfterReload() throws Exception {
+        MatrixProject p = createMatrixProject();
+        p.setAxes(new AxisList(new TextAxis("foo","1","2")));
+        MatrixBuild b = assertBuildStatusSuccess(p.scheduleBuild2(0));
+        MatrixConfiguration c = p.getItem("foo=1");
+        MatrixRun before = b.getRun(c.getCombination());
+        assertNotNull(before);
+
+        c.onLoad(p, c.getRootDir().getName());
+
+        MatrixRun after = b.getRun(c.getCombination());
+        assertNotSame(before, after);
+        assertSame(c.getBuildByNumber(b.getNumber()), after);
+    }
+
+    /**
+     * Records the combinations in the order the aggregator is told about them.
+     */
+    public static class RecordingAggregatable extends JobProperty<MatrixProject> implements MatrixAggregatable {
+        final transient List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+        final transient OneShotEvent othersDone = new OneShotEvent();
+
+        public MatrixAggregator createAggregator(MatrixBuild build, Launcher launcher, BuildListener listener) {
+            return new MatrixAggregator(build,launcher,listener) {
+                @Override
+                public boolean endRun(MatrixRun run) throws InterruptedException, IOException {
+                    completed.add(run.getParent().getCombination().toString());
+                    if (completed.size()==2)
+                        othersDone.signal();
+                    return true;
+                }
+            };
+        }
+
+        @TestExtension
+        public static class DescriptorImpl extends JobPropertyDescriptor {
+            @Override
+            public boolean isApplicable(Class<? extends Job> jobType) {
+                return MatrixProject.class.isAssignableFrom(jobType);
+            }
+
+            @Override
+            public String getDisplayName() {
+                return "Recording aggregator";
+            }
+        }
+    }
+}
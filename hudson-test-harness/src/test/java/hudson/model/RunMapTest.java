@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.triggers.Trigger;
+import hudson.triggers.TriggerDescriptor;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RunMapTest extends HudsonTestCase {
+    /**
+     * Several threads reading the build records of a job end up with the same map as a single thread.
+     */
+    public void testLoadWithHelpers() throws Exception {
+        final FreeStyleProject p = createFreeStyleProject();
+        for (int i=0; i<5; i++)
+            buildAndAssertSuccess(p);
+
+        ExecutorService es = Executors.newFixedThreadPool(3);
+        RunMap<FreeStyleBuild> m = new RunMap<FreeStyleBuild>();
+        RunMap.loadWithHelpers(es, 1, null);
+        try {
+            m.load(p, new RunMap.Constructor<FreeStyleBuild>() {
+                public FreeStyleBuild create(File dir) throws IOException {
+                    return new FreeStyleBuild(p, dir);
+                }
+            });
+        } finally {
+            RunMap.loadWithHelpers(null, 0, null);
+            es.shutdown();
+        }
+
+        assertEquals(5, m.size());
+        assertEquals(5, m.firstKey().intValue());    // newest first
+        assertEquals(1, m.lastKey().intValue());
+        // the builds are linked to each other, just like when they are loaded by one thread
+        for (FreeStyleBuild b = m.get(5); b.getPreviousBuild()!=null; b = b.getPreviousBuild())
+            assertEquals(b.getNumber()-1, b.getPreviousBuild().getNumber());
+    }
+
+    /**
+     * By the time a job is published after a reload and its triggers start, its builds are loaded.
+     */
+    public void testJobHasItsBuildsWhenTriggersStart() throws Exception {
+        FreeStyleProject p = createFreeStyleProject("history");
+        for (int i=0; i<3; i++)
+            buildAndAssertSuccess(p);
+        p.addTrigger(new HistoryTrigger());
+
+        HistoryTrigger.seen = -1;
+        hudson.reload();
+
+        assertEquals(3, HistoryTrigger.seen);
+        FreeStyleProject q = (FreeStyleProject)hudson.getItem("history");
+        assertEquals(3, q.getBuilds().size());
+        assertEquals(4, q.getNextBuildNumber());
+    }
+
+    public static class HistoryTrigger extends Trigger<FreeStyleProject> {
+        /**
+         * Number of the last build of the project when the trigger started.
+         */
+        static volatile int seen;
+
+        @Override
+        public void start(FreeStyleProject project, boolean newInstance) {
+            super.start(project, newInstance);
+            FreeStyleBuild b = project.getLastBuild();
+            seen = b==null ? 0 : b.getNumber();
+        }
+
+        @TestExtension
+        public static class DescriptorImpl extends TriggerDescriptor {
+            public boolean isApplicable(Item item) {
+                return item instanceof FreeStyleProject;
+            }
+
+            public String getDisplayName() {
+                return "Records the build history";
+            }
+        }
+    }
+}
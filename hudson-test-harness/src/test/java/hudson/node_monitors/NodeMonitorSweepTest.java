@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.node_monitors;
+
+import hudson.model.Computer;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class NodeMonitorSweepTest extends HudsonTestCase {
+    /**
+     * Superseding one monitor of a sweep abandons that monitor only. The others in the same sweep
+     * are still monitored and published.
+     */
+    public void testSupersedingOneMonitorKeepsTheOthers() throws Exception {
+        final CountDownLatch stuck = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        TestMonitorDescriptor slow = new TestMonitorDescriptor("slow") {
+            private boolean first = true;
+            protected String monitor(Computer c) throws InterruptedException {
+                synchronized (this) {
+                    if (!first)     return "second";
+                    first = false;
+                }
+                stuck.countDown();
+                try {
+                    new CountDownLatch(1).await();  // until interrupted
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "first";
+            }
+        };
+        TestMonitorDescriptor other = new TestMonitorDescriptor("other") {
+            protected String monitor(Computer c) {
+                return "ok";
+            }
+        };
+
+        NodeMonitorSweep s1 = NodeMonitorSweep.start(Arrays.asList(slow,other));
+        assertTrue(stuck.await(10,TimeUnit.SECONDS));
+
+        NodeMonitorSweep s2 = NodeMonitorSweep.start(Arrays.asList(slow));
+        assertTrue("the stuck monitor should have been interrupted", interrupted.await(10,TimeUnit.SECONDS));
+        s1.join(10000);
+        s2.join(10000);
+        assertFalse(s1.isAlive());
+        assertFalse(s2.isAlive());
+
+        Computer c = hudson.toComputer();
+        assertEquals("ok", other.get(c));
+        assertEquals("second", slow.get(c));
+        assertEquals(0, s1.getTimeoutCount());
+    }
+
+    /**
+     * A sweep whose monitors are all superseded gives up altogether.
+     */
+    public void testSupersedingAllMonitorsInterruptsTheSweep() throws Exception {
+        final CountDownLatch stuck = new CountDownLatch(1);
+        TestMonitorDescriptor slow = new TestMonitorDescriptor("slow") {
+            private boolean first = true;
+            protected String monitor(Computer c) throws InterruptedException {
+                synchronized (this) {
+                    if (!first)     return "second";
+                    first = false;
+                }
+                stuck.countDown();
+                new CountDownLatch(1).await();
+                return "first";
+            }
+        };
+
+        NodeMonitorSweep s1 = NodeMonitorSweep.start(Arrays.asList(slow));
+        assertTrue(stuck.await(10,TimeUnit.SECONDS));
+        NodeMonitorSweep s2 = NodeMonitorSweep.start(Arrays.asList(slow));
+        s1.join(10000);
+        s2.join(10000);
+        assertFalse(s1.isAlive());
+        assertEquals("second", slow.get(hudson.toComputer()));
+    }
+
+    private static abstract class TestMonitorDescriptor extends AbstractNodeMonitorDescriptor<String> {
+        private final String name;
+
+        TestMonitorDescriptor(String name) {
+            // never fires by itself during the test
+            super(NodeMonitor.class, 24*60*60*1000L);
+            this.name = name;
+        }
+
+        @Override
+        protected abstract String monitor(Computer c) throws InterruptedException;
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+    }
+}
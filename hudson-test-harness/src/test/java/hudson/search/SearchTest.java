@@ -26,9 +26,14 @@ package hudson.search;
 import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.AlertHandler;
+import hudson.model.FreeStyleProject;
+import hudson.model.ListView;
+import hudson.model.View;
 import org.jvnet.hudson.test.HudsonTestCase;
 import org.jvnet.hudson.test.Bug;
 
+import java.util.List;
+
 /**
  * @author Kohsuke Kawaguchi
  */
@@ -63,4 +68,24 @@ public class SearchTest extends HudsonTestCase {
             assertEquals(404,e.getResponse().getStatusCode());
         }
     }
+
+    /**
+     * Reloading the configuration from disk replaces all the jobs, and the suggestions follow.
+     */
+    public void testSuggestionsAfterReload() throws Exception {
+        FreeStyleProject p = createFreeStyleProject("reloadable");
+        ListView v = new ListView("list", hudson);
+        hudson.addView(v);
+        v.add(p);
+
+        hudson.reload();
+
+        FreeStyleProject reloaded = (FreeStyleProject) hudson.getItem("reloadable");
+        assertNotSame(p, reloaded);
+        for (View view : new View[]{hudson.getView("list"), hudson.getPrimaryView()}) {
+            List<SuggestedItem> r = Search.suggest(view.getSearchIndex(), "reloadab");
+            assertEquals(view.getViewName(), 1, r.size());
+            assertSame(reloaded, r.get(0).item);
+        }
+    }
 }
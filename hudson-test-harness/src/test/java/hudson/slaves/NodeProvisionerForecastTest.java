@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2011, Oracle Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.slaves;
+
+import hudson.BulkChange;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Result;
+import hudson.model.MultiStageTimeSeries.TimeScale;
+import hudson.slaves.NodeProvisioner.NodeProvisionerInvoker;
+import hudson.slaves.NodeProvisionerTest.Latch;
+import org.jvnet.hudson.test.HudsonTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link NodeProvisioner} with {@link NodeProvisioner#FORECAST} on.
+ *
+ * <p>
+ * The periodic invocation is pushed out of the way, so everything that's provisioned here
+ * comes from the reviews that the queue asks for.
+ */
+public class NodeProvisionerForecastTest extends HudsonTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        NodeProvisioner.FORECAST = true;
+        NodeProvisionerInvoker.INITIALDELAY = 60*60*1000;
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        NodeProvisioner.FORECAST = false;
+        NodeProvisionerInvoker.INITIALDELAY = NodeProvisionerInvoker.RECURRENCEPERIOD*10;
+    }
+
+    /**
+     * Scenario: a burst of builds with no executors gets one node per build from the queue reviews alone.
+     */
+    public void testLoadSpikeIsProvisionedFromReviews() throws Exception {
+        BulkChange bc = new BulkChange(hudson);
+        try {
+            DummyCloudImpl cloud = initHudson();
+
+            verifySuccessfulCompletion(buildAll(createSlowJobs(new Latch(5), null)));
+
+            assertEquals(5,cloud.numProvisioned);
+            // reviews in between the ticks don't feed the moving average
+            assertEquals(0f,hudson.overallNodeProvisioner.plannedCapacitiesEMA.getLatest(TimeScale.SEC10),0f);
+        } finally {
+            bc.abort();
+        }
+    }
+
+    /**
+     * Scenario: the forecast for one label doesn't ask the cloud for nodes of another label.
+     */
+    public void testLabels() throws Exception {
+        BulkChange bc = new BulkChange(hudson);
+        try {
+            DummyCloudImpl cloud = initHudson();
+            Label red = hudson.getLabel("red");
+            cloud.label = red;
+
+            List<Future<FreeStyleBuild>> blueBuilds = buildAll(createSlowJobs(new Latch(3), hudson.getLabel("blue")));
+            verifySuccessfulCompletion(buildAll(createSlowJobs(new Latch(3), red)));
+
+            assertEquals(3,cloud.numProvisioned);
+            for (Future<FreeStyleBuild> bb : blueBuilds)
+                assertFalse(bb.isDone());
+        } finally {
+            bc.abort();
+        }
+    }
+
+    /**
+     * Scenario: idle executors of a node reserved for tied jobs don't cover the demand of unlabeled builds.
+     */
+    public void testExclusiveNodesDontTakeUnlabeledJobs() throws Exception {
+        BulkChange bc = new BulkChange(hudson);
+        try {
+            DummyCloudImpl cloud = initHudson();
+            DumbSlave tied = new DumbSlave("tied", "dummy", createTmpDir().getPath(), "3", Node.Mode.EXCLUSIVE, "tied",
+                    createComputerLauncher(null), RetentionStrategy.NOOP);
+            hudson.addNode(tied);
+            tied.toComputer().connect(false).get();
+
+            verifySuccessfulCompletion(buildAll(createSlowJobs(new Latch(3), null)));
+
+            assertEquals(3,cloud.numProvisioned);
+        } finally {
+            bc.abort();
+        }
+    }
+
+    private DummyCloudImpl initHudson() throws Exception {
+        DummyCloudImpl cloud = new DummyCloudImpl(this, 0);
+        hudson.clouds.add(cloud);
+
+        hudson.setNumExecutors(0);
+        hudson.setNodes(Collections.<Node>emptyList());
+        return cloud;
+    }
+
+    private List<FreeStyleProject> createSlowJobs(Latch l, Label label) throws Exception {
+        List<FreeStyleProject> jobs = new ArrayList<FreeStyleProject>();
+        for (int i=0; i<l.init; i++) {
+            FreeStyleProject p = createFreeStyleProject();
+            p.setAssignedLabel(label);
+            p.getBuildersList().add(l.createBuilder());
+            jobs.add(p);
+        }
+        return jobs;
+    }
+
+    private List<Future<FreeStyleBuild>> buildAll(List<FreeStyleProject> jobs) {
+        List<Future<FreeStyleBuild>> builds = new ArrayList<Future<FreeStyleBuild>>();
+        for (FreeStyleProject job : jobs)
+            builds.add(job.scheduleBuild2(0));
+        return builds;
+    }
+
+    private void verifySuccessfulCompletion(List<Future<FreeStyleBuild>> builds) throws Exception {
+        for (Future<FreeStyleBuild> f : builds)
+            assertBuildStatus(Result.SUCCESS, f.get(60, TimeUnit.SECONDS));
+    }
+}
@@ -36,11 +36,19 @@ import hudson.model.FreeStyleProject;
 import hudson.model.Hudson;
 import hudson.model.TaskListener;
 import hudson.scm.NullSCM;
+import hudson.scm.PollingResult;
+import hudson.scm.PollingResult.Change;
+import hudson.scm.SCM;
+import hudson.scm.SCMRevisionState;
 import org.jvnet.hudson.test.Bug;
 import org.jvnet.hudson.test.HudsonTestCase;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Alan Harder
@@ -65,6 +73,131 @@ public class SCMTriggerTest extends HudsonTestCase {
         build.get();  // let mock build finish
     }
 
+    /**
+     * Projects polling the same location from the same baseline share one comparison with the remote.
+     */
+    public void testPollingsOfTheSameLocationAreShared() throws Exception {
+        OneShotEvent entered = new OneShotEvent(), release = new OneShotEvent();
+        AtomicInteger comparisons = new AtomicInteger();
+        FreeStyleProject p1 = createFreeStyleProject();
+        p1.setScm(new SharedSCM("svn://repo/trunk", entered, release, comparisons));
+        FreeStyleProject p2 = createFreeStyleProject();
+        p2.setScm(new SharedSCM("svn://repo/trunk", entered, release, comparisons));
+
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            long shared = SCM.getSharedPollingCount();
+            // baselines are distinct but equal instances, compared by their persisted form
+            Future<PollingResult> r1 = es.submit(poll(p1, new Revision(1)));
+            entered.block();
+            Future<PollingResult> r2 = es.submit(poll(p2, new Revision(1)));
+            while (SCM.getSharedPollingCount()==shared)
+                Thread.sleep(10);
+            release.signal();
+
+            assertSame(r1.get(), r2.get());
+            assertEquals(1, comparisons.get());
+            assertEquals(shared+1, SCM.getSharedPollingCount());
+
+            // a different baseline needs its own comparison
+            es.submit(poll(p2, new Revision(2))).get();
+            assertEquals(2, comparisons.get());
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    public void testSpreadDelayIsDeterministicAndWithinThePeriod() throws Exception {
+        SCMTrigger.DescriptorImpl d = hudson.getDescriptorByType(SCMTrigger.DescriptorImpl.class);
+        d.setPollingSpread(300);
+
+        OneShotEvent signaled = new OneShotEvent();
+        signaled.signal();
+        AtomicInteger comparisons = new AtomicInteger();
+        FreeStyleProject p1 = createFreeStyleProject();
+        p1.setScm(new SharedSCM("svn://repo/trunk", signaled, signaled, comparisons));
+        FreeStyleProject p2 = createFreeStyleProject();
+        p2.setScm(new SharedSCM("svn://repo/trunk", signaled, signaled, comparisons));
+        FreeStyleProject p3 = createFreeStyleProject();
+
+        // polling every minute: the delay can't be longer than that, whatever the spread
+        SCMTrigger t1 = trigger(p1, "* * * * *");
+        SCMTrigger t2 = trigger(p2, "* * * * *");
+        SCMTrigger t3 = trigger(p3, "* * * * *");
+        long delay = t1.getSpreadDelay();
+        assertTrue(delay>=0 && delay<60*1000);
+        assertEquals(0, delay%1000);
+        assertEquals(delay, t1.getSpreadDelay());
+        // same location, same moment, so that the pollings can be shared
+        assertEquals(delay, t2.getSpreadDelay());
+        // no polling key: spread by the project name instead
+        assertEquals(t3.getSpreadDelay(), trigger(p3, "* * * * *").getSpreadDelay());
+        assertTrue(t3.getSpreadDelay()<60*1000);
+
+        // polling less often: bounded by the spread
+        SCMTrigger t4 = trigger(p1, "*/15 * * * *");
+        assertTrue(t4.getSpreadDelay()>=0 && t4.getSpreadDelay()<300*1000);
+
+        d.setPollingSpread(0);
+        assertEquals(0, t1.getSpreadDelay());
+    }
+
+    private SCMTrigger trigger(FreeStyleProject p, String spec) throws Exception {
+        SCMTrigger t = new SCMTrigger(spec);
+        t.start(p, true);
+        return t;
+    }
+
+    private Callable<PollingResult> poll(final FreeStyleProject p, final SCMRevisionState baseline) {
+        return new Callable<PollingResult>() {
+            public PollingResult call() throws Exception {
+                return p.getScm().poll(p, createLocalLauncher(), null, StreamTaskListener.fromStdout(), baseline);
+            }
+        };
+    }
+
+    private static class Revision extends SCMRevisionState {
+        private final int number;
+
+        Revision(int number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * Polls the given location without a workspace, holding the comparison until released.
+     */
+    private static class SharedSCM extends NullSCM {
+        private final String location;
+        private final transient OneShotEvent entered, release;
+        private final transient AtomicInteger comparisons;
+
+        SharedSCM(String location, OneShotEvent entered, OneShotEvent release, AtomicInteger comparisons) {
+            this.location = location;
+            this.entered = entered;
+            this.release = release;
+            this.comparisons = comparisons;
+        }
+
+        @Override
+        public boolean requiresWorkspaceForPolling() {
+            return false;
+        }
+
+        @Override
+        public Object getPollingKey(AbstractProject<?,?> project) {
+            return location;
+        }
+
+        @Override
+        protected PollingResult compareRemoteRevisionWith(AbstractProject project, Launcher launcher, FilePath workspace, TaskListener listener, SCMRevisionState baseline) throws IOException, InterruptedException {
+            comparisons.incrementAndGet();
+            entered.signal();
+            release.block();
+            return new PollingResult(baseline, new Revision(((Revision)baseline).number+1), Change.SIGNIFICANT);
+        }
+    }
+
     private static class TestSCM extends NullSCM {
         private volatile int myRev = 1;
         private final OneShotEvent checkoutStarted;